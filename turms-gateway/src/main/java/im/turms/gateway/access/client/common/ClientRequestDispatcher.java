@@ -52,7 +52,6 @@ import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
 import im.turms.server.common.infra.metrics.CommonMetricNameConst;
 import im.turms.server.common.infra.property.TurmsPropertiesManager;
 import im.turms.server.common.infra.proto.ProtoDecoder;
-import im.turms.server.common.infra.proto.ProtoEncoder;
 import im.turms.server.common.infra.time.DateTimeUtil;
 import im.turms.server.common.infra.tracing.TracingCloseableContext;
 import im.turms.server.common.infra.tracing.TracingContext;
@@ -78,7 +77,7 @@ public class ClientRequestDispatcher {
 
     private static final long HEARTBEAT_FAILURE_REQUEST_ID = -100;
 
-    private static final Mono<TurmsNotification> UNAUTHORIZED_REQUEST_ERROR_MONO =
+    private static final Mono<ClientResponse> UNAUTHORIZED_REQUEST_ERROR_MONO =
             Mono.error(ResponseException.get(ResponseStatusCode.UNAUTHORIZED_REQUEST));
 
     private final ApiLoggingContext apiLoggingContext;
@@ -171,7 +170,7 @@ public class ClientRequestDispatcher {
         int requestSize = serviceRequestBuffer.readableBytes();
         SimpleTurmsRequest request;
         SimpleTurmsRequest tempRequest;
-        Mono<TurmsNotification> notificationMono = null;
+        Mono<ClientResponse> responseMono = null;
         try {
             tempRequest = TurmsRequestParser
                     .parseSimpleRequest(ProtoDecoder.newInputStream(serviceRequestBuffer));
@@ -183,7 +182,7 @@ public class ClientRequestDispatcher {
                 blocklistService.tryBlockUserIdForCorruptedRequest(session.getUserId());
             }
             blocklistService.tryBlockIpForCorruptedRequest(sessionWrapper.getIp());
-            notificationMono = Mono.error(
+            responseMono = Mono.error(
                     ResponseException.get(ResponseStatusCode.INVALID_REQUEST, e.getMessage()));
         }
         request = tempRequest;
@@ -196,20 +195,20 @@ public class ClientRequestDispatcher {
         UserSession session = sessionWrapper.getUserSession();
         if (session != null) {
             if (!session.hasPermission(requestType)) {
-                notificationMono = UNAUTHORIZED_REQUEST_ERROR_MONO;
+                responseMono = UNAUTHORIZED_REQUEST_ERROR_MONO;
             }
             if (requestType == DELETE_SESSION_REQUEST) {
                 canLogRequest = session.acquireDeleteSessionRequestLoggingLock();
             }
         }
         boolean finalCanLogRequest = canLogRequest;
-        if (notificationMono == null) {
-            notificationMono = handleServiceRequest(sessionWrapper,
+        if (responseMono == null) {
+            responseMono = handleServiceRequest(sessionWrapper,
                     request,
                     serviceRequestBuffer,
                     tracingContext);
         }
-        return notificationMono
+        return responseMono
                 // Metrics and logging
                 .name(TURMS_CLIENT_REQUEST)
                 .tag(TURMS_CLIENT_REQUEST_TAG_TYPE, requestType.name())
@@ -223,12 +222,14 @@ public class ClientRequestDispatcher {
                                 request,
                                 throwable);
                     }
-                    return Mono.just(NotificationFactory.create(info, request.requestId()));
+                    return Mono.just(ClientResponse
+                            .of(NotificationFactory.create(info, request.requestId())));
                 })
-                .map(notification -> {
+                .map(response -> {
+                    ByteBuf responseBuffer = response.encode();
                     TurmsRequest.KindCase type = request.type();
                     // TODO: exclude the error caused by the inactive of turms-service
-                    if (ResponseStatusCode.isServerError(notification.getCode())
+                    if (ResponseStatusCode.isServerError(response.code())
                             || apiLoggingContext.shouldLogRequest(type) && finalCanLogRequest) {
                         try (TracingCloseableContext ignored = tracingContext.asCloseable()) {
                             UserSession userSession = sessionWrapper.getUserSession();
@@ -251,12 +252,15 @@ public class ClientRequestDispatcher {
                                     type,
                                     requestSize,
                                     requestTime,
-                                    notification,
+                                    response.code(),
+                                    response.dataKindName(),
+                                    responseBuffer.readableBytes(),
                                     (System.nanoTime() - startTime) / DateTimeUtil.NANOS_PER_MILLI);
                         }
                     }
-                    return ProtoEncoder.getDirectByteBuffer(notification);
+                    return responseBuffer;
                 })
+                .doOnDiscard(ClientResponse.class, ClientResponse::release)
                 .contextWrite(context -> {
                     TracingContext ctx = context.get(TracingContext.CTX_KEY_NAME);
                     ctx.setTraceId(tracingContext.getTraceId());
@@ -267,7 +271,7 @@ public class ClientRequestDispatcher {
     /**
      * The method ensures serviceRequestBuffer will be released by 1
      */
-    public Mono<TurmsNotification> handleServiceRequest(
+    public Mono<ClientResponse> handleServiceRequest(
             UserSessionWrapper sessionWrapper,
             SimpleTurmsRequest request,
             ByteBuf serviceRequestBuffer,
@@ -276,16 +280,18 @@ public class ClientRequestDispatcher {
             // Validate
             long requestId = request.requestId();
             if (requestId <= 0) {
-                return Mono.just(NotificationFactory.create(ResponseStatusCode.INVALID_REQUEST,
-                        "The request ID must be greater than 0",
-                        requestId));
+                return Mono.just(ClientResponse
+                        .of(NotificationFactory.create(ResponseStatusCode.INVALID_REQUEST,
+                                "The request ID must be greater than 0",
+                                requestId)));
             }
             // Check server status
             ServiceAvailability serviceAvailability = serverStatusManager.getServiceAvailability();
             if (!serviceAvailability.isAvailable()) {
-                return Mono.just(NotificationFactory.create(ResponseStatusCode.SERVER_UNAVAILABLE,
-                        serviceAvailability.reason(),
-                        requestId));
+                return Mono.just(ClientResponse
+                        .of(NotificationFactory.create(ResponseStatusCode.SERVER_UNAVAILABLE,
+                                serviceAvailability.reason(),
+                                requestId)));
             }
 
             // Rate limiting
@@ -295,8 +301,8 @@ public class ClientRequestDispatcher {
                 if (userSession != null) {
                     blocklistService.tryBlockUserIdForFrequentRequest(userSession.getUserId());
                 }
-                return Mono.just(NotificationFactory
-                        .create(ResponseStatusCode.CLIENT_REQUESTS_TOO_FREQUENT, requestId));
+                return Mono.just(ClientResponse.of(NotificationFactory
+                        .create(ResponseStatusCode.CLIENT_REQUESTS_TOO_FREQUENT, requestId)));
             }
 
             // Handle the request to get a response
@@ -305,10 +311,11 @@ public class ClientRequestDispatcher {
             return switch (requestType) {
                 case CREATE_SESSION_REQUEST -> sessionController
                         .handleCreateSessionRequest(sessionWrapper, request.createSessionRequest())
-                        .map(result -> getNotificationFromHandlerResult(result,
-                                request.requestId()));
-                case DELETE_SESSION_REQUEST ->
-                    sessionController.handleDeleteSessionRequest(sessionWrapper);
+                        .map(result -> ClientResponse
+                                .of(getNotificationFromHandlerResult(result, request.requestId())));
+                case DELETE_SESSION_REQUEST -> sessionController
+                        .handleDeleteSessionRequest(sessionWrapper)
+                        .map(ClientResponse::of);
                 default -> {
                     serviceRequestBuffer.retain();
                     yield handleServiceRequest(sessionWrapper, request, serviceRequestBuffer);
@@ -363,14 +370,15 @@ public class ClientRequestDispatcher {
         return Mono.just(data);
     }
 
-    private Mono<TurmsNotification> handleServiceRequest(
+    private Mono<ClientResponse> handleServiceRequest(
             UserSessionWrapper sessionWrapper,
             SimpleTurmsRequest request,
             ByteBuf serviceRequestBuffer) {
         UserSession session = sessionWrapper.getUserSession();
         if (session == null || !session.isOpen()) {
             serviceRequestBuffer.release();
-            return Mono.just(NotificationFactory.sessionClosed(request.requestId()));
+            return Mono
+                    .just(ClientResponse.of(NotificationFactory.sessionClosed(request.requestId())));
         }
         ServiceRequest serviceRequest = new ServiceRequest(
                 sessionWrapper.getAddress()
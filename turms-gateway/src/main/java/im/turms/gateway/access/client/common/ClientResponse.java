@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.gateway.access.client.common;
+
+import jakarta.annotation.Nullable;
+
+import io.netty.buffer.ByteBuf;
+
+import im.turms.server.common.access.client.dto.ClientMessageEncoder;
+import im.turms.server.common.access.client.dto.notification.TurmsNotification;
+import im.turms.server.common.infra.proto.ProtoEncoder;
+
+/**
+ * The response to a client request, which is either a {@link TurmsNotification} built by the
+ * gateway, or a response whose data has been serialized by turms-service so that the gateway can
+ * splice the data into the notification for the client without parsing and re-encoding it.
+ *
+ * @author James Chen
+ */
+public final class ClientResponse {
+
+    @Nullable
+    private final TurmsNotification notification;
+
+    private final long requestId;
+    private final int code;
+    @Nullable
+    private final String reason;
+    @Nullable
+    private final ByteBuf data;
+
+    private ClientResponse(
+            @Nullable TurmsNotification notification,
+            long requestId,
+            int code,
+            @Nullable String reason,
+            @Nullable ByteBuf data) {
+        this.notification = notification;
+        this.requestId = requestId;
+        this.code = code;
+        this.reason = reason;
+        this.data = data;
+    }
+
+    public static ClientResponse of(TurmsNotification notification) {
+        return new ClientResponse(
+                notification,
+                notification.getRequestId(),
+                notification.getCode(),
+                null,
+                null);
+    }
+
+    /**
+     * @param data the serialized {@link TurmsNotification.Data}, and the returned response will
+     *             take over its ownership.
+     */
+    public static ClientResponse of(
+            long requestId,
+            int code,
+            @Nullable String reason,
+            ByteBuf data) {
+        return new ClientResponse(null, requestId, code, reason, data);
+    }
+
+    public int code() {
+        return code;
+    }
+
+    @Nullable
+    public String dataKindName() {
+        if (notification != null) {
+            return notification.hasData()
+                    ? notification.getData()
+                            .getKindCase()
+                            .name()
+                    : null;
+        }
+        // "Data" only has a "oneof" field, so the tag of the first field indicates the kind
+        TurmsNotification.Data.KindCase kind =
+                TurmsNotification.Data.KindCase.forNumber(readTag(data) >>> 3);
+        return kind == null
+                ? null
+                : kind.name();
+    }
+
+    /**
+     * @return the buffer to send to the client.
+     * @implNote The method ensures the data buffer will be released by 1
+     */
+    public ByteBuf encode() {
+        if (notification != null) {
+            return ProtoEncoder.getDirectByteBuffer(notification);
+        }
+        return ClientMessageEncoder
+                .encodeResponse(System.currentTimeMillis(), requestId, code, reason, data);
+    }
+
+    public void release() {
+        if (data != null) {
+            data.release();
+        }
+    }
+
+    /**
+     * @return the tag (varint32) at the reader index of the buffer without changing the reader
+     *         index, or 0 if the buffer doesn't start with a valid tag.
+     */
+    private static int readTag(ByteBuf buffer) {
+        int index = buffer.readerIndex();
+        int end = Math.min(buffer.writerIndex(), index + 5);
+        int result = 0;
+        for (int shift = 0; index < end; shift += 7) {
+            byte b = buffer.getByte(index++);
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+}
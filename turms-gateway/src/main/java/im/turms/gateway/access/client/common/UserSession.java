@@ -94,6 +94,12 @@ public final class UserSession {
     // No need to add volatile because it can only be accessed by one thread
     // (the thread "turms-client-heartbeat-refresher" in HeartbeatManager)
     private long lastHeartbeatUpdateTimestampNanos;
+    /**
+     * The tick of the next heartbeat check in
+     * {@link im.turms.gateway.domain.session.manager.UserSessionTimingWheel}. No need to add
+     * volatile for the same reason as {@link #lastHeartbeatUpdateTimestampNanos}.
+     */
+    private long heartbeatCheckTick;
 
     /**
      * Note that it is acceptable that the session is still open even if the connection is closed
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.gateway.access.client.common.channel;
+
+import java.util.concurrent.TimeUnit;
+import jakarta.annotation.Nullable;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import im.turms.server.common.infra.property.env.gateway.network.FlushCoalescingProperties;
+
+/**
+ * Tracks the outbound data of a connection and records the number of bytes written by each flush.
+ * <p>
+ * If coalescing is enabled, flushes requested within the same event loop tick (or within the
+ * configured delay) are merged into one flush, which is performed at the end of the tick (or when
+ * the delay elapses), or immediately once the pending data reaches the byte budget. This reduces
+ * the number of write syscalls when many small notifications are sent to the same connection in a
+ * burst (e.g. group messages).
+ *
+ * @author James Chen
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    private final boolean coalescing;
+    private final int maxBytes;
+    private final long maxDelayNanos;
+    private final FlushMetrics flushMetrics;
+
+    private ChannelHandlerContext context;
+    private long pendingBytes;
+    private boolean isFlushPending;
+    @Nullable
+    private ScheduledFuture<?> scheduledFlush;
+    private final Runnable flushTask = () -> {
+        scheduledFlush = null;
+        if (isFlushPending) {
+            flushNow(context);
+        }
+    };
+
+    public FlushCoalescingHandler(
+            FlushCoalescingProperties flushCoalescingProperties,
+            FlushMetrics flushMetrics) {
+        coalescing = flushCoalescingProperties.isEnabled();
+        maxBytes = flushCoalescingProperties.getMaxBytes();
+        maxDelayNanos =
+                TimeUnit.MILLISECONDS.toNanos(flushCoalescingProperties.getMaxDelayMillis());
+        this.flushMetrics = flushMetrics;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        context = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        if (isFlushPending) {
+            flushNow(ctx);
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (msg instanceof ByteBuf buffer) {
+            pendingBytes += buffer.readableBytes();
+        } else if (msg instanceof ByteBufHolder holder) {
+            pendingBytes += holder.content()
+                    .readableBytes();
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (!coalescing || pendingBytes >= maxBytes) {
+            flushNow(ctx);
+            return;
+        }
+        if (isFlushPending) {
+            return;
+        }
+        isFlushPending = true;
+        if (maxDelayNanos > 0) {
+            scheduledFlush = ctx.executor()
+                    .schedule(flushTask, maxDelayNanos, TimeUnit.NANOSECONDS);
+        } else {
+            ctx.executor()
+                    .execute(flushTask);
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        // Flush the pending data before closing,
+        // or the data will be discarded by the channel.
+        if (isFlushPending) {
+            flushNow(ctx);
+        }
+        ctx.close(promise);
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        isFlushPending = false;
+        ScheduledFuture<?> future = scheduledFlush;
+        if (future != null) {
+            scheduledFlush = null;
+            future.cancel(false);
+        }
+        long bytes = pendingBytes;
+        if (bytes > 0) {
+            pendingBytes = 0;
+            flushMetrics.recordFlush(bytes);
+        }
+        ctx.flush();
+    }
+
+}
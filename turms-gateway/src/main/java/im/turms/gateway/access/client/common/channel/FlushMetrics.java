@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.gateway.access.client.common.channel;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+
+import static reactor.netty.Metrics.REGISTRY;
+
+/**
+ * @author James Chen
+ */
+public class FlushMetrics {
+
+    private static final String FLUSH = ".flush";
+    private static final String FLUSH_BYTES = ".flush.bytes";
+
+    private final Counter flushCount;
+    private final DistributionSummary flushBytes;
+
+    public FlushMetrics(String name) {
+        flushCount = Counter.builder(name + FLUSH)
+                .description("Number of flushes that wrote data to the connections")
+                .register(REGISTRY);
+        flushBytes = DistributionSummary.builder(name + FLUSH_BYTES)
+                .baseUnit("bytes")
+                .description("Amount of the data written by a flush, in bytes")
+                .register(REGISTRY);
+    }
+
+    public void recordFlush(long bytes) {
+        flushCount.increment();
+        flushBytes.record(bytes);
+    }
+
+}
@@ -26,6 +26,8 @@ import reactor.netty.DisposableServer;
 import reactor.netty.NettyPipeline;
 import reactor.netty.tcp.TcpServer;
 
+import im.turms.gateway.access.client.common.channel.FlushCoalescingHandler;
+import im.turms.gateway.access.client.common.channel.FlushMetrics;
 import im.turms.gateway.access.client.common.channel.ServiceAvailabilityHandler;
 import im.turms.gateway.access.client.common.connection.ConnectionListener;
 import im.turms.gateway.domain.session.service.SessionService;
@@ -41,6 +43,7 @@ import im.turms.server.common.infra.net.SslContextSpecType;
 import im.turms.server.common.infra.net.SslUtil;
 import im.turms.server.common.infra.property.constant.RemoteAddressSourceProxyProtocolMode;
 import im.turms.server.common.infra.property.env.common.SslProperties;
+import im.turms.server.common.infra.property.env.gateway.network.FlushCoalescingProperties;
 import im.turms.server.common.infra.property.env.gateway.network.TcpProperties;
 
 import static io.netty.channel.ChannelOption.CONNECT_TIMEOUT_MILLIS;
@@ -73,6 +76,8 @@ public final class TcpServerFactory {
         RemoteAddressSourceProxyProtocolMode proxyProtocolMode =
                 tcpProperties.getRemoteAddressSource()
                         .getProxyProtocolMode();
+        FlushCoalescingProperties flushCoalescingProperties = tcpProperties.getFlushCoalescing();
+        FlushMetrics flushMetrics = new FlushMetrics(MetricNameConst.TURMS_GATEWAY_SERVER_TCP);
 
         Sinks.One<InetSocketAddress> remoteAddressSink = Sinks.one();
         TcpServer server = TcpServer.create()
@@ -130,6 +135,11 @@ public final class TcpServerFactory {
                     // encode them.
                     pipeline.addLast("protobufFrameEncoder",
                             CodecFactory.getProtobufFrameEncoder());
+                    // Placed before "varintLengthFieldPrepender"
+                    // so that it sees the encoded buffers.
+                    pipeline.addBefore("varintLengthFieldPrepender",
+                            "flushCoalescingHandler",
+                            new FlushCoalescingHandler(flushCoalescingProperties, flushMetrics));
                 })
                 // Called when a connection is read (in/after channelActive(...)).
                 .handle((in, out) -> {
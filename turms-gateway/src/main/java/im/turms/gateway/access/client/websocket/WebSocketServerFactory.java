@@ -36,6 +36,8 @@ import reactor.netty.http.server.HttpServerResponse;
 import reactor.netty.http.server.ProxyProtocolSupportType;
 import reactor.netty.http.server.WebsocketServerSpec;
 
+import im.turms.gateway.access.client.common.channel.FlushCoalescingHandler;
+import im.turms.gateway.access.client.common.channel.FlushMetrics;
 import im.turms.gateway.access.client.common.channel.ServiceAvailabilityHandler;
 import im.turms.gateway.access.client.common.connection.ConnectionListener;
 import im.turms.gateway.domain.session.service.SessionService;
@@ -51,6 +53,7 @@ import im.turms.server.common.infra.net.SslUtil;
 import im.turms.server.common.infra.property.constant.RemoteAddressSourceHttpHeaderMode;
 import im.turms.server.common.infra.property.constant.RemoteAddressSourceProxyProtocolMode;
 import im.turms.server.common.infra.property.env.common.SslProperties;
+import im.turms.server.common.infra.property.env.gateway.network.FlushCoalescingProperties;
 import im.turms.server.common.infra.property.env.gateway.network.WebSocketProperties;
 import im.turms.server.common.infra.property.env.gateway.network.WebSocketRemoteAddressSourceProperties;
 
@@ -104,6 +107,10 @@ public final class WebSocketServerFactory {
             case OPTIONAL -> ProxyProtocolSupportType.AUTO;
             case DISABLED -> ProxyProtocolSupportType.OFF;
         };
+        FlushCoalescingProperties flushCoalescingProperties =
+                webSocketProperties.getFlushCoalescing();
+        FlushMetrics flushMetrics =
+                new FlushMetrics(MetricNameConst.TURMS_GATEWAY_SERVER_WEBSOCKET);
         HttpServer server = HttpServer.create()
                 .host(host)
                 .port(port)
@@ -124,7 +131,11 @@ public final class WebSocketServerFactory {
                         connectionListener,
                         serverSpec))
                 .doOnChannelInit((connectionObserver, channel, remoteAddress) -> channel.pipeline()
-                        .addFirst("serviceAvailabilityHandler", serviceAvailabilityHandler));
+                        .addFirst("serviceAvailabilityHandler", serviceAvailabilityHandler)
+                        .addLast("flushCoalescingHandler",
+                                new FlushCoalescingHandler(
+                                        flushCoalescingProperties,
+                                        flushMetrics)));
         RemoteAddressSourceHttpHeaderMode remoteAddressSourceHttpHeaderMode =
                 remoteAddressSourceProperties.getHttpHeaderMode();
         if (RemoteAddressSourceHttpHeaderMode.REQUIRED == remoteAddressSourceHttpHeaderMode) {
@@ -19,9 +19,11 @@ package im.turms.gateway.domain.servicerequest.service;
 
 import jakarta.validation.constraints.NotNull;
 
+import io.netty.buffer.ByteBuf;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import im.turms.gateway.access.client.common.ClientResponse;
 import im.turms.gateway.access.client.common.UserSession;
 import im.turms.server.common.access.client.dto.ClientMessagePool;
 import im.turms.server.common.access.client.dto.notification.TurmsNotification;
@@ -51,7 +53,7 @@ public class ServiceRequestService extends BaseService {
      * @return a response to the request.
      * @implNote The method ensures turmsRequestBuffer in serviceRequest will be released by 1
      */
-    public Mono<TurmsNotification> handleServiceRequest(
+    public Mono<ClientResponse> handleServiceRequest(
             UserSession session,
             ServiceRequest serviceRequest) {
         try {
@@ -64,8 +66,8 @@ public class ServiceRequestService extends BaseService {
             return node.getRpcService()
                     .requestResponse(request)
                     .defaultIfEmpty(REQUEST_RESPONSE_NO_CONTENT)
-                    .map(response -> getNotificationFromResponse(response,
-                            serviceRequest.getRequestId()));
+                    .map(response -> getClientResponse(response, serviceRequest.getRequestId()))
+                    .doOnDiscard(ServiceResponse.class, ServiceResponse::release);
         } catch (Exception e) {
             return Mono.error(e);
         } finally {
@@ -74,14 +76,22 @@ public class ServiceRequestService extends BaseService {
         }
     }
 
-    private TurmsNotification getNotificationFromResponse(
-            @NotNull ServiceResponse response,
-            long requestId) {
+    private ClientResponse getClientResponse(@NotNull ServiceResponse response, long requestId) {
         ResponseStatusCode code = response.code();
         if (code == null) {
-            throw new IllegalArgumentException(
+            IllegalArgumentException exception = new IllegalArgumentException(
                     "The business code should not be null in the service response: "
                             + response);
+            response.release();
+            throw exception;
+        }
+        ByteBuf dataForRequesterBuffer = response.dataForRequesterBuffer();
+        if (dataForRequesterBuffer != null) {
+            // Splice the serialized data sent by turms-service into the notification directly
+            return ClientResponse.of(requestId,
+                    code.getBusinessCode(),
+                    response.reason(),
+                    dataForRequesterBuffer);
         }
         TurmsNotification.Builder builder = ClientMessagePool.getTurmsNotificationBuilder();
         String reason = response.reason();
@@ -92,10 +102,10 @@ public class ServiceRequestService extends BaseService {
         if (dataForRequester != null) {
             builder.setData(dataForRequester);
         }
-        return builder.setTimestamp(System.currentTimeMillis())
+        return ClientResponse.of(builder.setTimestamp(System.currentTimeMillis())
                 .setCode(code.getBusinessCode())
                 .setRequestId(requestId)
-                .build();
+                .build());
     }
 
 }
\ No newline at end of file
@@ -18,13 +18,14 @@
 package im.turms.gateway.domain.session.manager;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import io.lettuce.core.protocol.LongKeyGenerator;
 import lombok.Setter;
+import org.eclipse.collections.api.iterator.LongIterator;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.jctools.queues.MpscUnboundedArrayQueue;
 import reactor.core.publisher.Mono;
 
 import im.turms.gateway.access.client.common.UserSession;
@@ -50,9 +51,16 @@ import im.turms.server.common.infra.time.DurationConst;
  *           send them to Redis periodically: Waste memory and loss performance due to the
  *           operations on the MPSC queue
  *           <p>
- *           3. (Adopted) Do not store the requests, and just iterate over the original online user
- *           map to get a snapshot of the online users that need to update online status (go offline
- *           or refresh heartbeat)
+ *           3. Do not store the requests, and just iterate over the original online user map to get
+ *           a snapshot of the online users that need to update online status (go offline or refresh
+ *           heartbeat): The cost of every tick grows linearly with the number of online sessions
+ *           even if no session needs to be updated
+ *           <p>
+ *           4. (Adopted) Do not store the requests, and schedule every session in a hashed timing
+ *           wheel by its next deadline (refresh heartbeat, close if idle, or switch to UDP), which
+ *           is computed from the latest request timestamps when the session is visited, so only the
+ *           sessions that are due are visited in a tick, and only the due sessions that have sent
+ *           requests are refreshed in Redis
  */
 public class HeartbeatManager {
 
@@ -62,16 +70,27 @@ public class HeartbeatManager {
             CloseReason.get(SessionCloseStatus.HEARTBEAT_TIMEOUT);
 
     private static final int UPDATE_HEARTBEAT_INTERVAL_MILLIS = 1000;
-    private static final float UPDATE_HEARTBEAT_INTERVAL_FACTOR =
-            UPDATE_HEARTBEAT_INTERVAL_MILLIS / 1000f;
+    private static final int TIMING_WHEEL_BUCKET_COUNT = 512;
 
     private final SessionService sessionService;
     private final UserStatusService userStatusService;
-    private final Map<Long, UserSessionsManager> userIdToSessionsManager;
     private final TurmsThread workerThread;
+    /**
+     * Sessions added by other threads, which will be scheduled in the timing wheel by the worker
+     * thread.
+     */
+    private final MpscUnboundedArrayQueue<UserSession> newSessions =
+            new MpscUnboundedArrayQueue<>(1024);
+    /**
+     * Can only be accessed by the worker thread.
+     */
+    private final UserSessionTimingWheel timingWheel;
+    /**
+     * Can only be accessed by the worker thread.
+     */
+    private final LongHashSet userIdsToRefresh = new LongHashSet(1024);
     private int closeIdleSessionAfterSeconds;
     private long closeIdleSessionAfterNanos;
-    private int expectedFractionPerSecond;
     @Setter
     private long minHeartbeatIntervalNanos;
     @Setter
@@ -80,18 +99,18 @@ public class HeartbeatManager {
     public HeartbeatManager(
             SessionService sessionService,
             UserStatusService userStatusService,
-            Map<Long, UserSessionsManager> userIdToSessionsManager,
-            int clientHeartbeatIntervalSeconds,
             int closeIdleSessionAfterSeconds,
             int minHeartbeatIntervalSeconds,
             int switchProtocolAfterSeconds) {
         this.sessionService = sessionService;
         this.userStatusService = userStatusService;
-        this.userIdToSessionsManager = userIdToSessionsManager;
-        setClientHeartbeatIntervalSeconds(clientHeartbeatIntervalSeconds);
         setCloseIdleSessionAfterSeconds(closeIdleSessionAfterSeconds);
         this.minHeartbeatIntervalNanos = DateTimeUtil.secondsToNanos(minHeartbeatIntervalSeconds);
         this.switchProtocolAfterNanos = DateTimeUtil.secondsToNanos(switchProtocolAfterSeconds);
+        timingWheel = new UserSessionTimingWheel(
+                TimeUnit.MILLISECONDS.toNanos(UPDATE_HEARTBEAT_INTERVAL_MILLIS),
+                TIMING_WHEEL_BUCKET_COUNT,
+                System.nanoTime());
         workerThread = TurmsThread.create(ThreadNameConst.CLIENT_HEARTBEAT_REFRESHER, true, () -> {
             Thread thread = Thread.currentThread();
             while (!thread.isInterrupted()) {
@@ -118,10 +137,12 @@ public class HeartbeatManager {
         closeIdleSessionAfterNanos = DateTimeUtil.secondsToNanos(closeIdleSessionAfterSeconds);
     }
 
-    public void setClientHeartbeatIntervalSeconds(int clientHeartbeatIntervalSeconds) {
-        expectedFractionPerSecond = clientHeartbeatIntervalSeconds > 0
-                ? clientHeartbeatIntervalSeconds
-                : 30;
+    /**
+     * Starts checking the heartbeat of the session. The session will be removed from the manager
+     * automatically once it is closed.
+     */
+    public void addSession(UserSession session) {
+        newSessions.offer(session);
     }
 
     public Mono<Void> destroy() {
@@ -129,13 +150,32 @@ public class HeartbeatManager {
     }
 
     private void updateOnlineUsersTtl() {
-        Collection<UserSessionsManager> managers = userIdToSessionsManager.values();
-        if (managers.isEmpty()) {
+        long now = System.nanoTime();
+        UserSession newSession;
+        while ((newSession = newSessions.poll()) != null) {
+            timingWheel.schedule(newSession, getNextCheckTimestampNanos(newSession, now));
+        }
+        LongHashSet userIds = userIdsToRefresh;
+        timingWheel.advance(now, session -> {
+            try {
+                if (closeOrUpdateSession(session, now)) {
+                    userIds.add(session.getUserId());
+                }
+            } catch (Exception e) {
+                LOGGER.error("Caught an error while checking the heartbeat of the user session: {}",
+                        session,
+                        e);
+            }
+            if (session.isOpen()) {
+                timingWheel.schedule(session, getNextCheckTimestampNanos(session, now));
+            }
+        });
+        if (userIds.isEmpty()) {
             return;
         }
-        LongKeyGenerator userIds = collectOnlineUsersAndUpdateStatus(managers);
         try {
-            userStatusService.updateOnlineUsersTtl(userIds, closeIdleSessionAfterSeconds)
+            userStatusService
+                    .updateOnlineUsersTtl(newUserIdGenerator(userIds), closeIdleSessionAfterSeconds)
                     .flatMap(nonexistentUserIds -> {
                         if (nonexistentUserIds.isEmpty()) {
                             return Mono.empty();
@@ -157,43 +197,59 @@ public class HeartbeatManager {
             throw new RuntimeException(
                     "Caught an error while refreshing online users' sessions in Redis",
                     e);
+        } finally {
+            userIds.clear();
         }
     }
 
-    private LongKeyGenerator collectOnlineUsersAndUpdateStatus(
-            Collection<UserSessionsManager> managers) {
-        int onlineUserCount = managers.size();
-        int estimatedUserCountToRefreshPerInterval = (int) (UPDATE_HEARTBEAT_INTERVAL_FACTOR
-                * onlineUserCount / expectedFractionPerSecond);
-        Iterator<UserSessionsManager> iterator = managers.iterator();
+    private LongKeyGenerator newUserIdGenerator(LongHashSet userIds) {
+        int size = userIds.size();
+        LongIterator iterator = userIds.longIterator();
         return new LongKeyGenerator() {
-            final long now = System.nanoTime();
-
             @Override
             public int estimatedSize() {
-                return estimatedUserCountToRefreshPerInterval;
+                return size;
             }
 
             @Override
             public long next() {
-                while (iterator.hasNext()) {
-                    Long userId = null;
-                    for (UserSession session : iterator.next()
-                            .getDeviceTypeToSession()
-                            .values()) {
-                        if (closeOrUpdateSession(session, now) && userId == null) {
-                            userId = session.getUserId();
-                        }
-                    }
-                    if (userId != null) {
-                        return userId;
-                    }
-                }
-                return -1;
+                return iterator.hasNext()
+                        ? iterator.next()
+                        : -1;
             }
         };
     }
 
+    /**
+     * @return the earliest time when the session may need to switch to UDP, be closed, or refresh
+     *         its heartbeat in Redis. Note that the session needs to be checked periodically
+     *         according to "minHeartbeatIntervalNanos" even if it has not sent any request because
+     *         we don't know when it will send requests.
+     */
+    private long getNextCheckTimestampNanos(UserSession session, long nowNanos) {
+        long localMinHeartbeatIntervalNanos = minHeartbeatIntervalNanos;
+        long nextCheckTimestampNanos = localMinHeartbeatIntervalNanos > 0
+                ? Math.max(nowNanos,
+                        session.getLastHeartbeatUpdateTimestampNanos()
+                                + localMinHeartbeatIntervalNanos)
+                : nowNanos;
+        long localCloseIdleSessionAfterNanos = closeIdleSessionAfterNanos;
+        if (localCloseIdleSessionAfterNanos > 0) {
+            long lastRequestTimestampNanos = Math.max(
+                    session.getLastHeartbeatRequestTimestampNanos(),
+                    session.getLastRequestTimestampNanos());
+            nextCheckTimestampNanos = Math.min(nextCheckTimestampNanos,
+                    lastRequestTimestampNanos + localCloseIdleSessionAfterNanos);
+        }
+        if (UdpRequestDispatcher.isEnabled()
+                && session.supportsSwitchingToUdp()
+                && session.isConnected()) {
+            nextCheckTimestampNanos = Math.min(nextCheckTimestampNanos,
+                    session.getLastRequestTimestampNanos() + switchProtocolAfterNanos);
+        }
+        return nextCheckTimestampNanos;
+    }
+
     /**
      * @return If true, the data in Redis should be updated.
      */
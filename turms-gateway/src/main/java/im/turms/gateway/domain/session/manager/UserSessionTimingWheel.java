@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.gateway.domain.session.manager;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+import im.turms.gateway.access.client.common.UserSession;
+
+/**
+ * A hashed timing wheel of user sessions, which is used to visit only the sessions whose deadlines
+ * have expired instead of all sessions.
+ * <p>
+ * Each session is stored in the bucket of its deadline tick, and a bucket may contain sessions of
+ * different rounds, which are kept in the bucket until their ticks come.
+ *
+ * @author James Chen
+ * @implNote The class is not thread-safe and should only be accessed by one thread. The deadline
+ *           tick of a session is stored in {@link UserSession#getHeartbeatCheckTick()} instead of
+ *           a wrapper object to avoid allocating an object every time a session is rescheduled.
+ */
+public final class UserSessionTimingWheel {
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final int mask;
+    private final ArrayList<UserSession>[] buckets;
+    /**
+     * Used to swap with the bucket being expired to avoid allocating a new list for every tick.
+     */
+    private ArrayList<UserSession> spareBucket = new ArrayList<>();
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param bucketCount will be rounded up to a power of 2
+     */
+    public UserSessionTimingWheel(long tickNanos, int bucketCount, long startNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException(
+                    "The tick duration must be greater than 0, but got: "
+                            + tickNanos);
+        }
+        if (bucketCount <= 0) {
+            throw new IllegalArgumentException(
+                    "The bucket count must be greater than 0, but got: "
+                            + bucketCount);
+        }
+        int normalizedBucketCount = Integer.highestOneBit(bucketCount - 1) << 1;
+        if (normalizedBucketCount <= 0) {
+            normalizedBucketCount = 1;
+        }
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+        mask = normalizedBucketCount - 1;
+        buckets = new ArrayList[normalizedBucketCount];
+        for (int i = 0; i < normalizedBucketCount; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules the session to be expired at the first tick that is not earlier than the deadline.
+     * If the deadline has passed, the session will be expired at the next tick.
+     */
+    public void schedule(UserSession session, long deadlineNanos) {
+        long deadlineTick = Math.max(currentTick + 1, toTick(deadlineNanos + tickNanos - 1));
+        session.setHeartbeatCheckTick(deadlineTick);
+        buckets[(int) (deadlineTick & mask)].add(session);
+        size++;
+    }
+
+    /**
+     * Advances the wheel to the tick of the specified time, and removes the sessions whose deadlines
+     * have expired and passes them to the consumer. The consumer can reschedule the sessions.
+     */
+    public void advance(long nowNanos, Consumer<UserSession> onExpired) {
+        long targetTick = toTick(nowNanos);
+        if (targetTick <= currentTick) {
+            return;
+        }
+        long firstTick = currentTick + 1;
+        long tickCount = Math.min(targetTick - currentTick, buckets.length);
+        // Update the current tick before expiring the sessions
+        // so that the rescheduled sessions will be put into the future ticks.
+        currentTick = targetTick;
+        for (long tick = firstTick; tick < firstTick + tickCount; tick++) {
+            expireBucket((int) (tick & mask), targetTick, onExpired);
+        }
+    }
+
+    private void expireBucket(int index, long targetTick, Consumer<UserSession> onExpired) {
+        ArrayList<UserSession> bucket = buckets[index];
+        if (bucket.isEmpty()) {
+            return;
+        }
+        buckets[index] = spareBucket;
+        ArrayList<UserSession> remaining = spareBucket;
+        try {
+            for (UserSession session : bucket) {
+                if (session.getHeartbeatCheckTick() > targetTick) {
+                    remaining.add(session);
+                } else {
+                    size--;
+                    onExpired.accept(session);
+                }
+            }
+        } finally {
+            bucket.clear();
+            spareBucket = bucket;
+        }
+    }
+
+    private long toTick(long nanos) {
+        return Math.floorDiv(nanos - startNanos, tickNanos);
+    }
+
+}
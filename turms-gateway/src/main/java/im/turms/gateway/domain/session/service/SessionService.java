@@ -39,6 +39,7 @@ import jakarta.validation.constraints.NotNull;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
+import org.jctools.maps.NonBlockingHashMapLong;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
@@ -110,7 +111,12 @@ public class SessionService extends BaseService implements RpcSessionService {
     private final UserStatusService userStatusService;
     private final UserSimultaneousLoginService userSimultaneousLoginService;
 
-    private final ConcurrentHashMap<Long, UserSessionsManager> userIdToSessionsManager;
+    /**
+     * Use "NonBlockingHashMapLong" to store user IDs as primitive longs in a flat array instead of
+     * allocating a node per entry like "ConcurrentHashMap", which matters when a gateway serves
+     * hundreds of thousands of online users.
+     */
+    private final NonBlockingHashMapLong<UserSessionsManager> userIdToSessionsManager;
     /**
      * We don't use "NonBlockingHashMapLong" because we need to support IPv6 addresses, which takes
      * 16 bytes per address. So we can only eliminate unnecessary objects after Valhalla publish
@@ -155,7 +161,7 @@ public class SessionService extends BaseService implements RpcSessionService {
                 new SessionIdentityAccessManager(propertiesManager, pluginManager, userService);
         this.userStatusService = userStatusService;
         this.userSimultaneousLoginService = userSimultaneousLoginService;
-        userIdToSessionsManager = new ConcurrentHashMap<>(4096);
+        userIdToSessionsManager = new NonBlockingHashMapLong<>(4096);
         ipToSessions = new ConcurrentHashMap<>(4096);
 
         updateGlobalProperties(propertiesManager.getGlobalProperties());
@@ -167,8 +173,6 @@ public class SessionService extends BaseService implements RpcSessionService {
         heartbeatManager = new HeartbeatManager(
                 this,
                 userStatusService,
-                userIdToSessionsManager,
-                sessionProperties.getClientHeartbeatIntervalSeconds(),
                 closeIdleSessionAfterSeconds,
                 sessionProperties.getMinHeartbeatIntervalSeconds(),
                 sessionProperties.getSwitchProtocolAfterSeconds());
@@ -177,8 +181,6 @@ public class SessionService extends BaseService implements RpcSessionService {
             updateGlobalProperties(newProperties);
             SessionProperties newSessionProperties = newProperties.getGateway()
                     .getSession();
-            heartbeatManager.setClientHeartbeatIntervalSeconds(
-                    newSessionProperties.getClientHeartbeatIntervalSeconds());
             heartbeatManager.setCloseIdleSessionAfterSeconds(
                     newSessionProperties.getCloseIdleSessionAfterSeconds());
             heartbeatManager.setMinHeartbeatIntervalNanos(DateTimeUtil
@@ -448,13 +450,12 @@ public class SessionService extends BaseService implements RpcSessionService {
         } catch (ResponseException e) {
             return Mono.error(e);
         }
-        Set<Map.Entry<Long, UserSessionsManager>> entries = userIdToSessionsManager.entrySet();
-        List<Mono<Integer>> monos = new ArrayList<>(entries.size());
+        Collection<UserSessionsManager> managers = userIdToSessionsManager.values();
+        List<Mono<Integer>> monos = new ArrayList<>(managers.size());
         AtomicInteger sessionCount = new AtomicInteger(0);
-        for (Map.Entry<Long, UserSessionsManager> entry : entries) {
-            Long userId = entry.getKey();
-            Set<DeviceType> loggedInDeviceTypes = entry.getValue()
-                    .getLoggedInDeviceTypes();
+        for (UserSessionsManager manager : managers) {
+            Long userId = manager.getUserId();
+            Set<DeviceType> loggedInDeviceTypes = manager.getLoggedInDeviceTypes();
             Mono<Integer> mono = closeLocalSession(userId, loggedInDeviceTypes, closeReason)
                     .doOnNext(sessionCount::addAndGet);
             monos.add(mono);
@@ -941,6 +942,7 @@ public class SessionService extends BaseService implements RpcSessionService {
                     }
                     ipToSessions.computeIfAbsent(ip, key -> new ConcurrentLinkedQueue<>())
                             .add(session);
+                    heartbeatManager.addSession(session);
                     Date now = new Date();
                     if (null != location && sessionLocationService.isLocationEnabled()) {
                         return sessionLocationService
@@ -22,7 +22,6 @@ import jakarta.annotation.Nullable;
 import io.netty.buffer.ByteBuf;
 
 import im.turms.server.common.access.client.dto.constant.DeviceType;
-import im.turms.server.common.access.client.dto.notification.TurmsNotification;
 import im.turms.server.common.access.client.dto.request.TurmsRequest;
 import im.turms.server.common.infra.lang.NumberFormatter;
 import im.turms.server.common.infra.lang.StringUtil;
@@ -56,7 +55,9 @@ public final class ClientApiLogging {
             TurmsRequest.KindCase requestType,
             int requestSize,
             long requestTime,
-            TurmsNotification response,
+            int responseCode,
+            @Nullable String responseDataType,
+            int responseSize,
             long processingTime) {
         ByteBuf buffer = ByteBufUtil.join(64,
                 LOG_FIELD_DELIMITER,
@@ -72,13 +73,9 @@ public final class ClientApiLogging {
                 NumberFormatter.toCharBytes(requestSize),
                 DateTimeUtil.toBytes(requestTime),
                 // response information
-                NumberFormatter.toCharBytes(response.getCode()),
-                response.hasData()
-                        ? response.getData()
-                                .getKindCase()
-                                .name()
-                        : null,
-                NumberFormatter.toCharBytes(response.getSerializedSize()),
+                NumberFormatter.toCharBytes(responseCode),
+                responseDataType,
+                NumberFormatter.toCharBytes(responseSize),
                 NumberFormatter.toCharBytes(processingTime));
         CLIENT_API_LOGGER.info(buffer);
     }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.gateway.access.client.common.channel;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import im.turms.gateway.access.client.common.channel.FlushCoalescingHandler;
+import im.turms.gateway.access.client.common.channel.FlushMetrics;
+import im.turms.server.common.infra.property.env.gateway.network.FlushCoalescingProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class FlushCoalescingHandlerTests {
+
+    // Note that EmbeddedChannel runs the pending tasks when flushing or writing to it,
+    // so we use a delayed flush to observe the coalescing.
+    private static final int MAX_DELAY_MILLIS = 60 * 1000;
+
+    private static final FlushMetrics FLUSH_METRICS =
+            new FlushMetrics("unit.flush_coalescing_handler");
+
+    @Test
+    void flush_shouldFlushImmediately_whenCoalescingIsDisabled() {
+        EmbeddedChannel channel = newChannel(false, 1024);
+
+        channel.pipeline()
+                .write(newBuffer(10));
+        channel.pipeline()
+                .flush();
+
+        assertThat(channel.outboundMessages()).hasSize(1);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void flush_shouldCoalesceFlushesWithinDelay_whenCoalescingIsEnabled() {
+        EmbeddedChannel channel = newChannel(true, 1024);
+
+        for (int i = 0; i < 3; i++) {
+            channel.pipeline()
+                    .write(newBuffer(10));
+            channel.pipeline()
+                    .flush();
+        }
+        assertThat(channel.outboundMessages()).isEmpty();
+
+        channel.advanceTimeBy(MAX_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        channel.runScheduledPendingTasks();
+        assertThat(channel.outboundMessages()).hasSize(3);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void flush_shouldFlushImmediately_whenPendingBytesReachMaxBytes() {
+        EmbeddedChannel channel = newChannel(true, 16);
+
+        channel.pipeline()
+                .write(newBuffer(10));
+        channel.pipeline()
+                .flush();
+        assertThat(channel.outboundMessages()).isEmpty();
+
+        channel.pipeline()
+                .write(newBuffer(10));
+        channel.pipeline()
+                .flush();
+        assertThat(channel.outboundMessages()).hasSize(2);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void close_shouldFlushPendingData() {
+        EmbeddedChannel channel = newChannel(true, 1024);
+
+        channel.pipeline()
+                .write(newBuffer(10));
+        channel.pipeline()
+                .flush();
+        channel.close();
+
+        assertThat(channel.outboundMessages()).hasSize(1);
+        channel.finishAndReleaseAll();
+    }
+
+    private EmbeddedChannel newChannel(boolean enabled, int maxBytes) {
+        FlushCoalescingProperties properties = new FlushCoalescingProperties().toBuilder()
+                .enabled(enabled)
+                .maxBytes(maxBytes)
+                .maxDelayMillis(MAX_DELAY_MILLIS)
+                .build();
+        return new EmbeddedChannel(new FlushCoalescingHandler(properties, FLUSH_METRICS));
+    }
+
+    private ByteBuf newBuffer(int size) {
+        return Unpooled.wrappedBuffer(new byte[size]);
+    }
+
+}
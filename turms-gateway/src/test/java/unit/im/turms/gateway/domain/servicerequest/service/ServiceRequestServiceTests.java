@@ -17,15 +17,20 @@
 
 package unit.im.turms.gateway.domain.servicerequest.service;
 
+import com.google.protobuf.InvalidProtocolBufferException;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import im.turms.gateway.access.client.common.ClientResponse;
 import im.turms.gateway.access.client.common.UserSession;
 import im.turms.gateway.domain.servicerequest.service.ServiceRequestService;
 import im.turms.server.common.access.client.dto.constant.DeviceType;
+import im.turms.server.common.access.client.dto.model.common.LongsWithVersion;
 import im.turms.server.common.access.client.dto.notification.TurmsNotification;
 import im.turms.server.common.access.client.dto.request.TurmsRequest;
 import im.turms.server.common.access.client.dto.request.TurmsRequestTypePool;
@@ -69,7 +74,7 @@ class ServiceRequestServiceTests {
     @Test
     void handleServiceRequest_shouldReturnError_ifFailedToHandleRequest() {
         ServiceRequestService serviceRequestService = newInboundRequestService(false);
-        Mono<TurmsNotification> result =
+        Mono<ClientResponse> result =
                 serviceRequestService.handleServiceRequest(newUserSession(), newServiceRequest());
 
         StepVerifier.create(result)
@@ -79,16 +84,54 @@ class ServiceRequestServiceTests {
     @Test
     void handleServiceRequest_shouldReturnOk_ifHandleRequestSuccessfully() {
         ServiceRequestService serviceRequestService = newInboundRequestService(true);
-        Mono<TurmsNotification> result =
+        Mono<ClientResponse> result =
                 serviceRequestService.handleServiceRequest(newUserSession(), newServiceRequest());
 
         StepVerifier.create(result)
-                .expectNextMatches(
-                        notification -> notification.getCode() == responseForSuccess.code()
-                                .getBusinessCode())
+                .expectNextMatches(response -> response.code() == responseForSuccess.code()
+                        .getBusinessCode())
                 .verifyComplete();
     }
 
+    @Test
+    void handleServiceRequest_shouldSpliceSerializedData_ifResponseHasDataBuffer()
+            throws InvalidProtocolBufferException {
+        TurmsNotification.Data data = TurmsNotification.Data.newBuilder()
+                .setLongsWithVersion(LongsWithVersion.newBuilder()
+                        .addLongs(100)
+                        .addLongs(200))
+                .build();
+        ByteBuf dataBuffer = Unpooled.wrappedBuffer(data.toByteArray());
+        ServiceResponse response =
+                new ServiceResponse(ResponseStatusCode.OK, null, "reason", dataBuffer);
+        Node node = mock(Node.class);
+        RpcService rpcService = mock(RpcService.class);
+        when(rpcService.requestResponse(any(HandleServiceRequest.class)))
+                .thenReturn(Mono.just(response));
+        when(node.getRpcService()).thenReturn(rpcService);
+        ServiceRequestService serviceRequestService = new ServiceRequestService(node);
+
+        ClientResponse clientResponse = serviceRequestService
+                .handleServiceRequest(newUserSession(), newServiceRequest())
+                .block();
+        assertThat(clientResponse).isNotNull();
+        assertThat(clientResponse.dataKindName())
+                .isEqualTo(TurmsNotification.Data.KindCase.LONGS_WITH_VERSION.name());
+        ByteBuf notificationBuffer = clientResponse.encode();
+        TurmsNotification notification;
+        try {
+            notification = TurmsNotification.parseFrom(ByteBufUtil.getBytes(notificationBuffer));
+        } finally {
+            notificationBuffer.release();
+        }
+
+        assertThat(dataBuffer.refCnt()).isZero();
+        assertThat(notification.getRequestId()).isEqualTo(1L);
+        assertThat(notification.getCode()).isEqualTo(ResponseStatusCode.OK.getBusinessCode());
+        assertThat(notification.getReason()).isEqualTo("reason");
+        assertThat(notification.getData()).isEqualTo(data);
+    }
+
     private ServiceRequestService newInboundRequestService(boolean handleRequestSuccessfully) {
         // Node
         Node node = mockNode(handleRequestSuccessfully);
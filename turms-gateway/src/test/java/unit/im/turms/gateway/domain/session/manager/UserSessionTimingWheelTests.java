@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.gateway.domain.session.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import im.turms.gateway.access.client.common.UserSession;
+import im.turms.gateway.domain.session.manager.UserSessionTimingWheel;
+import im.turms.server.common.access.client.dto.constant.DeviceType;
+import im.turms.server.common.access.client.dto.request.TurmsRequestTypePool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class UserSessionTimingWheelTests {
+
+    private static final long TICK_NANOS = 1000;
+    private static final int BUCKET_COUNT = 8;
+
+    @Test
+    void advance_shouldOnlyExpireDueSessions() {
+        UserSessionTimingWheel wheel = new UserSessionTimingWheel(TICK_NANOS, BUCKET_COUNT, 0);
+        UserSession session1 = newSession(1L);
+        UserSession session2 = newSession(2L);
+        wheel.schedule(session1, 2 * TICK_NANOS);
+        wheel.schedule(session2, 5 * TICK_NANOS);
+
+        List<UserSession> expiredSessions = new ArrayList<>();
+        wheel.advance(TICK_NANOS, expiredSessions::add);
+        assertThat(expiredSessions).isEmpty();
+
+        wheel.advance(3 * TICK_NANOS, expiredSessions::add);
+        assertThat(expiredSessions).containsExactly(session1);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void advance_shouldKeepSessionsOfLaterRounds() {
+        UserSessionTimingWheel wheel = new UserSessionTimingWheel(TICK_NANOS, BUCKET_COUNT, 0);
+        UserSession session = newSession(1L);
+        // The deadline tick is mapped to the same bucket as tick 2
+        wheel.schedule(session, (2 + BUCKET_COUNT) * TICK_NANOS);
+
+        List<UserSession> expiredSessions = new ArrayList<>();
+        wheel.advance(2 * TICK_NANOS, expiredSessions::add);
+        assertThat(expiredSessions).isEmpty();
+
+        wheel.advance((2 + BUCKET_COUNT) * TICK_NANOS, expiredSessions::add);
+        assertThat(expiredSessions).containsExactly(session);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advance_shouldExpireAllDueSessions_whenAdvancingMoreThanOneRound() {
+        UserSessionTimingWheel wheel = new UserSessionTimingWheel(TICK_NANOS, BUCKET_COUNT, 0);
+        List<UserSession> sessions = new ArrayList<>();
+        for (int i = 0; i < BUCKET_COUNT * 2; i++) {
+            UserSession session = newSession(i);
+            sessions.add(session);
+            wheel.schedule(session, (i + 1) * TICK_NANOS);
+        }
+
+        List<UserSession> expiredSessions = new ArrayList<>();
+        wheel.advance(BUCKET_COUNT * 3 * TICK_NANOS, expiredSessions::add);
+        assertThat(expiredSessions).containsExactlyInAnyOrderElementsOf(sessions);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advance_shouldRescheduleSessionToFutureTick_whenRescheduledOnExpired() {
+        UserSessionTimingWheel wheel = new UserSessionTimingWheel(TICK_NANOS, BUCKET_COUNT, 0);
+        UserSession session = newSession(1L);
+        wheel.schedule(session, TICK_NANOS);
+
+        List<UserSession> expiredSessions = new ArrayList<>();
+        // Reschedule with a deadline that has passed
+        wheel.advance(TICK_NANOS, expired -> {
+            expiredSessions.add(expired);
+            wheel.schedule(expired, 0);
+        });
+        assertThat(expiredSessions).hasSize(1);
+        assertThat(wheel.size()).isEqualTo(1);
+
+        wheel.advance(2 * TICK_NANOS, expiredSessions::add);
+        assertThat(expiredSessions).hasSize(2);
+        assertThat(wheel.size()).isZero();
+    }
+
+    private UserSession newSession(long userId) {
+        return new UserSession(
+                1,
+                TurmsRequestTypePool.ALL,
+                userId,
+                DeviceType.ANDROID,
+                Collections.emptyMap(),
+                null);
+    }
+
+}
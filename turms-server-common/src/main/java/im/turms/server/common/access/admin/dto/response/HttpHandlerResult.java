@@ -33,6 +33,7 @@ import im.turms.server.common.infra.collection.CollectorUtil;
 import im.turms.server.common.infra.exception.ResponseException;
 import im.turms.server.common.infra.exception.ResponseExceptionPublisherPool;
 import im.turms.server.common.infra.validation.Validator;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 
 /**
  * @author James Chen
@@ -134,6 +135,18 @@ public record HttpHandlerResult<T>(
         return okIfTruthy(mono);
     }
 
+    public static <T> Mono<HttpHandlerResult<ResponseDTO<PaginationDTO<T>>>> page(
+            Mono<KeysetPage<T>> data) {
+        Mono<PaginationDTO<T>> mono = data.map(page -> {
+            List<T> records = page.records();
+            if (records.isEmpty()) {
+                throw ResponseException.get(ResponseStatusCode.NO_CONTENT);
+            }
+            return new PaginationDTO<>(null, records, page.continuationToken());
+        });
+        return okIfTruthy(mono);
+    }
+
     public static Mono<HttpHandlerResult<ResponseDTO<UpdateResultDTO>>> updateResult(
             Mono<UpdateResult> data) {
         return okIfTruthy(data.map(UpdateResultDTO::get));
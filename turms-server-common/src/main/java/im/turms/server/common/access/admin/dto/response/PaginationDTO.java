@@ -18,12 +18,22 @@
 package im.turms.server.common.access.admin.dto.response;
 
 import java.util.Collection;
+import jakarta.annotation.Nullable;
 
 /**
+ * @param total             null for keyset pagination, which does not count the records
+ * @param continuationToken the opaque token to query the next page with keyset pagination, or null
+ *                          if there is no next page
  * @author James Chen
  */
 public record PaginationDTO<T>(
-        Long total,
-        Collection<T> records
+        @Nullable Long total,
+        Collection<T> records,
+        @Nullable String continuationToken
 ) {
+
+    public PaginationDTO(Long total, Collection<T> records) {
+        this(total, records, null);
+    }
+
 }
@@ -86,6 +86,49 @@ public final class ClientMessageEncoder {
         return output;
     }
 
+    /**
+     * @param data the serialized {@link TurmsNotification.Data}, which will be spliced into the
+     *             returned buffer without being copied.
+     * @implNote The method ensures {@param data} will be released by 1 if it fails to encode
+     */
+    public static ByteBuf encodeResponse(
+            long timestamp,
+            long requestId,
+            int code,
+            @Nullable String reason,
+            ByteBuf data) {
+        boolean hasReason = reason != null;
+        int dataSize = data.readableBytes();
+        int capacity = computeInt64Size(TurmsNotification.TIMESTAMP_FIELD_NUMBER, timestamp)
+                + computeInt64Size(TurmsNotification.REQUEST_ID_FIELD_NUMBER, requestId)
+                + computeInt32Size(TurmsNotification.CODE_FIELD_NUMBER, code)
+                + computeTagSize(TurmsNotification.DATA_FIELD_NUMBER)
+                + computeUInt32SizeNoTag(dataSize);
+        if (hasReason) {
+            capacity += computeStringSize(TurmsNotification.REASON_FIELD_NUMBER, reason);
+        }
+        ByteBuf output = PooledByteBufAllocator.DEFAULT.directBuffer(capacity);
+        try {
+            CodedOutputStream stream = newInstance(output.nioBuffer(0, capacity));
+            stream.writeInt64(TurmsNotification.TIMESTAMP_FIELD_NUMBER, timestamp);
+            stream.writeInt64(TurmsNotification.REQUEST_ID_FIELD_NUMBER, requestId);
+            stream.writeInt32(TurmsNotification.CODE_FIELD_NUMBER, code);
+            if (hasReason) {
+                stream.writeString(TurmsNotification.REASON_FIELD_NUMBER, reason);
+            }
+            stream.writeTag(TurmsNotification.DATA_FIELD_NUMBER,
+                    WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            stream.writeUInt32NoTag(dataSize);
+            output.writerIndex(capacity);
+        } catch (Exception e) {
+            output.release();
+            data.release();
+            throw new SerializationException("Failed to encode", e);
+        }
+        return PooledByteBufAllocator.DEFAULT.compositeDirectBuffer(2)
+                .addComponents(true, output, data);
+    }
+
     public static ByteBuf encodeCloseNotification(
             long timestamp,
             SessionCloseStatus closeStatus,
@@ -20,19 +20,28 @@ package im.turms.server.common.access.servicerequest.dto;
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotNull;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
+
 import im.turms.server.common.access.client.dto.notification.TurmsNotification;
 import im.turms.server.common.access.common.ResponseStatusCode;
 import im.turms.server.common.infra.collection.FastEnumMap;
 import im.turms.server.common.infra.proto.ProtoFormatter;
 
 /**
+ * @param dataForRequesterBuffer the serialized {@link TurmsNotification.Data} received from the
+ *                               node that handled the request. It is kept as it is so that the
+ *                               receiver (turms-gateway) can splice it into the notification for
+ *                               the client without parsing and re-encoding it. The receiver is
+ *                               responsible for releasing it.
  * @author James Chen
  */
 public record ServiceResponse(
         ResponseStatusCode code,
         @Nullable TurmsNotification.Data dataForRequester,
-        @Nullable String reason
-) {
+        @Nullable String reason,
+        @Nullable ByteBuf dataForRequesterBuffer
+) implements ReferenceCounted {
 
     private static final FastEnumMap<ResponseStatusCode, ServiceResponse> POOL =
             new FastEnumMap<>(ResponseStatusCode.class);
@@ -45,6 +54,13 @@ public record ServiceResponse(
         NO_CONTENT = POOL.get(ResponseStatusCode.NO_CONTENT);
     }
 
+    public ServiceResponse(
+            ResponseStatusCode code,
+            @Nullable TurmsNotification.Data dataForRequester,
+            @Nullable String reason) {
+        this(code, dataForRequester, reason, null);
+    }
+
     @Override
     public String toString() {
         return "ServiceResponse{"
@@ -54,9 +70,62 @@ public record ServiceResponse(
                 + ProtoFormatter.toLogString(dataForRequester)
                 + ", reason="
                 + reason
+                + ", dataForRequesterBuffer="
+                + dataForRequesterBuffer
                 + '}';
     }
 
+    // Reference counting
+
+    @Override
+    public int refCnt() {
+        return dataForRequesterBuffer == null
+                ? 1
+                : dataForRequesterBuffer.refCnt();
+    }
+
+    @Override
+    public ServiceResponse retain() {
+        if (dataForRequesterBuffer != null) {
+            dataForRequesterBuffer.retain();
+        }
+        return this;
+    }
+
+    @Override
+    public ServiceResponse retain(int increment) {
+        if (dataForRequesterBuffer != null) {
+            dataForRequesterBuffer.retain(increment);
+        }
+        return this;
+    }
+
+    @Override
+    public ServiceResponse touch() {
+        if (dataForRequesterBuffer != null) {
+            dataForRequesterBuffer.touch();
+        }
+        return this;
+    }
+
+    @Override
+    public ServiceResponse touch(Object hint) {
+        if (dataForRequesterBuffer != null) {
+            dataForRequesterBuffer.touch(hint);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return dataForRequesterBuffer != null && dataForRequesterBuffer.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return dataForRequesterBuffer != null && dataForRequesterBuffer.release(decrement);
+    }
+
     public static ServiceResponse of(@NotNull ResponseStatusCode statusCode) {
         return POOL.get(statusCode);
     }
@@ -87,6 +87,11 @@ public class HandleServiceRequest extends RpcRequest<ServiceResponse> {
         return Tag.of(METRICS_TAG_CLIENT_REQUEST_TYPE, type.name());
     }
 
+    @Override
+    public Object hedgingRequestType() {
+        return serviceRequest.getType();
+    }
+
     @Override
     public boolean isAsync() {
         return true;
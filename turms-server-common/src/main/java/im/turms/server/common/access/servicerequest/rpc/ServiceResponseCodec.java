@@ -17,8 +17,6 @@
 
 package im.turms.server.common.access.servicerequest.rpc;
 
-import java.io.IOException;
-
 import io.netty.buffer.ByteBuf;
 
 import im.turms.server.common.access.client.dto.notification.TurmsNotification;
@@ -29,7 +27,6 @@ import im.turms.server.common.infra.cluster.service.codec.codec.CodecId;
 import im.turms.server.common.infra.cluster.service.codec.io.CodecStreamInput;
 import im.turms.server.common.infra.cluster.service.codec.io.CodecStreamOutput;
 import im.turms.server.common.infra.lang.StringUtil;
-import im.turms.server.common.infra.proto.ProtoDecoder;
 import im.turms.server.common.infra.proto.ProtoEncoder;
 
 /**
@@ -48,19 +45,12 @@ public class ServiceResponseCodec implements Codec<ServiceResponse> {
     public ServiceResponse read(CodecStreamInput input) {
         ResponseStatusCode statusCode = ResponseStatusCode.from(input.readShort());
         String reason = input.readNullableString();
-        TurmsNotification.Data data;
-        if (input.readableBytes() > 0) {
-            ByteBuf dataBuffer = input.readSlice(input.readableBytes());
-            try {
-                // Note that "parseFrom" won't block because the buffer is fully read
-                data = TurmsNotification.Data.parseFrom(ProtoDecoder.newInputStream(dataBuffer));
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to parse the buffer of service response", e);
-            }
-        } else {
-            data = null;
-        }
-        return new ServiceResponse(statusCode, data, reason);
+        // Don't parse the data for requester because turms-gateway can splice the serialized data
+        // into the notification for the client directly
+        ByteBuf dataBuffer = input.readableBytes() > 0
+                ? input.readRetainedSlice(input.readableBytes())
+                : null;
+        return new ServiceResponse(statusCode, null, reason, dataBuffer);
     }
 
     @Override
@@ -75,9 +65,13 @@ public class ServiceResponseCodec implements Codec<ServiceResponse> {
     @Override
     public ByteBuf byteBufToComposite(ServiceResponse data) {
         TurmsNotification.Data dataForRequester = data.dataForRequester();
-        return dataForRequester == null
+        if (dataForRequester != null) {
+            return ProtoEncoder.getDirectByteBuffer(dataForRequester);
+        }
+        ByteBuf dataForRequesterBuffer = data.dataForRequesterBuffer();
+        return dataForRequesterBuffer == null
                 ? null
-                : ProtoEncoder.getDirectByteBuffer(dataForRequester);
+                : dataForRequesterBuffer.retainedDuplicate();
     }
 
     @Override
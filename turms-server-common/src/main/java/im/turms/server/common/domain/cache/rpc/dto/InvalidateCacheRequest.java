@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.domain.cache.rpc.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import lombok.Data;
+import org.springframework.context.ApplicationContext;
+
+import im.turms.server.common.domain.cache.rpc.service.RpcCacheInvalidationService;
+import im.turms.server.common.infra.cluster.service.rpc.NodeTypeToHandleRpc;
+import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
+
+/**
+ * @author James Chen
+ */
+@Data
+public class InvalidateCacheRequest extends RpcRequest<Boolean> {
+
+    private static final String NAME = "invalidateCache";
+    private static RpcCacheInvalidationService cacheInvalidationService;
+
+    private final String cacheName;
+    /**
+     * An empty array means invalidating all entries of the cache.
+     */
+    private final long[] keys;
+
+    public InvalidateCacheRequest(@NotNull String cacheName, @NotNull long[] keys) {
+        this.cacheName = cacheName;
+        this.keys = keys;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRequest() {
+        return NodeTypeToHandleRpc.SERVICE;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRespond() {
+        return NodeTypeToHandleRpc.SERVICE;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        super.setApplicationContext(applicationContext);
+        if (cacheInvalidationService == null) {
+            cacheInvalidationService = getBean(RpcCacheInvalidationService.class);
+        }
+    }
+
+    /**
+     * @return false if the cache is unknown to the local node
+     */
+    @Override
+    public Boolean call() {
+        return cacheInvalidationService.invalidateLocalCache(cacheName, keys);
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.domain.cache.rpc.dto;
+
+import im.turms.server.common.infra.cluster.service.codec.codec.CodecId;
+import im.turms.server.common.infra.cluster.service.codec.io.CodecStreamInput;
+import im.turms.server.common.infra.cluster.service.codec.io.CodecStreamOutput;
+import im.turms.server.common.infra.cluster.service.rpc.codec.RpcRequestCodec;
+
+/**
+ * @author James Chen
+ */
+public class InvalidateCacheRequestCodec extends RpcRequestCodec<InvalidateCacheRequest> {
+
+    @Override
+    public CodecId getCodecId() {
+        return CodecId.RPC_INVALIDATE_CACHE;
+    }
+
+    @Override
+    public void writeRequestData(CodecStreamOutput output, InvalidateCacheRequest data) {
+        long[] keys = data.getKeys();
+        output.writeString(data.getCacheName())
+                .writeVarint32(keys.length);
+        for (long key : keys) {
+            output.writeLong(key);
+        }
+    }
+
+    @Override
+    public InvalidateCacheRequest readRequestData(CodecStreamInput input) {
+        String cacheName = input.readString();
+        int keyCount = input.readVarint32();
+        long[] keys = new long[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = input.readLong();
+        }
+        return new InvalidateCacheRequest(cacheName, keys);
+    }
+
+    @Override
+    public int initialCapacityForRequest(InvalidateCacheRequest data) {
+        return 32 + data.getKeys().length * Long.BYTES;
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.domain.cache.rpc.service;
+
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * @author James Chen
+ */
+public interface RpcCacheInvalidationService {
+
+    /**
+     * @param keys an empty array means invalidating all entries of the cache
+     * @return false if the cache is unknown to the local node
+     */
+    boolean invalidateLocalCache(@NotNull String cacheName, @NotNull long[] keys);
+
+}
@@ -73,6 +73,10 @@ public abstract class BaseRepository<T, K> {
         return mongoClient.insertAllOfSameType(session, docs);
     }
 
+    public Mono<Void> insertAllOfSameTypeUnordered(List<T> docs) {
+        return mongoClient.insertAllOfSameTypeUnordered(docs);
+    }
+
     public Mono<DeleteResult> deleteAll() {
         return mongoClient.deleteAll(entityClass);
     }
@@ -17,6 +17,7 @@
 
 package im.turms.server.common.domain.notification.rpc.dto;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
 
@@ -31,12 +32,34 @@ import im.turms.server.common.infra.cluster.service.codec.io.CodecStreamOutput;
 import im.turms.server.common.infra.cluster.service.rpc.codec.RpcRequestCodec;
 import im.turms.server.common.infra.collection.CollectionUtil;
 import im.turms.server.common.infra.io.Stream;
+import im.turms.server.common.infra.serialization.DeserializationException;
 
 /**
  * @author James Chen
  */
 public class SendNotificationRequestCodec extends RpcRequestCodec<SendNotificationRequest> {
 
+    /**
+     * The legacy format always starts with "the count of recipient IDs + 1", which is never 0, so
+     * 0 is used to mark that the recipient IDs are written in a versioned format.
+     */
+    private static final byte RECIPIENT_IDS_VERSIONED_FORMAT_MARKER = 0;
+    private static final byte RECIPIENT_IDS_FORMAT_VERSION_COMPACT = 1;
+
+    /**
+     * Note that only nodes that can read the compact format should enable it, so we use the legacy
+     * format by default to keep mixed-version clusters working.
+     */
+    private final boolean writeCompactRecipientIds;
+
+    public SendNotificationRequestCodec() {
+        this(false);
+    }
+
+    public SendNotificationRequestCodec(boolean writeCompactRecipientIds) {
+        this.writeCompactRecipientIds = writeCompactRecipientIds;
+    }
+
     @Override
     public CodecId getCodecId() {
         return CodecId.RPC_SEND_NOTIFICATION;
@@ -49,7 +72,19 @@ public class SendNotificationRequestCodec extends RpcRequestCodec<SendNotificati
         if (recipientIds.isEmpty()) {
             throw new IllegalArgumentException("The number of recipients must be greater than 0");
         }
-        out.writeSizeAndLongs(recipientIds);
+        if (writeCompactRecipientIds) {
+            long[] sortedRecipientIds = new long[recipientIds.size()];
+            int i = 0;
+            for (Long recipientId : recipientIds) {
+                sortedRecipientIds[i++] = recipientId;
+            }
+            Arrays.sort(sortedRecipientIds);
+            out.writeByte(RECIPIENT_IDS_VERSIONED_FORMAT_MARKER);
+            out.writeByte(RECIPIENT_IDS_FORMAT_VERSION_COMPACT);
+            out.writeCompactLongs(sortedRecipientIds);
+        } else {
+            out.writeSizeAndLongs(recipientIds);
+        }
         // write "excludedUserSessionIds"
         Set<UserSessionId> excludedUserSessionIds = data.getExcludedUserSessionIds();
         out.writeVarint32(excludedUserSessionIds.size());
@@ -69,7 +104,7 @@ public class SendNotificationRequestCodec extends RpcRequestCodec<SendNotificati
     @Override
     public SendNotificationRequest readRequestData(CodecStreamInput in) {
         // read "recipientIds"
-        Set<Long> recipientIds = in.readLongSet();
+        Set<Long> recipientIds = readRecipientIds(in);
         // read "excludedUserSessionIds"
         int excludedUserSessionIdCount = in.readVarint32();
         Set<UserSessionId> excludedUserSessionIds;
@@ -99,13 +134,43 @@ public class SendNotificationRequestCodec extends RpcRequestCodec<SendNotificati
                 excludedDeviceType);
     }
 
+    private Set<Long> readRecipientIds(CodecStreamInput in) {
+        int size = in.readVarint32();
+        if (size == RECIPIENT_IDS_VERSIONED_FORMAT_MARKER) {
+            byte version = in.readByte();
+            if (version != RECIPIENT_IDS_FORMAT_VERSION_COMPACT) {
+                throw new DeserializationException(
+                        "Unknown recipient IDs format version: "
+                                + version);
+            }
+            return in.readCompactLongSet();
+        }
+        if (size < 0) {
+            throw new DeserializationException(
+                    "The recipient ID count is negative: "
+                            + size);
+        }
+        size--;
+        Set<Long> recipientIds = CollectionUtil.newSetWithExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+            recipientIds.add(in.readLong());
+        }
+        return recipientIds;
+    }
+
     @Override
     public int initialCapacityForRequest(SendNotificationRequest data) {
         int recipientCount = data.getRecipientIds()
                 .size();
         int excludedUserSessionIdCount = data.getExcludedUserSessionIds()
                 .size();
-        return Stream.computeVarint32Size(recipientCount) + recipientCount * Long.BYTES
+        // Use the upper bound of the compact format to avoid sorting the recipient IDs twice
+        int recipientIdsSize = writeCompactRecipientIds
+                ? Byte.BYTES * 3
+                        + Stream.computeVarint32Size(recipientCount)
+                        + recipientCount * Stream.MAX_VARINT64_SIZE
+                : Stream.computeVarint32Size(recipientCount) + recipientCount * Long.BYTES;
+        return recipientIdsSize
                 + Stream.computeVarint32Size(excludedUserSessionIdCount)
                 + excludedUserSessionIdCount * (Long.BYTES + Byte.SIZE) + Byte.BYTES;
     }
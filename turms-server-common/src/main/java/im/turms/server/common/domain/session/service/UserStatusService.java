@@ -17,6 +17,7 @@
 
 package im.turms.server.common.domain.session.service;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -33,6 +34,8 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.protocol.LongKeyGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.netty.buffer.ByteBuf;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.core.io.ClassPathResource;
@@ -57,10 +60,13 @@ import im.turms.server.common.infra.io.InputOutputException;
 import im.turms.server.common.infra.lang.MathUtil;
 import im.turms.server.common.infra.lang.Pair;
 import im.turms.server.common.infra.lang.StringUtil;
+import im.turms.server.common.infra.logging.core.logger.Logger;
+import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
 import im.turms.server.common.infra.netty.ByteBufUtil;
 import im.turms.server.common.infra.netty.ReferenceCountUtil;
 import im.turms.server.common.infra.property.TurmsProperties;
 import im.turms.server.common.infra.property.TurmsPropertiesManager;
+import im.turms.server.common.infra.property.env.common.UserStatusProperties;
 import im.turms.server.common.infra.property.env.gateway.session.SessionProperties;
 import im.turms.server.common.infra.reactor.HashedWheelScheduler;
 import im.turms.server.common.infra.reactor.PublisherPool;
@@ -68,9 +74,18 @@ import im.turms.server.common.infra.test.VisibleForTesting;
 import im.turms.server.common.infra.time.DateTimeUtil;
 import im.turms.server.common.infra.validation.ValidDeviceType;
 import im.turms.server.common.infra.validation.Validator;
+import im.turms.server.common.storage.redis.RedisTrackingListener;
 import im.turms.server.common.storage.redis.TurmsRedisClientManager;
+import im.turms.server.common.storage.redis.cluster.RedisClusterHashTag;
+import im.turms.server.common.storage.redis.codec.context.RedisCodecContext;
 import im.turms.server.common.storage.redis.script.RedisScript;
 
+import static im.turms.server.common.infra.metrics.CommonMetricNameConst.TURMS_USER_SESSIONS_STATUS_CACHE_HIT;
+import static im.turms.server.common.infra.metrics.CommonMetricNameConst.TURMS_USER_SESSIONS_STATUS_CACHE_HIT_RATIO;
+import static im.turms.server.common.infra.metrics.CommonMetricNameConst.TURMS_USER_SESSIONS_STATUS_CACHE_INVALIDATION;
+import static im.turms.server.common.infra.metrics.CommonMetricNameConst.TURMS_USER_SESSIONS_STATUS_CACHE_MISS;
+import static reactor.netty.Metrics.REGISTRY;
+
 /**
  * @author James Chen
  */
@@ -78,9 +93,14 @@ import im.turms.server.common.storage.redis.script.RedisScript;
 @Service
 public class UserStatusService extends BaseService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserStatusService.class);
+
     private static final long NODE_STATUS_TTL_NANOS = 15 * DateTimeUtil.NANOS_PER_SECOND;
 
     private final RedisScript<ByteBuf> addOnlineUserScript;
+    private final RedisScript<List<Object>> getUsersSessionsStatusScript =
+            RedisScript.get(new ClassPathResource("redis/session/get_users_sessions_status.lua"),
+                    ScriptOutputType.MULTI);
     private final RedisScript<List<Object>> getUsersDeviceDetailsScript =
             RedisScript.get(new ClassPathResource("redis/session/get_users_device_details.lua"),
                     ScriptOutputType.MULTI);
@@ -128,8 +148,27 @@ public class UserStatusService extends BaseService {
      */
     private final Cache<Long, UserSessionsStatus> userIdToStatusCache;
 
+    /**
+     * When the tracking is enabled, a user ID is mapped to the token of the latest fetch of the
+     * user's sessions status, and the mapping is removed once the user's sessions status is
+     * invalidated, so that a fetched sessions status that has been invalidated during the fetch
+     * won't be cached.
+     */
+    private final Map<Long, Object> userIdToFetchingToken;
+
+    private final Counter userSessionsStatusCacheHitCounter;
+    private final Counter userSessionsStatusCacheMissCounter;
+    private final Counter userSessionsStatusCacheInvalidationCounter;
+
     private final Duration operationTimeout;
     private final boolean cacheUserSessionsStatus;
+    private final Duration userSessionsStatusExpireAfter;
+
+    /**
+     * True if the entries of {@link #userIdToStatusCache} are invalidated by Redis once the
+     * sessions status is changed in Redis.
+     */
+    private volatile boolean isTrackingUserSessionsStatus;
 
     private final Node node;
     private final String localNodeId;
@@ -163,29 +202,148 @@ public class UserStatusService extends BaseService {
                         deviceDetailsExpireAfterSeconds,
                         "DEVICE_STATUS_TTL",
                         deviceStatusTtlSeconds));
-        cacheUserSessionsStatus = turmsProperties.getUserStatus()
-                .isCacheUserSessionsStatus();
+        UserStatusProperties userStatusProperties = turmsProperties.getUserStatus();
+        cacheUserSessionsStatus = userStatusProperties.isCacheUserSessionsStatus();
         operationTimeout = Duration.ofSeconds(10);
         this.sessionRedisClientManager = sessionRedisClientManager;
         if (cacheUserSessionsStatus) {
             Caffeine<Object, Object> builder = Caffeine.newBuilder();
-            int maxSize = turmsProperties.getUserStatus()
-                    .getUserSessionsStatusCacheMaxSize();
-            int expireAfter = turmsProperties.getUserStatus()
-                    .getUserSessionsStatusExpireAfter();
+            int maxSize = userStatusProperties.getUserSessionsStatusCacheMaxSize();
+            int expireAfter = userStatusProperties.getUserSessionsStatusExpireAfter();
             if (maxSize > -1) {
                 builder.maximumSize(maxSize);
             }
             if (expireAfter > -1) {
-                builder.expireAfterWrite(Duration.ofSeconds(expireAfter));
+                userSessionsStatusExpireAfter = Duration.ofSeconds(expireAfter);
+                builder.expireAfterWrite(userSessionsStatusExpireAfter);
+            } else {
+                userSessionsStatusExpireAfter = null;
             }
             userIdToStatusCache = builder.build();
+            userIdToFetchingToken = new ConcurrentHashMap<>(256);
+            userSessionsStatusCacheHitCounter =
+                    Counter.builder(TURMS_USER_SESSIONS_STATUS_CACHE_HIT)
+                            .description("The number of the users' sessions status "
+                                    + "found in the cache")
+                            .register(REGISTRY);
+            userSessionsStatusCacheMissCounter =
+                    Counter.builder(TURMS_USER_SESSIONS_STATUS_CACHE_MISS)
+                            .description("The number of the users' sessions status "
+                                    + "not found in the cache")
+                            .register(REGISTRY);
+            userSessionsStatusCacheInvalidationCounter =
+                    Counter.builder(TURMS_USER_SESSIONS_STATUS_CACHE_INVALIDATION)
+                            .description("The number of the users' sessions status "
+                                    + "invalidated by Redis")
+                            .register(REGISTRY);
+            Gauge.builder(TURMS_USER_SESSIONS_STATUS_CACHE_HIT_RATIO,
+                    this,
+                    UserStatusService::getUserSessionsStatusCacheHitRatio)
+                    .description("The hit ratio of the cache of users' sessions status")
+                    .register(REGISTRY);
+            if (userStatusProperties.isTrackUserSessionsStatus()) {
+                trackUserSessionsStatus(Duration
+                        .ofSeconds(userStatusProperties.getTrackedUserSessionsStatusExpireAfter()));
+            }
         } else {
+            userSessionsStatusExpireAfter = null;
             userIdToStatusCache = null;
+            userIdToFetchingToken = null;
+            userSessionsStatusCacheHitCounter = null;
+            userSessionsStatusCacheMissCounter = null;
+            userSessionsStatusCacheInvalidationCounter = null;
         }
         nodeIdToStatusCache = new ConcurrentHashMap<>(32);
     }
 
+    private void trackUserSessionsStatus(Duration trackedExpireAfter) {
+        sessionRedisClientManager.enableTracking(new UserSessionsStatusTrackingListener())
+                .subscribe(enabled -> {
+                    if (!enabled) {
+                        LOGGER.warn(
+                                "The tracking of users' sessions status is not supported by Redis "
+                                        + "(RESP3 and a non-cluster mode are required), "
+                                        + "so the cached sessions status will expire after: "
+                                        + userSessionsStatusExpireAfter);
+                        return;
+                    }
+                    setUserSessionsStatusExpireAfter(trackedExpireAfter);
+                    isTrackingUserSessionsStatus = true;
+                    // The sessions status cached before the tracking is enabled is not tracked
+                    userIdToStatusCache.invalidateAll();
+                    LOGGER.info("Enabled the tracking of users' sessions status");
+                }, t -> LOGGER.error("Failed to enable the tracking of users' sessions status", t));
+    }
+
+    private void setUserSessionsStatusExpireAfter(@Nullable Duration expireAfter) {
+        if (expireAfter == null) {
+            return;
+        }
+        userIdToStatusCache.policy()
+                .expireAfterWrite()
+                .ifPresent(expiration -> expiration.setExpiresAfter(expireAfter));
+    }
+
+    @VisibleForTesting
+    public boolean isTrackingUserSessionsStatus() {
+        return isTrackingUserSessionsStatus;
+    }
+
+    private double getUserSessionsStatusCacheHitRatio() {
+        double hitCount = userSessionsStatusCacheHitCounter.count();
+        double total = hitCount + userSessionsStatusCacheMissCounter.count();
+        return total == 0
+                ? 0
+                : hitCount / total;
+    }
+
+    /**
+     * @return null if the tracking is not enabled
+     */
+    @Nullable
+    private Object startFetching(Collection<Long> userIds) {
+        if (!isTrackingUserSessionsStatus) {
+            return null;
+        }
+        Object token = new Object();
+        for (Long userId : userIds) {
+            userIdToFetchingToken.put(userId, token);
+        }
+        return token;
+    }
+
+    private void endFetching(Collection<Long> userIds, @Nullable Object token) {
+        if (token == null) {
+            return;
+        }
+        for (Long userId : userIds) {
+            userIdToFetchingToken.remove(userId, token);
+        }
+    }
+
+    private void cacheFetchedSessionsStatus(
+            Long userId,
+            @Nullable Object token,
+            UserSessionsStatus sessionsStatus) {
+        if (token == null) {
+            // Don't cache the sessions status fetched before the tracking is enabled
+            // because it may not be tracked
+            if (!isTrackingUserSessionsStatus) {
+                userIdToStatusCache.put(userId, sessionsStatus);
+            }
+            return;
+        }
+        // Put in "computeIfPresent" so that the sessions status won't be put
+        // after it is invalidated by UserSessionsStatusTrackingListener
+        userIdToFetchingToken.computeIfPresent(userId, (id, currentToken) -> {
+            if (currentToken != token) {
+                return currentToken;
+            }
+            userIdToStatusCache.put(id, sessionsStatus);
+            return null;
+        });
+    }
+
     public Mono<String> getNodeIdByUserIdAndDeviceType(
             @NotNull Long userId,
             @NotNull @ValidDeviceType DeviceType deviceType) {
@@ -253,11 +411,16 @@ public class UserStatusService extends BaseService {
         } catch (ResponseException e) {
             return Mono.error(e);
         }
+        ByteBuf[] args = new ByteBuf[2];
+        try {
+            args[0] = sessionRedisClientManager.writeLongKey(userId);
+            args[1] = ByteBufUtil.writeByte((byte) userStatus.getNumber());
+        } catch (Exception e) {
+            ReferenceCountUtil.ensureReleased(args);
+            return Mono.error(new InputOutputException("Failed to encode arguments", e));
+        }
         Mono<Boolean> mono = sessionRedisClientManager
-                .eval(userId,
-                        updateOnlineUserStatusIfPresent,
-                        userId,
-                        (byte) userStatus.getNumber())
+                .eval(userId, updateOnlineUserStatusIfPresent, getUserScriptKeyLength(args), args)
                 .timeout(operationTimeout, HashedWheelScheduler.getDaemon());
         if (cacheUserSessionsStatus) {
             return mono.doOnNext(exists -> {
@@ -295,7 +458,7 @@ public class UserStatusService extends BaseService {
                             return Collections.emptySet();
                         }
                         for (ByteBuf buffer : buffers) {
-                            Long userId = buffer.readLong();
+                            Long userId = RedisClusterHashTag.readTaggedLong(buffer);
                             nonexistentUserIds.add(userId);
                             if (cacheUserSessionsStatus) {
                                 userIdToStatusCache.invalidate(userId);
@@ -318,8 +481,10 @@ public class UserStatusService extends BaseService {
         if (cacheUserSessionsStatus) {
             UserSessionsStatus sessionsStatus = userIdToStatusCache.getIfPresent(userId);
             if (sessionsStatus != null) {
+                userSessionsStatusCacheHitCounter.increment();
                 return Mono.just(sessionsStatus);
             }
+            userSessionsStatusCacheMissCounter.increment();
         }
         return fetchUserSessionsStatus(userId);
     }
@@ -339,12 +504,157 @@ public class UserStatusService extends BaseService {
                         .collect(CollectorUtil.toList(8))
                         .flatMap(entries -> handleUserSessionsStatusEntries(userId, entries));
         if (cacheUserSessionsStatus) {
-            return userSessionsStatusMono.doOnNext(
-                    userSessionsStatus -> userIdToStatusCache.put(userId, userSessionsStatus));
+            return Mono.defer(() -> {
+                List<Long> userIds = List.of(userId);
+                Object token = startFetching(userIds);
+                return userSessionsStatusMono
+                        .doOnNext(userSessionsStatus -> cacheFetchedSessionsStatus(userId,
+                                token,
+                                userSessionsStatus))
+                        .doFinally(signal -> endFetching(userIds, token));
+            });
         }
         return userSessionsStatusMono;
     }
 
+    /**
+     * @return {@link UserStatus#OFFLINE} instead of nothing for offline users
+     */
+    public Flux<UserSessionsStatus> getUsersSessionsStatus(@NotNull Set<Long> userIds) {
+        try {
+            Validator.notNull(userIds, "userIds");
+        } catch (ResponseException e) {
+            return Flux.error(e);
+        }
+        int userCount = userIds.size();
+        if (userCount == 0) {
+            return Flux.empty();
+        } else if (userCount == 1) {
+            return Flux.from(getUserSessionsStatus(userIds.iterator()
+                    .next()));
+        }
+        if (!cacheUserSessionsStatus) {
+            return fetchUsersSessionsStatus(userIds);
+        }
+        List<UserSessionsStatus> cachedSessionsStatuses = null;
+        Set<Long> uncachedUserIds = null;
+        for (Long userId : userIds) {
+            UserSessionsStatus sessionsStatus = userIdToStatusCache.getIfPresent(userId);
+            if (sessionsStatus == null) {
+                if (uncachedUserIds == null) {
+                    uncachedUserIds = CollectionUtil.newSetWithExpectedSize(userCount);
+                }
+                uncachedUserIds.add(userId);
+            } else {
+                if (cachedSessionsStatuses == null) {
+                    cachedSessionsStatuses = new ArrayList<>(userCount);
+                }
+                cachedSessionsStatuses.add(sessionsStatus);
+            }
+        }
+        if (cachedSessionsStatuses != null) {
+            userSessionsStatusCacheHitCounter.increment(cachedSessionsStatuses.size());
+        }
+        if (uncachedUserIds == null) {
+            return Flux.fromIterable(cachedSessionsStatuses);
+        }
+        userSessionsStatusCacheMissCounter.increment(uncachedUserIds.size());
+        Flux<UserSessionsStatus> fetchSessionsStatuses = fetchUsersSessionsStatus(uncachedUserIds);
+        return cachedSessionsStatuses == null
+                ? fetchSessionsStatuses
+                : Flux.fromIterable(cachedSessionsStatuses)
+                        .concatWith(fetchSessionsStatuses);
+    }
+
+    /**
+     * Fetch the sessions status of all users that belong to the same Redis client in one round
+     * trip instead of sending one "HGETALL" command per user.
+     *
+     * @return {@link UserStatus#OFFLINE} instead of nothing for offline users
+     */
+    public Flux<UserSessionsStatus> fetchUsersSessionsStatus(@NotNull Set<Long> userIds) {
+        try {
+            Validator.notNull(userIds, "userIds");
+        } catch (ResponseException e) {
+            return Flux.error(e);
+        }
+        if (userIds.isEmpty()) {
+            return Flux.empty();
+        }
+        Flux<UserSessionsStatus> userSessionsStatusFlux = sessionRedisClientManager
+                .execute(userIds, (client, ids) -> {
+                    ByteBuf[] args = new ByteBuf[ids.size()];
+                    int index = 0;
+                    try {
+                        for (Long userId : ids) {
+                            args[index++] = sessionRedisClientManager.writeLongKey(userId);
+                        }
+                    } catch (Exception e) {
+                        ReferenceCountUtil.ensureReleased(args, 0, index);
+                        return Mono.error(
+                                new InputOutputException("Failed to encode arguments", e));
+                    }
+                    RedisCodecContext codecContext = client.getSerializationContext();
+                    return client
+                            .evalBulk(getUsersSessionsStatusScript,
+                                    getUsersScriptKeyLength(args),
+                                    args)
+                            .map(elements -> parseUserIdToSessionsStatusEntries(codecContext,
+                                    ids,
+                                    elements));
+                })
+                .timeout(operationTimeout, HashedWheelScheduler.getDaemon())
+                .flatMap(userIdToEntries -> {
+                    List<Mono<UserSessionsStatus>> monos = new ArrayList<>(userIdToEntries.size());
+                    for (Map.Entry<Long, List<Map.Entry<Object, Object>>> entry : userIdToEntries
+                            .entrySet()) {
+                        monos.add(handleUserSessionsStatusEntries(entry.getKey(),
+                                entry.getValue()));
+                    }
+                    return Flux.merge(monos);
+                });
+        if (cacheUserSessionsStatus) {
+            return Flux.defer(() -> {
+                Object token = startFetching(userIds);
+                return userSessionsStatusFlux
+                        .doOnNext(userSessionsStatus -> cacheFetchedSessionsStatus(
+                                userSessionsStatus.getUserId(),
+                                token,
+                                userSessionsStatus))
+                        .doFinally(signal -> endFetching(userIds, token));
+            });
+        }
+        return userSessionsStatusFlux;
+    }
+
+    /**
+     * @param elements [user ID, entry count, field, value, field, value, ..., user ID, ...]
+     */
+    private Map<Long, List<Map.Entry<Object, Object>>> parseUserIdToSessionsStatusEntries(
+            RedisCodecContext codecContext,
+            Collection<Long> userIds,
+            List<Object> elements) {
+        Map<Long, List<Map.Entry<Object, Object>>> userIdToEntries =
+                CollectionUtil.newMapWithExpectedSize(userIds.size());
+        for (Long userId : userIds) {
+            userIdToEntries.put(userId, Collections.emptyList());
+        }
+        int elementCount = elements.size();
+        int index = 0;
+        while (index < elementCount) {
+            Long userId = RedisClusterHashTag.readTaggedLong((ByteBuf) elements.get(index++));
+            int entryCount = (int) (long) elements.get(index++);
+            List<Map.Entry<Object, Object>> entries = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                Object field = codecContext.decodeHashField((ByteBuf) elements.get(index++));
+                Object value = codecContext.decodeHashValue((ByteBuf) elements.get(index++));
+                entries.add(Map.entry(field, value));
+            }
+            userIdToEntries.put(userId, entries);
+        }
+        return userIdToEntries;
+    }
+
     private Mono<UserSessionsStatus> handleUserSessionsStatusEntries(
             Long userId,
             List<Map.Entry<Object, Object>> entries) {
@@ -528,13 +838,14 @@ public class UserStatusService extends BaseService {
                     args[index++] = ByteBufUtil.writeString(field);
                 }
                 for (Long userId : ids) {
-                    args[index++] = ByteBufUtil.writeLong(userId);
+                    args[index++] = sessionRedisClientManager.writeLongKey(userId);
                 }
             } catch (Exception e) {
                 ReferenceCountUtil.ensureReleased(args, 0, index);
                 return Mono.error(new InputOutputException("Failed to encode arguments", e));
             }
-            return client.eval(getUsersDeviceDetailsScript, args);
+            return client
+                    .evalBulk(getUsersDeviceDetailsScript, getUsersScriptKeyLength(args), args);
         })
                 .collect(CollectorUtil.toList(4))
                 .map(results -> {
@@ -547,7 +858,8 @@ public class UserStatusService extends BaseService {
                         }
                         int index = 0;
                         do {
-                            Long userId = ((ByteBuf) elements.get(index++)).readLong();
+                            Long userId = RedisClusterHashTag
+                                    .readTaggedLong((ByteBuf) elements.get(index++));
                             int fieldCount = (int) (long) elements.get(index++);
                             Map<String, String> details =
                                     CollectionUtil.newMapWithExpectedSize(fieldCount);
@@ -590,7 +902,7 @@ public class UserStatusService extends BaseService {
                 : new ByteBuf[2 + deviceTypeCount];
         int index = 0;
         try {
-            args[index++] = ByteBufUtil.writeLong(userId);
+            args[index++] = sessionRedisClientManager.writeLongKey(userId);
             args[index++] = localNodeIdBuffer.duplicate();
             if (!removeAllDeviceStatuses) {
                 for (DeviceType deviceType : deviceTypes) {
@@ -601,7 +913,8 @@ public class UserStatusService extends BaseService {
             ReferenceCountUtil.ensureReleased(args, 0, index);
             return Mono.error(new InputOutputException("Failed to encode arguments", e));
         }
-        Mono<Boolean> mono = sessionRedisClientManager.eval(userId, removeUserStatusesScript, args);
+        Mono<Boolean> mono = sessionRedisClientManager
+                .eval(userId, removeUserStatusesScript, getUserScriptKeyLength(args), args);
         if (cacheUserSessionsStatus) {
             mono = mono.doOnSuccess(ignored -> userIdToStatusCache.invalidate(userId));
         }
@@ -668,7 +981,7 @@ public class UserStatusService extends BaseService {
         int index = 0;
         ByteBuf[] args = new ByteBuf[count];
         try {
-            args[index++] = ByteBufUtil.writeLong(userId);
+            args[index++] = sessionRedisClientManager.writeLongKey(userId);
             args[index++] = ByteBufUtil.writeByte((byte) deviceType.getNumber());
             args[index++] = localNodeId;
             args[index++] = ByteBufUtil.writeShort((short) heartbeatSeconds);
@@ -693,13 +1006,17 @@ public class UserStatusService extends BaseService {
             ReferenceCountUtil.ensureReleased(args, 0, index);
             return Mono.error(new InputOutputException("Failed to encode arguments", e));
         }
-        return sessionRedisClientManager.eval(userId, addOnlineUserScript, args)
+        return sessionRedisClientManager
+                .eval(userId, addOnlineUserScript, getUserScriptKeyLength(args), args)
                 .map(buffer -> {
                     byte returnCode = buffer.readByte();
                     return switch (returnCode) {
                         case '0' -> false;
                         case '1' -> {
-                            if (cacheUserSessionsStatus) {
+                            if (isTrackingUserSessionsStatus) {
+                                // The sessions status is not tracked because it is not read
+                                userIdToStatusCache.invalidate(userId);
+                            } else if (cacheUserSessionsStatus) {
                                 Map<DeviceType, UserDeviceSessionInfo> deviceTypeToSessions =
                                         new FastEnumMap<>(DeviceType.class);
                                 deviceTypeToSessions.put(deviceType,
@@ -723,10 +1040,71 @@ public class UserStatusService extends BaseService {
                 });
     }
 
+    private class UserSessionsStatusTrackingListener implements RedisTrackingListener {
+        @Override
+        public void onKeysInvalidated(List<ByteBuffer> keys) {
+            for (ByteBuffer key : keys) {
+                // Skip the keys that are not the keys of users' sessions status,
+                // e.g. the keys of device details
+                if (key.remaining() != Long.BYTES) {
+                    continue;
+                }
+                Long userId = key.getLong(key.position());
+                userIdToFetchingToken.remove(userId);
+                userIdToStatusCache.invalidate(userId);
+                userSessionsStatusCacheInvalidationCounter.increment();
+            }
+        }
+
+        @Override
+        public void onAllKeysInvalidated() {
+            userIdToFetchingToken.clear();
+            userIdToStatusCache.invalidateAll();
+        }
+
+        @Override
+        public void onTrackingFailed(Throwable cause) {
+            if (!isTrackingUserSessionsStatus) {
+                return;
+            }
+            isTrackingUserSessionsStatus = false;
+            setUserSessionsStatusExpireAfter(userSessionsStatusExpireAfter);
+            userIdToFetchingToken.clear();
+            userIdToStatusCache.invalidateAll();
+            LOGGER.error(
+                    "Failed to track users' sessions status after reconnecting to Redis, "
+                            + "so the cached sessions status will expire after: "
+                            + userSessionsStatusExpireAfter,
+                    cause);
+        }
+    }
+
     private record NodeStatus(
             long recordTimestampNanos,
             boolean isActive
     ) {
     }
 
-}
\ No newline at end of file
+    /**
+     * @return the number of the arguments passed as keys to a script that only touches the keys of
+     *         the user whose key is the first argument. In the cluster mode, the remaining
+     *         arguments are passed as "ARGV" because they are not keys and may be in other slots
+     */
+    private int getUserScriptKeyLength(ByteBuf[] args) {
+        return sessionRedisClientManager.isClusterEnabled()
+                ? 1
+                : args.length;
+    }
+
+    /**
+     * @return the number of the arguments passed as keys to a script that touches the keys of
+     *         multiple users. In the cluster mode, all arguments are passed as "ARGV" because the
+     *         keys of the users are in different slots, which are served by the same node
+     */
+    private int getUsersScriptKeyLength(ByteBuf[] args) {
+        return sessionRedisClientManager.isClusterEnabled()
+                ? 0
+                : args.length;
+    }
+
+}
@@ -36,6 +36,9 @@ public enum JobShutdownOrder {
     CLOSE_PUSH_NOTIFICATION,
     CLOSE_PLUGINS,
 
+    FLUSH_CONVERSATION_READ_DATES,
+    RETURN_SEQUENCE_ID_BLOCKS,
+
     CLOSE_REDIS_CONNECTIONS,
     CLOSE_MONGODB_CONNECTIONS,
 
@@ -144,7 +144,7 @@ public class Node {
         // Init services
         // pass the properties one by one rather than passing the node instance
         // to know their dependency relationships explicitly.
-        codecService = new CodecService();
+        codecService = new CodecService(rpcProperties);
         connectionService = new ConnectionService(connectionProperties);
         rpcService = new RpcService(context, nodeType, rpcProperties);
         sharedConfigService = new SharedConfigService(sharedConfigProperties.getMongo());
@@ -282,10 +282,18 @@ public class Node {
         return idService.nextIncreasingId(serviceType);
     }
 
+    public long[] nextIncreasingIds(ServiceType serviceType, int count) {
+        return idService.nextIncreasingIds(serviceType, count);
+    }
+
     public long nextLargeGapId(ServiceType serviceType) {
         return idService.nextLargeGapId(serviceType);
     }
 
+    public long[] nextLargeGapIds(ServiceType serviceType, int count) {
+        return idService.nextLargeGapIds(serviceType, count);
+    }
+
     public boolean isLocalNodeLeader() {
         return discoveryService.getLocalNodeStatusManager()
                 .isLocalNodeLeader();
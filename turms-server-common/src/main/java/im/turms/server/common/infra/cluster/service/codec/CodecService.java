@@ -26,6 +26,7 @@ import im.turms.server.common.infra.cluster.service.codec.codec.Codec;
 import im.turms.server.common.infra.cluster.service.codec.codec.CodecPool;
 import im.turms.server.common.infra.cluster.service.codec.exception.CodecNotFoundException;
 import im.turms.server.common.infra.cluster.service.codec.io.CodecStream;
+import im.turms.server.common.infra.property.env.common.cluster.RpcProperties;
 
 /**
  * Note that to get a better performance and serialize data with the least bytes, do NOT use
@@ -39,9 +40,9 @@ import im.turms.server.common.infra.cluster.service.codec.io.CodecStream;
  */
 public class CodecService implements ClusterService {
 
-    public CodecService() {
+    public CodecService(RpcProperties rpcProperties) {
         // Init here so the application can exit if an error is thrown
-        CodecPool.init();
+        CodecPool.init(rpcProperties.isWriteCompactRecipientIds());
     }
 
     public <T> ByteBuf serializeWithoutCodecId(T data) {
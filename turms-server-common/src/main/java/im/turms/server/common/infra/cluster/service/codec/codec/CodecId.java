@@ -49,11 +49,15 @@ public enum CodecId {
 
     // RPC - Common
     RPC_EXCEPTION(1000),
+    RPC_BATCH(1001),
+    RPC_BATCH_RESPONSE(1002),
 
     // RPC - Connection
     RPC_OPENING_HANDSHAKE(1100),
     RPC_CLOSING_HANDSHAKE(1101),
     RPC_KEEPALIVE(1102),
+    RPC_STRIPE_HANDSHAKE(1103),
+    RPC_COMPRESSION_NEGOTIATION(1104),
 
     // RPC - Request/Notification
     RPC_HANDLE_SERVICE_REQUEST(1200),
@@ -64,6 +68,7 @@ public enum CodecId {
     RPC_SET_USER_OFFLINE(1301),
     RPC_UPDATE_ONLINE_USER_STATUS(1302),
     RPC_CREATE_USER(1303),
+    RPC_INVALIDATE_CACHE(1304),
 
     // RPC - Statistics
     RPC_COUNT_ONLINE_USERS(1400),
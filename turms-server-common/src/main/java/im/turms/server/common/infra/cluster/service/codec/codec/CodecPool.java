@@ -27,6 +27,7 @@ import org.springframework.core.GenericTypeResolver;
 
 import im.turms.server.common.access.servicerequest.rpc.HandleServiceRequestCodec;
 import im.turms.server.common.access.servicerequest.rpc.ServiceResponseCodec;
+import im.turms.server.common.domain.cache.rpc.dto.InvalidateCacheRequestCodec;
 import im.turms.server.common.domain.notification.rpc.dto.SendNotificationRequestCodec;
 import im.turms.server.common.domain.observation.rpc.dto.CountOnlineUsersRequestCodec;
 import im.turms.server.common.domain.session.rpc.dto.QueryUserSessionsRequestCodec;
@@ -46,8 +47,12 @@ import im.turms.server.common.infra.cluster.service.codec.codec.impl.SetCodec;
 import im.turms.server.common.infra.cluster.service.codec.codec.impl.ShortCodec;
 import im.turms.server.common.infra.cluster.service.codec.codec.impl.StringCodec;
 import im.turms.server.common.infra.cluster.service.connection.codec.ClosingHandshakeRequestCodec;
+import im.turms.server.common.infra.cluster.service.connection.codec.CompressionNegotiationRequestCodec;
 import im.turms.server.common.infra.cluster.service.connection.codec.KeepaliveRequestCodec;
 import im.turms.server.common.infra.cluster.service.connection.codec.OpeningHandshakeRequestCodec;
+import im.turms.server.common.infra.cluster.service.connection.codec.StripeHandshakeRequestCodec;
+import im.turms.server.common.infra.cluster.service.rpc.batch.BatchRequestCodec;
+import im.turms.server.common.infra.cluster.service.rpc.batch.BatchResponseCodec;
 import im.turms.server.common.infra.cluster.service.rpc.codec.RpcExceptionCodec;
 import im.turms.server.common.infra.collection.CollectionUtil;
 
@@ -60,7 +65,15 @@ public final class CodecPool {
     private static final Map<Class<?>, Codec> CLASS_TO_CODEC = new IdentityHashMap<>(32);
     private static final Map<Class<?>, Codec> SUPERCLASS_TO_CODEC = new IdentityHashMap<>(16);
 
-    public static synchronized void init() {
+    public static void init() {
+        init(false);
+    }
+
+    /**
+     * @param writeCompactRecipientIds whether to write the recipient IDs of notification requests
+     *                                 in the compact format
+     */
+    public static synchronized void init(boolean writeCompactRecipientIds) {
         if (!ID_TO_CODEC.isEmpty()) {
             return;
         }
@@ -84,17 +97,22 @@ public final class CodecPool {
 
         // RPC
         register(new RpcExceptionCodec());
+        register(new BatchRequestCodec());
+        register(new BatchResponseCodec());
 
         register(new OpeningHandshakeRequestCodec());
         register(new ClosingHandshakeRequestCodec());
         register(new KeepaliveRequestCodec());
+        register(new StripeHandshakeRequestCodec());
+        register(new CompressionNegotiationRequestCodec());
 
         register(new CountOnlineUsersRequestCodec());
         register(new HandleServiceRequestCodec());
         register(new QueryUserSessionsRequestCodec());
-        register(new SendNotificationRequestCodec());
+        register(new SendNotificationRequestCodec(writeCompactRecipientIds));
         register(new SetUserOfflineRequestCodec());
         register(new CreateUserRequestCodec());
+        register(new InvalidateCacheRequestCodec());
 
         // DTO
         register(new ServiceResponseCodec());
@@ -46,6 +46,7 @@ import im.turms.server.common.infra.cluster.service.config.entity.discovery.Memb
 import im.turms.server.common.infra.cluster.service.connection.request.ClosingHandshakeRequest;
 import im.turms.server.common.infra.cluster.service.connection.request.KeepaliveRequest;
 import im.turms.server.common.infra.cluster.service.connection.request.OpeningHandshakeRequest;
+import im.turms.server.common.infra.cluster.service.connection.request.StripeHandshakeRequest;
 import im.turms.server.common.infra.cluster.service.discovery.DiscoveryService;
 import im.turms.server.common.infra.cluster.service.discovery.MemberConnectionListener;
 import im.turms.server.common.infra.cluster.service.idgen.IdService;
@@ -98,6 +99,7 @@ public class ConnectionService implements ClusterService {
     private final long keepaliveIntervalNanos;
     private final long keepaliveTimeoutNanos;
     private final Duration reconnectInterval;
+    private final int connectionCountPerMember;
 
     // Thread resources
     private final ScheduledExecutorService connectionRetryScheduler;
@@ -138,6 +140,7 @@ public class ConnectionService implements ClusterService {
         keepaliveTimeoutNanos =
                 DateTimeUtil.secondsToNanos(clientProperties.getKeepaliveTimeoutSeconds());
         reconnectInterval = Duration.ofSeconds(clientProperties.getReconnectIntervalSeconds());
+        connectionCountPerMember = clientProperties.getConnectionCountPerMember();
         eventLoopGroupForClients = new NioEventLoopGroup(
                 Runtime.getRuntime()
                         .availableProcessors(),
@@ -166,6 +169,11 @@ public class ConnectionService implements ClusterService {
                 ClosingHandshakeRequest.CLOSE_STATUS_CODE_SERVER_SHUTTING_DOWN);
         for (TurmsConnection connection : nodeIdToConnection.values()) {
             connection.setClosing(true);
+            for (TurmsConnection stripe : connection.removeAllStripes()) {
+                disconnectConnection(stripe);
+                monos.add(stripe.getConnection()
+                        .onDispose());
+            }
             Connection conn = connection.getConnection();
             if (conn.isDisposed()) {
                 continue;
@@ -344,6 +352,59 @@ public class ConnectionService implements ClusterService {
                 .subscribe();
     }
 
+    /**
+     * Opens an extra connection to the member of the primary connection, and both the local node
+     * and the member will stripe RPC requests across the primary connection and its stripes.
+     */
+    private void openStripe(Member member, TurmsConnection primary) {
+        String nodeId = member.getNodeId();
+        initTcpConnection(member.getMemberHost(), member.getMemberPort()).subscribe(conn -> {
+            TurmsConnection stripe = new TurmsConnection(
+                    nodeId,
+                    (ChannelOperations<?, ?>) conn,
+                    true,
+                    newMemberConnectionListeners());
+            stripe.setStripe(true);
+            onMemberConnectionAdded(member, stripe);
+            String localNodeId = discoveryService.getLocalMember()
+                    .getNodeId();
+            rpcService
+                    .requestResponse(nodeId,
+                            new StripeHandshakeRequest(localNodeId),
+                            null,
+                            stripe)
+                    .subscribe(code -> {
+                        if (code != OpeningHandshakeRequest.RESPONSE_CODE_SUCCESS) {
+                            LOGGER.warn(
+                                    "[Client] Closing the stripe connection to the member ({}) because the member responded to the stripe handshake with the failure code: {}",
+                                    nodeId,
+                                    code);
+                            disconnectConnection(stripe);
+                            return;
+                        }
+                        primary.addStripe(stripe);
+                        // Check again in case the primary connection was closed
+                        // before the stripe was added.
+                        if (primary.isClosing()
+                                || primary.getConnection()
+                                        .isDisposed()) {
+                            primary.removeStripe(stripe);
+                            disconnectConnection(stripe);
+                            return;
+                        }
+                        rpcService.negotiateCompression(stripe);
+                    }, t -> {
+                        LOGGER.error(
+                                "[Client] Failed to complete the stripe handshake with the member: "
+                                        + nodeId,
+                                t);
+                        disconnectConnection(stripe);
+                    });
+        },
+                t -> LOGGER.error("[Client] Failed to open a stripe connection to the member: "
+                        + nodeId, t));
+    }
+
     private void disconnectConnection(TurmsConnection connection) {
         connection.setClosing(true);
         connection.getConnection()
@@ -394,7 +455,8 @@ public class ConnectionService implements ClusterService {
         if (!connection.isLocalNodeClient()) {
             return;
         }
-        long elapsedTime = System.nanoTime() - connection.getLastKeepaliveTimestampNanos();
+        long now = System.nanoTime();
+        long elapsedTime = now - connection.getLastKeepaliveTimestampNanos();
         if (elapsedTime > keepaliveTimeoutNanos) {
             LOGGER.warn("Reconnecting to the member ({}) due to keepalive timeout", nodeId);
             // onConnectionClosed() will reconnect the member
@@ -402,10 +464,28 @@ public class ConnectionService implements ClusterService {
             iterator.remove();
             return;
         }
-        if (elapsedTime < keepaliveIntervalNanos) {
-            return;
+        if (elapsedTime >= keepaliveIntervalNanos) {
+            sendKeepalive(nodeId, connection);
         }
-        rpcService.requestResponse(nodeId, new KeepaliveRequest())
+        // Probe each stripe over itself because RPC requests are spread randomly across
+        // the primary connection and its stripes, so a stalled stripe would otherwise
+        // keep failing the requests assigned to it without being detected
+        for (TurmsConnection stripe : connection.getStripes()) {
+            elapsedTime = now - stripe.getLastKeepaliveTimestampNanos();
+            if (elapsedTime > keepaliveTimeoutNanos) {
+                LOGGER.warn(
+                        "Reopening the stripe connection to the member ({}) due to keepalive timeout",
+                        nodeId);
+                // onStripeClosed() will reopen the stripe
+                disconnectConnection(stripe);
+            } else if (elapsedTime >= keepaliveIntervalNanos) {
+                sendKeepalive(nodeId, stripe);
+            }
+        }
+    }
+
+    private void sendKeepalive(String nodeId, TurmsConnection connection) {
+        rpcService.requestResponse(nodeId, new KeepaliveRequest(), null, connection)
                 .subscribe(null,
                         t -> LOGGER.warn("Failed to send a keepalive request to the member: "
                                 + nodeId, t),
@@ -443,6 +523,25 @@ public class ConnectionService implements ClusterService {
         return OpeningHandshakeRequest.RESPONSE_CODE_SUCCESS;
     }
 
+    public byte handleStripeHandshakeRequest(TurmsConnection connection, String nodeId) {
+        if (discoveryService.getMember(nodeId) == null) {
+            return OpeningHandshakeRequest.RESPONSE_CODE_UNKNOWN_MEMBER;
+        }
+        TurmsConnection primary = nodeIdToConnection.get(nodeId);
+        if (primary == null
+                || primary.getConnection()
+                        .isDisposed()
+                || connection.getConnection()
+                        .isDisposed()) {
+            return OpeningHandshakeRequest.RESPONSE_CODE_CONNECTION_CLOSED;
+        }
+        connection.setNodeId(nodeId);
+        connection.setStripe(true);
+        primary.addStripe(connection);
+        LOGGER.info("[Server] Completed the stripe handshake with the member: {}", nodeId);
+        return OpeningHandshakeRequest.RESPONSE_CODE_SUCCESS;
+    }
+
     // Lifecycle listeners
 
     public void addMemberConnectionListenerSupplier(Supplier<MemberConnectionListener> supplier) {
@@ -518,6 +617,10 @@ public class ConnectionService implements ClusterService {
     }
 
     private void onConnectionClosed(TurmsConnection connection, @Nullable Throwable throwable) {
+        if (connection.isStripe()) {
+            onStripeClosed(connection, throwable);
+            return;
+        }
         boolean isLocalNodeClient = connection.isLocalNodeClient();
         String nodeType = isLocalNodeClient
                 ? "Client"
@@ -553,15 +656,9 @@ public class ConnectionService implements ClusterService {
                             : " unexpectedly",
                     throwable);
         }
-        for (MemberConnectionListener listener : connection.getListeners()) {
-            try {
-                listener.onConnectionClosed();
-            } catch (Exception e) {
-                LOGGER.error("Caught an error while notifying the onConnectionClosed listener: "
-                        + listener.getClass()
-                                .getName(),
-                        e);
-            }
+        notifyConnectionClosedListeners(connection);
+        for (TurmsConnection stripe : connection.removeAllStripes()) {
+            disconnectConnection(stripe);
         }
         boolean isKnownMember = nodeId != null && discoveryService.isKnownMember(nodeId);
         boolean isClosing = discoveryService.getLocalNodeStatusManager()
@@ -597,6 +694,57 @@ public class ConnectionService implements ClusterService {
         }
     }
 
+    private void onStripeClosed(TurmsConnection stripe, @Nullable Throwable throwable) {
+        String nodeId = stripe.getNodeId();
+        boolean closing = stripe.isClosing();
+        LogLevel logLevel = closing
+                ? LogLevel.INFO
+                : LogLevel.WARN;
+        LOGGER.log(logLevel,
+                "[{}] The stripe connection to the member ({}) has been closed{}",
+                stripe.isLocalNodeClient()
+                        ? "Client"
+                        : "Server",
+                nodeId,
+                closing
+                        ? ""
+                        : " unexpectedly",
+                throwable);
+        notifyConnectionClosedListeners(stripe);
+        TurmsConnection primary = nodeId == null
+                ? null
+                : nodeIdToConnection.get(nodeId);
+        if (primary == null || !primary.removeStripe(stripe) || !stripe.isLocalNodeClient()) {
+            return;
+        }
+        Mono.delay(reconnectInterval)
+                .subscribe(null, null, () -> {
+                    Member member = discoveryService.getMember(nodeId);
+                    if (member != null
+                            && nodeIdToConnection.get(nodeId) == primary
+                            && !primary.isClosing()
+                            && !primary.getConnection()
+                                    .isDisposed()
+                            && !discoveryService.getLocalNodeStatusManager()
+                                    .isClosing()) {
+                        openStripe(member, primary);
+                    }
+                });
+    }
+
+    private void notifyConnectionClosedListeners(TurmsConnection connection) {
+        for (MemberConnectionListener listener : connection.getListeners()) {
+            try {
+                listener.onConnectionClosed();
+            } catch (Exception e) {
+                LOGGER.error("Caught an error while notifying the onConnectionClosed listener: "
+                        + listener.getClass()
+                                .getName(),
+                        e);
+            }
+        }
+    }
+
     private void onMemberConnectionHandshakeCompleted(
             Member member,
             TurmsConnection connection,
@@ -625,6 +773,11 @@ public class ConnectionService implements ClusterService {
                         e);
             }
         }
+        if (isLocalNodeClient) {
+            for (int i = 1; i < connectionCountPerMember; i++) {
+                openStripe(member, connection);
+            }
+        }
     }
 
     private String getMemberIdAndAddress(@Nullable String nodeId, @Nullable Member member) {
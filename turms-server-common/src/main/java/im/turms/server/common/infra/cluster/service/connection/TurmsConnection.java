@@ -17,11 +17,14 @@
 
 package im.turms.server.common.infra.cluster.service.connection;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import jakarta.annotation.Nullable;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import reactor.netty.channel.ChannelOperations;
 
 import im.turms.server.common.infra.cluster.service.discovery.MemberConnectionListener;
@@ -31,6 +34,9 @@ import im.turms.server.common.infra.cluster.service.discovery.MemberConnectionLi
  */
 @Data
 public class TurmsConnection {
+
+    private static final TurmsConnection[] EMPTY_STRIPES = new TurmsConnection[0];
+
     /**
      * Is null when the connection is accepted on the server side but no handshake request is
      * accepted. For the connection client, it is never null.
@@ -50,6 +56,19 @@ public class TurmsConnection {
 
     private final List<MemberConnectionListener> listeners;
 
+    /**
+     * True if the connection is an extra connection to the member of a primary connection, which
+     * is only used to send RPC requests and responses.
+     */
+    private volatile boolean isStripe;
+    /**
+     * The extra connections to the same member of the primary connection. Replaced instead of
+     * modified so that the RPC endpoint can read it without locking.
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile TurmsConnection[] stripes = EMPTY_STRIPES;
+
     public TurmsConnection(
             @Nullable String nodeId,
             ChannelOperations<?, ?> connection,
@@ -65,4 +84,35 @@ public class TurmsConnection {
         lastKeepaliveTimestampNanos = System.nanoTime();
         isClosing = false;
     }
+
+    public synchronized void addStripe(TurmsConnection stripe) {
+        TurmsConnection[] currentStripes = stripes;
+        TurmsConnection[] newStripes = Arrays.copyOf(currentStripes, currentStripes.length + 1);
+        newStripes[currentStripes.length] = stripe;
+        stripes = newStripes;
+    }
+
+    public synchronized boolean removeStripe(TurmsConnection stripe) {
+        TurmsConnection[] currentStripes = stripes;
+        for (int i = 0; i < currentStripes.length; i++) {
+            if (currentStripes[i] == stripe) {
+                TurmsConnection[] newStripes = new TurmsConnection[currentStripes.length - 1];
+                System.arraycopy(currentStripes, 0, newStripes, 0, i);
+                System.arraycopy(currentStripes,
+                        i + 1,
+                        newStripes,
+                        i,
+                        currentStripes.length - i - 1);
+                stripes = newStripes;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized TurmsConnection[] removeAllStripes() {
+        TurmsConnection[] currentStripes = stripes;
+        stripes = EMPTY_STRIPES;
+        return currentStripes;
+    }
 }
\ No newline at end of file
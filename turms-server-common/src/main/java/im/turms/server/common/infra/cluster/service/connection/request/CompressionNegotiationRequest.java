@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.connection.request;
+
+import lombok.Data;
+import org.springframework.context.ApplicationContext;
+
+import im.turms.server.common.infra.cluster.node.Node;
+import im.turms.server.common.infra.cluster.service.rpc.NodeTypeToHandleRpc;
+import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
+
+/**
+ * Sent by the client side of a connection after the handshake has completed to negotiate whether
+ * both ends compress the RPC frames sent over the connection.
+ * <p>
+ * The members that don't support the request will respond with an error, so the connection will
+ * stay uncompressed.
+ *
+ * @author James Chen
+ * @see im.turms.server.common.infra.cluster.service.rpc.channel.RpcFrameCompressor
+ */
+@Data
+public class CompressionNegotiationRequest extends RpcRequest<Byte> {
+
+    private static final String NAME = "compressionNegotiation";
+
+    public static final byte ALGORITHM_NONE = 0;
+    public static final byte ALGORITHM_DEFLATE = 1;
+
+    private Node node;
+
+    private final byte algorithm;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRequest() {
+        return NodeTypeToHandleRpc.BOTH;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRespond() {
+        return NodeTypeToHandleRpc.BOTH;
+    }
+
+    @Override
+    public boolean isAsync() {
+        return false;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        super.setApplicationContext(applicationContext);
+        if (node == null) {
+            node = getBean(Node.class);
+        }
+    }
+
+    /**
+     * @return the algorithm to use, or {@link #ALGORITHM_NONE} if the connection should not be
+     *         compressed.
+     */
+    @Override
+    public Byte call() {
+        return node.getRpcService()
+                .handleCompressionNegotiationRequest(getConnection(), algorithm);
+    }
+
+}
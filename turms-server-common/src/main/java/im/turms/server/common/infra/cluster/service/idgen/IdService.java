@@ -73,10 +73,18 @@ public class IdService implements ClusterService {
         return idGenerators[serviceType.ordinal()].nextIncreasingId();
     }
 
+    public long[] nextIncreasingIds(ServiceType serviceType, int count) {
+        return idGenerators[serviceType.ordinal()].nextIncreasingIds(count);
+    }
+
     public long nextLargeGapId(ServiceType serviceType) {
         return idGenerators[serviceType.ordinal()].nextLargeGapId();
     }
 
+    public long[] nextLargeGapIds(ServiceType serviceType, int count) {
+        return idGenerators[serviceType.ordinal()].nextLargeGapIds(count);
+    }
+
     private int findNewDataCenterId() {
         TreeSet<String> zones = new TreeSet<>();
         for (Member member : discoveryService.getAllKnownMembers()
@@ -17,7 +17,7 @@
 
 package im.turms.server.common.infra.cluster.service.idgen;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import im.turms.server.common.infra.random.RandomUtil;
 
@@ -39,6 +39,12 @@ import im.turms.server.common.infra.random.RandomUtil;
  * servers that you plan to deploy
  * <p>
  * 10 bits for sequenceNumber (1,024). It can represent up to 1024*1000 sequence numbers per second.
+ * <p>
+ * To avoid all threads contending on the same counter, the sequence number space is striped: the
+ * low bits of the sequence number are the stripe index, and each stripe owns a counter (packed
+ * with its last timestamp in one long) that is only updated by the threads mapped to the stripe.
+ * As a result, the IDs generated by the same thread are always increasing, while the IDs generated
+ * by different threads are only ordered by their timestamps.
  *
  * @author James Chen
  */
@@ -59,23 +65,70 @@ public class SnowflakeIdGenerator {
     private static final long DATA_CENTER_ID_SHIFT = SEQUENCE_NUMBER_BITS + WORKER_ID_BITS;
     private static final long WORKER_ID_SHIFT = SEQUENCE_NUMBER_BITS;
 
-    private static final long SEQUENCE_NUMBER_MASK = (1 << SEQUENCE_NUMBER_BITS) - 1;
-
     public static final int MAX_DATA_CENTER_ID = 1 << DATA_CENTER_ID_BITS;
     public static final int MAX_WORKER_ID = 1 << WORKER_ID_BITS;
 
-    // Used to ensure clock moves forward.
-    private final AtomicLong lastTimestamp = new AtomicLong();
+    /**
+     * Each stripe can still generate 128 IDs per millisecond without borrowing the sequence numbers
+     * of the next millisecond.
+     */
+    public static final int MAX_STRIPE_COUNT = 8;
 
-    // Because it is vulnerable if turms restarts after the clock goes backwards,
-    // we randomize the sequenceNumber on init to decrease the chance of collision
-    private final AtomicLong sequenceNumber = new AtomicLong(RandomUtil.nextPositiveInt());
+    /**
+     * Place the state of each stripe in a separate 128-byte block to avoid false sharing (including
+     * the adjacent cache line prefetch).
+     */
+    private static final int STRIPE_STATE_SPACING = 16;
+
+    private static final long[] EMPTY_IDS = new long[0];
+
+    private static final int DEFAULT_STRIPE_COUNT = Math.min(MAX_STRIPE_COUNT,
+            Integer.highestOneBit(Runtime.getRuntime()
+                    .availableProcessors()));
+
+    private final int stripeBits;
+    private final int stripeMask;
+    private final int stripeSequenceNumberBits;
+    private final long stripeSequenceNumberMask;
+
+    /**
+     * Each state is "(timestamp - EPOCH) << stripeSequenceNumberBits | stripeSequenceNumber" so
+     * that the timestamp and the sequence number can be updated with a single CAS, and the
+     * timestamp increments when the sequence number overflows.
+     */
+    private final AtomicLongArray stripeStates;
 
     private long dataCenterId;
     private long workerId;
 
     public SnowflakeIdGenerator(int dataCenterId, int workerId) {
+        this(dataCenterId, workerId, DEFAULT_STRIPE_COUNT);
+    }
+
+    public SnowflakeIdGenerator(int dataCenterId, int workerId, int stripeCount) {
+        if (stripeCount <= 0
+                || stripeCount > MAX_STRIPE_COUNT
+                || Integer.bitCount(stripeCount) != 1) {
+            String reason = "The stripe count must be a power of 2 in the range: [1, "
+                    + MAX_STRIPE_COUNT
+                    + "], but got: "
+                    + stripeCount;
+            throw new IllegalArgumentException(reason);
+        }
         updateNodeInfo(dataCenterId, workerId);
+        stripeBits = Integer.numberOfTrailingZeros(stripeCount);
+        stripeMask = stripeCount - 1;
+        stripeSequenceNumberBits = SEQUENCE_NUMBER_BITS - stripeBits;
+        stripeSequenceNumberMask = (1L << stripeSequenceNumberBits) - 1;
+        stripeStates = new AtomicLongArray(stripeCount * STRIPE_STATE_SPACING);
+        long timestamp = System.currentTimeMillis() - EPOCH;
+        for (int i = 0; i < stripeCount; i++) {
+            // Because it is vulnerable if turms restarts after the clock goes backwards,
+            // we randomize the sequenceNumber on init to decrease the chance of collision
+            long sequenceNumber = RandomUtil.nextPositiveInt() & stripeSequenceNumberMask;
+            stripeStates.set(i * STRIPE_STATE_SPACING,
+                    (timestamp << stripeSequenceNumberBits) | sequenceNumber);
+        }
     }
 
     public void updateNodeInfo(int dataCenterId, int workerId) {
@@ -98,22 +151,24 @@ public class SnowflakeIdGenerator {
     }
 
     public long nextIncreasingId() {
-        // prepare each part of ID
-        long sequenceNum = sequenceNumber.incrementAndGet() & SEQUENCE_NUMBER_MASK;
-        long timestamp = lastTimestamp.updateAndGet(lastTs -> {
-            // Don't let timestamp go backwards at least while this JVM is running.
-            long nonBackwardsTimestamp = Math.max(lastTs, System.currentTimeMillis());
-            if (sequenceNum == 0) {
-                // Always force the clock to increment whenever sequence number is 0,
-                // if we have a long time-slip backwards
-                nonBackwardsTimestamp++;
-            }
-            return nonBackwardsTimestamp;
-        }) - EPOCH;
+        int stripe = currentStripe();
+        return toIncreasingId(reserve(stripe, 1), stripe);
+    }
 
-        // Get ID
-        return (timestamp << TIMESTAMP_LEFT_SHIFT) | (dataCenterId << DATA_CENTER_ID_SHIFT)
-                | (workerId << WORKER_ID_SHIFT) | sequenceNum;
+    /**
+     * Reserve {@code count} IDs with a single CAS. The returned IDs are increasing.
+     */
+    public long[] nextIncreasingIds(int count) {
+        if (count == 0) {
+            return EMPTY_IDS;
+        }
+        int stripe = currentStripe();
+        long state = reserve(stripe, count);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = toIncreasingId(state++, stripe);
+        }
+        return ids;
     }
 
     /**
@@ -123,21 +178,76 @@ public class SnowflakeIdGenerator {
      * the sharded cluster
      */
     public long nextLargeGapId() {
-        // prepare each part of ID
-        long sequenceNum = sequenceNumber.incrementAndGet() & SEQUENCE_NUMBER_MASK;
-        long timestamp = lastTimestamp.updateAndGet(now -> {
+        int stripe = currentStripe();
+        return toLargeGapId(reserve(stripe, 1), stripe);
+    }
+
+    /**
+     * Reserve {@code count} IDs with a single CAS.
+     *
+     * @see #nextLargeGapId()
+     */
+    public long[] nextLargeGapIds(int count) {
+        if (count == 0) {
+            return EMPTY_IDS;
+        }
+        int stripe = currentStripe();
+        long state = reserve(stripe, count);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = toLargeGapId(state++, stripe);
+        }
+        return ids;
+    }
+
+    private int currentStripe() {
+        return (int) Thread.currentThread()
+                .threadId() & stripeMask;
+    }
+
+    /**
+     * @return the first reserved state
+     */
+    private long reserve(int stripe, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException(
+                    "The count must be greater than or equal to 0, but got: " + count);
+        }
+        int index = stripe * STRIPE_STATE_SPACING;
+        long now = System.currentTimeMillis() - EPOCH;
+        long previousState;
+        long firstReservedState;
+        do {
+            previousState = stripeStates.get(index);
+            // The sequence number is a free-running counter that never restarts
+            // when the clock moves forward, so the sequence numbers (the high bits
+            // of large gap IDs) keep spreading across milliseconds.
+            // If the sequence number overflows, the carry increments the timestamp.
+            firstReservedState = previousState + 1;
             // Don't let timestamp go backwards at least while this JVM is running.
-            long nonBackwardsTimestamp = Math.max(now, System.currentTimeMillis());
-            if (sequenceNum == 0) {
-                // Always force the clock to increment whenever sequence number is 0,
-                // in case we have a long time-slip backwards
-                nonBackwardsTimestamp++;
+            if ((firstReservedState >>> stripeSequenceNumberBits) < now) {
+                firstReservedState = (now << stripeSequenceNumberBits)
+                        | (firstReservedState & stripeSequenceNumberMask);
             }
-            return nonBackwardsTimestamp;
-        }) - EPOCH;
+        } while (!stripeStates
+                .compareAndSet(index, previousState, firstReservedState + count - 1));
+        return firstReservedState;
+    }
+
+    private long toSequenceNumber(long state, int stripe) {
+        return ((state & stripeSequenceNumberMask) << stripeBits) | stripe;
+    }
+
+    private long toIncreasingId(long state, int stripe) {
+        long timestamp = state >>> stripeSequenceNumberBits;
+        return (timestamp << TIMESTAMP_LEFT_SHIFT) | (dataCenterId << DATA_CENTER_ID_SHIFT)
+                | (workerId << WORKER_ID_SHIFT) | toSequenceNumber(state, stripe);
+    }
 
-        // Get ID
-        return (sequenceNum << (TIMESTAMP_BITS + DATA_CENTER_ID_BITS + WORKER_ID_BITS))
+    private long toLargeGapId(long state, int stripe) {
+        long timestamp = state >>> stripeSequenceNumberBits;
+        long sequenceNumber = toSequenceNumber(state, stripe);
+        return (sequenceNumber << (TIMESTAMP_BITS + DATA_CENTER_ID_BITS + WORKER_ID_BITS))
                 | (timestamp << (DATA_CENTER_ID_BITS + WORKER_ID_BITS))
                 | (dataCenterId << WORKER_ID_BITS) | workerId;
     }
@@ -17,11 +17,21 @@
 
 package im.turms.server.common.infra.cluster.service.rpc;
 
+import im.turms.server.common.infra.cluster.node.NodeType;
+
 /**
  * @author James Chen
  */
 public enum NodeTypeToHandleRpc {
     BOTH,
     GATEWAY,
-    SERVICE
+    SERVICE;
+
+    public boolean matches(NodeType nodeType) {
+        return switch (this) {
+            case BOTH -> true;
+            case GATEWAY -> nodeType == NodeType.GATEWAY;
+            case SERVICE -> nodeType == NodeType.SERVICE;
+        };
+    }
 }
@@ -19,8 +19,10 @@ package im.turms.server.common.infra.cluster.service.rpc;
 
 import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.ThreadLocalRandom;
+import jakarta.annotation.Nullable;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
 import lombok.Getter;
 import org.jctools.maps.NonBlockingHashMapLong;
 import reactor.core.publisher.Mono;
@@ -31,6 +33,8 @@ import im.turms.server.common.infra.cluster.service.connection.TurmsConnection;
 import im.turms.server.common.infra.cluster.service.rpc.channel.RpcFrameEncoder;
 import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
 import im.turms.server.common.infra.cluster.service.rpc.dto.RpcResponse;
+import im.turms.server.common.infra.cluster.service.rpc.loadbalancing.LoadBalancedEndpoint;
+import im.turms.server.common.infra.cluster.service.rpc.loadbalancing.PeakEwma;
 import im.turms.server.common.infra.logging.core.logger.Logger;
 import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
 import im.turms.server.common.infra.serialization.SerializationException;
@@ -38,7 +42,7 @@ import im.turms.server.common.infra.serialization.SerializationException;
 /**
  * @author James Chen
  */
-public final class RpcEndpoint {
+public final class RpcEndpoint implements LoadBalancedEndpoint {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RpcEndpoint.class);
 
@@ -50,14 +54,26 @@ public final class RpcEndpoint {
     private final String nodeId;
     @Getter
     private final TurmsConnection connection;
-    private final NonBlockingHashMapLong<Sinks.One<?>> pendingRequestMap =
+    private final NonBlockingHashMapLong<PendingRequest> pendingRequestMap =
             new NonBlockingHashMapLong<>(
                     (int) (EXPECTED_MAX_QPS * EXPECTED_AVERAGE_RTT
                             * (INITIAL_CAPACITY_PERCENTAGE / 100F)));
+    private final PeakEwma latency;
 
-    public RpcEndpoint(String nodeId, TurmsConnection connection) {
+    public RpcEndpoint(String nodeId, TurmsConnection connection, long latencyDecayNanos) {
         this.nodeId = nodeId;
         this.connection = connection;
+        latency = new PeakEwma(latencyDecayNanos, System.nanoTime());
+    }
+
+    @Override
+    public int getPendingRequestCount() {
+        return pendingRequestMap.size();
+    }
+
+    @Override
+    public long getPeakEwmaLatencyNanos() {
+        return latency.get(System.nanoTime());
     }
 
     // Handle Request
@@ -68,7 +84,21 @@ public final class RpcEndpoint {
      * @implNote The method ensures {@param requestBody} will be released by 1
      */
     public <T> Mono<T> sendRequest(RpcRequest<T> request, ByteBuf requestBody) {
-        ChannelOperations<?, ?> conn = connection.getConnection();
+        return sendRequest(request, requestBody, null);
+    }
+
+    /**
+     * @param connection the connection to send the request. If null, the request will be sent
+     *                   over the primary connection or one of its stripes.
+     * @implNote The method ensures {@param requestBody} will be released by 1
+     */
+    public <T> Mono<T> sendRequest(
+            RpcRequest<T> request,
+            ByteBuf requestBody,
+            @Nullable TurmsConnection connection) {
+        ChannelOperations<?, ?> conn = (connection == null
+                ? nextConnection()
+                : connection).getConnection();
         if (requestBody.refCnt() == 0) {
             return Mono.error(new IllegalArgumentException("The request body has been released"));
         }
@@ -77,38 +107,70 @@ public final class RpcEndpoint {
             return Mono.error(new ClosedChannelException());
         }
         Sinks.One<T> sink = Sinks.one();
-        while (true) {
-            int requestId = generateRandomId();
-            Sinks.One<?> previous = pendingRequestMap.putIfAbsent(requestId, sink);
-            if (previous != null) {
-                continue;
-            }
-            request.setRequestId(requestId);
-            ByteBuf buffer;
-            try {
-                buffer = RpcFrameEncoder.INSTANCE.encodeRequest(request, requestBody);
-            } catch (Exception e) {
-                requestBody.release();
-                resolveRequest(requestId,
-                        null,
-                        new SerializationException(
-                                "Failed to encode the request: "
-                                        + request,
-                                e));
-                break;
-            }
-            // sendObject() will release the buffer no matter it succeeds or fails
-
-            // Duplicate the buffer to use an independent reader index
-            // because we don't want to modify the reader index of the original buffer
-            // if it is an unreleasable buffer internally, or it may be sent to multiple endpoints.
-            // Note that the content of the buffer is not copied, so "duplicate()" is efficient.
-            conn.sendObject(buffer.duplicate())
-                    .then()
-                    .subscribe(null, t -> resolveRequest(requestId, null, t));
-            break;
+        PendingRequest pendingRequest = new PendingRequest(sink, System.nanoTime());
+        int requestId;
+        do {
+            requestId = generateRandomId();
+        } while (pendingRequestMap.putIfAbsent(requestId, pendingRequest) != null);
+        request.setRequestId(requestId);
+        int finalRequestId = requestId;
+        ByteBuf buffer;
+        try {
+            buffer = RpcFrameEncoder.INSTANCE.encodeRequest(request, requestBody);
+        } catch (Exception e) {
+            requestBody.release();
+            resolveRequest(requestId,
+                    null,
+                    new SerializationException(
+                            "Failed to encode the request: "
+                                    + request,
+                            e));
+            return sink.asMono();
+        }
+        // sendObject() will release the buffer no matter it succeeds or fails
+
+        // Duplicate the buffer to use an independent reader index
+        // because we don't want to modify the reader index of the original buffer
+        // if it is an unreleasable buffer internally, or it may be sent to multiple endpoints.
+        // Note that the content of the buffer is not copied, so "duplicate()" is efficient.
+        conn.sendObject(buffer.duplicate())
+                .then()
+                .subscribe(null, t -> resolveRequest(finalRequestId, null, t));
+        // Remove the pending request if it is cancelled (e.g. timed out)
+        // so that it will not be counted as pending forever.
+        return sink.asMono()
+                .doOnCancel(() -> {
+                    if (pendingRequestMap.remove(finalRequestId, pendingRequest)) {
+                        observeLatency(pendingRequest);
+                    }
+                });
+    }
+
+    private void observeLatency(PendingRequest pendingRequest) {
+        long now = System.nanoTime();
+        latency.observe(now - pendingRequest.startTimeNanos, now);
+    }
+
+    /**
+     * @return the primary connection or one of its stripes randomly, which is cheaper than round
+     *         robin because it has no contention between threads.
+     */
+    private TurmsConnection nextConnection() {
+        TurmsConnection[] stripes = connection.getStripes();
+        int stripeCount = stripes.length;
+        if (stripeCount == 0) {
+            return connection;
+        }
+        int index = ThreadLocalRandom.current()
+                .nextInt(stripeCount + 1);
+        if (index == stripeCount) {
+            return connection;
         }
-        return sink.asMono();
+        TurmsConnection stripe = stripes[index];
+        return stripe.getConnection()
+                .isDisposed()
+                ? connection
+                : stripe;
     }
 
     private int generateRandomId() {
@@ -127,18 +189,31 @@ public final class RpcEndpoint {
     }
 
     private <T> void resolveRequest(int requestId, T response, Throwable error) {
-        Sinks.One<T> sink = (Sinks.One<T>) pendingRequestMap.remove(requestId);
-        if (sink == null) {
+        PendingRequest pendingRequest = pendingRequestMap.remove(requestId);
+        if (pendingRequest == null) {
             LOGGER.warn("Could not find a pending request with the ID ({}) for the response: {}",
                     requestId,
                     response);
+            // The response may hold a buffer, e.g. ServiceResponse
+            ReferenceCountUtil.release(response);
             return;
         }
+        observeLatency(pendingRequest);
+        Sinks.One<T> sink = (Sinks.One<T>) pendingRequest.sink;
         if (error == null) {
-            sink.tryEmitValue(response);
+            if (sink.tryEmitValue(response)
+                    .isFailure()) {
+                ReferenceCountUtil.release(response);
+            }
         } else {
             sink.tryEmitError(error);
         }
     }
 
+    private record PendingRequest(
+            Sinks.One<?> sink,
+            long startTimeNanos
+    ) {
+    }
+
 }
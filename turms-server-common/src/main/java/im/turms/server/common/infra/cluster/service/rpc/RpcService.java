@@ -27,6 +27,7 @@ import jakarta.validation.constraints.NotNull;
 
 import io.micrometer.core.instrument.Tag;
 import io.netty.buffer.ByteBuf;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import lombok.Getter;
 import org.springframework.context.ApplicationContext;
 import reactor.core.publisher.Flux;
@@ -42,21 +43,29 @@ import im.turms.server.common.infra.cluster.service.config.SharedConfigService;
 import im.turms.server.common.infra.cluster.service.config.entity.discovery.Member;
 import im.turms.server.common.infra.cluster.service.connection.ConnectionService;
 import im.turms.server.common.infra.cluster.service.connection.TurmsConnection;
+import im.turms.server.common.infra.cluster.service.connection.request.CompressionNegotiationRequest;
 import im.turms.server.common.infra.cluster.service.discovery.DiscoveryService;
 import im.turms.server.common.infra.cluster.service.discovery.MemberConnectionListener;
 import im.turms.server.common.infra.cluster.service.idgen.IdService;
+import im.turms.server.common.infra.cluster.service.rpc.batch.RpcRequestBatcher;
+import im.turms.server.common.infra.cluster.service.rpc.channel.RpcFrameCompressor;
 import im.turms.server.common.infra.cluster.service.rpc.channel.RpcFrameDecoder;
 import im.turms.server.common.infra.cluster.service.rpc.channel.RpcFrameEncoder;
 import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
 import im.turms.server.common.infra.cluster.service.rpc.dto.RpcResponse;
 import im.turms.server.common.infra.cluster.service.rpc.exception.ConnectionNotFound;
 import im.turms.server.common.infra.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.infra.cluster.service.rpc.hedging.RpcRequestHedger;
+import im.turms.server.common.infra.cluster.service.rpc.loadbalancing.RpcLoadBalancer;
 import im.turms.server.common.infra.collection.CollectorUtil;
 import im.turms.server.common.infra.exception.ThrowableUtil;
 import im.turms.server.common.infra.lang.Null;
 import im.turms.server.common.infra.lang.Pair;
 import im.turms.server.common.infra.logging.core.logger.Logger;
 import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
+import im.turms.server.common.infra.property.env.common.cluster.RpcBatchProperties;
+import im.turms.server.common.infra.property.env.common.cluster.RpcCompressionProperties;
+import im.turms.server.common.infra.property.env.common.cluster.RpcHedgingProperties;
 import im.turms.server.common.infra.property.env.common.cluster.RpcProperties;
 import im.turms.server.common.infra.random.RandomUtil;
 import im.turms.server.common.infra.reactor.HashedWheelScheduler;
@@ -79,17 +88,49 @@ public class RpcService implements ClusterService {
     @Getter
     private final RpcRequestExecutor requestExecutor;
     private final Duration defaultRequestTimeoutDuration;
+    private final RpcLoadBalancer loadBalancer;
+    private final long latencyDecayNanos;
+    private final int flushConsolidationThreshold;
+    private final boolean compressionEnabled;
+    private final int compressionThreshold;
+    private final int compressionLevel;
+    /**
+     * 0 if batching is disabled.
+     */
+    private final int maxBatchSize;
+    /**
+     * Null if hedging is disabled.
+     */
+    @Nullable
+    private final RpcRequestHedger requestHedger;
 
     private CodecService codecService;
     private ConnectionService connectionService;
     private DiscoveryService discoveryService;
 
     private final Map<String, RpcEndpoint> nodeIdToEndpoint = new ConcurrentHashMap<>(32);
+    private final Map<String, RpcRequestBatcher> nodeIdToBatcher = new ConcurrentHashMap<>(32);
 
     public RpcService(ApplicationContext context, NodeType nodeType, RpcProperties rpcProperties) {
         this.nodeType = nodeType;
         this.requestExecutor = new RpcRequestExecutor(context);
         defaultRequestTimeoutDuration = Duration.ofMillis(rpcProperties.getRequestTimeoutMillis());
+        loadBalancer = RpcLoadBalancer.create(rpcProperties.getLoadBalancingStrategy());
+        latencyDecayNanos = Duration.ofMillis(rpcProperties.getPeakEwmaDecayMillis())
+                .toNanos();
+        flushConsolidationThreshold = rpcProperties.getFlushConsolidationThreshold();
+        RpcCompressionProperties compressionProperties = rpcProperties.getCompression();
+        compressionEnabled = compressionProperties.isEnabled();
+        compressionThreshold = compressionProperties.getThreshold();
+        compressionLevel = compressionProperties.getLevel();
+        RpcBatchProperties batchProperties = rpcProperties.getBatch();
+        maxBatchSize = batchProperties.isEnabled()
+                ? batchProperties.getMaxSize()
+                : 0;
+        RpcHedgingProperties hedgingProperties = rpcProperties.getHedging();
+        requestHedger = hedgingProperties.isEnabled()
+                ? new RpcRequestHedger(hedgingProperties)
+                : null;
     }
 
     @Override
@@ -113,6 +154,17 @@ public class RpcService implements ClusterService {
                 ChannelOperations<?, ?> conn = connection.getConnection();
                 conn.addHandlerLast("rpcRequestFrameDecoder", new RpcFrameDecoder());
                 conn.addHandlerLast("rpcRequestFrameEncoder", RpcFrameEncoder.INSTANCE);
+                if (flushConsolidationThreshold > 0) {
+                    // Consolidate the flushes of the frames written in the same event loop cycle
+                    // into one flush (i.e. one write syscall) instead of one flush per frame.
+                    conn.addHandlerLast("rpcFlushConsolidation",
+                            new FlushConsolidationHandler(flushConsolidationThreshold, true));
+                }
+                if (compressionEnabled) {
+                    // Disabled until compression is negotiated for the connection
+                    conn.addHandlerLast("rpcFrameCompressor",
+                            new RpcFrameCompressor(compressionThreshold, compressionLevel));
+                }
             }
 
             /**
@@ -126,8 +178,20 @@ public class RpcService implements ClusterService {
             public void onConnectionClosed() {
                 if (connection != null) {
                     String nodeId = connection.getNodeId();
-                    if (nodeId != null) {
+                    if (nodeId == null) {
+                        return;
+                    }
+                    // The endpoint of a stripe is the endpoint of its primary connection
+                    // unless no endpoint existed when the stripe received the first response.
+                    if (connection.isStripe()) {
+                        RpcEndpoint existingEndpoint = nodeIdToEndpoint.get(nodeId);
+                        if (existingEndpoint != null
+                                && existingEndpoint.getConnection() == connection) {
+                            nodeIdToEndpoint.remove(nodeId, existingEndpoint);
+                        }
+                    } else {
                         nodeIdToEndpoint.remove(nodeId);
+                        nodeIdToBatcher.remove(nodeId);
                     }
                 }
             }
@@ -135,6 +199,9 @@ public class RpcService implements ClusterService {
             @Override
             public void onOpeningHandshakeCompleted(Member member) {
                 endpoint = getOrCreateEndpoint(member.getNodeId(), connection);
+                if (connection.isLocalNodeClient()) {
+                    negotiateCompression(connection);
+                }
             }
 
             @Override
@@ -237,6 +304,51 @@ public class RpcService implements ClusterService {
         });
     }
 
+    // Compression
+
+    /**
+     * Negotiates with the member whether to compress the frames sent over the connection. Only
+     * the client side of a connection should initiate the negotiation.
+     */
+    public void negotiateCompression(TurmsConnection connection) {
+        if (!compressionEnabled) {
+            return;
+        }
+        String nodeId = connection.getNodeId();
+        CompressionNegotiationRequest request =
+                new CompressionNegotiationRequest(CompressionNegotiationRequest.ALGORITHM_DEFLATE);
+        requestResponse(nodeId, request, null, connection).subscribe(algorithm -> {
+            if (algorithm == CompressionNegotiationRequest.ALGORITHM_DEFLATE) {
+                enableCompression(connection);
+                LOGGER.info("Enabled the compression of the connection to the member: {}", nodeId);
+            }
+        }, t -> LOGGER.warn(
+                "Failed to negotiate the compression of the connection to the member ({}), "
+                        + "so the connection will stay uncompressed",
+                nodeId,
+                t));
+    }
+
+    public byte handleCompressionNegotiationRequest(TurmsConnection connection, byte algorithm) {
+        if (!compressionEnabled || algorithm != CompressionNegotiationRequest.ALGORITHM_DEFLATE) {
+            return CompressionNegotiationRequest.ALGORITHM_NONE;
+        }
+        enableCompression(connection);
+        return CompressionNegotiationRequest.ALGORITHM_DEFLATE;
+    }
+
+    private void enableCompression(TurmsConnection connection) {
+        RpcFrameCompressor compressor = connection.getConnection()
+                .channel()
+                .pipeline()
+                .get(RpcFrameCompressor.class);
+        if (compressor != null) {
+            compressor.setEnabled(true);
+        }
+    }
+
+    // Endpoint
+
     public RpcEndpoint getOrCreateEndpoint(String nodeId) {
         return getOrCreateEndpoint(nodeId, null);
     }
@@ -265,7 +377,7 @@ public class RpcService implements ClusterService {
                                 + " does not exist");
             }
         }
-        return new RpcEndpoint(nodeId, connection);
+        return new RpcEndpoint(nodeId, connection, latencyDecayNanos);
     }
 
     /**
@@ -274,7 +386,6 @@ public class RpcService implements ClusterService {
      *         no peer exists).
      */
     public <T> Mono<T> requestResponse(RpcRequest<T> request) {
-        // TODO: Provide richer load balancing strategies
         List<Member> otherMembers = getOtherActiveConnectedMembersToRespond(request);
         int size = otherMembers.size();
         if (size == 0) {
@@ -282,56 +393,62 @@ public class RpcService implements ClusterService {
             return Mono.error(RpcException.get(RpcErrorCode.MEMBER_NOT_FOUND,
                     ResponseStatusCode.SERVER_UNAVAILABLE));
         }
-        // use System.currentTimeMillis() instead of "RandomUtil.nextPositiveInt()" for better
-        // performance
-        int index = (int) (System.currentTimeMillis() % size);
-        Member member = otherMembers.get(index);
-        // fast path
-        if (!member.getStatus()
-                .isHealthy()) {
-            // slow path
-            int retry = 0;
-            boolean isUnhealthy;
-            do {
-                retry++;
-                index = (index + retry) % size;
-                member = otherMembers.get(index);
-                isUnhealthy = !member.getStatus()
-                        .isHealthy();
-            } while (isUnhealthy && retry < size);
-            if (isUnhealthy) {
-                request.release();
-                return Mono.error(RpcException.get(RpcErrorCode.HEALTHY_MEMBER_NOT_FOUND,
-                        ResponseStatusCode.SERVER_UNAVAILABLE));
+        List<RpcEndpoint> endpoints = new ArrayList<>(size);
+        Exception endpointException = null;
+        for (Member member : otherMembers) {
+            if (!member.getStatus()
+                    .isHealthy()) {
+                continue;
+            }
+            try {
+                endpoints.add(getOrCreateEndpoint(member.getNodeId()));
+            } catch (Exception e) {
+                endpointException = e;
             }
         }
-        String memberNodeId = member.getNodeId();
-        RpcEndpoint client;
-        try {
-            client = getOrCreateEndpoint(memberNodeId);
-        } catch (Exception e) {
+        if (endpoints.isEmpty()) {
             request.release();
-            return Mono.error(e);
+            return Mono.error(endpointException == null
+                    ? RpcException.get(RpcErrorCode.HEALTHY_MEMBER_NOT_FOUND,
+                            ResponseStatusCode.SERVER_UNAVAILABLE)
+                    : endpointException);
         }
+        RpcEndpoint client = loadBalancer.choose(endpoints);
+        String memberNodeId = client.getNodeId();
         // Retain to invoke requestResponse() again if an error occurs
         request.retain();
-        return requestResponse(client, request, defaultRequestTimeoutDuration)
-                .onErrorResume(throwable -> {
-                    if (ThrowableUtil.isDisconnectedClientError(throwable)) {
-                        for (Member newMember : getOtherActiveConnectedMembersToRespond(request)) {
-                            String newMemberId = newMember.getNodeId();
-                            if (!newMemberId.equals(memberNodeId)
-                                    && newMember.getStatus()
-                                            .isHealthy()) {
-                                return requestResponse(newMemberId,
-                                        request,
-                                        defaultRequestTimeoutDuration);
-                            }
-                        }
+        Mono<T> response = requestResponse(client, request, defaultRequestTimeoutDuration);
+        if (requestHedger != null && endpoints.size() > 1) {
+            response = requestHedger.hedge(request, response, () -> {
+                List<RpcEndpoint> otherEndpoints = new ArrayList<>(endpoints.size() - 1);
+                for (RpcEndpoint endpoint : endpoints) {
+                    if (endpoint != client) {
+                        otherEndpoints.add(endpoint);
                     }
-                    // No need to translate the error because it should have been translated
-                    return Mono.error(throwable);
-                })
+                }
+                // Retain because sending the request will release it by 1
+                request.retain();
+                return requestResponse(loadBalancer.choose(otherEndpoints),
+                        request,
+                        defaultRequestTimeoutDuration);
+            });
+        }
+        return response.onErrorResume(throwable -> {
+            if (ThrowableUtil.isDisconnectedClientError(throwable)) {
+                for (Member newMember : getOtherActiveConnectedMembersToRespond(request)) {
+                    String newMemberId = newMember.getNodeId();
+                    if (!newMemberId.equals(memberNodeId)
+                            && newMember.getStatus()
+                                    .isHealthy()) {
+                        return requestResponse(newMemberId,
+                                request,
+                                defaultRequestTimeoutDuration);
+                    }
+                }
+            }
+            // No need to translate the error because it should have been translated
+            return Mono.error(throwable);
+        })
                 .doFinally(signal -> request.release());
     }
 
@@ -373,7 +490,7 @@ public class RpcService implements ClusterService {
                         request.getTracingContext()), request, null, memberNodeId);
             }
             RpcEndpoint endpoint = getOrCreateEndpoint(memberNodeId, connection);
-            return requestResponse0(endpoint, request, timeout);
+            return requestResponse0(endpoint, request, timeout, connection);
         } catch (Exception e) {
             request.release();
             return Mono.error(e);
@@ -390,12 +507,52 @@ public class RpcService implements ClusterService {
             RpcRequest<T> request,
             @Nullable Duration timeout) {
         try {
-            return requestResponse0(connection, request, timeout);
+            return requestResponse0(connection, request, timeout, null);
         } catch (Exception e) {
             return Mono.error(e);
         }
     }
 
+    /**
+     * Sends the request in a batch with the other requests sent to the member at the same time
+     * (i.e. before the event loop of the connection runs the flush task), which saves frames and
+     * dispatches for bursts of small requests. Falls back to
+     * {@link #requestResponse(String, RpcRequest)} if batching is disabled.
+     *
+     * @return 1. an empty publisher if the peer responds with a null value; 2. a non-empty
+     *         publisher if the peer responds with a non-null value; 3. error for other cases (e.g.
+     *         no peer exists).
+     */
+    public <T> Mono<T> requestResponseInBatch(String memberNodeId, RpcRequest<T> request) {
+        if (maxBatchSize == 0
+                || discoveryService.getLocalNodeStatusManager()
+                        .isLocalNodeId(memberNodeId)) {
+            return requestResponse(memberNodeId, request);
+        }
+        RpcRequestBatcher batcher;
+        try {
+            assertCurrentNodeIsAllowedToSend(request);
+            assertMemberIsAllowedToRespond(memberNodeId, request);
+            batcher = nodeIdToBatcher.computeIfAbsent(memberNodeId,
+                    nodeId -> new RpcRequestBatcher(
+                            nodeId,
+                            maxBatchSize,
+                            getOrCreateEndpoint(nodeId).getConnection()
+                                    .getConnection()
+                                    .channel()
+                                    .eventLoop(),
+                            this::sendBatchedRequest));
+        } catch (Exception e) {
+            request.release();
+            return Mono.error(e);
+        }
+        Mono<T> mono = Mono.deferContextual(context -> {
+            addTraceIdToRequestFromContext(context, request);
+            return batcher.add(request);
+        });
+        return observe(mono, request, memberNodeId, defaultRequestTimeoutDuration);
+    }
+
     /**
      * @return 1. an empty publisher if all peers respond with an empty payload; 2. a non-empty
      *         publisher if the peer responds with an non-empty valid payload; 3. error for other
@@ -455,10 +612,15 @@ public class RpcService implements ClusterService {
 
     // Internal implementations
 
+    /**
+     * @param connection the connection to send the request. If null, the request will be sent
+     *                   over the primary connection of the endpoint or one of its stripes.
+     */
     private <T> Mono<T> requestResponse0(
             RpcEndpoint endpoint,
             RpcRequest<T> request,
-            @Nullable Duration timeout) {
+            @Nullable Duration timeout,
+            @Nullable TurmsConnection connection) {
         try {
             assertCurrentNodeIsAllowedToSend(request);
         } catch (Exception e) {
@@ -480,12 +642,31 @@ public class RpcService implements ClusterService {
                                 + request,
                         e));
             }
-            return endpoint.sendRequest(request, requestBody);
-        })
-                .timeout(timeout, HashedWheelScheduler.getDaemon())
+            return endpoint.sendRequest(request, requestBody, connection);
+        });
+        return observe(mono, request, endpoint.getNodeId(), timeout);
+    }
+
+    private <T> Mono<T> sendBatchedRequest(String memberNodeId, RpcRequest<T> request) {
+        RpcEndpoint endpoint;
+        try {
+            endpoint = getOrCreateEndpoint(memberNodeId);
+        } catch (Exception e) {
+            request.release();
+            return Mono.error(e);
+        }
+        return requestResponse0(endpoint, request, null, null);
+    }
+
+    private <T> Mono<T> observe(
+            Mono<T> mono,
+            RpcRequest<T> request,
+            String memberNodeId,
+            Duration timeout) {
+        mono = mono.timeout(timeout, HashedWheelScheduler.getDaemon())
                 .name(METRICS_NAME_RPC_REQUEST)
                 .tag(METRICS_TAG_REQUEST_NAME, request.name())
-                .tag(METRICS_TAG_REQUEST_TARGET_NODE_ID, endpoint.getNodeId());
+                .tag(METRICS_TAG_REQUEST_TARGET_NODE_ID, memberNodeId);
         Tag tag = request.tag();
         if (tag != null) {
             mono = mono.tag(tag.getKey(), tag.getValue());
@@ -636,12 +817,7 @@ public class RpcService implements ClusterService {
 
     private void assertCurrentNodeIsAllowedToSend(RpcRequest<?> request) {
         NodeTypeToHandleRpc type = request.nodeTypeToRequest();
-        boolean allowed = switch (type) {
-            case BOTH -> true;
-            case GATEWAY -> nodeType == NodeType.GATEWAY;
-            case SERVICE -> nodeType == NodeType.SERVICE;
-        };
-        if (!allowed) {
+        if (!type.matches(nodeType)) {
             throw new IllegalArgumentException(
                     "The node type of the current server is: "
                             + nodeType
@@ -652,4 +828,29 @@ public class RpcService implements ClusterService {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * @implNote The batch request can be handled by any node type, so the items of it must be
+     *           checked before being batched, or they will be run by the member that isn't
+     *           supposed to handle them.
+     */
+    private void assertMemberIsAllowedToRespond(String memberNodeId, RpcRequest<?> request) {
+        Member member = discoveryService.getMember(memberNodeId);
+        if (member == null) {
+            // Let the endpoint report that the member is not connected
+            return;
+        }
+        NodeTypeToHandleRpc type = request.nodeTypeToRespond();
+        if (!type.matches(member.getNodeType())) {
+            throw new IllegalArgumentException(
+                    "The node type of the member \""
+                            + memberNodeId
+                            + "\" is: "
+                            + member.getNodeType()
+                            + ", which cannot respond to the request \""
+                            + request.name()
+                            + "\" that requires the node type: "
+                            + type);
+        }
+    }
+
+}
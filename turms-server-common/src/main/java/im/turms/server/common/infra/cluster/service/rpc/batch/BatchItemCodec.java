@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+
+import im.turms.server.common.infra.cluster.service.codec.codec.Codec;
+import im.turms.server.common.infra.cluster.service.codec.codec.CodecPool;
+import im.turms.server.common.infra.cluster.service.codec.exception.CodecNotFoundException;
+import im.turms.server.common.infra.cluster.service.codec.io.CodecStream;
+import im.turms.server.common.infra.cluster.service.codec.io.CodecStreamInput;
+
+/**
+ * Encodes and decodes the items of {@link BatchRequest} and {@link BatchResponse}.
+ * <p>
+ * Format: Item count (varint32) + Items, and each item is: Codec ID (2 bytes) + Body length (4
+ * bytes) + Body. The body of each item is the same as the body of the item when sent alone, so
+ * the codecs of items don't need to know whether they are batched.
+ *
+ * @author James Chen
+ */
+final class BatchItemCodec {
+
+    private static final int ITEM_HEADER_LENGTH = Short.BYTES + Integer.BYTES;
+
+    private BatchItemCodec() {
+    }
+
+    static ByteBuf encodeItems(List<?> items) {
+        CompositeByteBuf buffer =
+                PooledByteBufAllocator.DEFAULT.compositeDirectBuffer(items.size() * 2);
+        try {
+            for (Object item : items) {
+                encodeItem(buffer, item);
+            }
+        } catch (Exception e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer;
+    }
+
+    private static void encodeItem(CompositeByteBuf buffer, Object item) {
+        Codec<Object> codec = CodecPool.getCodec(item.getClass());
+        if (codec == null) {
+            throw new CodecNotFoundException(
+                    "Could not find the codec for the class: "
+                            + item.getClass()
+                                    .getName());
+        }
+        ByteBuf byteBufToComposite = codec.byteBufToComposite(item);
+        int initialCapacity = codec.initialCapacity(item);
+        ByteBuf itemBuffer = PooledByteBufAllocator.DEFAULT
+                .directBuffer(ITEM_HEADER_LENGTH + Math.max(initialCapacity, 0))
+                .writeShort(codec.getCodecId()
+                        .getId())
+                // Placeholder for the body length
+                .writeInt(0);
+        try {
+            codec.write(new CodecStream(itemBuffer), item);
+        } catch (Exception e) {
+            itemBuffer.release();
+            if (byteBufToComposite != null) {
+                byteBufToComposite.release();
+            }
+            throw e;
+        }
+        int bodyLength = itemBuffer.readableBytes() - ITEM_HEADER_LENGTH;
+        if (byteBufToComposite != null) {
+            bodyLength += byteBufToComposite.readableBytes();
+        }
+        itemBuffer.setInt(Short.BYTES, bodyLength);
+        buffer.addComponent(true, itemBuffer);
+        if (byteBufToComposite != null) {
+            buffer.addComponent(true, byteBufToComposite);
+        }
+    }
+
+    /**
+     * @implNote The method ensures the decoded items will be released if it fails.
+     */
+    static <T> List<T> decodeItems(CodecStreamInput input) {
+        int size = input.readVarint32();
+        List<T> items = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                int codecId = input.readShort() & 0xFFFF;
+                Codec<T> codec = CodecPool.getCodec(codecId);
+                if (codec == null) {
+                    throw new CodecNotFoundException(
+                            "Could not find the codec for the ID: "
+                                    + codecId);
+                }
+                int bodyLength = input.readInt();
+                // Use a slice so that the codec of the item
+                // can only read the body of the item
+                ByteBuf body = input.readSlice(bodyLength);
+                items.add(codec.read(new CodecStream(body)));
+            }
+        } catch (Exception e) {
+            for (T item : items) {
+                ReferenceCountUtil.release(item);
+            }
+            throw e;
+        }
+        return items;
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.util.ReferenceCountUtil;
+import lombok.Getter;
+import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import im.turms.server.common.access.common.ResponseStatusCode;
+import im.turms.server.common.infra.cluster.node.Node;
+import im.turms.server.common.infra.cluster.node.NodeType;
+import im.turms.server.common.infra.cluster.service.rpc.NodeTypeToHandleRpc;
+import im.turms.server.common.infra.cluster.service.rpc.RpcErrorCode;
+import im.turms.server.common.infra.cluster.service.rpc.RpcRequestExecutor;
+import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.infra.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.infra.lang.Null;
+
+/**
+ * An envelope of multiple RPC requests sent to the same member in one frame, which are run
+ * concurrently by the member, and the responses of them are returned in one {@link BatchResponse}
+ * in the same order.
+ *
+ * @author James Chen
+ * @implNote 1. The reference count of a batch request is the reference count of its items, so
+ *           that the items can be retained and released by the callers that only know the batch
+ *           request, e.g. {@link reactor.netty.channel.FluxReceive}.
+ *           <p>
+ *           2. Because a batch request can be handled by any node type, the node type of each item
+ *           is checked by the sender when batching it and by the receiver before running it.
+ */
+public class BatchRequest extends RpcRequest<BatchResponse> {
+
+    private static final String NAME = "batch";
+    private static RpcRequestExecutor requestExecutor;
+    private static NodeType nodeType;
+
+    @Getter
+    private final List<RpcRequest<?>> requests;
+
+    public BatchRequest(List<RpcRequest<?>> requests) {
+        this.requests = requests;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchRequest{"
+                + "name='"
+                + name()
+                + "'"
+                + ", requestTime="
+                + getRequestTime()
+                + ", tracingContext="
+                + getTracingContext()
+                + ", requests="
+                + requests
+                + '}';
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRequest() {
+        return NodeTypeToHandleRpc.BOTH;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRespond() {
+        return NodeTypeToHandleRpc.BOTH;
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        super.setApplicationContext(applicationContext);
+        if (requestExecutor == null) {
+            Node node = getBean(Node.class);
+            nodeType = node.getNodeType();
+            requestExecutor = node.getRpcService()
+                    .getRequestExecutor();
+        }
+    }
+
+    @Override
+    public Mono<BatchResponse> callAsync() {
+        int size = requests.size();
+        List<Mono<Object>> responses = new ArrayList<>(size);
+        for (RpcRequest<?> request : requests) {
+            NodeTypeToHandleRpc nodeTypeToRespond = request.nodeTypeToRespond();
+            if (!nodeTypeToRespond.matches(nodeType)) {
+                request.release();
+                responses.add(Mono.just(RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC,
+                        ResponseStatusCode.ILLEGAL_ARGUMENT,
+                        "The node type of the current server is: "
+                                + nodeType
+                                + ", which cannot respond to the request \""
+                                + request.name()
+                                + "\" that requires the node type: "
+                                + nodeTypeToRespond)));
+                continue;
+            }
+            // Every request will be released by the executor
+            responses.add(requestExecutor
+                    .runRpcRequest(request.getTracingContext(),
+                            request,
+                            getConnection(),
+                            getFromNodeId())
+                    .cast(Object.class)
+                    .onErrorResume(RpcException.class, Mono::just)
+                    .defaultIfEmpty(Null.INSTANCE));
+        }
+        return Flux.mergeSequential(responses)
+                .collectList()
+                .map(BatchResponse::new);
+    }
+
+    // Adaptor to ReferenceCounted
+
+    @Override
+    public int refCnt() {
+        return requests.isEmpty()
+                ? 1
+                : requests.getFirst()
+                        .refCnt();
+    }
+
+    @Override
+    public BatchRequest retain() {
+        for (RpcRequest<?> request : requests) {
+            request.retain();
+        }
+        return this;
+    }
+
+    @Override
+    public BatchRequest retain(int increment) {
+        for (RpcRequest<?> request : requests) {
+            request.retain(increment);
+        }
+        return this;
+    }
+
+    @Override
+    public BatchRequest touch() {
+        for (RpcRequest<?> request : requests) {
+            request.touch();
+        }
+        return this;
+    }
+
+    @Override
+    public BatchRequest touch(Object hint) {
+        for (RpcRequest<?> request : requests) {
+            request.touch(hint);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        boolean released = true;
+        for (RpcRequest<?> request : requests) {
+            released &= ReferenceCountUtil.release(request);
+        }
+        return released;
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        boolean released = true;
+        for (RpcRequest<?> request : requests) {
+            released &= ReferenceCountUtil.release(request, decrement);
+        }
+        return released;
+    }
+
+}
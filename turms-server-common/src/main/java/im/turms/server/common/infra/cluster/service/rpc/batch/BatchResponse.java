@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.batch;
+
+import java.util.List;
+
+/**
+ * @param responses the responses of the requests in {@link BatchRequest} in the same order. Each
+ *                  response is either the value returned by the request, or {@code null} if the
+ *                  request returns no value, or an
+ *                  {@link im.turms.server.common.infra.cluster.service.rpc.exception.RpcException}
+ *                  if the request fails.
+ * @author James Chen
+ */
+public record BatchResponse(
+        List<Object> responses
+) {
+}
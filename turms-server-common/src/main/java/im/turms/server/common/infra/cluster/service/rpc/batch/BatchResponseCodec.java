@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.batch;
+
+import io.netty.buffer.ByteBuf;
+
+import im.turms.server.common.infra.cluster.service.codec.codec.Codec;
+import im.turms.server.common.infra.cluster.service.codec.codec.CodecId;
+import im.turms.server.common.infra.cluster.service.codec.io.CodecStreamInput;
+import im.turms.server.common.infra.cluster.service.codec.io.CodecStreamOutput;
+
+/**
+ * @author James Chen
+ * @see BatchItemCodec
+ */
+public class BatchResponseCodec implements Codec<BatchResponse> {
+
+    @Override
+    public CodecId getCodecId() {
+        return CodecId.RPC_BATCH_RESPONSE;
+    }
+
+    @Override
+    public void write(CodecStreamOutput output, BatchResponse data) {
+        // The items are written by "byteBufToComposite"
+        output.writeVarint32(data.responses()
+                .size());
+    }
+
+    @Override
+    public BatchResponse read(CodecStreamInput input) {
+        return new BatchResponse(BatchItemCodec.decodeItems(input));
+    }
+
+    @Override
+    public int initialCapacity(BatchResponse data) {
+        return Integer.BYTES + 1;
+    }
+
+    @Override
+    public ByteBuf byteBufToComposite(BatchResponse data) {
+        return BatchItemCodec.encodeItems(data.responses());
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.netty.util.ReferenceCountUtil;
+import org.jctools.queues.MpscUnboundedArrayQueue;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.infra.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.infra.thread.ThreadSafe;
+
+/**
+ * Packs the requests sent to the same member at the same time into {@link BatchRequest}s.
+ * <p>
+ * The first request added to an empty batcher schedules a flush task on the executor (the event
+ * loop of the connection), so all requests added before the task runs (e.g. a burst of
+ * notifications) are sent in batches of at most "maxBatchSize" requests, and a single request is
+ * sent as is without the envelope.
+ *
+ * @author James Chen
+ */
+@ThreadSafe
+public class RpcRequestBatcher {
+
+    private static final int QUEUE_CHUNK_SIZE = 64;
+
+    private final String nodeId;
+    private final int maxBatchSize;
+    private final Executor executor;
+    private final RequestSender sender;
+    private final MpscUnboundedArrayQueue<PendingRequest> pendingRequests =
+            new MpscUnboundedArrayQueue<>(QUEUE_CHUNK_SIZE);
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean();
+
+    public RpcRequestBatcher(
+            String nodeId,
+            int maxBatchSize,
+            Executor executor,
+            RequestSender sender) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum batch size must be greater than 0, but got: "
+                            + maxBatchSize);
+        }
+        this.nodeId = nodeId;
+        this.maxBatchSize = maxBatchSize;
+        this.executor = executor;
+        this.sender = sender;
+    }
+
+    /**
+     * @implNote The method ensures the request will be released by 1 once sent.
+     */
+    public <T> Mono<T> add(RpcRequest<T> request) {
+        Sinks.One<T> sink = Sinks.one();
+        pendingRequests.offer(new PendingRequest((RpcRequest<Object>) request,
+                (Sinks.One<Object>) sink));
+        if (isFlushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // e.g. the event loop is shutting down
+                flush();
+            }
+        }
+        return sink.asMono();
+    }
+
+    private void flush() {
+        // Reset before draining so that the requests added during draining
+        // will schedule another flush if they are not drained
+        isFlushScheduled.set(false);
+        List<PendingRequest> batch = null;
+        PendingRequest pendingRequest;
+        while ((pendingRequest = pendingRequests.poll()) != null) {
+            if (batch == null) {
+                batch = new ArrayList<>(
+                        Math.min(maxBatchSize, pendingRequests.size() + 1));
+            }
+            batch.add(pendingRequest);
+            if (batch.size() == maxBatchSize) {
+                send(batch);
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    private void send(List<PendingRequest> batch) {
+        int size = batch.size();
+        if (size == 1) {
+            Sinks.One<Object> sink = batch.getFirst().sink;
+            sender.send(nodeId, batch.getFirst().request)
+                    .subscribe(value -> emitValue(sink, value),
+                            sink::tryEmitError,
+                            sink::tryEmitEmpty);
+            return;
+        }
+        List<RpcRequest<?>> requests = new ArrayList<>(size);
+        for (PendingRequest pendingRequest : batch) {
+            requests.add(pendingRequest.request);
+        }
+        sender.send(nodeId, new BatchRequest(requests))
+                .subscribe(response -> {
+                    List<Object> responses = response.responses();
+                    int responseCount = responses.size();
+                    for (int i = 0; i < size; i++) {
+                        Sinks.One<Object> sink = batch.get(i).sink;
+                        if (i >= responseCount) {
+                            sink.tryEmitError(new IllegalStateException(
+                                    "The batch response has only "
+                                            + responseCount
+                                            + " responses for "
+                                            + size
+                                            + " requests"));
+                            continue;
+                        }
+                        Object value = responses.get(i);
+                        if (value == null) {
+                            sink.tryEmitEmpty();
+                        } else if (value instanceof RpcException e) {
+                            sink.tryEmitError(e);
+                        } else {
+                            emitValue(sink, value);
+                        }
+                    }
+                }, t -> {
+                    for (PendingRequest pendingRequest : batch) {
+                        pendingRequest.sink.tryEmitError(t);
+                    }
+                }, () -> {
+                    // No effect on the sinks that have been resolved by the response
+                    for (PendingRequest pendingRequest : batch) {
+                        pendingRequest.sink.tryEmitError(
+                                new IllegalStateException("The batch response is missing"));
+                    }
+                });
+    }
+
+    private void emitValue(Sinks.One<Object> sink, Object value) {
+        // The value may hold a buffer, e.g. ServiceResponse
+        if (sink.tryEmitValue(value)
+                .isFailure()) {
+            ReferenceCountUtil.release(value);
+        }
+    }
+
+    public interface RequestSender {
+        /**
+         * @implNote The implementation should ensure the request will be released by 1.
+         */
+        <T> Mono<T> send(String nodeId, RpcRequest<T> request);
+    }
+
+    private record PendingRequest(
+            RpcRequest<Object> request,
+            Sinks.One<Object> sink
+    ) {
+    }
+
+}
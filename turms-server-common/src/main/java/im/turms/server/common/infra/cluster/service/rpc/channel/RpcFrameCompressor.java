@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.channel;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import lombok.Setter;
+
+import static im.turms.server.common.infra.metrics.CommonMetricNameConst.TURMS_RPC_FRAME_COMPRESSION_RATIO;
+import static reactor.netty.Metrics.REGISTRY;
+
+/**
+ * Compresses the RPC frames (without the length field) whose size is greater than or equal to the
+ * threshold once compression has been negotiated for the connection.
+ * <p>
+ * The format of a compressed frame: Codec ID with {@link #COMPRESSED_CODEC_ID_FLAG} (2 bytes) +
+ * the length of the uncompressed frame body (4 bytes) + the raw DEFLATE data of the frame body
+ * (i.e. the request ID and the payload).
+ *
+ * @author James Chen
+ * @implNote The handler is not sharable because each connection has its own {@link Deflater}, which
+ *           is only accessed by the event loop of the connection.
+ */
+public class RpcFrameCompressor extends ChannelOutboundHandlerAdapter {
+
+    /**
+     * Codec IDs never use the highest bit, so we use it to indicate whether the frame is
+     * compressed.
+     */
+    public static final int COMPRESSED_CODEC_ID_FLAG = 0x8000;
+    public static final int COMPRESSED_FRAME_HEADER_LENGTH = Short.BYTES + Integer.BYTES;
+
+    private static final DistributionSummary COMPRESSION_RATIO =
+            DistributionSummary.builder(TURMS_RPC_FRAME_COMPRESSION_RATIO)
+                    .description(
+                            "The ratio of the uncompressed size to the compressed size of RPC frames")
+                    .register(REGISTRY);
+
+    private final int threshold;
+    private final int level;
+    private Deflater deflater;
+
+    /**
+     * Whether compression has been negotiated for the connection.
+     */
+    @Setter
+    private volatile boolean enabled;
+
+    public RpcFrameCompressor(int threshold, int level) {
+        this.threshold = Math.max(threshold, COMPRESSED_FRAME_HEADER_LENGTH);
+        this.level = level;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!enabled || !(msg instanceof ByteBuf frame) || frame.readableBytes() < threshold) {
+            ctx.write(msg, promise);
+            return;
+        }
+        ByteBuf compressedFrame;
+        try {
+            compressedFrame = compress(frame);
+        } catch (Exception e) {
+            frame.release();
+            promise.setFailure(e);
+            return;
+        }
+        if (compressedFrame == null) {
+            ctx.write(frame, promise);
+            return;
+        }
+        COMPRESSION_RATIO.record((double) frame.readableBytes() / compressedFrame.readableBytes());
+        frame.release();
+        ctx.write(compressedFrame, promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    /**
+     * @return null if the compressed frame is not smaller than the uncompressed frame.
+     */
+    private ByteBuf compress(ByteBuf frame) {
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        int frameLength = frame.readableBytes();
+        int bodyLength = frameLength - Short.BYTES;
+        int readerIndex = frame.readerIndex();
+        ByteBuf compressedFrame = PooledByteBufAllocator.DEFAULT.directBuffer(frameLength)
+                .writeShort(frame.getUnsignedShort(readerIndex) | COMPRESSED_CODEC_ID_FLAG)
+                .writeInt(bodyLength);
+        ByteBuffer output = compressedFrame.nioBuffer(COMPRESSED_FRAME_HEADER_LENGTH,
+                frameLength - COMPRESSED_FRAME_HEADER_LENGTH);
+        boolean isCompressed = false;
+        try {
+            for (ByteBuffer input : frame.nioBuffers(readerIndex + Short.BYTES, bodyLength)) {
+                deflater.setInput(input);
+                while (!deflater.needsInput()) {
+                    if (!output.hasRemaining()) {
+                        return null;
+                    }
+                    deflater.deflate(output);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (!output.hasRemaining()) {
+                    return null;
+                }
+                deflater.deflate(output);
+            }
+            compressedFrame.writerIndex(COMPRESSED_FRAME_HEADER_LENGTH + output.position());
+            isCompressed = true;
+            return compressedFrame;
+        } finally {
+            deflater.reset();
+            if (!isCompressed) {
+                compressedFrame.release();
+            }
+        }
+    }
+
+}
@@ -17,9 +17,13 @@
 
 package im.turms.server.common.infra.cluster.service.rpc.channel;
 
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
@@ -44,6 +48,11 @@ public class RpcFrameDecoder extends ProtobufVarint32FrameDecoder {
     private static final int HEADER_LENGTH = Short.BYTES;
     private static final int UNSET_CODEC_ID = Integer.MIN_VALUE;
 
+    /**
+     * Created lazily because only the connections that negotiated compression need it.
+     */
+    private Inflater inflater;
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out)
             throws Exception {
@@ -86,7 +95,16 @@ public class RpcFrameDecoder extends ProtobufVarint32FrameDecoder {
                                 + HEADER_LENGTH);
                 throw new CorruptedFrameException(reason);
             }
-            return decodePayload(ctx, frame);
+            if ((frame.getUnsignedShort(frame.readerIndex())
+                    & RpcFrameCompressor.COMPRESSED_CODEC_ID_FLAG) == 0) {
+                return decodePayload(ctx, frame);
+            }
+            ByteBuf decompressedFrame = decompress(ctx, frame);
+            try {
+                return decodePayload(ctx, decompressedFrame);
+            } finally {
+                decompressedFrame.release();
+            }
         } finally {
             // For some RPC requests, we deallocate the frame here,
             // but for other requests like "HandleServiceRequest",
@@ -96,6 +114,76 @@ public class RpcFrameDecoder extends ProtobufVarint32FrameDecoder {
         }
     }
 
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) {
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+
+    /**
+     * @see RpcFrameCompressor
+     */
+    private ByteBuf decompress(ChannelHandlerContext ctx, ByteBuf frame) {
+        int length = frame.readableBytes();
+        if (length < RpcFrameCompressor.COMPRESSED_FRAME_HEADER_LENGTH) {
+            String reason = ReactorNetty.format(ctx.channel(),
+                    "The buffer is too small to parse the header of the compressed frame. "
+                            + "Expecting the buffer length ("
+                            + length
+                            + ") to be greater than or equal to "
+                            + RpcFrameCompressor.COMPRESSED_FRAME_HEADER_LENGTH);
+            throw new CorruptedFrameException(reason);
+        }
+        int codecId = frame.readUnsignedShort() & ~RpcFrameCompressor.COMPRESSED_CODEC_ID_FLAG;
+        int bodyLength = frame.readInt();
+        if (bodyLength < 0) {
+            String reason = ReactorNetty.format(ctx.channel(),
+                    "Expected the length of the uncompressed frame body to be greater than or equal to 0, but got: "
+                            + bodyLength);
+            throw new CorruptedFrameException(reason);
+        }
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        ByteBuf decompressedFrame = PooledByteBufAllocator.DEFAULT
+                .directBuffer(Short.BYTES + bodyLength)
+                .writeShort(codecId);
+        ByteBuffer output = decompressedFrame.nioBuffer(Short.BYTES, bodyLength);
+        boolean isDecompressed = false;
+        try {
+            for (ByteBuffer input : frame.nioBuffers()) {
+                inflater.setInput(input);
+                while (!inflater.needsInput() && !inflater.finished()) {
+                    if (!output.hasRemaining() || inflater.needsDictionary()) {
+                        break;
+                    }
+                    inflater.inflate(output);
+                }
+            }
+            if (!inflater.finished() || output.hasRemaining()) {
+                String reason = ReactorNetty.format(ctx.channel(),
+                        "The compressed frame is corrupted. Expected the length of the uncompressed frame body to be "
+                                + bodyLength);
+                throw new CorruptedFrameException(reason);
+            }
+            decompressedFrame.writerIndex(Short.BYTES + bodyLength);
+            isDecompressed = true;
+            return decompressedFrame;
+        } catch (DataFormatException e) {
+            String reason = ReactorNetty.format(ctx.channel(),
+                    "Failed to decompress the frame: "
+                            + frame);
+            throw new CorruptedFrameException(reason, e);
+        } finally {
+            inflater.reset();
+            if (!isDecompressed) {
+                decompressedFrame.release();
+            }
+        }
+    }
+
     public RpcMessage decodePayload(ChannelHandlerContext ctx, ByteBuf frame) {
         int codecId = UNSET_CODEC_ID;
         try {
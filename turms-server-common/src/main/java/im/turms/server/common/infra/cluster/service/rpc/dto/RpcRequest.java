@@ -146,6 +146,15 @@ public abstract class RpcRequest<T> implements RpcMessage, ReferenceCounted {
         return null;
     }
 
+    /**
+     * @return the type of the request to decide whether the request can be hedged if it is
+     *         idempotent, or null if the request cannot be hedged.
+     */
+    @Nullable
+    public Object hedgingRequestType() {
+        return null;
+    }
+
     /**
      * Use a method instead of a field to avoid serializing/deserializing
      */
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.hedging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import im.turms.server.common.infra.thread.ThreadSafe;
+
+/**
+ * A token bucket that limits the number of hedged requests to a ratio of the requests that can be
+ * hedged: each request deposits "ratio" tokens, and each hedged request withdraws one token.
+ * <p>
+ * The balance is capped so that a long period of low latency can't accumulate enough tokens to
+ * hedge a burst of requests when all members slow down.
+ *
+ * @author James Chen
+ */
+@ThreadSafe
+public class HedgingBudget {
+
+    /**
+     * Use milli-tokens to avoid floating-point arithmetic.
+     */
+    private static final long TOKEN = 1000;
+    private static final long MAX_BALANCE = 100 * TOKEN;
+
+    private final long depositAmount;
+    private final AtomicLong balance = new AtomicLong();
+
+    public HedgingBudget(double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException(
+                    "The ratio must be in the range [0, 1], but got: "
+                            + ratio);
+        }
+        depositAmount = (long) (ratio * TOKEN);
+    }
+
+    public void deposit() {
+        if (depositAmount == 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if (current >= MAX_BALANCE) {
+                return;
+            }
+        } while (!balance.compareAndSet(current,
+                Math.min(MAX_BALANCE, current + depositAmount)));
+    }
+
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.hedging;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import im.turms.server.common.infra.thread.ThreadSafe;
+
+/**
+ * A histogram of latencies with logarithmic buckets (4 buckets per doubling), which estimates the
+ * percentiles of the recent latencies with a relative error of about 19% in O(1) space.
+ * <p>
+ * The counts are halved once the total count reaches twice the window size, so that the old
+ * latencies fade out.
+ *
+ * @author James Chen
+ */
+@ThreadSafe
+public class LatencyHistogram {
+
+    private static final int BUCKETS_PER_DOUBLING = 4;
+    /**
+     * Cover the latencies up to 2^25 microseconds (about 33 seconds).
+     */
+    private static final int BUCKET_COUNT = 25 * BUCKETS_PER_DOUBLING;
+    private static final double BUCKET_INDEX_FACTOR = BUCKETS_PER_DOUBLING / Math.log(2);
+
+    private final int windowSize;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private volatile long totalCount;
+
+    public LatencyHistogram(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public void record(long latencyNanos) {
+        long latencyMicros = Math.max(1, latencyNanos / 1000);
+        int index = Math.min(BUCKET_COUNT - 1,
+                (int) (Math.log(latencyMicros) * BUCKET_INDEX_FACTOR));
+        buckets.incrementAndGet(index);
+        // The lost updates of the total count caused by races are acceptable
+        // because it is only used to trigger the decay and filter out small samples
+        long count = totalCount + 1;
+        totalCount = count;
+        if (count >= windowSize * 2L) {
+            decay();
+        }
+    }
+
+    /**
+     * @return the estimated percentile in nanoseconds, or -1 if there are fewer recorded latencies
+     *         than the window size.
+     */
+    public long getPercentileNanos(double percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += buckets.get(i);
+        }
+        if (count < windowSize) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                // Use the upper bound of the bucket
+                return (long) (Math.exp((i + 1) / BUCKET_INDEX_FACTOR) * 1000);
+            }
+        }
+        return (long) (Math.exp(BUCKET_COUNT / BUCKET_INDEX_FACTOR) * 1000);
+    }
+
+    private synchronized void decay() {
+        if (totalCount < windowSize * 2L) {
+            return;
+        }
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long bucketCount;
+            long newBucketCount;
+            do {
+                bucketCount = buckets.get(i);
+                newBucketCount = bucketCount >> 1;
+            } while (!buckets.compareAndSet(i, bucketCount, newBucketCount));
+            count += newBucketCount;
+        }
+        totalCount = count;
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.hedging;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.netty.util.ReferenceCountUtil;
+import reactor.core.publisher.Mono;
+
+import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.infra.property.env.common.cluster.RpcHedgingProperties;
+import im.turms.server.common.infra.reactor.HashedWheelScheduler;
+
+import static im.turms.server.common.infra.metrics.CommonMetricNameConst.TURMS_RPC_REQUEST_HEDGE_ISSUED;
+import static im.turms.server.common.infra.metrics.CommonMetricNameConst.TURMS_RPC_REQUEST_HEDGE_WON;
+import static reactor.netty.Metrics.REGISTRY;
+
+/**
+ * Hedges the idempotent RPC requests: if a request has not been responded after the hedging
+ * delay, sends a duplicate request to another member, and uses the response that arrives first,
+ * so that one slow member (e.g. because of a GC pause or a slow database replica) won't dominate
+ * the tail latency.
+ *
+ * @author James Chen
+ */
+public class RpcRequestHedger {
+
+    private static final String METRICS_TAG_REQUEST_TYPE = "type";
+    private static final int LATENCY_WINDOW_SIZE = 1000;
+
+    private final Set<?> requestTypes;
+    private final long minDelayNanos;
+    private final double delayPercentile;
+    private final HedgingBudget budget;
+    private final Map<Object, RequestTypeStats> requestTypeToStats = new ConcurrentHashMap<>(16);
+
+    public RpcRequestHedger(RpcHedgingProperties properties) {
+        requestTypes = Set.copyOf(properties.getRequestTypes());
+        minDelayNanos = Duration.ofMillis(properties.getDelayMillis())
+                .toNanos();
+        delayPercentile = properties.getDelayPercentile();
+        budget = new HedgingBudget(properties.getBudgetRatio());
+    }
+
+    /**
+     * @param response       the response of the request sent to the chosen member.
+     * @param hedgedResponse the supplier to send the hedged request to another member, which is
+     *                       called only if the request needs to be hedged.
+     * @return {@code response} if the request cannot be hedged.
+     */
+    public <T> Mono<T> hedge(
+            RpcRequest<T> request,
+            Mono<T> response,
+            Supplier<Mono<T>> hedgedResponse) {
+        Object requestType = request.hedgingRequestType();
+        if (requestType == null || !requestTypes.contains(requestType)) {
+            return response;
+        }
+        budget.deposit();
+        RequestTypeStats stats =
+                requestTypeToStats.computeIfAbsent(requestType, RequestTypeStats::new);
+        long startTime = System.nanoTime();
+        Mono<T> recordedResponse = response
+                .doOnSuccess(value -> stats.latencies.record(System.nanoTime() - startTime));
+        Mono<T> delayedHedgedResponse = Mono
+                .delay(getDelay(stats), HashedWheelScheduler.getDaemon())
+                .flatMap(ignored -> {
+                    if (!budget.tryWithdraw()) {
+                        return Mono.never();
+                    }
+                    stats.issuedCounter.increment();
+                    return hedgedResponse.get();
+                });
+        AtomicBoolean isSettled = new AtomicBoolean();
+        // Ignore the error of the hedged request (e.g. the connection is closed)
+        // so that it won't fail a request that the original member may still respond.
+        // The subscription to the slower one will be cancelled
+        return Mono.firstWithSignal(settle(recordedResponse, isSettled, false),
+                settle(delayedHedgedResponse, isSettled, true)
+                        .doOnSuccess(value -> stats.wonCounter.increment()));
+    }
+
+    /**
+     * Only the first response that settles the request is propagated. The other one never signals,
+     * and its value (e.g. {@link io.netty.buffer.ByteBuf}) is released because the value won't be
+     * consumed by anyone.
+     */
+    private static <T> Mono<T> settle(
+            Mono<T> response,
+            AtomicBoolean isSettled,
+            boolean ignoreError) {
+        return response.materialize()
+                .flatMap(signal -> {
+                    if (ignoreError && signal.isOnError()) {
+                        return Mono.never();
+                    }
+                    if (isSettled.compareAndSet(false, true)) {
+                        return Mono.just(signal);
+                    }
+                    ReferenceCountUtil.release(signal.get());
+                    return Mono.never();
+                })
+                .dematerialize();
+    }
+
+    private Duration getDelay(RequestTypeStats stats) {
+        long delayNanos = minDelayNanos;
+        if (delayPercentile > 0) {
+            long percentileNanos = stats.latencies.getPercentileNanos(delayPercentile);
+            if (percentileNanos > delayNanos) {
+                delayNanos = percentileNanos;
+            }
+        }
+        return Duration.ofNanos(delayNanos);
+    }
+
+    private static class RequestTypeStats {
+        private final LatencyHistogram latencies = new LatencyHistogram(LATENCY_WINDOW_SIZE);
+        private final Counter issuedCounter;
+        private final Counter wonCounter;
+
+        private RequestTypeStats(Object requestType) {
+            String type = String.valueOf(requestType);
+            issuedCounter = Counter.builder(TURMS_RPC_REQUEST_HEDGE_ISSUED)
+                    .description("The number of hedged RPC requests")
+                    .tag(METRICS_TAG_REQUEST_TYPE, type)
+                    .register(REGISTRY);
+            wonCounter = Counter.builder(TURMS_RPC_REQUEST_HEDGE_WON)
+                    .description("The number of hedged RPC requests that were responded "
+                            + "before the original requests")
+                    .tag(METRICS_TAG_REQUEST_TYPE, type)
+                    .register(REGISTRY);
+        }
+    }
+
+}
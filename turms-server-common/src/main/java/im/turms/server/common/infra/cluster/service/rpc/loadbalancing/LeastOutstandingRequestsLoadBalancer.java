@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.loadbalancing;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Scans all endpoints, which is cheap because a cluster usually has only a few members.
+ *
+ * @author James Chen
+ */
+public class LeastOutstandingRequestsLoadBalancer implements RpcLoadBalancer {
+
+    @Override
+    public <T extends LoadBalancedEndpoint> T choose(List<T> endpoints) {
+        int size = endpoints.size();
+        if (size == 1) {
+            return endpoints.getFirst();
+        }
+        // Start from a random index so that the endpoints with the same count
+        // are chosen evenly instead of always choosing the first one.
+        int start = ThreadLocalRandom.current()
+                .nextInt(size);
+        T chosenEndpoint = null;
+        int minPendingRequestCount = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            T endpoint = endpoints.get((start + i) % size);
+            int pendingRequestCount = endpoint.getPendingRequestCount();
+            if (pendingRequestCount < minPendingRequestCount) {
+                minPendingRequestCount = pendingRequestCount;
+                chosenEndpoint = endpoint;
+            }
+        }
+        return chosenEndpoint;
+    }
+
+}
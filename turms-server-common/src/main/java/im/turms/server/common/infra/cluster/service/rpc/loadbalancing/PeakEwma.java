@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.loadbalancing;
+
+/**
+ * The peak EWMA (exponentially weighted moving average) of the response time, which jumps to a
+ * sample immediately if the sample is higher than the current average, and decays towards lower
+ * samples (and towards 0 when idle) according to the elapsed time.
+ *
+ * @author James Chen
+ */
+public final class PeakEwma {
+
+    private final double decayNanos;
+
+    private double average;
+    private long lastUpdateTimeNanos;
+
+    public PeakEwma(long decayNanos, long nowNanos) {
+        if (decayNanos <= 0) {
+            throw new IllegalArgumentException(
+                    "The decay time must be greater than 0, but got: "
+                            + decayNanos);
+        }
+        this.decayNanos = decayNanos;
+        lastUpdateTimeNanos = nowNanos;
+    }
+
+    public synchronized void observe(long latencyNanos, long nowNanos) {
+        if (latencyNanos > average) {
+            average = latencyNanos;
+        } else {
+            double weight = getWeight(nowNanos);
+            average = average * weight + latencyNanos * (1 - weight);
+        }
+        lastUpdateTimeNanos = Math.max(lastUpdateTimeNanos, nowNanos);
+    }
+
+    public synchronized long get(long nowNanos) {
+        // Decay towards 0 so that a member that was slow can be chosen again
+        // after it has been idle for a while.
+        average *= getWeight(nowNanos);
+        lastUpdateTimeNanos = Math.max(lastUpdateTimeNanos, nowNanos);
+        return (long) average;
+    }
+
+    private double getWeight(long nowNanos) {
+        long elapsedNanos = Math.max(nowNanos - lastUpdateTimeNanos, 0);
+        return Math.exp(-elapsedNanos / decayNanos);
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.loadbalancing;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the endpoint with the lower cost from two random endpoints, where the cost is the peak
+ * EWMA of the response time multiplied by the number of pending requests plus one, so a member
+ * that becomes slow is avoided as soon as one slow response is observed instead of after its
+ * pending requests pile up.
+ *
+ * @author James Chen
+ */
+public class PeakEwmaLoadBalancer implements RpcLoadBalancer {
+
+    /**
+     * The cost of an endpoint that has pending requests but no observed response time, which is
+     * high enough to prefer the endpoints with observed response times, but not so high as to
+     * overflow after being added by the pending request count.
+     */
+    private static final double PENALTY = Integer.MAX_VALUE;
+
+    @Override
+    public <T extends LoadBalancedEndpoint> T choose(List<T> endpoints) {
+        int size = endpoints.size();
+        if (size == 1) {
+            return endpoints.getFirst();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index1 = random.nextInt(size);
+        int index2 = random.nextInt(size - 1);
+        if (index2 >= index1) {
+            index2++;
+        }
+        T endpoint1 = endpoints.get(index1);
+        T endpoint2 = endpoints.get(index2);
+        return getCost(endpoint1) <= getCost(endpoint2)
+                ? endpoint1
+                : endpoint2;
+    }
+
+    private double getCost(LoadBalancedEndpoint endpoint) {
+        int pendingRequestCount = endpoint.getPendingRequestCount();
+        long latency = endpoint.getPeakEwmaLatencyNanos();
+        if (latency == 0 && pendingRequestCount > 0) {
+            return PENALTY + pendingRequestCount;
+        }
+        return (double) latency * (pendingRequestCount + 1);
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.loadbalancing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author James Chen
+ */
+public class RoundRobinLoadBalancer implements RpcLoadBalancer {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public <T extends LoadBalancedEndpoint> T choose(List<T> endpoints) {
+        int size = endpoints.size();
+        if (size == 1) {
+            return endpoints.getFirst();
+        }
+        return endpoints.get(Math.floorMod(counter.getAndIncrement(), size));
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.cluster.service.rpc.loadbalancing;
+
+import java.util.List;
+
+import im.turms.server.common.infra.property.constant.RpcLoadBalancingStrategy;
+
+/**
+ * @author James Chen
+ */
+public interface RpcLoadBalancer {
+
+    /**
+     * @param endpoints the endpoints of healthy members, which must not be empty.
+     */
+    <T extends LoadBalancedEndpoint> T choose(List<T> endpoints);
+
+    static RpcLoadBalancer create(RpcLoadBalancingStrategy strategy) {
+        return switch (strategy) {
+            case ROUND_ROBIN -> new RoundRobinLoadBalancer();
+            case LEAST_OUTSTANDING_REQUESTS -> new LeastOutstandingRequestsLoadBalancer();
+            case POWER_OF_TWO_CHOICES -> new PowerOfTwoChoicesLoadBalancer();
+            case PEAK_EWMA -> new PeakEwmaLoadBalancer();
+        };
+    }
+
+}
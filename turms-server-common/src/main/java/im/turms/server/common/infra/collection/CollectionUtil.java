@@ -291,7 +291,8 @@ public final class CollectionUtil {
         return IMMUTABLE_COLLECTION_CLASS.isInstance(iterable)
                 || IMMUTABLE_EMPTY_LIST_CLASS.isInstance(iterable)
                 || IMMUTABLE_EMPTY_SET_CLASS.isInstance(iterable)
-                || iterable instanceof ImmutableCollection;
+                || iterable instanceof ImmutableCollection
+                || iterable instanceof ImmutableSortedLongSet;
     }
 
     /**
@@ -620,6 +621,9 @@ public final class CollectionUtil {
         if (set.isEmpty()) {
             return set;
         }
+        if (set instanceof ImmutableSortedLongSet longSet && value instanceof Long longValue) {
+            return (Set<T>) longSet.without(longValue);
+        }
         if (isImmutable(set)) {
             Set<T> newSet = newSetWithExpectedSize(set.size());
             newSet.addAll(set);
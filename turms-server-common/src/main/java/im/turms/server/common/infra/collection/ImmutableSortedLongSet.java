@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.collection;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * An immutable set of distinct longs backed by a sorted {@code long[]}.
+ * <p>
+ * Compared with {@code HashSet<Long>}, the set retains 8 bytes per element instead of about 50
+ * bytes, and {@link #without(long)} excludes an element by returning a view sharing the same
+ * array, so a snapshot can be shared by concurrent readers (e.g. the group member IDs used to fan
+ * out messages) and excluding the sender does not copy the elements.
+ *
+ * @author James Chen
+ */
+public final class ImmutableSortedLongSet extends AbstractSet<Long> {
+
+    public static final ImmutableSortedLongSet EMPTY = new ImmutableSortedLongSet(new long[0], -1);
+
+    /**
+     * Sorted and distinct.
+     */
+    private final long[] values;
+    /**
+     * The index of the element excluded by {@link #without(long)}, or -1 if no element is
+     * excluded.
+     */
+    private final int excludedIndex;
+
+    private ImmutableSortedLongSet(long[] values, int excludedIndex) {
+        this.values = values;
+        this.excludedIndex = excludedIndex;
+    }
+
+    /**
+     * @param values will be sorted in place and must not be modified by the caller afterward.
+     */
+    public static ImmutableSortedLongSet of(long[] values) {
+        int length = values.length;
+        if (length == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(values);
+        int distinctCount = 1;
+        for (int i = 1; i < length; i++) {
+            if (values[i] != values[distinctCount - 1]) {
+                values[distinctCount++] = values[i];
+            }
+        }
+        return new ImmutableSortedLongSet(distinctCount == length
+                ? values
+                : Arrays.copyOf(values, distinctCount), -1);
+    }
+
+    /**
+     * @return a set that contains all elements of this set except the specified value. The
+     *         returned set shares the array with this set if no more than one element is excluded.
+     */
+    public ImmutableSortedLongSet without(long value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0 || index == excludedIndex) {
+            return this;
+        }
+        if (excludedIndex == -1) {
+            return new ImmutableSortedLongSet(values, index);
+        }
+        long[] newValues = new long[values.length - 2];
+        int newIndex = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i != index && i != excludedIndex) {
+                newValues[newIndex++] = values[i];
+            }
+        }
+        return new ImmutableSortedLongSet(newValues, -1);
+    }
+
+    public boolean containsLong(long value) {
+        int index = Arrays.binarySearch(values, value);
+        return index >= 0 && index != excludedIndex;
+    }
+
+    public void forEachLong(LongConsumer action) {
+        long[] localValues = values;
+        int localExcludedIndex = excludedIndex;
+        for (int i = 0; i < localValues.length; i++) {
+            if (i != localExcludedIndex) {
+                action.accept(localValues[i]);
+            }
+        }
+    }
+
+    public long[] toLongArray() {
+        if (excludedIndex == -1) {
+            return values.clone();
+        }
+        long[] array = new long[values.length - 1];
+        System.arraycopy(values, 0, array, 0, excludedIndex);
+        System.arraycopy(values,
+                excludedIndex + 1,
+                array,
+                excludedIndex,
+                values.length - excludedIndex - 1);
+        return array;
+    }
+
+    @Override
+    public int size() {
+        return excludedIndex == -1
+                ? values.length
+                : values.length - 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long value && containsLong(value);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new Itr();
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i != excludedIndex) {
+                hashCode += Long.hashCode(values[i]);
+            }
+        }
+        return hashCode;
+    }
+
+    private class Itr implements PrimitiveIterator.OfLong {
+        private int index = excludedIndex == 0
+                ? 1
+                : 0;
+
+        @Override
+        public boolean hasNext() {
+            return index < values.length;
+        }
+
+        @Override
+        public long nextLong() {
+            if (index >= values.length) {
+                throw new NoSuchElementException();
+            }
+            long value = values[index++];
+            if (index == excludedIndex) {
+                index++;
+            }
+            return value;
+        }
+    }
+
+}
@@ -41,6 +41,21 @@ import static im.turms.server.common.infra.net.InetAddressUtil.IPV6_BYTE_LENGTH;
  */
 public class Stream implements AutoCloseable, StreamInput, StreamOutput {
 
+    private static final byte COMPACT_LONGS_ENCODING_DELTA_VARINT = 1;
+    private static final byte COMPACT_LONGS_ENCODING_BITMAP = 2;
+
+    /**
+     * Like Roaring bitmaps, a container stores the values sharing the same high 48 bits. A
+     * container whose cardinality is greater than the max array container cardinality is stored
+     * as a bitmap of 2^16 bits, or as a sorted array of the low 16 bits otherwise.
+     */
+    private static final int BITMAP_CONTAINER_KEY_SHIFT = 16;
+    private static final int BITMAP_CONTAINER_LOW_BITS_MASK = 0xFFFF;
+    private static final int BITMAP_CONTAINER_MAX_ARRAY_CARDINALITY = 4096;
+    private static final int BITMAP_CONTAINER_BITMAP_BYTES = 8192;
+
+    public static final int MAX_VARINT64_SIZE = 10;
+
     final ByteBuf buf;
 
     public Stream(ByteBuf buf) {
@@ -435,6 +450,182 @@ public class Stream implements AutoCloseable, StreamInput, StreamOutput {
         return this;
     }
 
+    /**
+     * @param sortedValues the values sorted in ascending order without duplicates
+     */
+    public static int computeCompactLongsSize(long[] sortedValues) {
+        return Byte.BYTES + Math.min(computeDeltaVarintLongsSize(sortedValues),
+                computeBitmapLongsSize(sortedValues));
+    }
+
+    @Override
+    public Set<Long> readCompactLongSet() {
+        byte encoding = readByte();
+        return switch (encoding) {
+            case COMPACT_LONGS_ENCODING_DELTA_VARINT -> readDeltaVarintLongSet();
+            case COMPACT_LONGS_ENCODING_BITMAP -> readBitmapLongSet();
+            default -> throw new DeserializationException(
+                    "Unknown compact long encoding: "
+                            + encoding);
+        };
+    }
+
+    /**
+     * Write the values as either zigzag-varint deltas or a Roaring-style bitmap, whichever is
+     * smaller.
+     *
+     * @param sortedValues the values sorted in ascending order without duplicates
+     */
+    @Override
+    public Stream writeCompactLongs(long[] sortedValues) {
+        if (sortedValues == null) {
+            throw new IllegalArgumentException("The input longs must not be null");
+        }
+        if (computeBitmapLongsSize(sortedValues) < computeDeltaVarintLongsSize(sortedValues)) {
+            writeByte(COMPACT_LONGS_ENCODING_BITMAP);
+            writeBitmapLongs(sortedValues);
+        } else {
+            writeByte(COMPACT_LONGS_ENCODING_DELTA_VARINT);
+            writeDeltaVarintLongs(sortedValues);
+        }
+        return this;
+    }
+
+    private static int computeDeltaVarintLongsSize(long[] sortedValues) {
+        int size = computeVarint32Size(sortedValues.length);
+        long previous = 0;
+        for (long value : sortedValues) {
+            size += computeVarint64Size(encodeZigZag64(value - previous));
+            previous = value;
+        }
+        return size;
+    }
+
+    private Set<Long> readDeltaVarintLongSet() {
+        int size = readVarint32();
+        if (size < 0) {
+            throw new DeserializationException(
+                    "The long set size is negative: "
+                            + size);
+        }
+        Set<Long> longs = CollectionUtil.newSetWithExpectedSize(size);
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value += decodeZigZag64(readVarint64());
+            longs.add(value);
+        }
+        return longs;
+    }
+
+    private void writeDeltaVarintLongs(long[] sortedValues) {
+        writeVarint32(sortedValues.length);
+        long previous = 0;
+        for (long value : sortedValues) {
+            writeVarint64(encodeZigZag64(value - previous));
+            previous = value;
+        }
+    }
+
+    private static int computeBitmapLongsSize(long[] sortedValues) {
+        int length = sortedValues.length;
+        int containerCount = 0;
+        int size = computeVarint32Size(length);
+        long previousKey = 0;
+        int start = 0;
+        while (start < length) {
+            long key = sortedValues[start] >> BITMAP_CONTAINER_KEY_SHIFT;
+            int end = start + 1;
+            while (end < length && (sortedValues[end] >> BITMAP_CONTAINER_KEY_SHIFT) == key) {
+                end++;
+            }
+            int cardinality = end - start;
+            size += computeVarint64Size(encodeZigZag64(key - previousKey))
+                    + computeVarint32Size(cardinality)
+                    + (cardinality > BITMAP_CONTAINER_MAX_ARRAY_CARDINALITY
+                            ? BITMAP_CONTAINER_BITMAP_BYTES
+                            : cardinality * Short.BYTES);
+            containerCount++;
+            previousKey = key;
+            start = end;
+        }
+        return size + computeVarint32Size(containerCount);
+    }
+
+    private Set<Long> readBitmapLongSet() {
+        int size = readVarint32();
+        if (size < 0) {
+            throw new DeserializationException(
+                    "The long set size is negative: "
+                            + size);
+        }
+        int containerCount = readVarint32();
+        Set<Long> longs = CollectionUtil.newSetWithExpectedSize(size);
+        long key = 0;
+        for (int i = 0; i < containerCount; i++) {
+            key += decodeZigZag64(readVarint64());
+            long base = key << BITMAP_CONTAINER_KEY_SHIFT;
+            int cardinality = readVarint32();
+            if (cardinality > BITMAP_CONTAINER_MAX_ARRAY_CARDINALITY) {
+                for (int byteIndex = 0; byteIndex < BITMAP_CONTAINER_BITMAP_BYTES; byteIndex++) {
+                    int bits = readByte() & 0xFF;
+                    while (bits != 0) {
+                        int bitIndex = Integer.numberOfTrailingZeros(bits);
+                        longs.add(base | ((byteIndex << 3) | bitIndex));
+                        bits &= bits - 1;
+                    }
+                }
+            } else {
+                for (int j = 0; j < cardinality; j++) {
+                    longs.add(base | (readShort() & BITMAP_CONTAINER_LOW_BITS_MASK));
+                }
+            }
+        }
+        return longs;
+    }
+
+    private void writeBitmapLongs(long[] sortedValues) {
+        int length = sortedValues.length;
+        writeVarint32(length);
+        int containerCount = 0;
+        int start = 0;
+        while (start < length) {
+            long key = sortedValues[start] >> BITMAP_CONTAINER_KEY_SHIFT;
+            int end = start + 1;
+            while (end < length && (sortedValues[end] >> BITMAP_CONTAINER_KEY_SHIFT) == key) {
+                end++;
+            }
+            containerCount++;
+            start = end;
+        }
+        writeVarint32(containerCount);
+        long previousKey = 0;
+        start = 0;
+        while (start < length) {
+            long key = sortedValues[start] >> BITMAP_CONTAINER_KEY_SHIFT;
+            int end = start + 1;
+            while (end < length && (sortedValues[end] >> BITMAP_CONTAINER_KEY_SHIFT) == key) {
+                end++;
+            }
+            int cardinality = end - start;
+            writeVarint64(encodeZigZag64(key - previousKey));
+            writeVarint32(cardinality);
+            if (cardinality > BITMAP_CONTAINER_MAX_ARRAY_CARDINALITY) {
+                byte[] bitmap = new byte[BITMAP_CONTAINER_BITMAP_BYTES];
+                for (int i = start; i < end; i++) {
+                    int low = (int) (sortedValues[i] & BITMAP_CONTAINER_LOW_BITS_MASK);
+                    bitmap[low >>> 3] |= (byte) (1 << (low & 7));
+                }
+                writeBytes(bitmap);
+            } else {
+                for (int i = start; i < end; i++) {
+                    writeShort((int) (sortedValues[i] & BITMAP_CONTAINER_LOW_BITS_MASK));
+                }
+            }
+            previousKey = key;
+            start = end;
+        }
+    }
+
     @Override
     public float readFloat() {
         try {
@@ -757,6 +948,23 @@ public class Stream implements AutoCloseable, StreamInput, StreamOutput {
         return 5;
     }
 
+    public static int computeVarint64Size(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static long encodeZigZag64(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long decodeZigZag64(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
     @Override
     public Stream writeVarint32(int value) {
         while (true) {
@@ -805,6 +1013,32 @@ public class Stream implements AutoCloseable, StreamInput, StreamOutput {
         return out;
     }
 
+    @Override
+    public Stream writeVarint64(long value) {
+        while (true) {
+            if ((value & ~0x7FL) == 0) {
+                writeByte((int) value);
+                return this;
+            } else {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+        }
+    }
+
+    @Override
+    public long readVarint64() {
+        long out = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte tmp = readByte();
+            out |= (long) (tmp & 0x7F) << shift;
+            if (tmp >= 0) {
+                return out;
+            }
+        }
+        throw new DeserializationException("Failed to read a varint64");
+    }
+
     @Override
     public Stream writeNullableIp(@Nullable byte[] ipBytes) {
         if (ipBytes == null) {
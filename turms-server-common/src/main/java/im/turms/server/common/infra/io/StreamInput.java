@@ -58,6 +58,8 @@ public interface StreamInput {
     @Nullable
     Set<Long> readNullableLongSet();
 
+    Set<Long> readCompactLongSet();
+
     float readFloat();
 
     double readDouble();
@@ -85,6 +87,8 @@ public interface StreamInput {
 
     int readVarint32();
 
+    long readVarint64();
+
     @Nullable
     byte[] readNullableIp();
 
@@ -50,6 +50,8 @@ public interface StreamOutput {
 
     Stream writeSizeAndNullableLongs(@Nullable Collection<Long> values);
 
+    Stream writeCompactLongs(long[] sortedValues);
+
     Stream writeFloat(float value);
 
     Stream writeDouble(double value);
@@ -74,5 +76,7 @@ public interface StreamOutput {
 
     Stream writeVarint32(int value);
 
+    Stream writeVarint64(long value);
+
     Stream writeNullableIp(@Nullable byte[] ipBytes);
 }
\ No newline at end of file
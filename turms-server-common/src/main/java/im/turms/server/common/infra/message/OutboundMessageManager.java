@@ -219,17 +219,12 @@ public class OutboundMessageManager {
                             .next(),
                     excludedUserSessionIds);
         }
-        List<Mono<RecipientAndNodeIds>> getUserSessionsStatusMonos =
-                new ArrayList<>(recipientIdCount);
-        for (Long recipientId : recipientIds) {
-            getUserSessionsStatusMonos.add(userStatusService.getUserSessionsStatus(recipientId)
-                    .flatMap(sessionsStatus -> sessionsStatus.isOffline()
-                            ? Mono.empty()
-                            : Mono.just(new RecipientAndNodeIds(
-                                    recipientId,
-                                    sessionsStatus.getActiveNodeIds()))));
-        }
-        return Flux.merge(getUserSessionsStatusMonos)
+        return userStatusService.getUsersSessionsStatus(recipientIds)
+                .flatMap(sessionsStatus -> sessionsStatus.isOffline()
+                        ? Mono.empty()
+                        : Mono.just(new RecipientAndNodeIds(
+                                sessionsStatus.getUserId(),
+                                sessionsStatus.getActiveNodeIds())))
                 .doOnError(t -> messageData.release())
                 .collect(CollectorUtil.toList(recipientIdCount))
                 .flatMap(pairs -> {
@@ -358,7 +353,7 @@ public class OutboundMessageManager {
         List<Mono<Set<Long>>> sendNotificationRequests = new ArrayList<>(nodeCount);
         for (String nodeId : nodeIds) {
             sendNotificationRequests.add(node.getRpcService()
-                    .requestResponse(nodeId, request));
+                    .requestResponseInBatch(nodeId, request));
         }
         return collectOfflineRecipientIds(sendNotificationRequests)
                 .doFinally(signal -> messageData.release());
@@ -383,7 +378,7 @@ public class OutboundMessageManager {
                 excludedUserSessionIds,
                 excludedDeviceType);
         return node.getRpcService()
-                .requestResponse(nodeId, request);
+                .requestResponseInBatch(nodeId, request);
     }
 
     private Mono<Set<Long>> collectOfflineRecipientIds(List<Mono<Set<Long>>> monos) {
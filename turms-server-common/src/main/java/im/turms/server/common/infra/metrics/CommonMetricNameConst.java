@@ -39,6 +39,27 @@ public final class CommonMetricNameConst {
 
     public static final String TURMS_RPC_SERVER_TCP = "turms.rpc.server.tcp";
     public static final String TURMS_RPC_CLIENT_TCP = "turms.rpc.client.tcp";
+    public static final String TURMS_RPC_FRAME_COMPRESSION_RATIO =
+            "turms.rpc.frame.compression.ratio";
+    public static final String TURMS_RPC_REQUEST_HEDGE_ISSUED = "turms.rpc.request.hedge.issued";
+    public static final String TURMS_RPC_REQUEST_HEDGE_WON = "turms.rpc.request.hedge.won";
+
+    // User Status
+
+    public static final String TURMS_USER_SESSIONS_STATUS_CACHE =
+            "turms.user.sessions.status.cache";
+    public static final String TURMS_USER_SESSIONS_STATUS_CACHE_HIT =
+            TURMS_USER_SESSIONS_STATUS_CACHE
+                    + ".hit";
+    public static final String TURMS_USER_SESSIONS_STATUS_CACHE_MISS =
+            TURMS_USER_SESSIONS_STATUS_CACHE
+                    + ".miss";
+    public static final String TURMS_USER_SESSIONS_STATUS_CACHE_HIT_RATIO =
+            TURMS_USER_SESSIONS_STATUS_CACHE
+                    + ".hit.ratio";
+    public static final String TURMS_USER_SESSIONS_STATUS_CACHE_INVALIDATION =
+            TURMS_USER_SESSIONS_STATUS_CACHE
+                    + ".invalidation";
 
     // Client Request
 
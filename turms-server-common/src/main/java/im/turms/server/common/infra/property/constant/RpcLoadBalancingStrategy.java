@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.property.constant;
+
+/**
+ * @author James Chen
+ */
+public enum RpcLoadBalancingStrategy {
+    /**
+     * Choose the members in turn.
+     */
+    ROUND_ROBIN,
+    /**
+     * Choose the member with the fewest requests waiting for responses.
+     */
+    LEAST_OUTSTANDING_REQUESTS,
+    /**
+     * Choose two members randomly, and then choose the one with fewer requests waiting for
+     * responses.
+     */
+    POWER_OF_TWO_CHOICES,
+    /**
+     * Choose two members randomly, and then choose the one with the lower cost, which is the peak
+     * EWMA (exponentially weighted moving average) of the response time multiplied by the number
+     * of requests waiting for responses.
+     */
+    PEAK_EWMA
+}
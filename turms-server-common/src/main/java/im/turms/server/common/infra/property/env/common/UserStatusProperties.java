@@ -47,4 +47,14 @@ public class UserStatusProperties {
     @Min(1)
     protected int userSessionsStatusExpireAfter = 60;
 
+    @Description("Whether to use the server-assisted client-side caching of Redis (\"CLIENT TRACKING\" with RESP3) "
+            + "so that the cached users' sessions status are invalidated once they are changed in Redis. "
+            + "If Redis doesn't support it, the cache falls back to expire the entries after \"userSessionsStatusExpireAfter\"")
+    protected boolean trackUserSessionsStatus = true;
+
+    @Description("The life duration of each remote user's sessions status in the cache when the tracking is enabled. "
+            + "It only works as a safety net because the entries are invalidated by Redis once they are changed")
+    @Min(1)
+    protected int trackedUserSessionsStatusExpireAfter = 3600;
+
 }
\ No newline at end of file
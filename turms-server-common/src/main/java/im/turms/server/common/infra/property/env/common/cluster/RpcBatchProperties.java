@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.property.env.common.cluster;
+
+import jakarta.validation.constraints.Min;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import im.turms.server.common.infra.property.metadata.Description;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class RpcBatchProperties {
+
+    @Description("Whether to pack the small RPC requests (e.g. notifications and requests to set "
+            + "users offline) sent to the same member at the same time into one frame. "
+            + "Note that it should be enabled only after all nodes in the cluster have been "
+            + "upgraded to a version that can handle batched requests")
+    protected boolean enabled;
+
+    @Description("The maximum number of RPC requests in a batch")
+    @Min(2)
+    protected int maxSize = 64;
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.property.env.common.cluster;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import im.turms.server.common.infra.property.metadata.Description;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class RpcCompressionProperties {
+
+    @Description("Whether to compress the RPC frames sent to other members. "
+            + "A connection compresses frames only if both of its ends enable compression, "
+            + "which is negotiated after the connection is established")
+    protected boolean enabled;
+
+    @Description("The minimum size in bytes of an RPC frame to compress. "
+            + "Smaller frames are always sent uncompressed")
+    @Min(0)
+    protected int threshold = 1024;
+
+    @Description("The DEFLATE compression level from 0 (no compression) to 9 (best compression)")
+    @Min(0)
+    @Max(9)
+    protected int level = 1;
+
+}
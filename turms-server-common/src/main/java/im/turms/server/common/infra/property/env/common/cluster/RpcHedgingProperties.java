@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.property.env.common.cluster;
+
+import java.util.EnumSet;
+import java.util.Set;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import im.turms.server.common.access.client.dto.request.TurmsRequest;
+import im.turms.server.common.infra.property.metadata.Description;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class RpcHedgingProperties {
+
+    @Description("Whether to hedge the client requests forwarded by turms-gateway "
+            + "to turms-service. If a request of the hedged types has not been responded after the hedging delay, "
+            + "a duplicate request will be sent to another member, "
+            + "and the response that arrives first will be used")
+    protected boolean enabled;
+
+    @Description("The types of client requests to hedge, which must be idempotent (read-only)")
+    protected Set<TurmsRequest.KindCase> requestTypes =
+            EnumSet.of(TurmsRequest.KindCase.QUERY_CONVERSATIONS_REQUEST,
+                    TurmsRequest.KindCase.QUERY_GROUPS_REQUEST,
+                    TurmsRequest.KindCase.QUERY_MESSAGES_REQUEST,
+                    TurmsRequest.KindCase.QUERY_USER_PROFILES_REQUEST);
+
+    @Description("The minimum delay in milliseconds before sending a hedged request")
+    @Min(0)
+    protected int delayMillis = 20;
+
+    @Description("If greater than 0, the delay before sending a hedged request will be "
+            + "the percentile of the recent latencies of the requests of the same type "
+            + "(but not less than \"delayMillis\"), e.g. 0.95 means the 95th percentile")
+    @DecimalMin("0")
+    @DecimalMax("1")
+    protected float delayPercentile = 0.95F;
+
+    @Description("The maximum ratio of hedged requests to the requests of the hedged types, "
+            + "which avoids amplifying the load when all members slow down")
+    @DecimalMin("0")
+    @DecimalMax("1")
+    protected float budgetRatio = 0.1F;
+
+}
@@ -23,7 +23,9 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
+import im.turms.server.common.infra.property.constant.RpcLoadBalancingStrategy;
 import im.turms.server.common.infra.property.metadata.Description;
 
 /**
@@ -39,4 +41,37 @@ public class RpcProperties {
     @Min(1)
     protected int requestTimeoutMillis = 30 * 1000;
 
+    @Description("The strategy to choose the member to send an RPC request to "
+            + "when the request can be handled by any member of the same node type")
+    protected RpcLoadBalancingStrategy loadBalancingStrategy = RpcLoadBalancingStrategy.ROUND_ROBIN;
+
+    @Description("The time in milliseconds for the peak EWMA of the response time of a member "
+            + "to decay by about 63% towards lower response times. "
+            + "It is only used by the load balancing strategy \"PEAK_EWMA\"")
+    @Min(1)
+    protected int peakEwmaDecayMillis = 10 * 1000;
+
+    @Description("The maximum number of RPC frames whose flushes are consolidated into one flush "
+            + "(i.e. one write syscall) on a connection. "
+            + "The pending flushes are also flushed when the event loop of the connection "
+            + "has run the queued writes. 0 means flushing every frame immediately")
+    @Min(0)
+    protected int flushConsolidationThreshold = 256;
+
+    @Description("Whether to write the recipient IDs of notification requests in the compact "
+            + "format, which sorts the IDs and encodes them as zigzag-varint deltas or a bitmap, "
+            + "whichever is smaller. "
+            + "Note that it should be enabled only after all nodes in the cluster have been "
+            + "upgraded to a version that can read the compact format")
+    protected boolean writeCompactRecipientIds;
+
+    @NestedConfigurationProperty
+    protected RpcCompressionProperties compression = new RpcCompressionProperties();
+
+    @NestedConfigurationProperty
+    protected RpcBatchProperties batch = new RpcBatchProperties();
+
+    @NestedConfigurationProperty
+    protected RpcHedgingProperties hedging = new RpcHedgingProperties();
+
 }
\ No newline at end of file
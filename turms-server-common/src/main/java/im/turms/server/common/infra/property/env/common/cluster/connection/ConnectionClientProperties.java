@@ -26,6 +26,7 @@ import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
 import im.turms.server.common.infra.property.env.common.SslProperties;
+import im.turms.server.common.infra.property.metadata.Description;
 
 /**
  * @author James Chen
@@ -45,6 +46,15 @@ public class ConnectionClientProperties {
     @Min(0)
     protected int reconnectIntervalSeconds = 15;
 
+    @Description("The number of TCP connections to each member. "
+            + "If greater than 1, the extra connections are opened after the opening handshake "
+            + "with the member completes, and RPC requests to the member are striped across "
+            + "the connections. "
+            + "Note that all nodes in the cluster should be upgraded to a version that supports "
+            + "the stripe handshake before it is greater than 1")
+    @Min(1)
+    protected int connectionCountPerMember = 1;
+
     @NestedConfigurationProperty
     protected transient SslProperties ssl = new SslProperties();
 
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.infra.property.env.gateway.network;
+
+import jakarta.validation.constraints.Min;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import im.turms.server.common.infra.property.metadata.Description;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class FlushCoalescingProperties {
+
+    @Description("Whether to coalesce the flushes of outbound data on a connection. "
+            + "If true, the data written to a connection within the same event loop tick "
+            + "(or within \"maxDelayMillis\" if positive) will be flushed once, "
+            + "which reduces the number of syscalls when many notifications are sent to the same connection in a burst")
+    protected boolean enabled;
+
+    @Description("Flush immediately once the pending outbound data of a connection reaches the specified number of bytes")
+    @Min(0)
+    protected int maxBytes = 16 * 1024;
+
+    @Description("The maximum time to delay a flush. "
+            + "0 means flushing at the end of the current event loop tick")
+    @Min(0)
+    protected int maxDelayMillis;
+
+}
@@ -54,4 +54,7 @@ public class TcpProperties extends BaseServerProperties {
     @NestedConfigurationProperty
     protected TcpSessionProperties session = new TcpSessionProperties();
 
+    @NestedConfigurationProperty
+    protected FlushCoalescingProperties flushCoalescing = new FlushCoalescingProperties();
+
 }
\ No newline at end of file
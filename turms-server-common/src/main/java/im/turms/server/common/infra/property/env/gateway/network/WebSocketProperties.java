@@ -51,4 +51,7 @@ public class WebSocketProperties extends BaseServerProperties {
 
     @NestedConfigurationProperty
     protected WebSocketSessionProperties session = new WebSocketSessionProperties();
+
+    @NestedConfigurationProperty
+    protected FlushCoalescingProperties flushCoalescing = new FlushCoalescingProperties();
 }
\ No newline at end of file
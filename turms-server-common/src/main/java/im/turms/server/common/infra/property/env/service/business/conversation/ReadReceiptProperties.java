@@ -17,10 +17,13 @@
 
 package im.turms.server.common.infra.property.env.service.business.conversation;
 
+import jakarta.validation.constraints.Min;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
 import im.turms.server.common.infra.property.metadata.Description;
 import im.turms.server.common.infra.property.metadata.GlobalProperty;
@@ -60,4 +63,27 @@ public class ReadReceiptProperties {
     @MutableProperty
     protected boolean updateReadDateAfterMessageSent = true;
 
+    @NestedConfigurationProperty
+    protected WriteBehindProperties writeBehind = new WriteBehindProperties();
+
+    @AllArgsConstructor
+    @Builder(toBuilder = true)
+    @Data
+    @NoArgsConstructor
+    public static class WriteBehindProperties {
+
+        @Description("Whether to buffer the group conversation read dates updated by the server "
+                + "(e.g. after a user sent a message or queried messages) in memory, "
+                + "and flush the latest read date of each member with one update per group periodically. "
+                + "It reduces the write conflicts on the conversations of large active groups, "
+                + "but the read dates updated within the last flush interval will be lost if the server crashes. "
+                + "Note that the read dates updated by clients are always written immediately")
+        protected boolean enabled;
+
+        @Description("The interval to flush the buffered group conversation read dates")
+        @Min(1)
+        protected int flushIntervalMillis = 1000;
+
+    }
+
 }
\ No newline at end of file
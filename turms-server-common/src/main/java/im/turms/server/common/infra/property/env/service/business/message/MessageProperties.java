@@ -175,6 +175,9 @@ public class MessageProperties {
     @NestedConfigurationProperty
     protected CacheProperties cache = new CacheProperties();
 
+    @NestedConfigurationProperty
+    protected BatchInsertProperties batchInsert = new BatchInsertProperties();
+
     @AllArgsConstructor
     @Builder(toBuilder = true)
     @Data
@@ -191,4 +194,26 @@ public class MessageProperties {
         protected int sentMessageExpireAfter = 30;
 
     }
+
+    @AllArgsConstructor
+    @Builder(toBuilder = true)
+    @Data
+    @NoArgsConstructor
+    public static class BatchInsertProperties {
+
+        @Description("Whether to gather the messages to persist concurrently and insert them into the database in batches. "
+                + "If true, a message will be inserted with other messages when the batch reaches \"maxBatchSize\" "
+                + "or \"maxDelayMillis\" has elapsed since the first message of the batch was submitted, "
+                + "which reduces the write round trips to the database at the cost of a slightly higher latency")
+        protected boolean enabled;
+
+        @Description("The maximum number of messages in a batch")
+        @Min(1)
+        protected int maxBatchSize = 256;
+
+        @Description("The maximum time to wait for more messages before inserting a batch")
+        @Min(0)
+        protected int maxDelayMillis = 5;
+
+    }
 }
\ No newline at end of file
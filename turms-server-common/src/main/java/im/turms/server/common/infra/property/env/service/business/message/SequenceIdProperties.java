@@ -17,6 +17,8 @@
 
 package im.turms.server.common.infra.property.env.service.business.message;
 
+import jakarta.validation.constraints.Min;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -44,4 +46,35 @@ public class SequenceIdProperties {
     @GlobalProperty
     boolean useSequenceIdForPrivateConversation;
 
+    @Description("The number of sequence IDs that a turms-service node leases from Redis in one round trip "
+            + "for a hot group conversation. "
+            + "1 means strict mode, in which every message fetches its sequence ID from Redis and the sequence IDs are gap-free. "
+            + "If larger than 1, the sequence IDs of a group conversation are still unique, "
+            + "but the sequence IDs are only increasing per node, and there may be gaps because "
+            + "the unused sequence IDs of a block are abandoned if they cannot be returned to Redis "
+            + "when the block is evicted or the node is shut down, "
+            + "so clients should not treat a gap as a lost message in this mode")
+    @Min(1)
+    int groupConversationLeasedBlockSize = 1;
+
+    @Description("The number of sequence IDs that a turms-service node leases from Redis in one round trip "
+            + "for a hot private conversation. "
+            + "1 means strict mode, in which every message fetches its sequence ID from Redis and the sequence IDs are gap-free. "
+            + "If larger than 1, the sequence IDs of a private conversation are still unique, "
+            + "but the sequence IDs are only increasing per node, and there may be gaps because "
+            + "the unused sequence IDs of a block are abandoned if they cannot be returned to Redis "
+            + "when the block is evicted or the node is shut down, "
+            + "so clients should not treat a gap as a lost message in this mode")
+    @Min(1)
+    int privateConversationLeasedBlockSize = 1;
+
+    @Description("The maximum number of conversations whose leased sequence ID blocks are cached on the local node")
+    @Min(1)
+    int maxLeasedBlockCount = 100_000;
+
+    @Description("The leased sequence ID block of a conversation is evicted and its unused sequence IDs are "
+            + "returned to Redis if possible when no sequence ID has been fetched from it for the specified seconds")
+    @Min(1)
+    int leasedBlockExpireAfterSeconds = 60;
+
 }
\ No newline at end of file
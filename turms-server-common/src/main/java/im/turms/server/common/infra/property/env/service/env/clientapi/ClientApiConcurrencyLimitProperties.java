@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.property.env.service.env.clientapi;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import im.turms.server.common.infra.property.metadata.Description;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class ClientApiConcurrencyLimitProperties {
+
+    @Description("Whether to limit the number of concurrent client requests adaptively. "
+            + "Client requests are divided into the categories of queries, messages, and others, "
+            + "and each category has its own limit, which shrinks when the latency grows. "
+            + "The requests exceeding the limit will be rejected with SERVER_UNAVAILABLE")
+    protected boolean enabled;
+
+    @Description("The initial limit of concurrent requests of each category")
+    @Min(1)
+    protected int initialLimit = 100;
+
+    @Description("The minimum limit of concurrent requests of each category")
+    @Min(1)
+    protected int minLimit = 10;
+
+    @Description("The maximum limit of concurrent requests of each category")
+    @Min(1)
+    protected int maxLimit = 1000;
+
+    @Description("How many times the latency of requests can grow compared with "
+            + "the latency without queueing before the limit shrinks")
+    @DecimalMin("1")
+    protected float latencyTolerance = 2;
+
+}
@@ -44,4 +44,8 @@ public class ClientApiProperties {
     @NestedConfigurationProperty
     protected ClientApiLoggingProperties logging = new ClientApiLoggingProperties();
 
+    @NestedConfigurationProperty
+    protected ClientApiConcurrencyLimitProperties concurrencyLimit =
+            new ClientApiConcurrencyLimitProperties();
+
 }
\ No newline at end of file
@@ -34,6 +34,10 @@ public class ThreadNameConst {
     // Client
     public static final String CLIENT_BLOCKLIST_SYNC = "turms-client-blocklist-sync";
 
+    // Conversation
+    public static final String CONVERSATION_READ_DATE_FLUSHER =
+            "turms-conversation-read-date-flusher";
+
     // Health
     public static final String HEALTH_CHECKER = "turms-health-checker";
 
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.infra.throttle;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import lombok.Getter;
+
+import im.turms.server.common.infra.thread.ThreadSafe;
+
+/**
+ * A concurrency limiter whose limit adapts to the observed latency, which is based on the gradient
+ * algorithm (as "Gradient2Limit" of Netflix's concurrency-limits and the adaptive concurrency filter
+ * of Envoy):
+ * <p>
+ * 1. The gradient is "tolerance * baseline latency / current latency" clamped to [0.5, 1.0], so
+ * the limit shrinks when the latency grows (e.g. because the database slows down), and grows by
+ * the queue size ("sqrt(limit)") when the latency is stable. The current latency is the
+ * exponential moving average of the latencies, so the normal jitter of latencies won't be treated
+ * as congestion.
+ * <p>
+ * 2. The baseline latency is considered as the latency without queueing, which is the minimum of
+ * the current latency. The limiter can keep a baseline latency per kind of operation (e.g. per
+ * request type) when the operations sharing the limit have different costs, so the latency of a
+ * slow kind is compared with its own baseline latency instead of the baseline latency of a fast
+ * kind, which would be treated as congestion forever and make the limit decay to the minimum
+ * limit.
+ * <p>
+ * Because the latency without queueing can also grow (e.g. the database becomes slower for all
+ * requests), the limiter drops the limit to the minimum limit to measure the baseline latency again
+ * once the latency keeps exceeding the tolerance, instead of tracking the long-term moving average
+ * of the latency, which drifts with the queueing latency and makes the limit grow unboundedly. The
+ * count of congested samples is decreased by every non-congested sample, so occasional congested
+ * samples of a healthy server never trigger the measurement.
+ * <p>
+ * 3. The limit doesn't grow when less than half of it is used, so a limit that is never reached
+ * under low traffic won't grow unboundedly.
+ *
+ * @author James Chen
+ */
+@ThreadSafe
+public class GradientConcurrencyLimiter {
+
+    private static final AtomicIntegerFieldUpdater<GradientConcurrencyLimiter> IN_FLIGHT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(GradientConcurrencyLimiter.class, "inFlight");
+
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double MAX_GRADIENT = 1.0;
+    private static final double SMOOTHING = 0.2;
+    /**
+     * The smoothing factor of the current latency, which averages roughly the latest 20 samples.
+     */
+    private static final double LATENCY_SMOOTHING = 0.05;
+    /**
+     * The baseline latency is only updated after the current latency has been averaged over
+     * enough samples.
+     */
+    private static final int WARMUP_SAMPLE_COUNT = (int) (1 / LATENCY_SMOOTHING);
+    /**
+     * Measure the baseline latency again once the count of congested samples, which is increased
+     * by congested samples and decreased by non-congested samples, reaches "PROBE_MULTIPLIER *
+     * limit".
+     */
+    private static final int PROBE_MULTIPLIER = 30;
+    private static final int PROBE_SAMPLE_COUNT = 20;
+    /**
+     * The baselines that have fewer samples than it during probing are reset to unknown because
+     * the average of a few samples is too noisy.
+     */
+    private static final int MIN_PROBE_SAMPLE_COUNT_PER_BASELINE = 5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+
+    @Getter
+    private volatile int inFlight;
+    @Getter
+    private volatile int limit;
+
+    // Guarded by "this"
+    private double estimatedLimit;
+    /**
+     * The exponential moving average of the latencies of each baseline, or 0 if no sample.
+     */
+    private final double[] currentLatencyNanos;
+    private final int[] sampleCounts;
+    /**
+     * The baseline latency of each baseline, or 0 if unknown.
+     */
+    private final double[] baselineLatencyNanos;
+    private int congestedSampleCount;
+    private boolean probing;
+    private int probeSampleCount;
+    private final double[] probeLatencySumNanos;
+    private final int[] probeSampleCounts;
+
+    /**
+     * @param latencyTolerance how many times the latency can grow compared with the long-term
+     *                         latency before the limit shrinks.
+     */
+    public GradientConcurrencyLimiter(
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            double latencyTolerance) {
+        this(initialLimit, minLimit, maxLimit, latencyTolerance, 1);
+    }
+
+    /**
+     * @param latencyTolerance how many times the latency can grow compared with the long-term
+     *                         latency before the limit shrinks.
+     * @param baselineCount    the number of the kinds of operations whose baseline latencies are
+     *                         tracked separately, see {@link #release(int, long)}.
+     */
+    public GradientConcurrencyLimiter(
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            double latencyTolerance,
+            int baselineCount) {
+        if (minLimit < 1) {
+            throw new IllegalArgumentException(
+                    "The minimum limit must be greater than 0, but got: "
+                            + minLimit);
+        }
+        if (maxLimit < minLimit) {
+            throw new IllegalArgumentException(
+                    "The maximum limit ("
+                            + maxLimit
+                            + ") must be greater than or equal to the minimum limit ("
+                            + minLimit
+                            + ")");
+        }
+        if (latencyTolerance < 1) {
+            throw new IllegalArgumentException(
+                    "The latency tolerance must be greater than or equal to 1, but got: "
+                            + latencyTolerance);
+        }
+        if (baselineCount < 1) {
+            throw new IllegalArgumentException(
+                    "The baseline count must be greater than 0, but got: "
+                            + baselineCount);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        estimatedLimit = Math.clamp(initialLimit, minLimit, maxLimit);
+        limit = (int) estimatedLimit;
+        currentLatencyNanos = new double[baselineCount];
+        sampleCounts = new int[baselineCount];
+        baselineLatencyNanos = new double[baselineCount];
+        probeLatencySumNanos = new double[baselineCount];
+        probeSampleCounts = new int[baselineCount];
+    }
+
+    /**
+     * @return true if the caller can proceed, and it must call {@link #release(long)},
+     *         {@link #release(int, long)} or {@link #release()} once done.
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight;
+            if (current >= limit) {
+                return false;
+            }
+        } while (!IN_FLIGHT_UPDATER.compareAndSet(this, current, current + 1));
+        return true;
+    }
+
+    /**
+     * Releases the permit and updates the limit with the latency of the operation.
+     */
+    public void release(long latencyNanos) {
+        release(0, latencyNanos);
+    }
+
+    /**
+     * Releases the permit and updates the limit with the latency of the operation, which is
+     * compared with the baseline latency of the specified baseline.
+     *
+     * @param baselineIndex the index of the baseline in [0, baselineCount).
+     */
+    public void release(int baselineIndex, long latencyNanos) {
+        int previousInFlight = IN_FLIGHT_UPDATER.getAndDecrement(this);
+        update(baselineIndex, Math.max(1, latencyNanos), previousInFlight);
+    }
+
+    /**
+     * Releases the permit without updating the limit, e.g. when the operation is cancelled or
+     * fails, whose latency doesn't reflect the load.
+     */
+    public void release() {
+        IN_FLIGHT_UPDATER.decrementAndGet(this);
+    }
+
+    private synchronized void update(int baselineIndex, long latencyNanos, int inFlight) {
+        if (probing) {
+            probe(baselineIndex, latencyNanos, inFlight);
+            return;
+        }
+        int sampleCount = sampleCounts[baselineIndex];
+        double currentLatency = currentLatencyNanos[baselineIndex];
+        if (sampleCount < WARMUP_SAMPLE_COUNT) {
+            // Use the cumulative average until enough samples are collected
+            // so that the first samples won't be overweighted
+            sampleCounts[baselineIndex] = ++sampleCount;
+            currentLatency += (latencyNanos - currentLatency) / sampleCount;
+            currentLatencyNanos[baselineIndex] = currentLatency;
+            if (sampleCount < WARMUP_SAMPLE_COUNT) {
+                return;
+            }
+        } else {
+            currentLatency += (latencyNanos - currentLatency) * LATENCY_SMOOTHING;
+            currentLatencyNanos[baselineIndex] = currentLatency;
+        }
+        double baselineLatency = baselineLatencyNanos[baselineIndex];
+        if (baselineLatency == 0 || currentLatency < baselineLatency) {
+            baselineLatency = currentLatency;
+            baselineLatencyNanos[baselineIndex] = currentLatency;
+        }
+        double currentLimit = estimatedLimit;
+        if (currentLatency > latencyTolerance * baselineLatency) {
+            if (++congestedSampleCount >= PROBE_MULTIPLIER * currentLimit) {
+                probing = true;
+                probeSampleCount = 0;
+                Arrays.fill(probeLatencySumNanos, 0);
+                Arrays.fill(probeSampleCounts, 0);
+                limit = minLimit;
+                return;
+            }
+        } else if (congestedSampleCount > 0) {
+            congestedSampleCount--;
+        }
+        if (inFlight < currentLimit / 2) {
+            return;
+        }
+        double gradient = Math.clamp(latencyTolerance * baselineLatency / currentLatency,
+                MIN_GRADIENT,
+                MAX_GRADIENT);
+        double newLimit = currentLimit * gradient + Math.sqrt(currentLimit);
+        newLimit = currentLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        newLimit = Math.clamp(newLimit, minLimit, maxLimit);
+        estimatedLimit = newLimit;
+        limit = (int) newLimit;
+    }
+
+    private void probe(int baselineIndex, long latencyNanos, int inFlight) {
+        // Skip the requests that were acquired before probing,
+        // whose latencies include the queueing latency
+        if (inFlight > minLimit) {
+            return;
+        }
+        probeLatencySumNanos[baselineIndex] += latencyNanos;
+        probeSampleCounts[baselineIndex]++;
+        if (++probeSampleCount < PROBE_SAMPLE_COUNT) {
+            return;
+        }
+        for (int i = 0; i < baselineLatencyNanos.length; i++) {
+            int count = probeSampleCounts[i];
+            if (count < MIN_PROBE_SAMPLE_COUNT_PER_BASELINE) {
+                // The baselines that have not been sampled enough during probing are reset
+                // to unknown because they may be as stale as the others
+                currentLatencyNanos[i] = 0;
+                sampleCounts[i] = 0;
+                baselineLatencyNanos[i] = 0;
+            } else {
+                double latency = probeLatencySumNanos[i] / count;
+                currentLatencyNanos[i] = latency;
+                sampleCounts[i] = WARMUP_SAMPLE_COUNT;
+                baselineLatencyNanos[i] = latency;
+            }
+        }
+        congestedSampleCount = 0;
+        probing = false;
+        limit = (int) estimatedLimit;
+    }
+
+}
@@ -17,11 +17,12 @@
 
 package im.turms.server.common.storage.mongo.codec;
 
-import java.lang.reflect.Constructor;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import jakarta.annotation.Nullable;
 
 import org.bson.BsonReader;
 import org.bson.BsonType;
@@ -39,6 +40,8 @@ import im.turms.server.common.infra.serialization.SerializationException;
 import im.turms.server.common.storage.mongo.CodecPool;
 import im.turms.server.common.storage.mongo.DomainFieldName;
 import im.turms.server.common.storage.mongo.entity.EntityField;
+import im.turms.server.common.storage.mongo.entity.EntityFieldType;
+import im.turms.server.common.storage.mongo.entity.EntityInstantiator;
 import im.turms.server.common.storage.mongo.entity.MongoEntity;
 import im.turms.server.common.storage.mongo.entity.MongoEntityFactory;
 
@@ -47,7 +50,20 @@ import static im.turms.server.common.storage.mongo.DomainFieldName.USER_DEFINED_
 
 /**
  * @author James Chen
+ * @implNote To decode millions of documents efficiently:
+ *           <p>
+ *           1. Entities are instantiated by the instantiators generated by
+ *           {@link im.turms.server.common.storage.mongo.entity.EntityInstantiatorFactory}
+ *           instead of {@link java.lang.reflect.Constructor#newInstance(Object...)}.
+ *           <p>
+ *           2. The codecs of fields are resolved once instead of being looked up per field per
+ *           document.
+ *           <p>
+ *           3. The fields of a document are usually in the order in which this codec encodes them,
+ *           so the field next to the previous field is matched first before looking up the field by
+ *           its name, which needs to compute the hash code of the name.
  * @see org.bson.codecs.pojo.PojoCodecImpl
+ * @see benchmark.im.turms.server.common.storage.mongo.codec.EntityCodecThroughput
  */
 public class EntityCodec<T> extends MongoCodec<T> {
 
@@ -60,13 +76,25 @@ public class EntityCodec<T> extends MongoCodec<T> {
     private static final Map<EnumCodecKey<?>, MongoCodec<?>> KEY_TO_ENUM_CODEC =
             new ConcurrentHashMap<>(32);
 
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
     private final Class<T> entityClass;
     private final MongoEntity<T> entity;
+    private final EntityInstantiator<T> instantiator;
+    private final int constructorParamCount;
+
+    /**
+     * Resolved lazily because {@link #registry} is set after the codec is created.
+     */
+    private volatile EntityFieldCodecs fieldCodecs;
 
     public EntityCodec(Class<T> entityClass) {
         super(entityClass);
         this.entityClass = entityClass;
         entity = MongoEntityFactory.parse(entityClass);
+        instantiator = entity.instantiator();
+        constructorParamCount = entity.constructor()
+                .getParameterCount();
     }
 
     @Override
@@ -111,7 +139,8 @@ public class EntityCodec<T> extends MongoCodec<T> {
             T value,
             EncoderContext encoderContext,
             boolean writeNullValue) {
-        for (EntityField<?> field : entity.fields()) {
+        for (FieldCodec fieldCodec : getFieldCodecs().fields) {
+            EntityField<?> field = fieldCodec.field;
             Object fieldValue = field.get(value);
             switch (field.type()) {
                 case ID -> {
@@ -122,7 +151,7 @@ public class EntityCodec<T> extends MongoCodec<T> {
                         }
                     } else {
                         writer.writeName(DomainFieldName.ID);
-                        Codec codec = getCodec(field);
+                        Codec codec = getCodec(fieldCodec);
                         codec.encode(writer, fieldValue, encoderContext);
                     }
                 }
@@ -152,7 +181,7 @@ public class EntityCodec<T> extends MongoCodec<T> {
                         }
                     } else {
                         writer.writeName(field.name());
-                        Codec codec = getCodec(field);
+                        Codec codec = getCodec(fieldCodec);
                         codec.encode(writer, fieldValue, encoderContext);
                     }
                 }
@@ -165,14 +194,13 @@ public class EntityCodec<T> extends MongoCodec<T> {
         T instance = null;
         Object[] constructorValues = null;
         try {
-            Constructor<T> constructor = entity.constructor();
-            if (constructor.getParameterCount() == 0) {
-                instance = constructor.newInstance();
+            if (constructorParamCount == 0) {
+                instance = instantiator.newInstance(EMPTY_ARGS);
                 initInstance(instance, reader, decoderContext);
                 return instance;
             } else {
                 constructorValues = parseCtorValues(reader, decoderContext);
-                return constructor.newInstance(constructorValues);
+                return instantiator.newInstance(constructorValues);
             }
         } catch (Exception e) {
             throw new DeserializationException(
@@ -187,23 +215,23 @@ public class EntityCodec<T> extends MongoCodec<T> {
         }
     }
 
-    private <F> F decode(EntityField<F> field, BsonReader reader, DecoderContext decoderContext) {
-        Codec<F> codec = getCodec(field);
+    private Object decode(FieldCodec field, BsonReader reader, DecoderContext decoderContext) {
+        Codec<?> codec = getCodec(field);
         return decoderContext.decodeWithChildContext(codec, reader);
     }
 
     private Object[] parseCtorValues(BsonReader reader, DecoderContext decoderContext) {
-        Object[] values = new Object[entity.constructor()
-                .getParameters().length];
+        EntityFieldCodecs codecs = getFieldCodecs();
+        Object[] values = new Object[constructorParamCount];
+        int expectedFieldIndex = 0;
         reader.readStartDocument();
         while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
             String fieldName = reader.readName();
-            EntityField<T> field = DomainFieldName.ID.equals(fieldName)
-                    ? entity.getField(entity.idFieldName())
-                    : entity.getField(fieldName);
-            if (field == null) {
+            FieldCodec fieldCodec = codecs.find(fieldName, expectedFieldIndex);
+            if (fieldCodec == null) {
                 if (fieldName.startsWith(USER_DEFINED_ATTRIBUTE_PREFIX)) {
-                    field = entity.getField(Customizable.USER_DEFINED_ATTRIBUTES_FIELD_NAME);
+                    EntityField<?> field =
+                            entity.getField(Customizable.USER_DEFINED_ATTRIBUTES_FIELD_NAME);
                     if (field != null) {
                         int constructorParamIndex = field.constructorParamIndex();
                         Map<String, Object> userDefinedAttributes =
@@ -229,7 +257,7 @@ public class EntityCodec<T> extends MongoCodec<T> {
                     reader.readNull();
                 } else {
                     try {
-                        value = decode(field, reader, decoderContext);
+                        value = decode(fieldCodec, reader, decoderContext);
                     } catch (Exception e) {
                         throw new DeserializationException(
                                 "Failed to decode the field \""
@@ -240,7 +268,8 @@ public class EntityCodec<T> extends MongoCodec<T> {
                                 e);
                     }
                 }
-                values[field.constructorParamIndex()] = value;
+                values[fieldCodec.field.constructorParamIndex()] = value;
+                expectedFieldIndex = fieldCodec.index + 1;
             }
         }
         reader.readEndDocument();
@@ -248,15 +277,16 @@ public class EntityCodec<T> extends MongoCodec<T> {
     }
 
     private void initInstance(T instance, BsonReader reader, DecoderContext decoderContext) {
+        EntityFieldCodecs codecs = getFieldCodecs();
+        int expectedFieldIndex = 0;
         reader.readStartDocument();
         while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
             String fieldName = reader.readName();
-            EntityField field = DomainFieldName.ID.equals(fieldName)
-                    ? entity.getField(entity.idFieldName())
-                    : entity.getField(fieldName);
-            if (field == null) {
+            FieldCodec fieldCodec = codecs.find(fieldName, expectedFieldIndex);
+            if (fieldCodec == null) {
                 if (fieldName.startsWith(USER_DEFINED_ATTRIBUTE_PREFIX)) {
-                    field = entity.getField(Customizable.USER_DEFINED_ATTRIBUTES_FIELD_NAME);
+                    EntityField field =
+                            entity.getField(Customizable.USER_DEFINED_ATTRIBUTES_FIELD_NAME);
                     if (field != null) {
                         Map<String, Object> userDefinedAttributes =
                                 (Map<String, Object>) field.get(instance);
@@ -281,7 +311,7 @@ public class EntityCodec<T> extends MongoCodec<T> {
                     reader.readNull();
                 } else {
                     try {
-                        value = decode(field, reader, decoderContext);
+                        value = decode(fieldCodec, reader, decoderContext);
                     } catch (Exception e) {
                         throw new DeserializationException(
                                 "Failed to decode the field \""
@@ -293,7 +323,7 @@ public class EntityCodec<T> extends MongoCodec<T> {
                     }
                 }
                 try {
-                    field.set(instance, value);
+                    ((EntityField) fieldCodec.field).set(instance, value);
                 } catch (Exception e) {
                     throw new DeserializationException(
                             "Failed to set the field \""
@@ -303,11 +333,66 @@ public class EntityCodec<T> extends MongoCodec<T> {
                                             .getName(),
                             e);
                 }
+                expectedFieldIndex = fieldCodec.index + 1;
             }
         }
         reader.readEndDocument();
     }
 
+    private EntityFieldCodecs getFieldCodecs() {
+        EntityFieldCodecs codecs = fieldCodecs;
+        if (codecs == null) {
+            // It is fine to resolve concurrently because the results are the same
+            codecs = resolveFieldCodecs();
+            fieldCodecs = codecs;
+        }
+        return codecs;
+    }
+
+    private EntityFieldCodecs resolveFieldCodecs() {
+        List<EntityField<?>> fields = entity.fields();
+        int fieldCount = fields.size();
+        FieldCodec[] fieldCodecs = new FieldCodec[fieldCount];
+        Map<String, FieldCodec> nameToFieldCodec = new HashMap<>(fieldCount * 2);
+        for (int i = 0; i < fieldCount; i++) {
+            EntityField<?> field = fields.get(i);
+            EntityFieldType type = field.type();
+            String encodedName = switch (type) {
+                case ID -> DomainFieldName.ID;
+                case NORMAL -> field.name();
+                // The user-defined attributes are encoded as the fields with the prefix
+                case USER_DEFINED_ATTRIBUTES -> null;
+            };
+            Codec<?> codec = null;
+            if (type != EntityFieldType.USER_DEFINED_ATTRIBUTES) {
+                try {
+                    codec = getCodec(field);
+                } catch (Exception e) {
+                    // Throw when the field is encoded or decoded
+                    // to keep the same behavior as resolving the codec on demand
+                }
+            }
+            FieldCodec fieldCodec = new FieldCodec(i, field, encodedName, codec);
+            fieldCodecs[i] = fieldCodec;
+            nameToFieldCodec.put(field.name(), fieldCodec);
+        }
+        String idFieldName = entity.idFieldName();
+        if (idFieldName != null) {
+            FieldCodec idFieldCodec = nameToFieldCodec.get(idFieldName);
+            if (idFieldCodec != null) {
+                nameToFieldCodec.put(DomainFieldName.ID, idFieldCodec);
+            }
+        }
+        return new EntityFieldCodecs(fieldCodecs, nameToFieldCodec);
+    }
+
+    private Codec<?> getCodec(FieldCodec fieldCodec) {
+        Codec<?> codec = fieldCodec.codec;
+        return codec == null
+                ? getCodec(fieldCodec.field)
+                : codec;
+    }
+
     private <F> Codec<F> getCodec(EntityField<F> field) {
         Class<?> fieldClass = field.fieldClass();
         if (Iterable.class.isAssignableFrom(fieldClass)) {
@@ -349,6 +434,37 @@ public class EntityCodec<T> extends MongoCodec<T> {
         }
     }
 
+    /**
+     * @param encodedName null for the user-defined attributes
+     * @param codec       null for the user-defined attributes, or if the codec cannot be resolved
+     */
+    private record FieldCodec(
+            int index,
+            EntityField<?> field,
+            @Nullable String encodedName,
+            @Nullable Codec<?> codec
+    ) {
+    }
+
+    /**
+     * @param fields in the order in which the fields are encoded
+     */
+    private record EntityFieldCodecs(
+            FieldCodec[] fields,
+            Map<String, FieldCodec> nameToFieldCodec
+    ) {
+        @Nullable
+        FieldCodec find(String fieldName, int expectedFieldIndex) {
+            if (expectedFieldIndex < fields.length) {
+                FieldCodec fieldCodec = fields[expectedFieldIndex];
+                if (fieldName.equals(fieldCodec.encodedName)) {
+                    return fieldCodec;
+                }
+            }
+            return nameToFieldCodec.get(fieldName);
+        }
+    }
+
     private record IterableCodecKey<I, E>(
             Class<I> iterableClass,
             Class<E> elementClass,
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.storage.mongo.entity;
+
+/**
+ * Instantiates an entity with the values of the parameters of its persistence constructor.
+ *
+ * @author James Chen
+ * @see EntityInstantiatorFactory
+ */
+@FunctionalInterface
+public interface EntityInstantiator<T> {
+
+    /**
+     * @param args an empty array for the no-arg constructor, or the values of the parameters in
+     *             order. Null values are not allowed for the parameters of primitive types
+     */
+    T newInstance(Object[] args);
+
+}
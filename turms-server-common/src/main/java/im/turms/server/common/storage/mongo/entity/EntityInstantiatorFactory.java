@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.storage.mongo.entity;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import im.turms.server.common.infra.lang.PrimitiveUtil;
+import im.turms.server.common.infra.logging.core.logger.Logger;
+import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
+import im.turms.server.common.infra.reflect.ReflectionUtil;
+
+/**
+ * Generates a hidden class per entity class to instantiate entities by calling their constructors
+ * directly instead of {@link Constructor#newInstance(Object...)}, which checks the arguments and
+ * cannot be inlined into the callers by JIT.
+ * <p>
+ * The generated class is equivalent to:
+ *
+ * <pre>
+ * class Entity$$EntityInstantiator implements EntityInstantiator&lt;Entity&gt; {
+ *     public Entity newInstance(Object[] args) {
+ *         return new Entity((Long) args[0], ((Integer) args[1]).intValue(), ...);
+ *     }
+ * }
+ * </pre>
+ *
+ * @author James Chen
+ */
+public final class EntityInstantiatorFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityInstantiatorFactory.class);
+
+    private static final String INSTANTIATOR_CLASS_NAME_SUFFIX = "$$EntityInstantiator";
+    private static final String INSTANTIATOR_INTERFACE_NAME =
+            Type.getInternalName(EntityInstantiator.class);
+    private static final String NEW_INSTANCE_METHOD_DESCRIPTOR =
+            Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(Object[].class));
+
+    private EntityInstantiatorFactory() {
+    }
+
+    /**
+     * @return the generated instantiator, or the reflection-based instantiator if the constructor
+     *         cannot be called by a generated class (e.g. a parameter type is inaccessible)
+     */
+    public static <T> EntityInstantiator<T> get(Constructor<T> constructor) {
+        if (isAccessibleFromGeneratedClass(constructor)) {
+            try {
+                return generate(constructor);
+            } catch (Exception | LinkageError e) {
+                LOGGER.warn("Failed to generate the instantiator for the constructor: "
+                        + constructor
+                        + ". Fall back to the reflection-based instantiator", e);
+            }
+        }
+        return getReflectionBasedInstantiator(constructor);
+    }
+
+    public static <T> EntityInstantiator<T> getReflectionBasedInstantiator(
+            Constructor<T> constructor) {
+        ReflectionUtil.setAccessible(constructor);
+        return args -> {
+            try {
+                return constructor.newInstance(args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException("Failed to call the constructor", cause);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to call the constructor", e);
+            }
+        };
+    }
+
+    private static <T> EntityInstantiator<T> generate(Constructor<T> constructor)
+            throws ReflectiveOperationException {
+        Class<T> entityClass = constructor.getDeclaringClass();
+        MethodHandles.Lookup lookup =
+                MethodHandles.privateLookupIn(entityClass, ReflectionUtil.LOOKUP);
+        byte[] bytes = generateClass(constructor);
+        // Define the class as a nestmate of the entity class so that it can call private
+        // constructors
+        Class<?> instantiatorClass =
+                lookup.defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE)
+                        .lookupClass();
+        return (EntityInstantiator<T>) instantiatorClass.getDeclaredConstructor()
+                .newInstance();
+    }
+
+    private static byte[] generateClass(Constructor<?> constructor) {
+        Class<?> entityClass = constructor.getDeclaringClass();
+        String entityClassName = Type.getInternalName(entityClass);
+        String className = entityClassName
+                + INSTANTIATOR_CLASS_NAME_SUFFIX;
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17,
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                className,
+                null,
+                Type.getInternalName(Object.class),
+                new String[]{INSTANTIATOR_INTERFACE_NAME});
+
+        MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL,
+                Type.getInternalName(Object.class),
+                "<init>",
+                "()V",
+                false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor newInstance = writer.visitMethod(Opcodes.ACC_PUBLIC,
+                "newInstance",
+                NEW_INSTANCE_METHOD_DESCRIPTOR,
+                null,
+                null);
+        newInstance.visitCode();
+        newInstance.visitTypeInsn(Opcodes.NEW, entityClassName);
+        newInstance.visitInsn(Opcodes.DUP);
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            newInstance.visitVarInsn(Opcodes.ALOAD, 1);
+            newInstance.visitLdcInsn(i);
+            newInstance.visitInsn(Opcodes.AALOAD);
+            Class<?> parameterType = parameterTypes[i];
+            if (parameterType.isPrimitive()) {
+                Class<?> wrapperType = PrimitiveUtil.primitiveToWrapper(parameterType);
+                String wrapperClassName = Type.getInternalName(wrapperType);
+                newInstance.visitTypeInsn(Opcodes.CHECKCAST, wrapperClassName);
+                newInstance.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                        wrapperClassName,
+                        parameterType.getName()
+                                + "Value",
+                        Type.getMethodDescriptor(Type.getType(parameterType)),
+                        false);
+            } else if (parameterType != Object.class) {
+                newInstance.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(parameterType));
+            }
+        }
+        newInstance.visitMethodInsn(Opcodes.INVOKESPECIAL,
+                entityClassName,
+                "<init>",
+                Type.getConstructorDescriptor(constructor),
+                false);
+        newInstance.visitInsn(Opcodes.ARETURN);
+        newInstance.visitMaxs(0, 0);
+        newInstance.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * The generated class is in the same package as the entity class, so it can only access the
+     * classes that are public or in the same package.
+     */
+    private static boolean isAccessibleFromGeneratedClass(Constructor<?> constructor) {
+        Class<?> entityClass = constructor.getDeclaringClass();
+        if (entityClass.isHidden()) {
+            return false;
+        }
+        for (Class<?> parameterType : constructor.getParameterTypes()) {
+            Class<?> type = parameterType;
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (type.isPrimitive()) {
+                continue;
+            }
+            if (type.getClassLoader() == entityClass.getClassLoader()
+                    && type.getPackageName()
+                            .equals(entityClass.getPackageName())) {
+                continue;
+            }
+            for (Class<?> clazz = type; clazz != null; clazz = clazz.getEnclosingClass()) {
+                if (!Modifier.isPublic(clazz.getModifiers())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
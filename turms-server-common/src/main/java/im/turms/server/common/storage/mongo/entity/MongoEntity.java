@@ -31,6 +31,7 @@ public record MongoEntity<T>(
         // Meta
         Class<T> entityClass,
         Constructor<T> constructor,
+        EntityInstantiator<T> instantiator,
         // Collection
         String collectionName,
         BsonDocument jsonSchema,
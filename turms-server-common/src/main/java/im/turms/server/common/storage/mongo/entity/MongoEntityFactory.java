@@ -83,6 +83,7 @@ public final class MongoEntityFactory {
         return new MongoEntity<>(
                 clazz,
                 constructor,
+                EntityInstantiatorFactory.get(constructor),
                 collectionName,
                 findCollectionSchema(collectionName),
                 shardKey,
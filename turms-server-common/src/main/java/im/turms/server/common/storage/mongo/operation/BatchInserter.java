@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.storage.mongo.operation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import jakarta.annotation.Nullable;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import im.turms.server.common.infra.thread.ThreadSafe;
+import im.turms.server.common.storage.mongo.exception.MongoExceptionUtil;
+
+/**
+ * Gathers the documents submitted concurrently and inserts them with one unordered "insertMany"
+ * (group commit) when the batch reaches the max batch size or the max delay has elapsed since the
+ * first document of the batch was submitted.
+ * <p>
+ * Each caller gets its own result: If some documents of a batch fail to be inserted, only the
+ * callers of these documents will receive the errors.
+ *
+ * @author James Chen
+ */
+@ThreadSafe
+public class BatchInserter<T> {
+
+    private final Function<List<T>, Mono<Void>> insertAllUnordered;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final Scheduler scheduler;
+
+    @Nullable
+    private Batch<T> currentBatch;
+
+    /**
+     * @param insertAllUnordered should insert the documents in an unordered manner and report the
+     *                           failed documents with {@link MongoBulkWriteException}, e.g.
+     *                           {@link MongoOperationsSupport#insertAllOfSameTypeUnordered(List)}
+     */
+    public BatchInserter(
+            Function<List<T>, Mono<Void>> insertAllUnordered,
+            int maxBatchSize,
+            long maxDelayMillis) {
+        this(insertAllUnordered, maxBatchSize, maxDelayMillis, Schedulers.parallel());
+    }
+
+    public BatchInserter(
+            Function<List<T>, Mono<Void>> insertAllUnordered,
+            int maxBatchSize,
+            long maxDelayMillis,
+            Scheduler scheduler) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException(
+                    "The max batch size must be greater than 0, but got: "
+                            + maxBatchSize);
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException(
+                    "The max delay must be greater than or equal to 0, but got: "
+                            + maxDelayMillis);
+        }
+        this.insertAllUnordered = insertAllUnordered;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.scheduler = scheduler;
+    }
+
+    public Mono<Void> insert(T document) {
+        return Mono.create(sink -> add(document, sink));
+    }
+
+    private void add(T document, MonoSink<Void> sink) {
+        Batch<T> batchToInsert = null;
+        synchronized (this) {
+            Batch<T> batch = currentBatch;
+            if (batch == null) {
+                batch = new Batch<>(maxBatchSize);
+                currentBatch = batch;
+                Batch<T> newBatch = batch;
+                batch.scheduledInsertion = scheduler.schedule(() -> insertIfCurrent(newBatch),
+                        maxDelayMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+            batch.documents.add(document);
+            batch.sinks.add(sink);
+            if (batch.documents.size() >= maxBatchSize) {
+                currentBatch = null;
+                batchToInsert = batch;
+            }
+        }
+        if (batchToInsert != null) {
+            batchToInsert.scheduledInsertion.dispose();
+            insert(batchToInsert);
+        }
+    }
+
+    private void insertIfCurrent(Batch<T> batch) {
+        synchronized (this) {
+            if (currentBatch != batch) {
+                // The batch has been inserted because it is full
+                return;
+            }
+            currentBatch = null;
+        }
+        insert(batch);
+    }
+
+    private void insert(Batch<T> batch) {
+        Mono.defer(() -> insertAllUnordered.apply(batch.documents))
+                .subscribe(null, batch::error, batch::success);
+    }
+
+    private static final class Batch<T> {
+        private final List<T> documents;
+        private final List<MonoSink<Void>> sinks;
+        private Disposable scheduledInsertion;
+
+        private Batch(int expectedSize) {
+            documents = new ArrayList<>(expectedSize);
+            sinks = new ArrayList<>(expectedSize);
+        }
+
+        private void success() {
+            for (MonoSink<Void> sink : sinks) {
+                sink.success();
+            }
+        }
+
+        private void error(Throwable throwable) {
+            MongoBulkWriteException bulkWriteException = findBulkWriteException(throwable);
+            // If there is a write concern error, we cannot know whether the documents
+            // without write errors are inserted as expected, so fail all documents.
+            if (bulkWriteException == null || bulkWriteException.getWriteConcernError() != null) {
+                for (MonoSink<Void> sink : sinks) {
+                    sink.error(throwable);
+                }
+                return;
+            }
+            List<BulkWriteError> writeErrors = bulkWriteException.getWriteErrors();
+            Throwable[] errors = new Throwable[sinks.size()];
+            for (BulkWriteError writeError : writeErrors) {
+                int index = writeError.getIndex();
+                if (index >= 0 && index < errors.length) {
+                    errors[index] = MongoExceptionUtil.translate(new MongoWriteException(
+                            writeError,
+                            bulkWriteException.getServerAddress(),
+                            bulkWriteException.getErrorLabels()));
+                }
+            }
+            for (int i = 0; i < errors.length; i++) {
+                Throwable error = errors[i];
+                MonoSink<Void> sink = sinks.get(i);
+                if (error == null) {
+                    sink.success();
+                } else {
+                    sink.error(error);
+                }
+            }
+        }
+
+        @Nullable
+        private static MongoBulkWriteException findBulkWriteException(Throwable throwable) {
+            if (throwable instanceof MongoBulkWriteException e) {
+                return e;
+            }
+            return throwable.getCause() instanceof MongoBulkWriteException e
+                    ? e
+                    : null;
+        }
+    }
+
+}
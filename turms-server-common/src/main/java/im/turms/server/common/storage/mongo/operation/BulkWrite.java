@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.storage.mongo.operation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+
+import im.turms.server.common.storage.mongo.operation.option.Filter;
+import im.turms.server.common.storage.mongo.operation.option.Update;
+
+/**
+ * A list of insert, update, upsert, and delete operations on the collection of {@code T}, which is
+ * sent to MongoDB in one "bulkWrite" command by {@link MongoOperationsSupport#bulkWrite(BulkWrite)}.
+ * <p>
+ * The index of an operation in {@link TurmsBulkWriteResult#operationResults()} is the order in
+ * which it is added.
+ *
+ * @author James Chen
+ */
+public final class BulkWrite<T> {
+
+    private static final BulkWriteOptions ORDERED_OPTIONS = new BulkWriteOptions();
+    private static final BulkWriteOptions UNORDERED_OPTIONS = new BulkWriteOptions().ordered(false);
+    private static final UpdateOptions UPSERT_OPTIONS = new UpdateOptions().upsert(true);
+
+    private final Class<T> entityClass;
+    private final List<WriteModel<T>> models;
+    private boolean ordered = true;
+
+    private BulkWrite(Class<T> entityClass, int expectedSize) {
+        this.entityClass = entityClass;
+        models = new ArrayList<>(expectedSize);
+    }
+
+    public static <T> BulkWrite<T> newBuilder(Class<T> entityClass, int expectedSize) {
+        return new BulkWrite<>(entityClass, expectedSize);
+    }
+
+    /**
+     * @param ordered if true (by default), MongoDB executes the operations serially and stops at
+     *                the first failed operation. Otherwise, MongoDB may execute the operations in
+     *                any order and continues after failed operations.
+     */
+    public BulkWrite<T> ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public BulkWrite<T> insert(T value) {
+        models.add(new InsertOneModel<>(value));
+        return this;
+    }
+
+    public BulkWrite<T> updateOne(Filter filter, Update update) {
+        models.add(new UpdateOneModel<>(filter, update));
+        return this;
+    }
+
+    public BulkWrite<T> updateMany(Filter filter, Update update) {
+        models.add(new UpdateManyModel<>(filter, update));
+        return this;
+    }
+
+    public BulkWrite<T> upsert(Filter filter, Update update) {
+        models.add(new UpdateOneModel<>(filter, update, UPSERT_OPTIONS));
+        return this;
+    }
+
+    public BulkWrite<T> deleteOne(Filter filter) {
+        models.add(new DeleteOneModel<>(filter));
+        return this;
+    }
+
+    public BulkWrite<T> deleteMany(Filter filter) {
+        models.add(new DeleteManyModel<>(filter));
+        return this;
+    }
+
+    public int size() {
+        return models.size();
+    }
+
+    public boolean isEmpty() {
+        return models.isEmpty();
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    List<WriteModel<T>> getModels() {
+        return Collections.unmodifiableList(models);
+    }
+
+    BulkWriteOptions getOptions() {
+        return ordered
+                ? ORDERED_OPTIONS
+                : UNORDERED_OPTIONS;
+    }
+
+}
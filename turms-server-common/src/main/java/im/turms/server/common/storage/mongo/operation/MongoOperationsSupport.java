@@ -41,6 +41,7 @@ import im.turms.server.common.storage.mongo.entity.MongoEntity;
 import im.turms.server.common.storage.mongo.entity.annotation.CompoundIndex;
 import im.turms.server.common.storage.mongo.model.Tag;
 import im.turms.server.common.storage.mongo.operation.option.Filter;
+import im.turms.server.common.storage.mongo.operation.option.KeysetPagination;
 import im.turms.server.common.storage.mongo.operation.option.QueryOptions;
 import im.turms.server.common.storage.mongo.operation.option.Update;
 
@@ -68,6 +69,14 @@ public interface MongoOperationsSupport {
 
     <T> Flux<T> findMany(Class<T> clazz, Filter filter, @Nullable QueryOptions options);
 
+    /**
+     * Unlike {@link #findMany(Class, Filter, QueryOptions)} with "skip", the cost of querying a
+     * page does not grow with the page depth.
+     *
+     * @param filter will be modified to query the records after the continuation token
+     */
+    <T> Mono<KeysetPage<T>> findPage(Class<T> clazz, Filter filter, KeysetPagination pagination);
+
     <T> Flux<T> findAll(Class<T> clazz);
 
     <T> Flux<T> findAll(Class<T> clazz, @Nullable QueryOptions options);
@@ -104,6 +113,8 @@ public interface MongoOperationsSupport {
 
     <T> Mono<Void> insertAllOfSameType(@Nullable ClientSession session, List<T> values);
 
+    <T> Mono<Void> insertAllOfSameTypeUnordered(List<T> values);
+
     <T> Mono<UpdateResult> updateOne(Class<T> clazz, Filter filter, Update update);
 
     <T> Mono<UpdateResult> updateOne(
@@ -136,6 +147,16 @@ public interface MongoOperationsSupport {
 
     <T> Mono<DeleteResult> deleteAll(Class<T> clazz);
 
+    /**
+     * Write errors of operations do not fail the returned {@link Mono}, and are reported in the
+     * result instead.
+     */
+    <T> Mono<TurmsBulkWriteResult> bulkWrite(BulkWrite<T> bulkWrite);
+
+    <T> Mono<TurmsBulkWriteResult> bulkWrite(
+            @Nullable ClientSession session,
+            BulkWrite<T> bulkWrite);
+
     <T> Flux<ChangeStreamDocument<T>> watch(Class<T> clazz, FullDocument fullDocument);
 
     <T> Mono<Long> countDistinct(Class<T> clazz, Filter filter, String groupByFieldName);
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.storage.mongo.operation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import jakarta.annotation.Nullable;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonValue;
+
+/**
+ * The result of {@link MongoOperationsSupport#bulkWrite(BulkWrite)}, including the result of each
+ * operation.
+ *
+ * @param exception the exception thrown by mongo-java-driver if some operations have failed.
+ *                  Note that {@link MongoBulkWriteException#getWriteResult()} only counts the
+ *                  operations that have succeeded.
+ * @author James Chen
+ */
+public record TurmsBulkWriteResult(
+        BulkWriteResult result,
+        List<OperationResult> operationResults,
+        @Nullable MongoBulkWriteException exception
+) {
+
+    public static TurmsBulkWriteResult of(
+            int operationCount,
+            boolean ordered,
+            BulkWriteResult result,
+            @Nullable MongoBulkWriteException exception) {
+        if (!result.wasAcknowledged()) {
+            List<OperationResult> operationResults = new ArrayList<>(operationCount);
+            for (int i = 0; i < operationCount; i++) {
+                operationResults
+                        .add(new OperationResult(i, OperationStatus.UNACKNOWLEDGED, null, null));
+            }
+            return new TurmsBulkWriteResult(result, operationResults, exception);
+        }
+        OperationResult[] operationResults = new OperationResult[operationCount];
+        int firstNotExecutedIndex = operationCount;
+        if (exception != null) {
+            for (BulkWriteError error : exception.getWriteErrors()) {
+                int index = error.getIndex();
+                operationResults[index] =
+                        new OperationResult(index, OperationStatus.FAILED, null, error);
+                // An ordered bulk write stops at the first failed operation
+                if (ordered && index + 1 < firstNotExecutedIndex) {
+                    firstNotExecutedIndex = index + 1;
+                }
+            }
+        }
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            int index = upsert.getIndex();
+            operationResults[index] =
+                    new OperationResult(index, OperationStatus.SUCCEEDED, upsert.getId(), null);
+        }
+        for (int i = 0; i < operationCount; i++) {
+            if (operationResults[i] == null) {
+                operationResults[i] = new OperationResult(
+                        i,
+                        i < firstNotExecutedIndex
+                                ? OperationStatus.SUCCEEDED
+                                : OperationStatus.NOT_EXECUTED,
+                        null,
+                        null);
+            }
+        }
+        return new TurmsBulkWriteResult(result, List.of(operationResults), exception);
+    }
+
+    public boolean wasAcknowledged() {
+        return result.wasAcknowledged();
+    }
+
+    public int getInsertedCount() {
+        return result.getInsertedCount();
+    }
+
+    public int getMatchedCount() {
+        return result.getMatchedCount();
+    }
+
+    public int getModifiedCount() {
+        return result.getModifiedCount();
+    }
+
+    public int getDeletedCount() {
+        return result.getDeletedCount();
+    }
+
+    public int getUpsertedCount() {
+        return result.getUpserts()
+                .size();
+    }
+
+    public boolean hasWriteErrors() {
+        return exception != null;
+    }
+
+    public List<BulkWriteError> getWriteErrors() {
+        return exception == null
+                ? Collections.emptyList()
+                : exception.getWriteErrors();
+    }
+
+    /**
+     * @return true if there are write errors and all of them are caused by duplicate keys
+     */
+    public boolean areAllWriteErrorsDuplicateKey() {
+        if (exception == null) {
+            return false;
+        }
+        for (BulkWriteError error : exception.getWriteErrors()) {
+            if (error.getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param upsertedId the ID of the document inserted by an upsert operation
+     * @param error      the write error if the operation failed
+     */
+    public record OperationResult(
+            int index,
+            OperationStatus status,
+            @Nullable BsonValue upsertedId,
+            @Nullable BulkWriteError error
+    ) {
+    }
+
+    public enum OperationStatus {
+        /**
+         * The operation has been executed without write errors. Note that an update or a delete
+         * operation may still match no document.
+         */
+        SUCCEEDED,
+        FAILED,
+        /**
+         * The operation was not executed because an operation before it failed in an ordered bulk
+         * write.
+         */
+        NOT_EXECUTED,
+        /**
+         * The result is unknown because the write concern is unacknowledged.
+         */
+        UNACKNOWLEDGED
+    }
+
+}
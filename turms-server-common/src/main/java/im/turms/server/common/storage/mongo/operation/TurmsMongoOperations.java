@@ -29,10 +29,13 @@ import java.util.stream.Collectors;
 import jakarta.annotation.Nullable;
 
 import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoNamespace;
 import com.mongodb.TransactionOptions;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.model.Accumulators;
 import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.model.CreateCollectionOptions;
 import com.mongodb.client.model.DeleteOptions;
@@ -44,6 +47,7 @@ import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.ValidationAction;
 import com.mongodb.client.model.ValidationLevel;
 import com.mongodb.client.model.ValidationOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.FullDocument;
 import com.mongodb.client.result.DeleteResult;
@@ -96,6 +100,7 @@ import im.turms.server.common.storage.mongo.exception.CorruptedDocumentException
 import im.turms.server.common.storage.mongo.exception.MongoExceptionUtil;
 import im.turms.server.common.storage.mongo.model.Tag;
 import im.turms.server.common.storage.mongo.operation.option.Filter;
+import im.turms.server.common.storage.mongo.operation.option.KeysetPagination;
 import im.turms.server.common.storage.mongo.operation.option.QueryOptions;
 import im.turms.server.common.storage.mongo.operation.option.Update;
 
@@ -133,9 +138,21 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
     private static final CountOptions COUNT_OPTIONS_LIMIT_1 = new CountOptions().limit(1);
     private static final DeleteOptions DEFAULT_DELETE_OPTIONS = new DeleteOptions();
     private static final InsertManyOptions DEFAULT_INSERT_MANY_OPTIONS = new InsertManyOptions();
+    private static final InsertManyOptions UNORDERED_INSERT_MANY_OPTIONS =
+            new InsertManyOptions().ordered(false);
     private static final InsertOneOptions DEFAULT_INSERT_ONE_OPTIONS = new InsertOneOptions();
     private static final UpdateOptions DEFAULT_UPDATE_OPTIONS = new UpdateOptions();
     private static final UpdateOptions DEFAULT_UPSERT_OPTIONS = new UpdateOptions().upsert(true);
+    private static final TurmsBulkWriteResult EMPTY_BULK_WRITE_RESULT =
+            new TurmsBulkWriteResult(
+                    BulkWriteResult.acknowledged(0,
+                            0,
+                            0,
+                            0,
+                            Collections.emptyList(),
+                            Collections.emptyList()),
+                    Collections.emptyList(),
+                    null);
     public static final BsonDocument FIND_OBJECT_KEYS_GET_FIELD_OPERATOR =
             new BsonDocument().append("$getField",
                     new BsonDocument().append("field", new BsonString("k"))
@@ -216,6 +233,34 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
         return Flux.from(source);
     }
 
+    @Override
+    public <T> Mono<KeysetPage<T>> findPage(
+            Class<T> clazz,
+            Filter filter,
+            KeysetPagination pagination) {
+        QueryOptions options = QueryOptions.newBuilder(2);
+        try {
+            pagination.apply(filter, options);
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+        MongoCollection<T> collection = context.getCollection(clazz);
+        FindPublisher<T> source = find(collection, filter, options);
+        int size = pagination.getSize();
+        return Flux.from(source)
+                .collect(CollectorUtil.toList(size + 1))
+                .map(records -> {
+                    if (records.size() <= size) {
+                        return new KeysetPage<>(records, null);
+                    }
+                    records.removeLast();
+                    BsonDocument lastRecord = encodeEntity(records.getLast());
+                    return new KeysetPage<>(
+                            records,
+                            pagination.createContinuationToken(lastRecord));
+                });
+    }
+
     @Override
     public <T> Flux<T> findAll(Class<T> clazz) {
         return findAll(clazz, null);
@@ -485,6 +530,26 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
                 .then();
     }
 
+    /**
+     * Unlike {@link #insertAllOfSameType(List)}, a failed document does not prevent the following
+     * documents from being inserted. The indexes of the failed documents can be found in
+     * {@link com.mongodb.MongoBulkWriteException#getWriteErrors()}, which is the error itself or
+     * the cause of the translated error.
+     */
+    @Override
+    public <T> Mono<Void> insertAllOfSameTypeUnordered(List<T> values) {
+        if (values.isEmpty()) {
+            return Mono.empty();
+        }
+        MongoCollection collection = context.getCollection(values.getFirst()
+                .getClass());
+        Publisher<InsertManyResult> source =
+                collection.insertMany(values, UNORDERED_INSERT_MANY_OPTIONS);
+        return Mono.from(source)
+                .onErrorMap(MongoExceptionUtil::translate)
+                .then();
+    }
+
     // Update
 
     @Override
@@ -567,6 +632,43 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
         return Mono.from(source);
     }
 
+    // Bulk Write
+
+    @Override
+    public <T> Mono<TurmsBulkWriteResult> bulkWrite(BulkWrite<T> bulkWrite) {
+        return bulkWrite(null, bulkWrite);
+    }
+
+    @Override
+    public <T> Mono<TurmsBulkWriteResult> bulkWrite(
+            @Nullable ClientSession session,
+            BulkWrite<T> bulkWrite) {
+        int operationCount = bulkWrite.size();
+        if (operationCount == 0) {
+            return Mono.just(EMPTY_BULK_WRITE_RESULT);
+        }
+        MongoCollection<T> collection = context.getCollection(bulkWrite.getEntityClass());
+        List<WriteModel<T>> models = bulkWrite.getModels();
+        BulkWriteOptions options = bulkWrite.getOptions();
+        Publisher<BulkWriteResult> source = session == null
+                ? collection.bulkWrite(models, options)
+                : collection.bulkWrite(session, models, options);
+        boolean ordered = bulkWrite.isOrdered();
+        return Mono.from(source)
+                .map(result -> TurmsBulkWriteResult.of(operationCount, ordered, result, null))
+                .onErrorResume(MongoBulkWriteException.class, e -> {
+                    // Only report the write errors of operations in the result,
+                    // and keep failing for other errors like write concern errors
+                    // because the results of operations are unknown in this case.
+                    if (e.getWriteConcernError() != null) {
+                        return Mono.error(e);
+                    }
+                    return Mono.just(TurmsBulkWriteResult
+                            .of(operationCount, ordered, e.getWriteResult(), e));
+                })
+                .onErrorMap(MongoExceptionUtil::translate);
+    }
+
     // Change Stream
 
     @Override
@@ -999,6 +1101,14 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
 
     // Helper
 
+    private <T> BsonDocument encodeEntity(T value) {
+        Codec<T> codec = (Codec<T>) context.getCodec(value.getClass());
+        BsonDocument document = new BsonDocument();
+        BsonDocumentWriter writer = new BsonDocumentWriter(document);
+        codec.encode(writer, value, CodecPool.DEFAULT_ENCODER_CONTEXT);
+        return document;
+    }
+
     private <T> BsonDocument encodeEntityForUpsert(T value) {
         Codec<T> codec = (Codec<T>) context.getCodec(value.getClass());
         BsonDocument document = new BsonDocument();
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.storage.mongo.operation.option;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import jakarta.annotation.Nullable;
+
+import org.bson.BsonArrayUtil;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonNull;
+import org.bson.BsonValue;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import im.turms.server.common.storage.mongo.BsonPool;
+import im.turms.server.common.storage.mongo.DomainFieldName;
+
+/**
+ * Keyset pagination queries the records after the last record of the previous page by the sort
+ * keys instead of skipping the records of the previous pages, so the cost of querying a page does
+ * not grow with the page depth as "skip" does.
+ * <p>
+ * "_id" is always the last sort key to make the order total, and it is sorted in the direction of
+ * the previous sort key if not specified explicitly. The sort keys except "_id" should not be
+ * missing or null, should not be documents or arrays, and should be covered by an index together
+ * with the filter.
+ * <p>
+ * The continuation token is a Base64URL-encoded BSON document of the sort key values of the last
+ * record of the previous page. Clients should treat it as an opaque string because its format may
+ * change. Because clients can forge the token, its values are only accepted if they are neither
+ * documents nor arrays, and are compared by explicit operators so that they can never be
+ * interpreted as query operators.
+ *
+ * @author James Chen
+ */
+public final class KeysetPagination {
+
+    private static final Base64.Encoder TOKEN_ENCODER = Base64.getUrlEncoder()
+            .withoutPadding();
+    private static final Base64.Decoder TOKEN_DECODER = Base64.getUrlDecoder();
+    private static final BsonDocumentCodec DOCUMENT_CODEC = new BsonDocumentCodec();
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder()
+            .build();
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder()
+            .build();
+
+    private final int size;
+    private final BsonDocument sort;
+    @Nullable
+    private final String continuationToken;
+    private boolean isIdSortKeyAdded;
+
+    private KeysetPagination(int size, @Nullable String continuationToken) {
+        if (size <= 0) {
+            throw new IllegalArgumentException(
+                    "The page size must be greater than 0, but got: "
+                            + size);
+        }
+        this.size = size;
+        sort = new BsonDocument();
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * @param continuationToken the continuation token of the previous page, or null to query the
+     *                          first page
+     */
+    public static KeysetPagination newBuilder(int size, @Nullable String continuationToken) {
+        return new KeysetPagination(size, continuationToken);
+    }
+
+    public KeysetPagination sort(boolean asc, String field) {
+        if (isIdSortKeyAdded) {
+            throw new IllegalStateException("\"_id\" must be the last sort key");
+        }
+        sort.append(field,
+                asc
+                        ? BsonPool.BSON_INT32_1
+                        : BsonPool.BSON_INT32_NEGATIVE_1);
+        if (DomainFieldName.ID.equals(field)) {
+            isIdSortKeyAdded = true;
+        }
+        return this;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Applies the sort, the limit, and the condition to query the records after the continuation
+     * token.
+     *
+     * @implNote One more record is queried to know whether there is a next page.
+     * @throws IllegalArgumentException if the continuation token is invalid or was not created for
+     *                                  the sort keys
+     */
+    public void apply(Filter filter, QueryOptions options) {
+        addIdSortKeyIfAbsent();
+        options.document.put("sort", sort);
+        options.document.put("limit", new BsonInt32(size + 1));
+        if (continuationToken == null) {
+            return;
+        }
+        BsonDocument lastSortKeyValues = decodeContinuationToken(continuationToken);
+        if (!lastSortKeyValues.keySet()
+                .equals(sort.keySet())) {
+            throw new IllegalArgumentException(
+                    "The continuation token does not match the sort keys: "
+                            + sort.keySet());
+        }
+        BsonDocument filterDocument = filter.document;
+        // Use "$or" only for multiple sort keys so that a single sort key (e.g. "_id")
+        // can be merged into the filter as a plain range condition.
+        // (k1 > v1) or (k1 = v1 and k2 > v2) or ...
+        int sortKeyCount = sort.size();
+        String conditionKey;
+        BsonValue condition;
+        if (sortKeyCount == 1) {
+            Map.Entry<String, BsonValue> entry = sort.entrySet()
+                    .iterator()
+                    .next();
+            conditionKey = entry.getKey();
+            condition = getAfterCondition(entry.getValue(), lastSortKeyValues.get(conditionKey));
+        } else {
+            List<BsonValue> branches = new ArrayList<>(sortKeyCount);
+            BsonDocument equalities = new BsonDocument();
+            for (Map.Entry<String, BsonValue> entry : sort.entrySet()) {
+                String key = entry.getKey();
+                BsonValue value = lastSortKeyValues.get(key);
+                BsonDocument branch = equalities.clone();
+                branch.append(key, getAfterCondition(entry.getValue(), value));
+                branches.add(branch);
+                equalities.append(key, new BsonDocument("$eq", value));
+            }
+            conditionKey = "$or";
+            condition = BsonArrayUtil.newArray(branches);
+        }
+        if (filterDocument.containsKey(conditionKey)) {
+            BsonDocument originalFilter = filterDocument.clone();
+            filterDocument.clear();
+            filterDocument.append("$and",
+                    BsonArrayUtil.newArray(List.of(originalFilter,
+                            new BsonDocument(conditionKey, condition))));
+        } else {
+            filterDocument.append(conditionKey, condition);
+        }
+    }
+
+    /**
+     * @param lastRecord the encoded last record of the current page
+     */
+    public String createContinuationToken(BsonDocument lastRecord) {
+        addIdSortKeyIfAbsent();
+        BsonDocument sortKeyValues = new BsonDocument();
+        for (String key : sort.keySet()) {
+            sortKeyValues.append(key, getValue(lastRecord, key));
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer(64);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            DOCUMENT_CODEC.encode(writer, sortKeyValues, ENCODER_CONTEXT);
+        }
+        return TOKEN_ENCODER.encodeToString(buffer.toByteArray());
+    }
+
+    private void addIdSortKeyIfAbsent() {
+        if (isIdSortKeyAdded) {
+            return;
+        }
+        BsonValue direction = BsonPool.BSON_INT32_1;
+        for (BsonValue value : sort.values()) {
+            direction = value;
+        }
+        sort.append(DomainFieldName.ID, direction);
+        isIdSortKeyAdded = true;
+    }
+
+    private static BsonDocument getAfterCondition(BsonValue direction, BsonValue value) {
+        return new BsonDocument(
+                direction.asInt32()
+                        .getValue() > 0
+                                ? "$gt"
+                                : "$lt",
+                value);
+    }
+
+    private static BsonValue getValue(BsonDocument document, String path) {
+        int index = path.indexOf('.');
+        if (index == -1) {
+            BsonValue value = document.get(path);
+            return value == null
+                    ? BsonNull.VALUE
+                    : value;
+        }
+        BsonValue value = document.get(path.substring(0, index));
+        if (value instanceof BsonDocument subdocument) {
+            return getValue(subdocument, path.substring(index + 1));
+        }
+        return BsonNull.VALUE;
+    }
+
+    private static BsonDocument decodeContinuationToken(String continuationToken) {
+        try {
+            byte[] bytes = TOKEN_DECODER.decode(continuationToken);
+            try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bytes))) {
+                BsonDocument document = DOCUMENT_CODEC.decode(reader, DECODER_CONTEXT);
+                if (document.isEmpty()) {
+                    throw new IllegalArgumentException("The continuation token has no sort key");
+                }
+                for (Map.Entry<String, BsonValue> entry : document.entrySet()) {
+                    BsonValue value = entry.getValue();
+                    if (value.isDocument() || value.isArray()) {
+                        throw new IllegalArgumentException(
+                                "The value of the sort key \""
+                                        + entry.getKey()
+                                        + "\" must not be a document or an array");
+                    }
+                }
+                return document;
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(
+                    "Invalid continuation token: "
+                            + continuationToken,
+                    e);
+        }
+    }
+
+}
@@ -40,6 +40,7 @@ public final class Update extends BaseBson {
 
     private BsonDocument set;
     private BsonDocument unset;
+    private BsonDocument max;
 
     private Update(int expectedSize) {
         super(new BsonDocument(CollectionUtil.getMapCapability(expectedSize)));
@@ -105,6 +106,19 @@ public final class Update extends BaseBson {
         return appendUnset(field);
     }
 
+    /**
+     * Updates the field only if the specified value is greater than the existing value, or the
+     * field does not exist.
+     */
+    public Update max(String field, Object value) {
+        if (max == null) {
+            max = new BsonDocument();
+            document.append("$max", max);
+        }
+        max.put(field, CodecUtil.encode(value));
+        return this;
+    }
+
     private Update appendSet(String key, Object value) {
         if (set == null) {
             set = new BsonDocument();
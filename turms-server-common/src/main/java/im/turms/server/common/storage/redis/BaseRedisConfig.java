@@ -20,12 +20,17 @@ package im.turms.server.common.storage.redis;
 import java.util.LinkedList;
 import java.util.List;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.springframework.context.annotation.Bean;
 import reactor.core.publisher.Mono;
 
 import im.turms.server.common.infra.application.JobShutdownOrder;
 import im.turms.server.common.infra.application.TurmsApplicationContext;
 import im.turms.server.common.infra.collection.CollectionUtil;
+import im.turms.server.common.infra.logging.core.logger.Logger;
+import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
+import im.turms.server.common.infra.netty.ByteBufUtil;
 import im.turms.server.common.infra.property.env.common.BaseRedisProperties;
 import im.turms.server.common.storage.redis.codec.context.RedisCodecContext;
 import im.turms.server.common.storage.redis.codec.context.RedisCodecContextPool;
@@ -39,6 +44,14 @@ import im.turms.server.common.storage.redis.codec.context.RedisCodecContextPool;
  */
 public abstract class BaseRedisConfig {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(BaseRedisConfig.class);
+
+    /**
+     * The suffix of the device details key of a user, which is appended to the user session key
+     * in "try_add_online_user_with_ttl.lua".
+     */
+    private static final byte[] DEVICE_DETAILS_KEY_SUFFIX = {':', 'd'};
+
     private final TurmsRedisClientManager sessionRedisClientManager;
     private final TurmsRedisClientManager locationRedisClientManager;
 
@@ -61,6 +74,8 @@ public abstract class BaseRedisConfig {
                 newUserIdBlocklistRedisClient(redisProperties.getUserIdBlocklist()
                         .getUri());
 
+        migrateSessionKeysIfResharding();
+
         context.addShutdownHook(JobShutdownOrder.CLOSE_REDIS_CONNECTIONS, this::destroy);
     }
 
@@ -68,18 +83,77 @@ public abstract class BaseRedisConfig {
             RedisProperties properties) {
         return new TurmsRedisClientManager(
                 properties,
-                RedisCodecContextPool.USER_SESSIONS_STATUS_CODEC_CONTEXT);
+                properties.isClusterEnabled()
+                        ? RedisCodecContextPool.USER_SESSIONS_STATUS_CLUSTER_CODEC_CONTEXT
+                        : RedisCodecContextPool.USER_SESSIONS_STATUS_CODEC_CONTEXT);
     }
 
     private static TurmsRedisClientManager newLocationRedisClientManager(
             RedisProperties properties,
             boolean treatUserIdAndDeviceTypeAsUniqueUser) {
+        if (properties.isClusterEnabled()) {
+            // The locations of users are stored in a few large sorted sets
+            throw new IllegalArgumentException(
+                    "The cluster mode is not supported by the location Redis");
+        }
         RedisCodecContext codecContext = treatUserIdAndDeviceTypeAsUniqueUser
                 ? RedisCodecContextPool.GEO_USER_SESSION_ID_CODEC_CONTEXT
                 : RedisCodecContextPool.GEO_USER_ID_CODEC_CONTEXT;
         return new TurmsRedisClientManager(properties, codecContext);
     }
 
+    /**
+     * @implNote Only the session keys are migrated (both in background and on access) because
+     *           their shard keys can be parsed from the keys. The location keys are shared by
+     *           users, so the location manager only falls back to read the previous owners, and
+     *           the stale locations will expire or be removed when users go offline.
+     */
+    private void migrateSessionKeysIfResharding() {
+        if (!sessionRedisClientManager.isResharding()) {
+            return;
+        }
+        sessionRedisClientManager.enableMigrationOnAccess(BaseRedisConfig::getSessionKeys);
+        LOGGER.info("Migrating the session keys to their new Redis servers");
+        sessionRedisClientManager.migrateKeys(BaseRedisConfig::parseSessionShardKey)
+                .subscribe(count -> LOGGER.info(
+                        "Migrated {} session keys to their new Redis servers",
+                        count),
+                        t -> LOGGER.error(
+                                "Caught an error while migrating the session keys to their "
+                                        + "new Redis servers",
+                                t));
+    }
+
+    /**
+     * @return the user ID of the user session key encoded by
+     *         {@link im.turms.server.common.storage.redis.codec.SessionKeyCodec} or the device
+     *         details key, or null if the key is not a session key
+     */
+    private static Long parseSessionShardKey(ByteBuf key) {
+        int length = key.readableBytes();
+        int readerIndex = key.readerIndex();
+        if (length == Long.BYTES) {
+            return key.getLong(readerIndex);
+        }
+        if (length == Long.BYTES + DEVICE_DETAILS_KEY_SUFFIX.length
+                && key.getByte(readerIndex + Long.BYTES) == DEVICE_DETAILS_KEY_SUFFIX[0]
+                && key.getByte(readerIndex + Long.BYTES + 1) == DEVICE_DETAILS_KEY_SUFFIX[1]) {
+            return key.getLong(readerIndex);
+        }
+        return null;
+    }
+
+    /**
+     * @return the user session key and the device details key of the user
+     */
+    private static ByteBuf[] getSessionKeys(Long userId) {
+        return new ByteBuf[]{ByteBufUtil.writeLong(userId),
+                PooledByteBufAllocator.DEFAULT.directBuffer(Long.BYTES
+                        + DEVICE_DETAILS_KEY_SUFFIX.length)
+                        .writeLong(userId)
+                        .writeBytes(DEVICE_DETAILS_KEY_SUFFIX)};
+    }
+
     private TurmsRedisClient newIpBlocklistRedisClient(String uri) {
         return new TurmsRedisClient(uri, RedisCodecContext.DEFAULT);
     }
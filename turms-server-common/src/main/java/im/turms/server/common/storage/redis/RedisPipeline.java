@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.storage.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.TurmsRedisCommandBuilder;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.protocol.AsyncCommand;
+import io.lettuce.core.protocol.Command;
+import io.lettuce.core.protocol.RedisCommand;
+import io.netty.buffer.ByteBuf;
+import reactor.core.publisher.Mono;
+
+import im.turms.server.common.infra.exception.ThrowableUtil;
+import im.turms.server.common.infra.netty.ByteBufUtil;
+import im.turms.server.common.infra.netty.ReferenceCountUtil;
+import im.turms.server.common.storage.redis.script.RedisScript;
+
+/**
+ * Queues Redis commands and sends them to the same connection in one write when
+ * {@link #execute()} is called, so that N commands cost one write (and usually one TCP packet)
+ * instead of N.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * RedisPipeline pipeline = client.pipeline();
+ * Mono&lt;Long&gt; count1 = pipeline.incr(key1);
+ * Mono&lt;Long&gt; count2 = pipeline.hincrby(key2, field, 1);
+ * pipeline.execute();
+ * </pre>
+ * <p>
+ * The returned publishers complete when the replies of their commands are received, whether they
+ * are subscribed or not, and cancelling them doesn't cancel the commands.
+ *
+ * @author James Chen
+ * @implNote 1. Instead of disabling auto-flush and flushing commands manually, which affects all
+ *           commands sent to the (shared) connection by other threads, the pipeline dispatches its
+ *           commands as a collection, which is written and flushed once by
+ *           {@link im.turms.server.common.storage.redis.command.TurmsCommandEncoder}.
+ *           <p>
+ *           2. The key/val buffers are released when their commands complete instead of when the
+ *           returned publishers terminate, so they won't leak if the publishers are not
+ *           subscribed. As a result, {@link #execute()} MUST be called after commands are added.
+ *           <p>
+ *           3. The class is not thread-safe.
+ */
+public class RedisPipeline {
+
+    private final TurmsRedisClient client;
+    private final StatefulRedisConnection<ByteBuf, ByteBuf> connection;
+    private final TurmsRedisCommandBuilder commandBuilder;
+
+    private final List<RedisCommand<ByteBuf, ByteBuf, ?>> commands = new ArrayList<>(16);
+    private boolean isExecuted;
+
+    RedisPipeline(
+            TurmsRedisClient client,
+            StatefulRedisConnection<ByteBuf, ByteBuf> connection,
+            TurmsRedisCommandBuilder commandBuilder) {
+        this.client = client;
+        this.connection = connection;
+        this.commandBuilder = commandBuilder;
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    public Mono<Long> del(ByteBuf... keys) {
+        ensureNotExecuted();
+        for (int i = 0, length = keys.length; i < length; i++) {
+            keys[i] = ByteBufUtil.ensureByteBufRefCnfCorrect(keys[i]);
+        }
+        return add(commandBuilder.del(keys), keys);
+    }
+
+    public Mono<Long> incr(ByteBuf key) {
+        ensureNotExecuted();
+        ByteBuf keyBuffer = ByteBufUtil.ensureByteBufRefCnfCorrect(key);
+        return add(commandBuilder.incr(keyBuffer), keyBuffer);
+    }
+
+    public Mono<Long> hincrby(ByteBuf key, ByteBuf field, long amount) {
+        ensureNotExecuted();
+        ByteBuf keyBuffer = ByteBufUtil.ensureByteBufRefCnfCorrect(key);
+        ByteBuf fieldBuffer = ByteBufUtil.ensureByteBufRefCnfCorrect(field);
+        return add(commandBuilder.hincrby(keyBuffer, fieldBuffer, amount), keyBuffer, fieldBuffer);
+    }
+
+    public <T> Mono<T> eval(RedisScript<T> script, ByteBuf... keys) {
+        return eval(script, keys.length, keys);
+    }
+
+    /**
+     * Send "EVALSHA" in the pipeline, and fall back to sending "EVAL" individually if the script
+     * has not been loaded.
+     *
+     * @param keyLength the real key length
+     */
+    public <T> Mono<T> eval(RedisScript<T> script, int keyLength, ByteBuf... keys) {
+        ensureNotExecuted();
+        ByteBuf key;
+        for (int i = 0, length = keys.length; i < length; i++) {
+            key = keys[i];
+            if (key != null) {
+                keys[i] = ByteBufUtil.ensureByteBufRefCnfCorrect(key)
+                        .retain();
+            }
+        }
+        Command<ByteBuf, ByteBuf, T> command =
+                commandBuilder.evalsha(script.digest(), script.outputType(), keys, keyLength);
+        AsyncCommand<ByteBuf, ByteBuf, T> asyncCommand = new AsyncCommand<>(command);
+        commands.add(asyncCommand);
+        CompletableFuture<T> result = asyncCommand.exceptionallyCompose(t -> {
+            if (ThrowableUtil.contains(t, RedisNoScriptException.class)) {
+                // The fallback will release the keys.
+                return client.eval(script, keyLength, keys)
+                        .toFuture();
+            }
+            return CompletableFuture.failedFuture(t);
+        })
+                .whenComplete((value, t) -> ReferenceCountUtil.ensureReleased(keys));
+        return Mono.fromFuture(result, true);
+    }
+
+    /**
+     * Send all queued commands in one write.
+     */
+    public void execute() {
+        ensureNotExecuted();
+        isExecuted = true;
+        if (commands.isEmpty()) {
+            return;
+        }
+        try {
+            connection.dispatch(commands);
+        } catch (Exception e) {
+            // e.g. The connection is closed and rejects commands
+            for (RedisCommand<ByteBuf, ByteBuf, ?> command : commands) {
+                command.completeExceptionally(e);
+            }
+        }
+    }
+
+    private <T> Mono<T> add(Command<ByteBuf, ByteBuf, T> command, ByteBuf... buffers) {
+        AsyncCommand<ByteBuf, ByteBuf, T> asyncCommand = new AsyncCommand<>(command);
+        asyncCommand.whenComplete((value, t) -> ReferenceCountUtil.ensureReleased(buffers));
+        commands.add(asyncCommand);
+        return Mono.fromFuture(asyncCommand, true);
+    }
+
+    private void ensureNotExecuted() {
+        if (isExecuted) {
+            throw new IllegalStateException("The pipeline has been executed");
+        }
+    }
+
+}
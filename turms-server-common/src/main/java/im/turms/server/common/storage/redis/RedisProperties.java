@@ -17,8 +17,11 @@
 
 package im.turms.server.common.storage.redis;
 
+import java.util.Collections;
 import java.util.List;
 
+import jakarta.validation.constraints.Min;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -43,4 +46,48 @@ public class RedisProperties {
     private transient ShardingAlgorithm shardingAlgorithm =
             new ConsistentHashingShardingAlgorithm();
 
+    @Description("Whether \"uriList\" is the seed nodes of a Redis Cluster. "
+            + "If true, commands are routed to the master nodes "
+            + "that serve the slots of their keys, "
+            + "and the slots are refreshed when they are migrated or a node fails over. "
+            + "Only supported by the session Redis currently")
+    private transient boolean clusterEnabled;
+
+    @Description("The number of virtual nodes of each Redis server on the consistent hash ring. "
+            + "The more virtual nodes, the more evenly the keys are distributed and remapped "
+            + "when a server is added or removed. "
+            + "A server is identified on the ring by its \"host:port\" "
+            + "(or the socket path, or the master ID of Redis Sentinel), "
+            + "followed by \"/database\" if the database is not 0, "
+            + "so changing the password or the options of a URI does not remap the keys, "
+            + "while changing the host, the port, or the database does. "
+            + "If 0, the sharding algorithm specified by \"shardingAlgorithm\" is used")
+    @Min(0)
+    private transient int virtualNodeCount;
+
+    @Description("The URIs of the Redis servers before resharding. If not empty, "
+            + "commands are sent to the servers that own the keys according to \"uriList\", "
+            + "reads fall back to the previous owners if the data is not found, "
+            + "and the keys that can be migrated (e.g. the sessions status of users) are moved "
+            + "from the previous owners to the new owners in the background. "
+            + "A server is identified in the same way as in \"virtualNodeCount\". "
+            + "Clear it after the migration has completed")
+    private transient List<String> previousUriList = Collections.emptyList();
+
+    @Description("The number of virtual nodes of each Redis server before resharding")
+    @Min(0)
+    private transient int previousVirtualNodeCount;
+
+    @Description("The number of connections to each Redis server for hot commands "
+            + "(e.g. updating the session status and fetching sequence IDs)")
+    @Min(1)
+    private transient int hotConnectionCount = 1;
+
+    @Description("The number of connections to each Redis server for bulk commands "
+            + "that may return large replies (e.g. fetching the sessions status of many users) "
+            + "so that they won't delay the hot commands. "
+            + "If 0, bulk commands share the connections for hot commands")
+    @Min(0)
+    private transient int bulkConnectionCount;
+
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.storage.redis;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Listens to the invalidation messages pushed by Redis for the server-assisted client-side caching
+ * (i.e. "CLIENT TRACKING").
+ * <p>
+ * Note that the methods are called on the event loop threads of Redis connections, so they must
+ * not block.
+ *
+ * @author James Chen
+ */
+public interface RedisTrackingListener {
+
+    /**
+     * Called when the keys read by the tracking connections have been modified, expired, or
+     * evicted.
+     *
+     * @param keys the buffers are only valid during the call
+     */
+    void onKeysInvalidated(List<ByteBuffer> keys);
+
+    /**
+     * Called when all keys should be invalidated, e.g. the database has been flushed, or a
+     * tracking connection has been disconnected so that the invalidation messages may have been
+     * lost.
+     */
+    void onAllKeysInvalidated();
+
+    /**
+     * Called when the tracking cannot be enabled again after a tracking connection has been
+     * reconnected, so the caller should stop relying on the invalidation messages.
+     */
+    void onTrackingFailed(Throwable cause);
+
+}
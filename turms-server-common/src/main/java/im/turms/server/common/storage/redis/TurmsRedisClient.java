@@ -17,22 +17,42 @@
 
 package im.turms.server.common.storage.redis;
 
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 import io.lettuce.core.AbstractRedisReactiveCommands;
 import io.lettuce.core.GeoArgs;
 import io.lettuce.core.GeoCoordinates;
 import io.lettuce.core.GeoWithin;
+import io.lettuce.core.KeyScanCursor;
 import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisChannelHandler;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisConnectionStateListener;
 import io.lettuce.core.RedisNoScriptException;
 import io.lettuce.core.RedisReactiveCommandsImpl;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.StatefulRedisConnectionImpl;
+import io.lettuce.core.TrackingArgs;
 import io.lettuce.core.TurmsRedisCommandBuilder;
 import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushListener;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.protocol.AsyncCommand;
 import io.lettuce.core.protocol.CommandEncoder;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.lettuce.core.protocol.RedisCommand;
 import io.lettuce.core.resource.DefaultClientResources;
 import io.lettuce.core.resource.DefaultEventLoopGroupProvider;
 import io.lettuce.core.resource.NettyCustomizer;
@@ -49,6 +69,7 @@ import reactor.core.publisher.Mono;
 import im.turms.server.common.infra.exception.ThrowableUtil;
 import im.turms.server.common.infra.netty.ByteBufUtil;
 import im.turms.server.common.infra.netty.ReferenceCountUtil;
+import im.turms.server.common.infra.reactor.PublisherPool;
 import im.turms.server.common.infra.reactor.PublisherUtil;
 import im.turms.server.common.infra.thread.ThreadNameConst;
 import im.turms.server.common.infra.time.DateTimeUtil;
@@ -69,18 +90,49 @@ import static io.lettuce.core.protocol.CommandType.GEORADIUSBYMEMBER;
  *           may leak because the cold finalizer will never be called if it isn't subscribed (this
  *           may happen in the scenario: when the previous publisher fails, the next publisher will
  *           never be subscribed)
+ *           <p>
+ *           3. Redis replies in order per connection, so a large reply (e.g. "HGETALL" or a script
+ *           that returns the status of many users) delays the replies of all commands sent after
+ *           it on the same connection. To avoid hot commands (e.g. updating the session status and
+ *           fetching sequence IDs) being blocked behind bulk commands, the client can open separate
+ *           connections for them.
  * @see AbstractRedisReactiveCommands
  */
 @Data
 public class TurmsRedisClient {
 
+    private static final String PUSH_MESSAGE_TYPE_INVALIDATE = "invalidate";
+
+    private static final Duration INFINITE_DURATION = Duration.ofMillis(Long.MAX_VALUE);
+
     private final DefaultClientResources resources;
 
     private final RedisClient nativeClient;
 
-    private final StatefulRedisConnection<ByteBuf, ByteBuf> nativeConnection;
+    private final StatefulRedisConnection<ByteBuf, ByteBuf>[] hotConnections;
+
+    private final RedisReactiveCommandsImpl<ByteBuf, ByteBuf>[] hotCommands;
+
+    /**
+     * The same as {@link #hotConnections} if no dedicated connection is opened for bulk commands.
+     */
+    private final StatefulRedisConnection<ByteBuf, ByteBuf>[] bulkConnections;
+
+    /**
+     * The same as {@link #hotCommands} if no dedicated connection is opened for bulk commands.
+     */
+    private final RedisReactiveCommandsImpl<ByteBuf, ByteBuf>[] bulkCommands;
 
-    private final RedisReactiveCommandsImpl<ByteBuf, ByteBuf> commands;
+    /**
+     * Null if the tracking is not enabled.
+     */
+    private volatile RedisTrackingListener trackingListener;
+
+    /**
+     * The connection for the commands preceded by "ASKING", which is opened on demand because
+     * "ASK" is only replied while a slot of a Redis Cluster is being migrated.
+     */
+    private final Mono<StatefulRedisConnection<ByteBuf, ByteBuf>> askingConnection;
 
     private final TurmsRedisCommandBuilder commandBuilder;
 
@@ -90,6 +142,41 @@ public class TurmsRedisClient {
     private final DefaultEventLoopGroupProvider eventLoopGroupProvider;
 
     public TurmsRedisClient(String uri, RedisCodecContext serializationContext) {
+        this(uri, serializationContext, 1, 0);
+    }
+
+    /**
+     * @param bulkConnectionCount if 0, bulk commands share the connections for hot commands
+     */
+    public TurmsRedisClient(
+            String uri,
+            RedisCodecContext serializationContext,
+            int hotConnectionCount,
+            int bulkConnectionCount) {
+        this(RedisURI.create(uri),
+                serializationContext,
+                hotConnectionCount,
+                bulkConnectionCount);
+    }
+
+    /**
+     * @param bulkConnectionCount if 0, bulk commands share the connections for hot commands
+     */
+    public TurmsRedisClient(
+            RedisURI uri,
+            RedisCodecContext serializationContext,
+            int hotConnectionCount,
+            int bulkConnectionCount) {
+        if (hotConnectionCount < 1) {
+            throw new IllegalArgumentException(
+                    "The hot connection count must be greater than 0, but got: "
+                            + hotConnectionCount);
+        }
+        if (bulkConnectionCount < 0) {
+            throw new IllegalArgumentException(
+                    "The bulk connection count must be greater than or equal to 0, but got: "
+                            + bulkConnectionCount);
+        }
         this.serializationContext = serializationContext;
         commandBuilder = new TurmsRedisCommandBuilder(serializationContext);
         eventExecutorGroup = new DefaultEventExecutorGroup(
@@ -120,8 +207,33 @@ public class TurmsRedisClient {
                 })
                 .build();
         nativeClient = RedisClient.create(resources, uri);
-        nativeConnection = nativeClient.connect(TurmsRedisCodecAdapter.DEFAULT);
-        commands = (RedisReactiveCommandsImpl<ByteBuf, ByteBuf>) nativeConnection.reactive();
+        askingConnection = Mono
+                .fromCompletionStage(
+                        () -> nativeClient.connectAsync(TurmsRedisCodecAdapter.DEFAULT, uri))
+                // Retry connecting next time if failed
+                .cache(connection -> INFINITE_DURATION, t -> Duration.ZERO, () -> Duration.ZERO);
+        hotConnections = new StatefulRedisConnection[hotConnectionCount];
+        hotCommands = new RedisReactiveCommandsImpl[hotConnectionCount];
+        for (int i = 0; i < hotConnectionCount; i++) {
+            StatefulRedisConnection<ByteBuf, ByteBuf> connection =
+                    nativeClient.connect(TurmsRedisCodecAdapter.DEFAULT);
+            hotConnections[i] = connection;
+            hotCommands[i] = (RedisReactiveCommandsImpl<ByteBuf, ByteBuf>) connection.reactive();
+        }
+        if (bulkConnectionCount == 0) {
+            bulkConnections = hotConnections;
+            bulkCommands = hotCommands;
+        } else {
+            bulkConnections = new StatefulRedisConnection[bulkConnectionCount];
+            bulkCommands = new RedisReactiveCommandsImpl[bulkConnectionCount];
+            for (int i = 0; i < bulkConnectionCount; i++) {
+                StatefulRedisConnection<ByteBuf, ByteBuf> connection =
+                        nativeClient.connect(TurmsRedisCodecAdapter.DEFAULT);
+                bulkConnections[i] = connection;
+                bulkCommands[i] =
+                        (RedisReactiveCommandsImpl<ByteBuf, ByteBuf>) connection.reactive();
+            }
+        }
     }
 
     public Mono<Void> destroy(long timeoutMillis) {
@@ -148,7 +260,7 @@ public class TurmsRedisClient {
             for (ByteBuf key : keys) {
                 keyBuffers[i++] = ByteBufUtil.ensureByteBufRefCnfCorrect(key);
             }
-            return commands.del(keyBuffers)
+            return hotCommands().del(keyBuffers)
                     .doFinally(signal -> ReferenceCountUtil.ensureReleased(keyBuffers));
         });
     }
@@ -156,7 +268,7 @@ public class TurmsRedisClient {
     public Mono<Long> incr(ByteBuf key) {
         return Mono.defer(() -> {
             ByteBuf keyBuffer = ByteBufUtil.ensureByteBufRefCnfCorrect(key);
-            return commands.incr(keyBuffer)
+            return hotCommands().incr(keyBuffer)
                     .doFinally(signal -> ReferenceCountUtil.ensureReleased(keyBuffer));
         });
     }
@@ -167,7 +279,7 @@ public class TurmsRedisClient {
         return Mono.defer(() -> {
             ByteBuf keyBuffer = serializationContext.encodeHashKey(key);
             ByteBuf[] fieldBuffers = serializationContext.encodeHashFields(fields);
-            return commands.hdel(keyBuffer, fieldBuffers)
+            return hotCommands().hdel(keyBuffer, fieldBuffers)
                     .doFinally(signal -> {
                         ReferenceCountUtil.ensureReleased(keyBuffer);
                         ReferenceCountUtil.ensureReleased(fieldBuffers);
@@ -176,10 +288,14 @@ public class TurmsRedisClient {
     }
 
     public Mono<Long> hincr(ByteBuf key, ByteBuf field) {
+        return hincrby(key, field, 1);
+    }
+
+    public Mono<Long> hincrby(ByteBuf key, ByteBuf field, long amount) {
         return Mono.defer(() -> {
             ByteBuf keyBuffer = ByteBufUtil.ensureByteBufRefCnfCorrect(key);
             ByteBuf fieldBuffer = ByteBufUtil.ensureByteBufRefCnfCorrect(field);
-            return commands.hincrby(keyBuffer, fieldBuffer, 1)
+            return hotCommands().hincrby(keyBuffer, fieldBuffer, amount)
                     .doFinally(signal -> {
                         ReferenceCountUtil.ensureReleased(keyBuffer);
                         ReferenceCountUtil.ensureReleased(fieldBuffer);
@@ -190,8 +306,8 @@ public class TurmsRedisClient {
     public <K, V> Flux<Map.Entry<K, V>> hgetall(K key) {
         return Flux.defer(() -> {
             ByteBuf keyBuffer = serializationContext.encodeHashKey(key);
-            Flux<KeyValue<K, V>> flux =
-                    commands.createDissolvingFlux(() -> commandBuilder.hgetall(keyBuffer));
+            Flux<KeyValue<K, V>> flux = bulkCommands()
+                    .createDissolvingFlux(() -> commandBuilder.hgetall(keyBuffer));
             Flux<Map.Entry<K, V>> entryFlux = flux.flatMap(entry -> {
                 if (entry.isEmpty()) {
                     return Mono.empty();
@@ -208,7 +324,7 @@ public class TurmsRedisClient {
         return Mono.defer(() -> {
             ByteBuf keyBuffer = serializationContext.encodeGeoKey(key);
             ByteBuf memberBuffer = serializationContext.encodeGeoMember(member);
-            return commands.geoadd(keyBuffer, longitude, latitude, memberBuffer)
+            return hotCommands().geoadd(keyBuffer, longitude, latitude, memberBuffer)
                     .doFinally(signal -> {
                         ReferenceCountUtil.ensureReleased(keyBuffer);
                         ReferenceCountUtil.ensureReleased(memberBuffer);
@@ -220,7 +336,7 @@ public class TurmsRedisClient {
         return Flux.defer(() -> {
             ByteBuf keyBuffer = serializationContext.encodeGeoKey(key);
             ByteBuf[] memberBuffers = serializationContext.encodeGeoMembers(members);
-            return commands.geopos(keyBuffer, memberBuffers)
+            return hotCommands().geopos(keyBuffer, memberBuffers)
                     .flatMap(value -> value.isEmpty()
                             ? Mono.empty()
                             : Mono.just(value.getValue()))
@@ -239,7 +355,7 @@ public class TurmsRedisClient {
         return Flux.defer(() -> {
             ByteBuf keyBuffer = serializationContext.encodeGeoKey(key);
             ByteBuf memberBuffer = serializationContext.encodeGeoMember(member);
-            Flux<GeoWithin<T>> flux = commands
+            Flux<GeoWithin<T>> flux = bulkCommands()
                     .createDissolvingFlux(() -> commandBuilder.georadiusbymember(GEORADIUSBYMEMBER,
                             keyBuffer,
                             memberBuffer,
@@ -264,7 +380,7 @@ public class TurmsRedisClient {
         return Mono.defer(() -> {
             ByteBuf keyBuffer = serializationContext.encodeGeoKey(key);
             ByteBuf[] memberBuffers = serializationContext.encodeGeoMembers(members);
-            return commands.zrem(keyBuffer, memberBuffers)
+            return hotCommands().zrem(keyBuffer, memberBuffers)
                     .doFinally(signal -> {
                         ReferenceCountUtil.ensureReleased(keyBuffer);
                         ReferenceCountUtil.ensureReleased(memberBuffers);
@@ -282,6 +398,30 @@ public class TurmsRedisClient {
      * @param keyLength the real key length
      */
     public <T> Mono<T> eval(RedisScript<T> script, int keyLength, ByteBuf... keys) {
+        return eval(hotCommands(), script, keyLength, keys);
+    }
+
+    /**
+     * Evaluate the script on the connections for bulk commands. Use it for the scripts that touch
+     * many keys or return large replies.
+     */
+    public <T> Mono<T> evalBulk(RedisScript<T> script, ByteBuf... keys) {
+        return evalBulk(script, keys.length, keys);
+    }
+
+    /**
+     * @param keyLength the real key length
+     * @see #evalBulk(RedisScript, ByteBuf...)
+     */
+    public <T> Mono<T> evalBulk(RedisScript<T> script, int keyLength, ByteBuf... keys) {
+        return eval(bulkCommands(), script, keyLength, keys);
+    }
+
+    private <T> Mono<T> eval(
+            RedisReactiveCommandsImpl<ByteBuf, ByteBuf> commands,
+            RedisScript<T> script,
+            int keyLength,
+            ByteBuf... keys) {
         return Mono.defer(() -> {
             ByteBuf key;
             for (int i = 0, length = keys.length; i < length; i++) {
@@ -306,4 +446,243 @@ public class TurmsRedisClient {
         });
     }
 
+    // Migration
+
+    /**
+     * @return the keys are not reference-counted
+     */
+    public Mono<KeyScanCursor<ByteBuf>> scan(ScanCursor cursor, int count) {
+        return bulkCommands().scan(cursor, ScanArgs.Builder.limit(count));
+    }
+
+    /**
+     * Move the key with its TTL to the target client. If the target client has had the key (e.g.
+     * the key has been migrated by another node concurrently, or written to the target client
+     * after migrated), the key in the target client is kept because it is newer, and the key in
+     * the current client is removed.
+     *
+     * @return true if the key existed and has been removed from the current client
+     */
+    public Mono<Boolean> migrate(ByteBuf key, TurmsRedisClient target) {
+        return Mono.defer(() -> {
+            // Retain for "PTTL", "DUMP", "RESTORE", and "DEL"
+            ByteBuf keyBuffer = ByteBufUtil.ensureByteBufRefCnfCorrect(key)
+                    .retain(3);
+            RedisReactiveCommandsImpl<ByteBuf, ByteBuf> commands = bulkCommands();
+            return Mono.zip(commands.pttl(keyBuffer), commands.dump(keyBuffer))
+                    .flatMap(ttlAndValue -> {
+                        // -1 if the key has no TTL
+                        long ttl = Math.max(ttlAndValue.getT1(), 0);
+                        return target.bulkCommands()
+                                .restore(keyBuffer, ttl, ttlAndValue.getT2())
+                                .onErrorResume(RedisCommandExecutionException.class, e -> {
+                                    String message = e.getMessage();
+                                    if (message != null && message.startsWith("BUSYKEY")) {
+                                        return Mono.empty();
+                                    }
+                                    return Mono.error(e);
+                                })
+                                .then(commands.del(keyBuffer))
+                                .map(count -> count > 0);
+                    })
+                    .defaultIfEmpty(false)
+                    .doFinally(signal -> ReferenceCountUtil.ensureReleased(keyBuffer));
+        });
+    }
+
+    // Cluster
+
+    /**
+     * @return the reply of "CLUSTER SLOTS", in which strings are replied as buffers that are not
+     *         reference-counted
+     */
+    public Mono<List<Object>> clusterSlots() {
+        return hotCommands().clusterSlots()
+                .collectList();
+    }
+
+    /**
+     * Send "ASKING" and the command on the same connection, so that the node that a slot is being
+     * migrated to serves the command for the slot.
+     *
+     * @param buffers the buffers used by the command, which are released after the command
+     *                completes
+     */
+    public <T> Mono<T> executeAsking(
+            BiFunction<TurmsRedisCommandBuilder, ByteBuf[], RedisCommand<ByteBuf, ByteBuf, T>> commandFactory,
+            ByteBuf... buffers) {
+        return Mono.defer(() -> {
+            ByteBuf buffer;
+            for (int i = 0, length = buffers.length; i < length; i++) {
+                buffer = buffers[i];
+                if (buffer != null) {
+                    buffers[i] = ByteBufUtil.ensureByteBufRefCnfCorrect(buffer);
+                }
+            }
+            return askingConnection.flatMap(connection -> {
+                AsyncCommand<ByteBuf, ByteBuf, String> asking =
+                        new AsyncCommand<>(commandBuilder.asking());
+                AsyncCommand<ByteBuf, ByteBuf, T> command =
+                        new AsyncCommand<>(commandFactory.apply(commandBuilder, buffers));
+                // Lettuce writes the commands of a collection one by one,
+                // so the connection is locked to ensure no command is sent between them
+                synchronized (connection) {
+                    connection.dispatch(List.of(asking, command));
+                }
+                return Mono.fromCompletionStage(command);
+            })
+                    .doFinally(signal -> ReferenceCountUtil.ensureReleased(buffers));
+        });
+    }
+
+    // Client-side caching
+
+    /**
+     * Enable the server-assisted client-side caching in the default mode on all connections, so
+     * Redis pushes the keys read by these connections to the listener once they are modified. If a
+     * connection is reconnected, the listener is notified to invalidate all keys because the
+     * invalidation messages may have been lost, and the tracking is enabled again.
+     *
+     * @return false if the tracking is not supported, e.g. a connection uses RESP2, with which
+     *         Redis can only redirect the invalidation messages to another connection
+     */
+    public Mono<Boolean> enableTracking(RedisTrackingListener listener) {
+        return Mono.defer(() -> {
+            List<StatefulRedisConnection<ByteBuf, ByteBuf>> connections = getConnections();
+            for (StatefulRedisConnection<ByteBuf, ByteBuf> connection : connections) {
+                if (!(connection instanceof StatefulRedisConnectionImpl<ByteBuf, ByteBuf> impl)
+                        || impl.getConnectionState()
+                                .getNegotiatedProtocolVersion() != ProtocolVersion.RESP3) {
+                    return PublisherPool.FALSE;
+                }
+            }
+            synchronized (this) {
+                if (trackingListener != null) {
+                    return Mono.error(new IllegalStateException("The tracking has been enabled"));
+                }
+                trackingListener = listener;
+            }
+            TrackingPushListener pushListener = new TrackingPushListener();
+            TrackingConnectionStateListener stateListener = new TrackingConnectionStateListener();
+            List<Mono<String>> monos = new ArrayList<>(connections.size());
+            for (StatefulRedisConnection<ByteBuf, ByteBuf> connection : connections) {
+                connection.addListener(pushListener);
+                monos.add(connection.reactive()
+                        .clientTracking(TrackingArgs.Builder.enabled()));
+            }
+            nativeClient.addListener(stateListener);
+            return Mono.whenDelayError(monos)
+                    .thenReturn(true)
+                    .onErrorResume(t -> {
+                        trackingListener = null;
+                        nativeClient.removeListener(stateListener);
+                        for (StatefulRedisConnection<ByteBuf, ByteBuf> connection : connections) {
+                            connection.removeListener(pushListener);
+                            // Best effort to stop tracking the keys on the connections that
+                            // have enabled the tracking successfully
+                            connection.reactive()
+                                    .clientTracking(TrackingArgs.Builder.enabled(false))
+                                    .subscribe(null, e -> {
+                                    });
+                        }
+                        return PublisherPool.FALSE;
+                    });
+        });
+    }
+
+    private List<StatefulRedisConnection<ByteBuf, ByteBuf>> getConnections() {
+        List<StatefulRedisConnection<ByteBuf, ByteBuf>> connections =
+                new ArrayList<>(hotConnections.length + bulkConnections.length);
+        connections.addAll(List.of(hotConnections));
+        if (bulkConnections != hotConnections) {
+            connections.addAll(List.of(bulkConnections));
+        }
+        return connections;
+    }
+
+    private boolean isOwnConnection(RedisChannelHandler<?, ?> connection) {
+        for (StatefulRedisConnection<ByteBuf, ByteBuf> hotConnection : hotConnections) {
+            if (hotConnection == connection) {
+                return true;
+            }
+        }
+        for (StatefulRedisConnection<ByteBuf, ByteBuf> bulkConnection : bulkConnections) {
+            if (bulkConnection == connection) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class TrackingPushListener implements PushListener {
+        @Override
+        public void onPushMessage(PushMessage message) {
+            RedisTrackingListener listener = trackingListener;
+            if (listener == null || !PUSH_MESSAGE_TYPE_INVALIDATE.equals(message.getType())) {
+                return;
+            }
+            // ["invalidate", [key, ...]], or ["invalidate", null] if the database is flushed
+            List<Object> content = message.getContent(ByteBuffer::duplicate);
+            Object keys = content.size() > 1
+                    ? content.get(1)
+                    : null;
+            if (keys instanceof List<?> keyList) {
+                listener.onKeysInvalidated((List<ByteBuffer>) keyList);
+            } else {
+                listener.onAllKeysInvalidated();
+            }
+        }
+    }
+
+    private class TrackingConnectionStateListener implements RedisConnectionStateListener {
+        @Override
+        public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress address) {
+            RedisTrackingListener listener = trackingListener;
+            if (listener == null || !isOwnConnection(connection)) {
+                return;
+            }
+            // The tracking state of a connection is not kept by Redis after reconnecting
+            ((StatefulRedisConnection<ByteBuf, ByteBuf>) connection).reactive()
+                    .clientTracking(TrackingArgs.Builder.enabled())
+                    .subscribe(ignored -> listener.onAllKeysInvalidated(),
+                            listener::onTrackingFailed);
+        }
+
+        @Override
+        public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+            RedisTrackingListener listener = trackingListener;
+            if (listener != null && isOwnConnection(connection)) {
+                listener.onAllKeysInvalidated();
+            }
+        }
+    }
+
+    // Pipelining
+
+    /**
+     * @return a new pipeline that sends its commands to one of the connections for hot commands in
+     *         one write
+     */
+    public RedisPipeline pipeline() {
+        return new RedisPipeline(this, pick(hotConnections), commandBuilder);
+    }
+
+    // Internal
+
+    private RedisReactiveCommandsImpl<ByteBuf, ByteBuf> hotCommands() {
+        return pick(hotCommands);
+    }
+
+    private RedisReactiveCommandsImpl<ByteBuf, ByteBuf> bulkCommands() {
+        return pick(bulkCommands);
+    }
+
+    private static <T> T pick(T[] elements) {
+        int length = elements.length;
+        return length == 1
+                ? elements[0]
+                : elements[ThreadLocalRandom.current()
+                        .nextInt(length)];
+    }
+
 }
\ No newline at end of file
@@ -18,18 +18,30 @@
 package im.turms.server.common.storage.redis;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import jakarta.annotation.Nullable;
 
 import io.lettuce.core.GeoArgs;
 import io.lettuce.core.GeoCoordinates;
 import io.lettuce.core.GeoWithin;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.TurmsRedisCommandBuilder;
 import io.lettuce.core.protocol.CommandArgsUtil;
 import io.lettuce.core.protocol.CustomKeyBuffer;
 import io.lettuce.core.protocol.LongKeyGenerator;
@@ -40,62 +52,313 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import im.turms.server.common.domain.session.service.UserStatusService;
+import im.turms.server.common.infra.logging.core.logger.Logger;
+import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
 import im.turms.server.common.infra.netty.ByteBufUtil;
 import im.turms.server.common.infra.netty.ReferenceCountUtil;
+import im.turms.server.common.infra.reactor.PublisherPool;
 import im.turms.server.common.storage.redis.codec.context.RedisCodecContext;
+import im.turms.server.common.storage.redis.cluster.RedisClusterHashTag;
+import im.turms.server.common.storage.redis.cluster.RedisClusterTopology;
 import im.turms.server.common.storage.redis.script.RedisScript;
+import im.turms.server.common.storage.redis.sharding.ConsistentHashRingShardingAlgorithm;
 import im.turms.server.common.storage.redis.sharding.ShardingAlgorithm;
 
 /**
  * @author James Chen
+ * @implNote In the resharding mode (i.e. {@link RedisProperties#getPreviousUriList()} is not
+ *           empty), operations are always sent to the current owners, and the keys are moved to
+ *           the current owners by {@link #migrateKeys}. Before that, if the migration on access is
+ *           enabled (see {@link #enableMigrationOnAccess}), the keys of a shard key are moved
+ *           before any operation on the shard key, so that the scripts, which can only access the
+ *           keys on one server, always see all data of the shard key. Otherwise, only the reads of
+ *           {@link #hgetall} and {@link #geopos} fall back to the previous owners.
+ *           <p>
+ *           In the cluster mode (i.e. {@link RedisProperties#isClusterEnabled()} is true), a shard
+ *           key is routed to the master node that serves the slot of its hash tag (see
+ *           {@link RedisClusterHashTag}), so the keys must be written with the hash tags of their
+ *           shard keys (e.g. {@link #writeLongKey(long)}) to be stored in the same slot.
  */
 public class TurmsRedisClientManager {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TurmsRedisClientManager.class);
+
+    private static final int MIGRATION_SCAN_COUNT = 256;
+    private static final int MIGRATION_CONCURRENCY = 16;
+
     private final List<TurmsRedisClient> clients;
     private final ShardingAlgorithm shardingAlgorithm;
 
+    /**
+     * Null if not in the resharding mode. A previous client is the same instance as the current
+     * client if they have the same URI.
+     */
+    @Nullable
+    private final List<TurmsRedisClient> previousClients;
+    @Nullable
+    private final ShardingAlgorithm previousShardingAlgorithm;
+
+    /**
+     * Null if not in the cluster mode.
+     */
+    @Nullable
+    private final RedisClusterTopology cluster;
+
+    /**
+     * Null if the keys are not migrated on access.
+     */
+    @Nullable
+    private volatile Function<Long, ByteBuf[]> shardKeyToKeys;
+
     public TurmsRedisClientManager(
             RedisProperties properties,
             RedisCodecContext serializationContext) {
-        shardingAlgorithm = properties.getShardingAlgorithm();
         List<String> uriList = properties.getUriList();
+        if (properties.isClusterEnabled()) {
+            List<String> previousUriList = properties.getPreviousUriList();
+            if (properties.getVirtualNodeCount() > 0
+                    || (previousUriList != null && !previousUriList.isEmpty())) {
+                throw new IllegalArgumentException(
+                        "The cluster mode cannot be used with the client-side sharding because "
+                                + "the keys are sharded by the cluster");
+            }
+            shardingAlgorithm = properties.getShardingAlgorithm();
+            clients = Collections.emptyList();
+            previousClients = null;
+            previousShardingAlgorithm = null;
+            cluster = new RedisClusterTopology(uriList,
+                    uri -> new TurmsRedisClient(
+                            uri,
+                            serializationContext,
+                            properties.getHotConnectionCount(),
+                            properties.getBulkConnectionCount()));
+            return;
+        }
+        cluster = null;
+        List<String> serverIds = getServerIds(uriList);
+        shardingAlgorithm = newShardingAlgorithm(properties.getShardingAlgorithm(),
+                serverIds,
+                properties.getVirtualNodeCount());
         clients = new ArrayList<>(uriList.size());
+        // Key the clients by the server IDs so that a server in both URI lists
+        // is recognized as the same server even if the options of its URIs differ
+        Map<String, TurmsRedisClient> serverIdToClient = new HashMap<>();
+        for (int i = 0, size = uriList.size(); i < size; i++) {
+            TurmsRedisClient client = newClient(properties, serializationContext, uriList.get(i));
+            serverIdToClient.put(serverIds.get(i), client);
+            clients.add(client);
+        }
+        List<String> previousUriList = properties.getPreviousUriList();
+        if (previousUriList == null || previousUriList.isEmpty()) {
+            previousClients = null;
+            previousShardingAlgorithm = null;
+        } else {
+            List<String> previousServerIds = getServerIds(previousUriList);
+            previousShardingAlgorithm = newShardingAlgorithm(properties.getShardingAlgorithm(),
+                    previousServerIds,
+                    properties.getPreviousVirtualNodeCount());
+            previousClients = new ArrayList<>(previousUriList.size());
+            for (int i = 0, size = previousUriList.size(); i < size; i++) {
+                String uri = previousUriList.get(i);
+                previousClients.add(serverIdToClient.computeIfAbsent(previousServerIds.get(i),
+                        key -> newClient(properties, serializationContext, uri)));
+            }
+        }
+    }
+
+    private static ShardingAlgorithm newShardingAlgorithm(
+            ShardingAlgorithm defaultAlgorithm,
+            List<String> serverIds,
+            int virtualNodeCount) {
+        return virtualNodeCount > 0
+                ? new ConsistentHashRingShardingAlgorithm(serverIds, virtualNodeCount)
+                : defaultAlgorithm;
+    }
+
+    private static List<String> getServerIds(List<String> uriList) {
+        List<String> serverIds = new ArrayList<>(uriList.size());
         for (String uri : uriList) {
-            clients.add(new TurmsRedisClient(uri, serializationContext));
+            serverIds.add(getServerId(uri));
         }
+        return serverIds;
+    }
+
+    /**
+     * @return the stable ID of the server on the consistent hash ring, which excludes the
+     *         credentials and options of the URI so that changing them (e.g. rotating the password)
+     *         won't remap the keys.
+     */
+    private static String getServerId(String uri) {
+        RedisURI redisUri = RedisURI.create(uri);
+        String address;
+        String socket = redisUri.getSocket();
+        if (socket != null) {
+            address = socket;
+        } else if (redisUri.getSentinelMasterId() != null) {
+            address = redisUri.getSentinelMasterId();
+        } else {
+            address = redisUri.getHost()
+                    + ":"
+                    + redisUri.getPort();
+        }
+        int database = redisUri.getDatabase();
+        return database == 0
+                ? address
+                : address
+                        + "/"
+                        + database;
+    }
+
+    private static TurmsRedisClient newClient(
+            RedisProperties properties,
+            RedisCodecContext serializationContext,
+            String uri) {
+        return new TurmsRedisClient(
+                uri,
+                serializationContext,
+                properties.getHotConnectionCount(),
+                properties.getBulkConnectionCount());
     }
 
     public Mono<Void> destroy(long timeoutMillis) {
-        int size = clients.size();
+        if (cluster != null) {
+            return cluster.destroy(timeoutMillis);
+        }
+        Set<TurmsRedisClient> allClients = getDistinctClients();
+        int size = allClients.size();
         if (size == 0) {
             return Mono.empty();
         }
         List<Mono<Void>> monos = new ArrayList<>(size);
-        for (TurmsRedisClient client : clients) {
+        for (TurmsRedisClient client : allClients) {
             monos.add(client.destroy(timeoutMillis));
         }
         return Mono.whenDelayError(monos);
     }
 
+    /**
+     * Enable the server-assisted client-side caching on all clients, including the previous
+     * clients in the resharding mode because the reads may fall back to them.
+     *
+     * @return false if any client doesn't support the tracking, or in the cluster mode because the
+     *         clients of the nodes that join the cluster later are not tracked. Note that the
+     *         clients that have enabled the tracking successfully still notify the listener
+     * @see TurmsRedisClient#enableTracking(RedisTrackingListener)
+     */
+    public Mono<Boolean> enableTracking(RedisTrackingListener listener) {
+        if (cluster != null) {
+            return PublisherPool.FALSE;
+        }
+        Set<TurmsRedisClient> allClients = getDistinctClients();
+        if (allClients.isEmpty()) {
+            return PublisherPool.FALSE;
+        }
+        return Flux.fromIterable(allClients)
+                .flatMap(client -> client.enableTracking(listener))
+                .all(Boolean::booleanValue);
+    }
+
+    public boolean isResharding() {
+        return previousClients != null;
+    }
+
+    /**
+     * Move the keys of a shard key from its previous owner to its current owner before operating
+     * on the shard key in the resharding mode. Otherwise, the operations only see the keys that
+     * have been migrated by {@link #migrateKeys}, and {@link #migrateKeys} may restore the data
+     * that has been removed from the current owner.
+     * <p>
+     * Note that the keys are still operated on the current owner if they fail to be migrated.
+     *
+     * @param shardKeyToKeys returns all keys of the shard key, which are released after migrated
+     */
+    public void enableMigrationOnAccess(Function<Long, ByteBuf[]> shardKeyToKeys) {
+        this.shardKeyToKeys = shardKeyToKeys;
+    }
+
+    public boolean isClusterEnabled() {
+        return cluster != null;
+    }
+
+    /**
+     * @return the buffer of the key, which is prefixed with the hash tag of the key in the cluster
+     *         mode so that the key is stored in the slot of the key as a shard key
+     * @see RedisClusterHashTag#readTaggedLong(ByteBuf)
+     */
+    public ByteBuf writeLongKey(long key) {
+        return cluster == null
+                ? ByteBufUtil.writeLong(key)
+                : RedisClusterHashTag.writeTaggedLong(key);
+    }
+
+    /**
+     * Move the keys that are not owned by their previous owners anymore to their current owners.
+     * Note that it is safe to migrate concurrently (e.g. every node migrates keys on startup, and
+     * the keys are migrated on access) because a key won't overwrite the newer key in its current
+     * owner.
+     *
+     * @param keyToShardKey returns the shard key of the Redis key, or null if the key cannot be
+     *                      migrated
+     * @return the number of migrated keys
+     */
+    public Mono<Long> migrateKeys(Function<ByteBuf, Long> keyToShardKey) {
+        if (previousClients == null) {
+            return Mono.just(0L);
+        }
+        Set<TurmsRedisClient> distinctPreviousClients =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        distinctPreviousClients.addAll(previousClients);
+        return Flux.fromIterable(distinctPreviousClients)
+                .concatMap(previousClient -> previousClient
+                        .scan(ScanCursor.INITIAL, MIGRATION_SCAN_COUNT)
+                        .expand(cursor -> cursor.isFinished()
+                                ? Mono.empty()
+                                : previousClient.scan(cursor, MIGRATION_SCAN_COUNT))
+                        .concatMapIterable(KeyScanCursor::getKeys)
+                        .flatMap(key -> {
+                            Long shardKey = keyToShardKey.apply(key);
+                            if (shardKey == null) {
+                                return Mono.empty();
+                            }
+                            TurmsRedisClient client = getClient(shardKey);
+                            if (client == previousClient) {
+                                return Mono.empty();
+                            }
+                            return previousClient.migrate(key, client);
+                        }, MIGRATION_CONCURRENCY))
+                .filter(Boolean::booleanValue)
+                .count();
+    }
+
     public <T> Flux<T> execute(Function<TurmsRedisClient, Mono<T>> execute) {
-        int clientCount = clients.size();
+        List<TurmsRedisClient> currentClients = getClients();
+        int clientCount = currentClients.size();
         Mono<T>[] results = new Mono[clientCount];
         for (int i = 0; i < clientCount; i++) {
-            TurmsRedisClient client = clients.get(i);
+            TurmsRedisClient client = currentClients.get(i);
             results[i] = execute.apply(client);
         }
-        return Flux.mergeDelayError(clientCount, results);
+        return handleClusterError(Flux.mergeDelayError(clientCount, results));
     }
 
     public <T> Flux<T> execute(
             Set<Long> shardKeys,
             BiFunction<TurmsRedisClient, Collection<Long>, Mono<T>> execute) {
+        Mono<Void> migration = migrateOnAccess(shardKeys);
+        return migration == null
+                ? doExecute(shardKeys, execute)
+                : migration.thenMany(Flux.defer(() -> doExecute(shardKeys, execute)));
+    }
+
+    private <T> Flux<T> doExecute(
+            Set<Long> shardKeys,
+            BiFunction<TurmsRedisClient, Collection<Long>, Mono<T>> execute) {
         int size = shardKeys.size();
         if (size == 0) {
             return Flux.empty();
         } else if (size == 1) {
-            return Flux.from(execute.apply(getClient(shardKeys.iterator()
-                    .next()), shardKeys));
+            return handleClusterError(Flux.from(execute.apply(getClient(shardKeys.iterator()
+                    .next()), shardKeys)));
         }
         Map<TurmsRedisClient, Collection<Long>> clients = new IdentityHashMap<>();
         for (Long shardKey : shardKeys) {
@@ -109,29 +372,81 @@ public class TurmsRedisClientManager {
         for (Map.Entry<TurmsRedisClient, Collection<Long>> entry : entries) {
             results[i++] = execute.apply(entry.getKey(), entry.getValue());
         }
-        return Flux.mergeDelayError(results.length, results);
+        return handleClusterError(Flux.mergeDelayError(results.length, results));
     }
 
     public Mono<Long> del(Long shardKey, Collection<ByteBuf> keys) {
-        return getClient(shardKey).del(keys);
+        return executeOnOwner(shardKey,
+                keys.toArray(new ByteBuf[0]),
+                (client, buffers) -> client.del(Arrays.asList(buffers)),
+                (client, buffers) -> client.executeAsking(TurmsRedisCommandBuilder::del,
+                        buffers));
     }
 
     public Mono<Long> incr(Long shardKey, ByteBuf key) {
-        return getClient(shardKey).incr(key);
+        return executeOnOwner(shardKey,
+                new ByteBuf[]{key},
+                (client, buffers) -> client.incr(buffers[0]),
+                (client, buffers) -> client
+                        .executeAsking((builder, args) -> builder.incr(args[0]), buffers));
     }
 
     // Hashes
 
     public Mono<Long> hdel(Long shardKey, Object key, Object[] fields) {
-        return getClient(shardKey).hdel(key, fields);
+        return executeOnOwner(shardKey,
+                null,
+                (client, buffers) -> client.hdel(key, fields),
+                (client, buffers) -> {
+                    RedisCodecContext context = client.getSerializationContext();
+                    ByteBuf[] fieldBuffers = context.encodeHashFields(fields);
+                    ByteBuf[] args = new ByteBuf[1 + fieldBuffers.length];
+                    args[0] = context.encodeHashKey(key);
+                    System.arraycopy(fieldBuffers, 0, args, 1, fieldBuffers.length);
+                    return client.executeAsking((builder, commandArgs) -> builder
+                            .hdel(commandArgs[0],
+                                    Arrays.copyOfRange(commandArgs, 1, commandArgs.length)),
+                            args);
+                });
     }
 
     public Mono<Long> hincr(Long shardKey, ByteBuf key, ByteBuf field) {
-        return getClient(shardKey).hincr(key, field);
+        return hincrby(shardKey, key, field, 1);
+    }
+
+    public Mono<Long> hincrby(Long shardKey, ByteBuf key, ByteBuf field, long amount) {
+        return executeOnOwner(shardKey,
+                new ByteBuf[]{key, field},
+                (client, buffers) -> client.hincrby(buffers[0], buffers[1], amount),
+                (client, buffers) -> client.executeAsking(
+                        (builder, args) -> builder.hincrby(args[0], args[1], amount),
+                        buffers));
     }
 
     public <K, V> Flux<Map.Entry<K, V>> hgetall(Long shardKey, Object key) {
-        return (Flux) getClient(shardKey).hgetall(key);
+        Mono<Void> migration = migrateOnAccess(shardKey);
+        if (migration != null) {
+            return migration
+                    .thenMany(Flux.defer(() -> (Flux) getClient(shardKey).hgetall(key)));
+        }
+        if (cluster != null) {
+            // Collect the entries to retry if redirected, which is fine because a hash is small
+            return executeOnOwner(shardKey,
+                    null,
+                    (client, buffers) -> (Mono) client.hgetall(key)
+                            .collectList(),
+                    (client, buffers) -> client.executeAsking(
+                            (builder, args) -> builder.<K, V>hgetall(args[0]),
+                            client.getSerializationContext()
+                                    .encodeHashKey(key))
+                            .map(TurmsRedisClientManager::toEntries))
+                    .flatMapIterable(Function.identity());
+        }
+        Flux<Map.Entry<K, V>> entries = (Flux) getClient(shardKey).hgetall(key);
+        TurmsRedisClient previousClient = getPreviousClient(shardKey);
+        return previousClient == null
+                ? handleClusterError(entries)
+                : entries.switchIfEmpty((Flux) previousClient.hgetall(key));
     }
 
     // Geo
@@ -142,11 +457,15 @@ public class TurmsRedisClientManager {
             double longitude,
             double latitude,
             Object member) {
-        return getClient(shardKey).geoadd(key, longitude, latitude, member);
+        return handleClusterError(getClient(shardKey).geoadd(key, longitude, latitude, member));
     }
 
     public Flux<GeoCoordinates> geopos(Long shardKey, Object key, Object... members) {
-        return getClient(shardKey).geopos(key, members);
+        Flux<GeoCoordinates> coordinates = getClient(shardKey).geopos(key, members);
+        TurmsRedisClient previousClient = getPreviousClient(shardKey);
+        return previousClient == null
+                ? handleClusterError(coordinates)
+                : coordinates.switchIfEmpty(previousClient.geopos(key, members));
     }
 
     public <T> Flux<GeoWithin<T>> georadiusbymember(
@@ -155,26 +474,52 @@ public class TurmsRedisClientManager {
             Object member,
             double distanceMeters,
             GeoArgs args) {
-        return getClient(shardKey).georadiusbymember(key, member, distanceMeters, args);
+        return handleClusterError(
+                getClient(shardKey).georadiusbymember(key, member, distanceMeters, args));
     }
 
     public Mono<Long> georem(Long shardKey, Object key, Object... members) {
-        return getClient(shardKey).georem(key, members);
+        return handleClusterError(getClient(shardKey).georem(key, members));
     }
 
     // Scripting
 
     public <T> Mono<T> eval(Long shardKey, RedisScript<T> script, Object... keys) {
         ByteBuf[] buffers = ByteBufUtil.writeObjects(keys);
-        return getClient(shardKey).eval(script, buffers);
+        return eval(shardKey, script, buffers);
     }
 
     public <T> Mono<T> eval(Long shardKey, RedisScript<T> script, ByteBuf[] buffers) {
-        return getClient(shardKey).eval(script, buffers);
+        return eval(shardKey, script, buffers.length, buffers);
+    }
+
+    /**
+     * @param keyLength the number of buffers that are passed as keys, and the remaining buffers
+     *                  are passed as arguments
+     */
+    public <T> Mono<T> eval(
+            Long shardKey,
+            RedisScript<T> script,
+            int keyLength,
+            ByteBuf[] buffers) {
+        return migrateOnAccess(shardKey,
+                buffers,
+                () -> executeOnOwner(shardKey,
+                        buffers,
+                        (client, args) -> client.eval(script, keyLength, args),
+                        (client, args) -> client.executeAsking(
+                                (builder, commandArgs) -> builder.eval(script.script(),
+                                        script.outputType(),
+                                        commandArgs,
+                                        keyLength),
+                                args)));
     }
 
     /**
-     * In fact, the method is designed for {@link UserStatusService#updateOnlineUsersTtl} currently
+     * In fact, the method is designed for {@link UserStatusService#updateOnlineUsersTtl} currently.
+     * <p>
+     * In the cluster mode, the generated keys are prefixed with their hash tags, and all arguments
+     * are passed as "ARGV" because the keys are in different slots.
      *
      * @param keyGenerator The size of keys should not be larger than 1,048,576(1024*1024), or Redis
      *                     will throw
@@ -184,8 +529,35 @@ public class TurmsRedisClientManager {
             short firstKey,
             byte[] secondKey,
             LongKeyGenerator keyGenerator) {
+        if (shardKeyToKeys == null || previousClients == null) {
+            return doEval(script, firstKey, secondKey, keyGenerator);
+        }
+        List<Long> shardKeys = new ArrayList<>(Math.max(keyGenerator.estimatedSize(), 1));
+        long key;
+        while ((key = keyGenerator.next()) != -1) {
+            shardKeys.add(key);
+        }
+        Mono<Void> migration = migrateOnAccess(shardKeys);
+        Flux<T> result = Flux.defer(() -> doEval(script,
+                firstKey,
+                secondKey,
+                new ShardKeyIterator(shardKeys)));
+        return migration == null
+                ? result
+                : migration.thenMany(result);
+    }
+
+    private <T> Flux<T> doEval(
+            RedisScript<T> script,
+            short firstKey,
+            byte[] secondKey,
+            LongKeyGenerator keyGenerator) {
         int estimatedKeySize = Math.max(keyGenerator.estimatedSize(), 1);
-        int clientSize = clients.size();
+        List<TurmsRedisClient> currentClients = getClients();
+        int clientSize = currentClients.size();
+        int keyLength = cluster == null
+                ? Long.BYTES
+                : RedisClusterHashTag.TAG_LENGTH + Long.BYTES;
         long key;
         // fast path
         if (clientSize == 1) {
@@ -196,23 +568,27 @@ public class TurmsRedisClientManager {
             ByteBuf keysBuffer = PooledByteBufAllocator.DEFAULT
                     // 8 for the size of argument metadata
                     .directBuffer((Short.BYTES + 8) + (secondKey.length + 8)
-                            + estimatedKeySize * (Long.BYTES + 8));
+                            + estimatedKeySize * (keyLength + 8));
             int keyCount = 2;
             try {
                 CommandArgsUtil.writeRawShortArg(keysBuffer, firstKey);
                 CommandArgsUtil.writeRawBytesArg(keysBuffer, secondKey);
                 do {
                     keyCount++;
-                    CommandArgsUtil.writeRawLongArg(keysBuffer, key);
+                    writeRawLongKeyArg(keysBuffer, key);
                     key = keyGenerator.next();
                 } while (key != -1);
             } catch (Exception e) {
                 ReferenceCountUtil.safeEnsureReleased(keysBuffer);
                 return Flux.error(e);
             }
-            TurmsRedisClient client = clients.getFirst();
-            Mono<T> eval = client.eval(script, keyCount, new CustomKeyBuffer(keysBuffer));
-            return Flux.from(eval);
+            TurmsRedisClient client = currentClients.getFirst();
+            Mono<T> eval = client.evalBulk(script,
+                    cluster == null
+                            ? keyCount
+                            : 0,
+                    new CustomKeyBuffer(keysBuffer, keyCount));
+            return handleClusterError(Flux.from(eval));
         }
         // slow path
         int keysPerClient = Math.max(estimatedKeySize / clientSize, 1);
@@ -223,16 +599,16 @@ public class TurmsRedisClientManager {
             ByteBuf buffer;
             if (entry == null) {
                 buffer = PooledByteBufAllocator.DEFAULT.directBuffer((Short.BYTES + 8)
-                        + (secondKey.length + 8) + keysPerClient * (Long.BYTES + 8));
+                        + (secondKey.length + 8) + keysPerClient * (keyLength + 8));
                 CommandArgsUtil.writeRawShortArg(buffer, firstKey);
                 CommandArgsUtil.writeRawBytesArg(buffer, secondKey);
                 entry = new BufferEntry(buffer, 2);
                 keyForClients.put(client, entry);
             } else {
                 buffer = entry.buffer;
-                entry.incrementKeyCount();
             }
-            CommandArgsUtil.writeRawLongArg(buffer, key);
+            writeRawLongKeyArg(buffer, key);
+            entry.incrementKeyCount();
         }
         int targetClientSize = keyForClients.size();
         if (targetClientSize == 0) {
@@ -242,18 +618,251 @@ public class TurmsRedisClientManager {
         for (Map.Entry<TurmsRedisClient, BufferEntry> entry : keyForClients.entrySet()) {
             BufferEntry bufferEntry = entry.getValue();
             Mono<T> result = entry.getKey()
-                    .eval(script, bufferEntry.keyCount, new CustomKeyBuffer(bufferEntry.buffer));
+                    .evalBulk(script,
+                            cluster == null
+                                    ? bufferEntry.keyCount
+                                    : 0,
+                            new CustomKeyBuffer(bufferEntry.buffer, bufferEntry.keyCount));
             list.add(result);
         }
-        return Flux.merge(list);
+        return handleClusterError(Flux.merge(list));
+    }
+
+    private void writeRawLongKeyArg(ByteBuf buffer, long key) {
+        if (cluster == null) {
+            CommandArgsUtil.writeRawLongArg(buffer, key);
+        } else {
+            CommandArgsUtil.writeRawLongArg(buffer, RedisClusterHashTag.getTag(key), key);
+        }
     }
 
     // Internal
 
+    private Set<TurmsRedisClient> getDistinctClients() {
+        Set<TurmsRedisClient> allClients = Collections.newSetFromMap(new IdentityHashMap<>());
+        allClients.addAll(clients);
+        if (previousClients != null) {
+            allClients.addAll(previousClients);
+        }
+        return allClients;
+    }
+
+    private List<TurmsRedisClient> getClients() {
+        return cluster == null
+                ? clients
+                : cluster.getMasterClients();
+    }
+
     private TurmsRedisClient getClient(long shardKey) {
+        if (cluster != null) {
+            return cluster.getClient(shardKey);
+        }
         return clients.get(shardingAlgorithm.doSharding(shardKey, clients.size()));
     }
 
+    /**
+     * Execute the operation on the owner of the shard key. In the cluster mode, if the node replies
+     * "MOVED" or "ASK" because the slot of the shard key has been or is being migrated, the
+     * operation is retried once on the target node, and "ASKING" is sent before the operation for
+     * "ASK".
+     *
+     * @param buffers         the buffers consumed by the operation, which are copied in advance to
+     *                        retry in the cluster mode because the operation releases them
+     * @param askingOperation sends "ASKING" and the operation to the node
+     */
+    private <T> Mono<T> executeOnOwner(
+            long shardKey,
+            @Nullable ByteBuf[] buffers,
+            BiFunction<TurmsRedisClient, ByteBuf[], Mono<T>> operation,
+            BiFunction<TurmsRedisClient, ByteBuf[], Mono<T>> askingOperation) {
+        if (cluster == null) {
+            return operation.apply(getClient(shardKey), buffers);
+        }
+        TurmsRedisClient client = cluster.getClient(shardKey);
+        ByteBuf[] retryBuffers = copy(buffers);
+        AtomicBoolean isRetried = new AtomicBoolean();
+        return operation.apply(client, buffers)
+                .onErrorResume(RedisCommandExecutionException.class, e -> {
+                    RedisClusterTopology.Redirection redirection =
+                            RedisClusterTopology.parseRedirection(e);
+                    if (redirection == null) {
+                        return Mono.error(e);
+                    }
+                    return cluster.getClient(redirection, client)
+                            .flatMap(targetClient -> {
+                                isRetried.set(true);
+                                return redirection.isAsk()
+                                        ? askingOperation.apply(targetClient, retryBuffers)
+                                        : operation.apply(targetClient, retryBuffers);
+                            });
+                })
+                .doOnError(cluster::onError)
+                .doFinally(signal -> {
+                    if (retryBuffers != null && !isRetried.get()) {
+                        ReferenceCountUtil.ensureReleased(retryBuffers);
+                    }
+                });
+    }
+
+    @Nullable
+    private static ByteBuf[] copy(@Nullable ByteBuf[] buffers) {
+        if (buffers == null) {
+            return null;
+        }
+        int length = buffers.length;
+        ByteBuf[] copies = new ByteBuf[length];
+        ByteBuf buffer;
+        for (int i = 0; i < length; i++) {
+            buffer = buffers[i];
+            if (buffer != null) {
+                copies[i] = buffer.copy();
+            }
+        }
+        return copies;
+    }
+
+    private static <K, V> List<Map.Entry<K, V>> toEntries(List<KeyValue<K, V>> keyValues) {
+        List<Map.Entry<K, V>> entries = new ArrayList<>(keyValues.size());
+        for (KeyValue<K, V> keyValue : keyValues) {
+            if (keyValue.hasValue()) {
+                entries.add(Map.entry(keyValue.getKey(), keyValue.getValue()));
+            }
+        }
+        return entries;
+    }
+
+    private <T> Mono<T> handleClusterError(Mono<T> mono) {
+        return cluster == null
+                ? mono
+                : mono.doOnError(cluster::onError);
+    }
+
+    private <T> Flux<T> handleClusterError(Flux<T> flux) {
+        return cluster == null
+                ? flux
+                : flux.doOnError(cluster::onError);
+    }
+
+    // Migration on access
+
+    /**
+     * @return null if the keys of the shard key don't need to be migrated
+     */
+    @Nullable
+    private Mono<Void> migrateOnAccess(long shardKey) {
+        Function<Long, ByteBuf[]> keys = shardKeyToKeys;
+        if (keys == null) {
+            return null;
+        }
+        TurmsRedisClient previousClient = getPreviousClient(shardKey);
+        if (previousClient == null) {
+            return null;
+        }
+        return Mono.defer(() -> migrate(previousClient, getClient(shardKey), keys.apply(shardKey)));
+    }
+
+    /**
+     * @return null if the keys of the shard keys don't need to be migrated
+     */
+    @Nullable
+    private Mono<Void> migrateOnAccess(Collection<Long> shardKeys) {
+        if (shardKeyToKeys == null || previousClients == null) {
+            return null;
+        }
+        List<Mono<Void>> migrations = null;
+        for (Long shardKey : shardKeys) {
+            Mono<Void> migration = migrateOnAccess(shardKey);
+            if (migration != null) {
+                if (migrations == null) {
+                    migrations = new ArrayList<>();
+                }
+                migrations.add(migration);
+            }
+        }
+        if (migrations == null) {
+            return null;
+        }
+        return Flux.fromIterable(migrations)
+                .flatMap(Function.identity(), MIGRATION_CONCURRENCY)
+                .then();
+    }
+
+    /**
+     * @param buffers the buffers consumed by the operation, which are released if the operation
+     *                isn't executed
+     */
+    private <T> Mono<T> migrateOnAccess(
+            long shardKey,
+            ByteBuf[] buffers,
+            Supplier<Mono<T>> operation) {
+        Mono<Void> migration = migrateOnAccess(shardKey);
+        if (migration == null) {
+            return operation.get();
+        }
+        AtomicBoolean isOperated = new AtomicBoolean();
+        return migration.then(Mono.defer(() -> {
+            isOperated.set(true);
+            return operation.get();
+        }))
+                .doFinally(signal -> {
+                    if (!isOperated.get()) {
+                        ReferenceCountUtil.ensureReleased(buffers);
+                    }
+                });
+    }
+
+    private Mono<Void> migrate(
+            TurmsRedisClient previousClient,
+            TurmsRedisClient client,
+            ByteBuf[] keys) {
+        List<Mono<Boolean>> migrations = new ArrayList<>(keys.length);
+        for (ByteBuf key : keys) {
+            migrations.add(previousClient.migrate(key, client));
+        }
+        return Mono.whenDelayError(migrations)
+                .onErrorResume(t -> {
+                    LOGGER.error("Failed to migrate the keys on access to their new Redis server",
+                            t);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * @return null if not in the resharding mode, or the previous owner is the current owner
+     */
+    @Nullable
+    private TurmsRedisClient getPreviousClient(long shardKey) {
+        if (previousClients == null) {
+            return null;
+        }
+        TurmsRedisClient previousClient = previousClients
+                .get(previousShardingAlgorithm.doSharding(shardKey, previousClients.size()));
+        return previousClient == getClient(shardKey)
+                ? null
+                : previousClient;
+    }
+
+    private static class ShardKeyIterator extends LongKeyGenerator {
+        private final List<Long> shardKeys;
+        private int index;
+
+        ShardKeyIterator(List<Long> shardKeys) {
+            this.shardKeys = shardKeys;
+        }
+
+        @Override
+        public int estimatedSize() {
+            return shardKeys.size();
+        }
+
+        @Override
+        public long next() {
+            return index < shardKeys.size()
+                    ? shardKeys.get(index++)
+                    : -1;
+        }
+    }
+
     @AllArgsConstructor
     private static class BufferEntry {
         final ByteBuf buffer;
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.storage.redis.cluster;
+
+import java.nio.charset.StandardCharsets;
+
+import io.lettuce.core.cluster.SlotHash;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * Maps shard keys to the hash tags of Redis Cluster, so that all keys derived from the same shard
+ * key (e.g. "{tag}userId" and "{tag}userId:d") are stored in the same slot, and the slot of a key
+ * can be known from its shard key without hashing the key.
+ * <p>
+ * There are {@link SlotHash#SLOT_COUNT} tags, and the tag of a shard key is the hex string of the
+ * low bits of the mixed shard key (e.g. "{03fa}"), so the shard keys are evenly distributed to
+ * the slots even if their low bits are not random (e.g. user IDs).
+ *
+ * @author James Chen
+ */
+public final class RedisClusterHashTag {
+
+    public static final int TAG_LENGTH = 6;
+
+    private static final int TAG_MASK = SlotHash.SLOT_COUNT - 1;
+
+    private static final byte[][] TAGS;
+    private static final int[] TAG_SLOTS;
+
+    static {
+        TAGS = new byte[SlotHash.SLOT_COUNT][];
+        TAG_SLOTS = new int[SlotHash.SLOT_COUNT];
+        for (int i = 0; i < SlotHash.SLOT_COUNT; i++) {
+            byte[] tag = String.format("{%04x}", i)
+                    .getBytes(StandardCharsets.US_ASCII);
+            TAGS[i] = tag;
+            TAG_SLOTS[i] = SlotHash.getSlot(tag);
+        }
+    }
+
+    private RedisClusterHashTag() {
+    }
+
+    public static int getSlot(long shardKey) {
+        return TAG_SLOTS[getTagIndex(shardKey)];
+    }
+
+    /**
+     * @return the hash tag, which must not be modified
+     */
+    public static byte[] getTag(long shardKey) {
+        return TAGS[getTagIndex(shardKey)];
+    }
+
+    /**
+     * @return a buffer of the hash tag of the key followed by the key
+     */
+    public static ByteBuf writeTaggedLong(long key) {
+        return PooledByteBufAllocator.DEFAULT.directBuffer(TAG_LENGTH + Long.BYTES)
+                .writeBytes(getTag(key))
+                .writeLong(key);
+    }
+
+    /**
+     * @param buffer a buffer written by {@link #writeTaggedLong(long)}, or a buffer that only
+     *               contains the long key
+     */
+    public static long readTaggedLong(ByteBuf buffer) {
+        return buffer.getLong(buffer.writerIndex() - Long.BYTES);
+    }
+
+    private static int getTagIndex(long shardKey) {
+        // The finalizer of MurmurHash3
+        shardKey ^= shardKey >>> 33;
+        shardKey *= 0xff51afd7ed558ccdL;
+        shardKey ^= shardKey >>> 33;
+        shardKey *= 0xc4ceb9fe1a85ec53L;
+        shardKey ^= shardKey >>> 33;
+        return (int) shardKey & TAG_MASK;
+    }
+
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.storage.redis.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import jakarta.annotation.Nullable;
+
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisConnectionException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.cluster.SlotHash;
+import io.netty.buffer.ByteBuf;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import im.turms.server.common.infra.exception.ThrowableUtil;
+import im.turms.server.common.infra.logging.core.logger.Logger;
+import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
+import im.turms.server.common.storage.redis.TurmsRedisClient;
+
+/**
+ * Tracks which master node serves each slot of a Redis Cluster according to "CLUSTER SLOTS", so
+ * that commands can be sent to the node that owns their slot directly.
+ * <p>
+ * The slots are refreshed in the background when a command fails because the topology has changed
+ * (e.g. "MOVED" after a slot migration, or a connection error after a failover). A command that is
+ * redirected by "MOVED" or "ASK" can be retried on the node returned by
+ * {@link #getClient(Redirection, TurmsRedisClient)}. Note that the clients of the nodes that have
+ * left the cluster are kept until the topology is destroyed.
+ *
+ * @author James Chen
+ */
+public class RedisClusterTopology {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisClusterTopology.class);
+
+    private static final Duration FETCH_SLOTS_TIMEOUT = Duration.ofSeconds(10);
+    private static final long MIN_REFRESH_INTERVAL_MILLIS = 1000;
+
+    private final RedisURI uriTemplate;
+    private final Function<RedisURI, TurmsRedisClient> clientFactory;
+
+    /**
+     * "host:port" -> node
+     */
+    private final Map<String, Node> addressToNode = new ConcurrentHashMap<>();
+
+    private volatile TurmsRedisClient[] slotToClient;
+    private volatile List<TurmsRedisClient> masterClients;
+
+    private final AtomicBoolean isRefreshing = new AtomicBoolean();
+    private volatile long lastRefreshTimeMillis;
+
+    /**
+     * @param seedUris      the URIs of some nodes of the cluster. The credentials and options of
+     *                      the first URI are used to connect to all nodes
+     * @param clientFactory creates the client of a node
+     * @throws RuntimeException if no seed node replies with the slots
+     */
+    public RedisClusterTopology(
+            List<String> seedUris,
+            Function<RedisURI, TurmsRedisClient> clientFactory) {
+        if (seedUris.isEmpty()) {
+            throw new IllegalArgumentException("The seed URIs must not be empty");
+        }
+        this.clientFactory = clientFactory;
+        uriTemplate = RedisURI.create(seedUris.getFirst());
+        for (String seedUri : seedUris) {
+            RedisURI uri = RedisURI.create(seedUri);
+            addressToNode.computeIfAbsent(getAddress(uri.getHost(), uri.getPort()),
+                    key -> new Node(uri, clientFactory.apply(uri)));
+        }
+        refresh().block(FETCH_SLOTS_TIMEOUT.multipliedBy(2));
+    }
+
+    public Mono<Void> destroy(long timeoutMillis) {
+        Set<TurmsRedisClient> clients = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node node : addressToNode.values()) {
+            clients.add(node.client);
+        }
+        List<Mono<Void>> monos = new ArrayList<>(clients.size());
+        for (TurmsRedisClient client : clients) {
+            monos.add(client.destroy(timeoutMillis));
+        }
+        return Mono.whenDelayError(monos);
+    }
+
+    public TurmsRedisClient getClient(long shardKey) {
+        return slotToClient[RedisClusterHashTag.getSlot(shardKey)];
+    }
+
+    /**
+     * @return the clients of the master nodes that serve at least one slot
+     */
+    public List<TurmsRedisClient> getMasterClients() {
+        return masterClients;
+    }
+
+    /**
+     * Get the client of the node that a command is redirected to. For "MOVED", the slot is
+     * assigned to the node immediately so that the following commands of the slot are sent to the
+     * node, and all slots are refreshed in the background.
+     *
+     * @param redirectingClient the client of the node that replied the redirection
+     */
+    public Mono<TurmsRedisClient> getClient(
+            Redirection redirection,
+            TurmsRedisClient redirectingClient) {
+        String host = redirection.host();
+        if (host.isEmpty()) {
+            // Redis replies an empty host if the node doesn't know its endpoint,
+            // which means the endpoint is the same as the redirecting node
+            for (Node node : addressToNode.values()) {
+                if (node.client == redirectingClient) {
+                    host = node.uri.getHost();
+                    break;
+                }
+            }
+        }
+        int port = redirection.port();
+        Node node = addressToNode.get(getAddress(host, port));
+        Mono<TurmsRedisClient> client;
+        if (node == null) {
+            String targetHost = host;
+            client = Mono.fromCallable(() -> getOrCreateNode(targetHost, port).client)
+                    // Connecting to new nodes blocks
+                    .subscribeOn(Schedulers.boundedElastic());
+        } else {
+            client = Mono.just(node.client);
+        }
+        if (redirection.isAsk()) {
+            return client;
+        }
+        return client.doOnNext(targetClient -> {
+            slotToClient[redirection.slot()] = targetClient;
+            refreshInBackground();
+        });
+    }
+
+    /**
+     * Refresh the slots in the background if the error indicates that the topology has changed.
+     */
+    public void onError(Throwable throwable) {
+        if (isTopologyChanged(throwable)) {
+            refreshInBackground();
+        }
+    }
+
+    private void refreshInBackground() {
+        if (System.currentTimeMillis() - lastRefreshTimeMillis < MIN_REFRESH_INTERVAL_MILLIS
+                || !isRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresh().doFinally(signal -> isRefreshing.set(false))
+                .subscribe(null,
+                        t -> LOGGER.error(
+                                "Caught an error while refreshing the Redis cluster slots",
+                                t));
+    }
+
+    /**
+     * Fetch the slots from all known nodes concurrently and use the first reply.
+     */
+    public Mono<Void> refresh() {
+        List<Node> nodes = new ArrayList<>(addressToNode.values());
+        return Flux.fromIterable(nodes)
+                .flatMap(node -> node.client.clusterSlots()
+                        .timeout(FETCH_SLOTS_TIMEOUT)
+                        .map(reply -> Map.entry(node, reply))
+                        .onErrorResume(t -> {
+                            LOGGER.warn("Failed to fetch the slots from the Redis cluster node: "
+                                    + node.uri.getHost()
+                                    + ":"
+                                    + node.uri.getPort(), t);
+                            return Mono.empty();
+                        }))
+                .next()
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                        "Failed to fetch the slots from all known Redis cluster nodes")))
+                // Connecting to new nodes blocks
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(nodeAndReply -> updateSlots(nodeAndReply.getKey(),
+                        nodeAndReply.getValue()))
+                .then();
+    }
+
+    /**
+     * @param reply [[start slot, end slot, [master host, master port, ...], replicas...], ...]
+     */
+    private void updateSlots(Node queriedNode, List<Object> reply) {
+        TurmsRedisClient[] newSlotToClient = new TurmsRedisClient[SlotHash.SLOT_COUNT];
+        Set<TurmsRedisClient> newMasterClients =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object range : reply) {
+            List<Object> elements = (List<Object>) range;
+            int start = ((Long) elements.get(0)).intValue();
+            int end = ((Long) elements.get(1)).intValue();
+            List<Object> master = (List<Object>) elements.get(2);
+            String host = ((ByteBuf) master.get(0)).toString(StandardCharsets.UTF_8);
+            int port = ((Long) master.get(1)).intValue();
+            // Redis replies "" or "?" if the node doesn't know its endpoint,
+            // which means the endpoint is the same as the queried node
+            if (host.isEmpty() || "?".equals(host)) {
+                host = queriedNode.uri.getHost();
+            }
+            TurmsRedisClient client = getOrCreateNode(host, port).client;
+            newMasterClients.add(client);
+            for (int slot = start; slot <= end; slot++) {
+                newSlotToClient[slot] = client;
+            }
+        }
+        if (newMasterClients.isEmpty()) {
+            throw new IllegalStateException("No slot is served by the Redis cluster");
+        }
+        // Send the commands of the slots not served by any node to any master,
+        // which will reply "CLUSTERDOWN" instead of failing to route them locally
+        TurmsRedisClient anyClient = newMasterClients.iterator()
+                .next();
+        for (int slot = 0; slot < SlotHash.SLOT_COUNT; slot++) {
+            if (newSlotToClient[slot] == null) {
+                newSlotToClient[slot] = anyClient;
+            }
+        }
+        masterClients = List.copyOf(newMasterClients);
+        slotToClient = newSlotToClient;
+        lastRefreshTimeMillis = System.currentTimeMillis();
+    }
+
+    private Node getOrCreateNode(String host, int port) {
+        return addressToNode.computeIfAbsent(getAddress(host, port), key -> {
+            RedisURI uri = RedisURI.builder(uriTemplate)
+                    .withHost(host)
+                    .withPort(port)
+                    .build();
+            return new Node(uri, clientFactory.apply(uri));
+        });
+    }
+
+    private static String getAddress(String host, int port) {
+        return host
+                + ":"
+                + port;
+    }
+
+    /**
+     * @return the redirection if the node replied "MOVED" or "ASK" because the slot of the command
+     *         has been or is being migrated to another node, or null if the command is not
+     *         redirected
+     */
+    @Nullable
+    public static Redirection parseRedirection(Throwable throwable) {
+        if (!(throwable instanceof RedisCommandExecutionException)) {
+            return null;
+        }
+        // e.g. "MOVED 3999 127.0.0.1:6381" or "ASK 3999 127.0.0.1:6381"
+        String message = throwable.getMessage();
+        if (message == null) {
+            return null;
+        }
+        boolean isAsk;
+        int slotStart;
+        if (message.startsWith("MOVED ")) {
+            isAsk = false;
+            slotStart = 6;
+        } else if (message.startsWith("ASK ")) {
+            isAsk = true;
+            slotStart = 4;
+        } else {
+            return null;
+        }
+        int slotEnd = message.indexOf(' ', slotStart);
+        int portStart = message.lastIndexOf(':') + 1;
+        if (slotEnd < 0 || portStart <= slotEnd) {
+            return null;
+        }
+        try {
+            return new Redirection(
+                    isAsk,
+                    Integer.parseInt(message, slotStart, slotEnd, 10),
+                    message.substring(slotEnd + 1, portStart - 1),
+                    Integer.parseInt(message, portStart, message.length(), 10));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @implNote "ASK" is not treated as a topology change because the slot is still served by the
+     *           node until the migration completes, after which the node replies "MOVED".
+     */
+    private static boolean isTopologyChanged(Throwable throwable) {
+        if (ThrowableUtil.contains(throwable, RedisConnectionException.class)
+                || ThrowableUtil.contains(throwable, RedisCommandTimeoutException.class)) {
+            return true;
+        }
+        if (!(throwable instanceof RedisCommandExecutionException)) {
+            return false;
+        }
+        String message = throwable.getMessage();
+        return message != null && (message.startsWith("MOVED ")
+                || message.startsWith("CLUSTERDOWN")
+                // A script has accessed a key that is not served by the node
+                || message.contains("non local key"));
+    }
+
+    /**
+     * @param isAsk true for "ASK", which redirects only the current command while the slot is being
+     *              migrated, and false for "MOVED", which means the slot has been migrated
+     * @param host  empty if the redirecting node doesn't know the endpoint of the target node
+     */
+    public record Redirection(
+            boolean isAsk,
+            int slot,
+            String host,
+            int port
+    ) {
+    }
+
+    private record Node(
+            RedisURI uri,
+            TurmsRedisClient client
+    ) {
+    }
+
+}
@@ -21,20 +21,38 @@ import java.nio.ByteBuffer;
 
 import io.netty.buffer.ByteBuf;
 
+import im.turms.server.common.storage.redis.cluster.RedisClusterHashTag;
+
 /**
  * @author James Chen
  */
 public class SessionKeyCodec implements TurmsRedisCodec<Long> {
 
+    private final boolean hashTagged;
+
+    public SessionKeyCodec() {
+        this(false);
+    }
+
+    /**
+     * @param hashTagged whether to prefix the user ID with its hash tag for Redis Cluster
+     */
+    public SessionKeyCodec(boolean hashTagged) {
+        this.hashTagged = hashTagged;
+    }
+
     @Override
     public ByteBuf encode(Long value) {
-        return BUFFER_ALLOCATOR.directBuffer(Long.BYTES)
-                .writeLong(value);
+        return hashTagged
+                ? RedisClusterHashTag.writeTaggedLong(value)
+                : BUFFER_ALLOCATOR.directBuffer(Long.BYTES)
+                        .writeLong(value);
     }
 
     @Override
     public Long decode(ByteBuffer in) {
-        return in.getLong();
+        // The user ID is always the last 8 bytes no matter whether the key is hash-tagged
+        return in.getLong(in.limit() - Long.BYTES);
     }
 
 }
@@ -71,6 +71,14 @@ public class RedisCodecContext {
         return buffers;
     }
 
+    public Object decodeHashField(ByteBuf field) {
+        return decode(hashFieldCodec, field);
+    }
+
+    public Object decodeHashValue(ByteBuf value) {
+        return decode(hashValueCodec, value);
+    }
+
     // Geo
 
     public ByteBuf encodeGeoMember(Object member) {
@@ -115,4 +123,11 @@ public class RedisCodecContext {
         return new RefCntCorrectorByteBuf(codec.encode(value));
     }
 
+    private Object decode(TurmsRedisCodec codec, ByteBuf buffer) {
+        if (codec == null) {
+            return buffer;
+        }
+        return codec.decode(buffer.nioBuffer());
+    }
+
 }
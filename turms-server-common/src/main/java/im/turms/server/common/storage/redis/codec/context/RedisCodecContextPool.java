@@ -42,5 +42,15 @@ public final class RedisCodecContextPool {
                     new SessionHashValueCodec(),
                     null,
                     null);
+    /**
+     * For Redis Cluster, in which the session keys are prefixed with their hash tags.
+     */
+    public static final RedisCodecContext USER_SESSIONS_STATUS_CLUSTER_CODEC_CONTEXT =
+            new RedisCodecContext(
+                    new SessionKeyCodec(true),
+                    new SessionHashFieldCodec(),
+                    new SessionHashValueCodec(),
+                    null,
+                    null);
 
 }
\ No newline at end of file
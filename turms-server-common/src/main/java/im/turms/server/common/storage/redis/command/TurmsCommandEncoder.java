@@ -107,13 +107,13 @@ public class TurmsCommandEncoder extends ChannelOutboundHandlerAdapter {
         if (args == null) {
             return 0;
         }
-        int count = 0;
         ProtocolKeyword type = command.getType();
-        count += type == CommandType.EVAL || type == CommandType.EVALSHA
-                // Add 2, one for script, another for the length of keys
-                ? (int) CommandArgsUtil.getLongArgument(args, 1) + 2
+        // Only scripts may contain custom key buffers, which contain multiple arguments.
+        // Note that we cannot count the arguments according to the number of keys
+        // because the arguments may contain not only keys but also "ARGV"
+        return type == CommandType.EVAL || type == CommandType.EVALSHA
+                ? CommandArgsUtil.countArgs(args)
                 : args.count();
-        return count;
     }
 
     /**
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.storage.redis.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A consistent hash ring with virtual nodes.
+ * <p>
+ * Each server is placed on the ring {@link #virtualNodeCount} times according to the hash of its
+ * ID (e.g. its URI) instead of its index, so when a server is added or removed, only the keys
+ * owned by the server (about 1/N of all keys) are remapped, no matter where the server is in the
+ * server list.
+ * <p>
+ * Note that the algorithm maps keys differently from {@link ConsistentHashingShardingAlgorithm},
+ * so switching to it remaps most keys. Use the resharding mode of
+ * {@link im.turms.server.common.storage.redis.TurmsRedisClientManager} to switch online.
+ *
+ * @author James Chen
+ */
+public class ConsistentHashRingShardingAlgorithm extends ShardingAlgorithm {
+
+    private final int virtualNodeCount;
+    private final int serverCount;
+
+    /**
+     * Sorted hashes of virtual nodes.
+     */
+    private final long[] virtualNodeHashes;
+    /**
+     * The server index of the virtual node at the same position in {@link #virtualNodeHashes}.
+     */
+    private final int[] virtualNodeServerIndexes;
+
+    public ConsistentHashRingShardingAlgorithm(List<String> serverIds, int virtualNodeCount) {
+        if (serverIds.isEmpty()) {
+            throw new IllegalArgumentException("The server IDs must not be empty");
+        }
+        if (new HashSet<>(serverIds).size() != serverIds.size()) {
+            throw new IllegalArgumentException(
+                    "The server IDs must be unique, but got: " + serverIds);
+        }
+        if (virtualNodeCount <= 0) {
+            throw new IllegalArgumentException(
+                    "The virtual node count must be greater than 0, but got: "
+                            + virtualNodeCount);
+        }
+        this.virtualNodeCount = virtualNodeCount;
+        serverCount = serverIds.size();
+        int nodeCount = serverCount * virtualNodeCount;
+        long[] hashes = new long[nodeCount];
+        for (int serverIndex = 0; serverIndex < serverCount; serverIndex++) {
+            byte[] serverId = serverIds.get(serverIndex)
+                    .getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < virtualNodeCount; i++) {
+                hashes[serverIndex * virtualNodeCount + i] = hashVirtualNode(serverId, i);
+            }
+        }
+        // Sort the virtual nodes by their hashes
+        Integer[] sortedNodeIndexes = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            sortedNodeIndexes[i] = i;
+        }
+        Arrays.sort(sortedNodeIndexes,
+                (index1, index2) -> Long.compareUnsigned(hashes[index1], hashes[index2]));
+        virtualNodeHashes = new long[nodeCount];
+        virtualNodeServerIndexes = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int nodeIndex = sortedNodeIndexes[i];
+            virtualNodeHashes[i] = hashes[nodeIndex];
+            virtualNodeServerIndexes[i] = nodeIndex / virtualNodeCount;
+        }
+    }
+
+    public int getVirtualNodeCount() {
+        return virtualNodeCount;
+    }
+
+    /**
+     * @param serverSize must be the same as the number of server IDs passed to the constructor
+     */
+    @Override
+    public int doSharding(long shardKey, int serverSize) {
+        if (serverSize != serverCount) {
+            throw new IllegalArgumentException(
+                    "The server size ("
+                            + serverSize
+                            + ") is different from the number of servers on the ring ("
+                            + serverCount
+                            + ")");
+        }
+        long hash = mix(shardKey);
+        // Find the first virtual node whose hash is greater than or equal to the key hash
+        long[] hashes = virtualNodeHashes;
+        int low = 0;
+        int high = hashes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(hashes[mid], hash) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return virtualNodeServerIndexes[low == hashes.length
+                ? 0
+                : low];
+    }
+
+    private static long hashVirtualNode(byte[] serverId, int virtualNodeIndex) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : serverId) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash ^ virtualNodeIndex);
+    }
+
+    /**
+     * The finalizer of MurmurHash3 to spread the bits of shard keys (e.g. user IDs, whose low bits
+     * are sequence numbers) evenly.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+}
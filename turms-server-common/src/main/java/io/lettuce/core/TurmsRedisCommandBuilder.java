@@ -22,7 +22,9 @@ import java.util.List;
 import io.lettuce.core.codec.RedisCodec;
 import io.lettuce.core.output.CommandOutput;
 import io.lettuce.core.output.GeoWithinListOutput;
+import io.lettuce.core.output.IntegerOutput;
 import io.lettuce.core.output.KeyValueListOutput;
+import io.lettuce.core.output.StatusOutput;
 import io.lettuce.core.protocol.Command;
 import io.lettuce.core.protocol.CommandArgs;
 import io.lettuce.core.protocol.CommandType;
@@ -31,9 +33,14 @@ import io.netty.buffer.ByteBuf;
 import im.turms.server.common.storage.redis.codec.TurmsRedisCodecAdapter;
 import im.turms.server.common.storage.redis.codec.context.RedisCodecContext;
 
+import static io.lettuce.core.protocol.CommandType.ASKING;
+import static io.lettuce.core.protocol.CommandType.DEL;
 import static io.lettuce.core.protocol.CommandType.EVAL;
 import static io.lettuce.core.protocol.CommandType.EVALSHA;
+import static io.lettuce.core.protocol.CommandType.HDEL;
 import static io.lettuce.core.protocol.CommandType.HGETALL;
+import static io.lettuce.core.protocol.CommandType.HINCRBY;
+import static io.lettuce.core.protocol.CommandType.INCR;
 
 /**
  * @author James Chen
@@ -51,8 +58,41 @@ public class TurmsRedisCommandBuilder extends RedisCommandBuilder {
         this.memberCodec = new TurmsRedisCodecAdapter(null, context.getGeoMemberCodec());
     }
 
+    // Cluster
+
+    @Override
+    public Command<ByteBuf, ByteBuf, String> asking() {
+        return createCommand(ASKING, new StatusOutput<>(codec));
+    }
+
+    // Keys
+
+    public Command<ByteBuf, ByteBuf, Long> del(ByteBuf[] keys) {
+        CommandArgs<ByteBuf, ByteBuf> args = new CommandArgs<>(codec).addKeys(keys);
+        return createCommand(DEL, new IntegerOutput<>(codec), args);
+    }
+
+    // Strings
+
+    public Command<ByteBuf, ByteBuf, Long> incr(ByteBuf key) {
+        return createCommand(INCR, new IntegerOutput<>(codec), key);
+    }
+
     // Hashes
 
+    public Command<ByteBuf, ByteBuf, Long> hdel(ByteBuf key, ByteBuf[] fields) {
+        CommandArgs<ByteBuf, ByteBuf> args = new CommandArgs<>(codec).addKey(key)
+                .addKeys(fields);
+        return createCommand(HDEL, new IntegerOutput<>(codec), args);
+    }
+
+    public Command<ByteBuf, ByteBuf, Long> hincrby(ByteBuf key, ByteBuf field, long amount) {
+        CommandArgs<ByteBuf, ByteBuf> args = new CommandArgs<>(codec).addKey(key)
+                .addKey(field)
+                .add(amount);
+        return createCommand(HINCRBY, new IntegerOutput<>(codec), args);
+    }
+
     public <K, V> Command<ByteBuf, ByteBuf, List<KeyValue<K, V>>> hgetall(ByteBuf key) {
         return createCommand(HGETALL, new KeyValueListOutput<>(hashFieldAndValueCodec), key);
     }
@@ -97,6 +97,22 @@ public final class CommandArgsUtil {
         }
     }
 
+    /**
+     * @return the number of arguments to write, in which a {@link CustomKeyBuffer} is counted as
+     *         the number of the arguments it contains
+     */
+    public static int countArgs(CommandArgs<?, ?> args) {
+        int count = args.count();
+        for (CommandArgs.SingularArgument arg : args.singularArguments) {
+            if (arg instanceof CommandArgs.KeyArgument<?, ?> argument
+                    && argument.key instanceof TurmsWrappedByteBuf buf
+                    && buf.unwrap() instanceof CustomKeyBuffer customKeyBuffer) {
+                count += customKeyBuffer.getArgCount() - 1;
+            }
+        }
+        return count;
+    }
+
     public static long getLongArgument(CommandArgs<?, ?> args, int i) {
         CommandArgs.IntegerArgument argument =
                 (CommandArgs.IntegerArgument) args.singularArguments.get(i);
@@ -139,6 +155,18 @@ public final class CommandArgsUtil {
                 .writeBytes(CRLF_BYTES);
     }
 
+    /**
+     * Write the prefix followed by the long value as one argument.
+     */
+    public static void writeRawLongArg(ByteBuf out, byte[] prefix, long value) {
+        out.writeByte(BULK_STRINGS_FLAG_BYTE)
+                .writeBytes(getArgLength(prefix.length + Long.BYTES).duplicate())
+                .writeBytes(CRLF_BYTES)
+                .writeBytes(prefix)
+                .writeLong(value)
+                .writeBytes(CRLF_BYTES);
+    }
+
     public static void writeRawShortArg(ByteBuf out, short value) {
         out.writeByte(BULK_STRINGS_FLAG_BYTE)
                 .writeBytes(getArgLength(Short.BYTES).duplicate())
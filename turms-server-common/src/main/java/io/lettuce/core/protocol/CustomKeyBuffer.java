@@ -21,10 +21,24 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.TurmsWrappedByteBuf;
 
 /**
+ * A buffer that contains multiple encoded arguments, so it is written as is.
+ *
  * @author James Chen
  */
 public class CustomKeyBuffer extends TurmsWrappedByteBuf {
-    public CustomKeyBuffer(ByteBuf buf) {
+
+    private final int argCount;
+
+    /**
+     * @param argCount the number of arguments encoded in the buffer
+     */
+    public CustomKeyBuffer(ByteBuf buf, int argCount) {
         super(buf);
+        this.argCount = argCount;
     }
+
+    public int getArgCount() {
+        return argCount;
+    }
+
 }
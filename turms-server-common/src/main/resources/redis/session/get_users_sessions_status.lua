@@ -0,0 +1,28 @@
+local keys = KEYS
+-- In the cluster mode, the arguments that are not keys are passed as ARGV
+local argv = ARGV
+local argv_offset = #keys
+for i = 1, #argv do
+    keys[argv_offset + i] = argv[i]
+end
+local redis_call = redis.call
+
+local statuses = {}
+local status_index = 0
+for i = 1, #keys do
+    local user_id = keys[i]
+    local entries = redis_call('HGETALL', user_id)
+    local entry_count = #entries
+    if entry_count > 0 then
+        status_index = status_index + 1
+        statuses[status_index] = user_id
+        status_index = status_index + 1
+        statuses[status_index] = entry_count / 2
+        for j = 1, entry_count do
+            status_index = status_index + 1
+            statuses[status_index] = entries[j]
+        end
+    end
+end
+
+return statuses
\ No newline at end of file
@@ -1,4 +1,10 @@
 local keys = KEYS
+-- In the cluster mode, the arguments that are not keys are passed as ARGV
+local argv = ARGV
+local argv_offset = #keys
+for i = 1, #argv do
+    keys[argv_offset + i] = argv[i]
+end
 local redis_call = redis.call
 local struct_unpack = struct.unpack
 
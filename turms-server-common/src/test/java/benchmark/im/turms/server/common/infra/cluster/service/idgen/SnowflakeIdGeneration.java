@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmark.im.turms.server.common.infra.cluster.service.idgen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import im.turms.server.common.infra.cluster.service.idgen.SnowflakeIdGenerator;
+
+/**
+ * Compares the throughput of generating increasing IDs with:
+ * <p>
+ * "legacy": the previous implementation that kept the sequence number and the last timestamp in
+ * two shared {@link AtomicLong}s.
+ * <p>
+ * "singleStripe": {@link SnowflakeIdGenerator} with one stripe, so all threads still contend on
+ * the same state, but only one CAS is needed per ID.
+ * <p>
+ * "striped": {@link SnowflakeIdGenerator} with {@link SnowflakeIdGenerator#MAX_STRIPE_COUNT}
+ * stripes.
+ * <p>
+ * The "batch" benchmarks reserve {@link #BATCH_SIZE} IDs per call (the legacy generator is called
+ * in a loop), and the score is per ID.
+ * <p>
+ * Reference:
+ * <p>
+ * JMH version: 1.37
+ * <p>
+ * VM version: JDK 21.0.1, OpenJDK 64-Bit Server VM, 21.0.1+12-LTS
+ * <p>
+ * CPU: 1 core (so the threads never contend in parallel, and striping cannot show its benefit;
+ * run it on a multicore machine to compare "singleStripe" and "striped")
+ *
+ * <pre>
+ * Benchmark                          (generatorType)   Mode  Cnt    Score   Units
+ * nextIncreasingId_1Thread                    legacy  thrpt    3   23.434  ops/us
+ * nextIncreasingId_1Thread              singleStripe  thrpt    3   23.348  ops/us
+ * nextIncreasingId_1Thread                   striped  thrpt    3   22.026  ops/us
+ * nextIncreasingId_8Threads                   legacy  thrpt    3   21.541  ops/us
+ * nextIncreasingId_8Threads             singleStripe  thrpt    3   23.944  ops/us
+ * nextIncreasingId_8Threads                  striped  thrpt    3   23.552  ops/us
+ * nextIncreasingId_32Threads                  legacy  thrpt    3   21.959  ops/us
+ * nextIncreasingId_32Threads            singleStripe  thrpt    3   23.310  ops/us
+ * nextIncreasingId_32Threads                 striped  thrpt    3   22.221  ops/us
+ * nextIncreasingIds_batch_1Thread             legacy  thrpt    3   22.936  ops/us
+ * nextIncreasingIds_batch_1Thread       singleStripe  thrpt    3  638.392  ops/us
+ * nextIncreasingIds_batch_1Thread            striped  thrpt    3  638.402  ops/us
+ * nextIncreasingIds_batch_8Threads            legacy  thrpt    3   20.100  ops/us
+ * nextIncreasingIds_batch_8Threads      singleStripe  thrpt    3  698.466  ops/us
+ * nextIncreasingIds_batch_8Threads           striped  thrpt    3  731.739  ops/us
+ * nextIncreasingIds_batch_32Threads           legacy  thrpt    3   20.195  ops/us
+ * nextIncreasingIds_batch_32Threads     singleStripe  thrpt    3  506.414  ops/us
+ * nextIncreasingIds_batch_32Threads          striped  thrpt    3  446.045  ops/us
+ * </pre>
+ *
+ * @author James Chen
+ */
+@Fork(value = 2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SnowflakeIdGeneration {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"legacy", "singleStripe", "striped"})
+    private String generatorType;
+
+    private IdGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        generator = switch (generatorType) {
+            case "legacy" -> new LegacyIdGenerator();
+            case "singleStripe" -> new StripedIdGenerator(new SnowflakeIdGenerator(0, 0, 1));
+            case "striped" -> new StripedIdGenerator(
+                    new SnowflakeIdGenerator(0, 0, SnowflakeIdGenerator.MAX_STRIPE_COUNT));
+            default -> throw new IllegalArgumentException(
+                    "Unknown generator type: " + generatorType);
+        };
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextIncreasingId_1Thread() {
+        return generator.nextIncreasingId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long nextIncreasingId_8Threads() {
+        return generator.nextIncreasingId();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public long nextIncreasingId_32Threads() {
+        return generator.nextIncreasingId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long[] nextIncreasingIds_batch_1Thread() {
+        return generator.nextIncreasingIds(BATCH_SIZE);
+    }
+
+    @Benchmark
+    @Threads(8)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long[] nextIncreasingIds_batch_8Threads() {
+        return generator.nextIncreasingIds(BATCH_SIZE);
+    }
+
+    @Benchmark
+    @Threads(32)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long[] nextIncreasingIds_batch_32Threads() {
+        return generator.nextIncreasingIds(BATCH_SIZE);
+    }
+
+    private interface IdGenerator {
+        long nextIncreasingId();
+
+        long[] nextIncreasingIds(int count);
+    }
+
+    private record StripedIdGenerator(
+            SnowflakeIdGenerator generator
+    ) implements IdGenerator {
+        @Override
+        public long nextIncreasingId() {
+            return generator.nextIncreasingId();
+        }
+
+        @Override
+        public long[] nextIncreasingIds(int count) {
+            return generator.nextIncreasingIds(count);
+        }
+    }
+
+    /**
+     * A copy of the previous implementation of {@link SnowflakeIdGenerator#nextIncreasingId()}.
+     */
+    private static class LegacyIdGenerator implements IdGenerator {
+        private static final long EPOCH = 1602547200000L;
+        private static final long SEQUENCE_NUMBER_MASK = (1 << 10) - 1;
+
+        private final AtomicLong lastTimestamp = new AtomicLong();
+        private final AtomicLong sequenceNumber = new AtomicLong();
+
+        @Override
+        public long nextIncreasingId() {
+            long sequenceNum = sequenceNumber.incrementAndGet() & SEQUENCE_NUMBER_MASK;
+            long timestamp = lastTimestamp.updateAndGet(lastTs -> {
+                long nonBackwardsTimestamp = Math.max(lastTs, System.currentTimeMillis());
+                if (sequenceNum == 0) {
+                    nonBackwardsTimestamp++;
+                }
+                return nonBackwardsTimestamp;
+            }) - EPOCH;
+            return (timestamp << 22) | sequenceNum;
+        }
+
+        @Override
+        public long[] nextIncreasingIds(int count) {
+            long[] ids = new long[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = nextIncreasingId();
+            }
+            return ids;
+        }
+    }
+
+}
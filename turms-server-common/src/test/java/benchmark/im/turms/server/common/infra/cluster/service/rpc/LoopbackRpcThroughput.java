@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmark.im.turms.server.common.infra.cluster.service.rpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.netty.Connection;
+import reactor.netty.DisposableServer;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.tcp.TcpServer;
+
+/**
+ * Drives RPC-like frames over loopback TCP connections to compare the throughput with and without
+ * flush consolidation, and with one or multiple connections between two nodes.
+ * <p>
+ * Each benchmark thread sends a batch of frames in the same way as {@code RpcEndpoint} (i.e.
+ * "sendObject()" from a non-event-loop thread), and waits until the echo server has responded to
+ * all of them, so there are "threads * batchSize" frames in flight.
+ * <p>
+ * Reference:
+ * <p>
+ * JMH version: 1.37
+ * <p>
+ * VM version: JDK 21.0.1, OpenJDK 64-Bit Server VM, 21.0.1+12-LTS
+ * <p>
+ * CPU: 1 core (so multiple connections cannot make use of more event loop threads)
+ *
+ * <pre>
+ * Benchmark       (connectionCount)  (flushConsolidationThreshold)   Mode  Cnt       Score   Units
+ * sendAndReceive                  1                              0  thrpt    3   78820.214   ops/s
+ * sendAndReceive                  1                            256  thrpt    3  288566.833   ops/s
+ * sendAndReceive                  4                              0  thrpt    3   73077.306   ops/s
+ * sendAndReceive                  4                            256  thrpt    3  231087.284   ops/s
+ * </pre>
+ *
+ * @author James Chen
+ */
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+public class LoopbackRpcThroughput {
+
+    private static final int MAX_THREAD_COUNT = 64;
+    private static final int BATCH_SIZE = 256;
+    private static final int FRAME_BODY_SIZE = 128;
+
+    @Param({"0", "256"})
+    private int flushConsolidationThreshold;
+
+    @Param({"1", "4"})
+    private int connectionCount;
+
+    private LoopResources serverLoops;
+    private LoopResources clientLoops;
+    private DisposableServer server;
+    private List<Connection> connections;
+    /**
+     * The number of responses received by each benchmark thread.
+     */
+    private final AtomicLongArray threadIndexToReceivedCount =
+            new AtomicLongArray(MAX_THREAD_COUNT);
+    private final AtomicInteger nextThreadIndex = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        serverLoops = LoopResources.create("benchmark-rpc-server", 4, true);
+        clientLoops = LoopResources.create("benchmark-rpc-client", 4, true);
+        server = TcpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .runOn(serverLoops)
+                .doOnConnection(connection -> {
+                    addFrameHandlers(connection);
+                    connection.addHandlerLast("echo", new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ctx.writeAndFlush(msg);
+                        }
+                    });
+                })
+                .bindNow();
+        connections = new ArrayList<>(connectionCount);
+        for (int i = 0; i < connectionCount; i++) {
+            Connection connection = TcpClient.newConnection()
+                    .host("127.0.0.1")
+                    .port(server.port())
+                    .runOn(clientLoops)
+                    .connectNow();
+            addFrameHandlers(connection);
+            connection.addHandlerLast("responseCounter", new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                    ByteBuf frame = (ByteBuf) msg;
+                    threadIndexToReceivedCount.incrementAndGet(frame.getInt(Integer.BYTES));
+                    frame.release();
+                }
+            });
+            connections.add(connection);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Connection connection : connections) {
+            connection.disposeNow();
+        }
+        server.disposeNow();
+        clientLoops.disposeLater()
+                .block();
+        serverLoops.disposeLater()
+                .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void sendAndReceive(ThreadState state) {
+        int threadIndex = state.threadIndex;
+        List<Connection> localConnections = connections;
+        int size = localConnections.size();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            ByteBuf frame = PooledByteBufAllocator.DEFAULT
+                    .directBuffer(Integer.BYTES + Integer.BYTES + FRAME_BODY_SIZE);
+            frame.writeInt(Integer.BYTES + FRAME_BODY_SIZE)
+                    .writeInt(threadIndex)
+                    .writerIndex(frame.writerIndex() + FRAME_BODY_SIZE);
+            Connection connection = localConnections.get((state.nextConnectionIndex++) % size);
+            connection.outbound()
+                    .sendObject(frame)
+                    .then()
+                    .subscribe();
+        }
+        long expectedCount = state.sentCount += BATCH_SIZE;
+        while (threadIndexToReceivedCount.get(threadIndex) < expectedCount) {
+            LockSupport.parkNanos(1000);
+        }
+    }
+
+    private void addFrameHandlers(Connection connection) {
+        if (flushConsolidationThreshold > 0) {
+            connection.addHandlerLast("flushConsolidation",
+                    new FlushConsolidationHandler(flushConsolidationThreshold, true));
+        }
+        connection.addHandlerLast("frameDecoder",
+                new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, Integer.BYTES));
+        // The frames are consumed by our own handlers instead of the inbound of the connection,
+        // so enable auto-read explicitly because no one subscribes to the inbound
+        connection.channel()
+                .config()
+                .setAutoRead(true);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private int threadIndex;
+        private int nextConnectionIndex;
+        private long sentCount;
+
+        @Setup(Level.Trial)
+        public void setup(LoopbackRpcThroughput benchmark) {
+            threadIndex = benchmark.nextThreadIndex.getAndIncrement();
+            nextConnectionIndex = threadIndex;
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmark.im.turms.server.common.infra.collection;
+
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import im.turms.server.common.infra.collection.CollectionUtil;
+import im.turms.server.common.infra.collection.ImmutableSortedLongSet;
+
+/**
+ * Compares the cost of resolving the recipients of a group message from the cached group members:
+ * <p>
+ * "hashSet" copies the member IDs into a new {@code HashSet<Long>} and removes the sender, which is
+ * what turms-service did before the member IDs were cached as {@link ImmutableSortedLongSet}.
+ * <p>
+ * "immutableSortedLongSet" excludes the sender from the shared snapshot without copying.
+ * <p>
+ * Both benchmarks iterate the recipients once as the fan-out does. Run with "-prof gc" to compare
+ * "gc.alloc.rate.norm" (bytes allocated per message).
+ * <p>
+ * Reference:
+ * <p>
+ * JMH version: 1.37
+ * <p>
+ * VM version: JDK 21.0.1, OpenJDK 64-Bit Server VM, 21.0.1+12-LTS
+ * <p>
+ * GroupMemberIdsFanOut.hashSet 1000 avgt 22.539 us/op (38440 B/op)
+ * <p>
+ * GroupMemberIdsFanOut.hashSet 10000 avgt 321.154 us/op (372715 B/op)
+ * <p>
+ * GroupMemberIdsFanOut.immutableSortedLongSet 1000 avgt 0.408 us/op (24 B/op)
+ * <p>
+ * GroupMemberIdsFanOut.immutableSortedLongSet 10000 avgt 4.178 us/op (24 B/op)
+ *
+ * @author James Chen
+ */
+@Fork(value = 2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class GroupMemberIdsFanOut {
+
+    @Param({"100", "1000", "10000"})
+    private int memberCount;
+
+    private long[] memberIds;
+    private ImmutableSortedLongSet memberIdsSnapshot;
+    private long senderId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(0);
+        memberIds = new long[memberCount];
+        for (int i = 0; i < memberCount; i++) {
+            // Snowflake-like user IDs, which are not cached by Long.valueOf()
+            memberIds[i] = random.nextLong(1L << 62);
+        }
+        memberIdsSnapshot = ImmutableSortedLongSet.of(memberIds.clone());
+        senderId = memberIds[memberCount / 2];
+    }
+
+    @Benchmark
+    public long hashSet() {
+        long[] localMemberIds = memberIds;
+        Set<Long> recipientIds = CollectionUtil.newSetWithExpectedSize(localMemberIds.length);
+        for (long memberId : localMemberIds) {
+            recipientIds.add(memberId);
+        }
+        recipientIds = CollectionUtil.remove(recipientIds, senderId);
+        return fanOut(recipientIds);
+    }
+
+    @Benchmark
+    public long immutableSortedLongSet() {
+        Set<Long> recipientIds = CollectionUtil.remove(memberIdsSnapshot, senderId);
+        return fanOut(recipientIds);
+    }
+
+    private static long fanOut(Set<Long> recipientIds) {
+        long sum = 0;
+        for (Long recipientId : recipientIds) {
+            sum += recipientId;
+        }
+        return sum;
+    }
+
+}
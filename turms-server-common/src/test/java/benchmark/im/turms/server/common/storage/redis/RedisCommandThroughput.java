@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmark.im.turms.server.common.storage.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import helper.RedisStandInServer;
+import im.turms.server.common.storage.redis.RedisPipeline;
+import im.turms.server.common.storage.redis.TurmsRedisClient;
+import im.turms.server.common.storage.redis.codec.context.RedisCodecContext;
+
+/**
+ * Runs {@link TurmsRedisClient} against {@link RedisStandInServer} over loopback TCP:
+ * <p>
+ * "individualCommands" sends {@link #BATCH_SIZE} "INCR" commands concurrently, each of which is
+ * written and flushed separately, while "pipelinedCommands" sends them with {@link RedisPipeline}
+ * in one write. The score is per command.
+ * <p>
+ * "hotCommandWithBulkTraffic" measures the latency of an "INCR" command while another thread keeps
+ * sending "HGETALL" commands whose replies are {@link #BULK_REPLY_SIZE} bytes. If
+ * "bulkConnectionCount" is 0, "INCR" shares the connection with "HGETALL", and its reply has to
+ * wait for the large replies sent before it.
+ * <p>
+ * Reference:
+ * <p>
+ * JMH version: 1.37
+ * <p>
+ * VM version: JDK 21.0.1, OpenJDK 64-Bit Server VM, 21.0.1+12-LTS
+ * <p>
+ * CPU: 1 core (the errors are large because the client, the server and the bulk traffic share it)
+ *
+ * <pre>
+ * Benchmark                   (bulkConnectionCount)   Mode  Cnt     Score   Units
+ * individualCommands                            N/A  thrpt    3     0.039  ops/us
+ * pipelinedCommands                             N/A  thrpt    3     0.104  ops/us
+ * hotCommandWithBulkTraffic                       0   avgt    3  2303.349   us/op
+ * hotCommandWithBulkTraffic                       1   avgt    3   441.552   us/op
+ * </pre>
+ *
+ * @author James Chen
+ */
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 2)
+public class RedisCommandThroughput {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int BULK_REPLY_SIZE = 1024 * 1024;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Long individualCommands(PipeliningState state) {
+        List<Mono<Long>> results = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            results.add(state.client.incr(newKey()));
+        }
+        return Flux.merge(results)
+                .blockLast(TIMEOUT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Long pipelinedCommands(PipeliningState state) {
+        RedisPipeline pipeline = state.client.pipeline();
+        List<Mono<Long>> results = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            results.add(pipeline.incr(newKey()));
+        }
+        pipeline.execute();
+        return Flux.merge(results)
+                .blockLast(TIMEOUT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Long hotCommandWithBulkTraffic(ConnectionPoolState state) {
+        return state.client.incr(newKey())
+                .block(TIMEOUT);
+    }
+
+    private static ByteBuf newKey() {
+        return PooledByteBufAllocator.DEFAULT.directBuffer(Long.BYTES)
+                .writeBytes("counter".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @State(Scope.Benchmark)
+    public static class PipeliningState {
+        private RedisStandInServer server;
+        private TurmsRedisClient client;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            server = new RedisStandInServer(1);
+            client = new TurmsRedisClient(server.getUri(), RedisCodecContext.DEFAULT);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            client.destroy(1000)
+                    .block(TIMEOUT);
+            server.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ConnectionPoolState {
+        @Param({"0", "1"})
+        private int bulkConnectionCount;
+
+        private RedisStandInServer server;
+        private TurmsRedisClient client;
+        private Thread bulkTrafficThread;
+        private volatile boolean isRunning;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            server = new RedisStandInServer(BULK_REPLY_SIZE);
+            client = new TurmsRedisClient(
+                    server.getUri(),
+                    RedisCodecContext.DEFAULT,
+                    1,
+                    bulkConnectionCount);
+            isRunning = true;
+            bulkTrafficThread = Thread.ofPlatform()
+                    .start(() -> {
+                        while (isRunning) {
+                            // Keep a few large replies in flight
+                            Flux.merge(client.hgetall(1L)
+                                    .then(),
+                                    client.hgetall(2L)
+                                            .then())
+                                    .blockLast(TIMEOUT);
+                        }
+                    });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            isRunning = false;
+            bulkTrafficThread.join();
+            client.destroy(1000)
+                    .block(TIMEOUT);
+            server.close();
+        }
+    }
+
+}
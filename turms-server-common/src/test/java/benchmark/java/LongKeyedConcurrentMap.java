@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package benchmark.java;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import org.eclipse.collections.api.map.primitive.MutableLongObjectMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.jctools.maps.NonBlockingHashMapLong;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * Compares the lookup throughput and the retained heap of the concurrent maps that can be used as
+ * the user ID to sessions registry of turms-gateway with 1M online users.
+ * <p>
+ * The retained heap is the used heap after populating the map minus the used heap before
+ * populating it (both measured after GC), and is reported per entry as the secondary result
+ * "get:bytesPerEntry". All entries share the same value, so it only covers the keys and the map
+ * itself.
+ * <p>
+ * Note that the primitive maps of eclipse-collections are not thread-safe, so
+ * "synchronizedLongObjectHashMap" is only used as a reference.
+ * <p>
+ * Reference:
+ * <p>
+ * JMH version: 1.37
+ * <p>
+ * VM version: JDK 21.0.1, OpenJDK 64-Bit Server VM, 21.0.1+12-LTS (2 threads)
+ * <p>
+ * LongKeyedConcurrentMap.get concurrentHashMap thrpt 8.869 ops/us
+ * <p>
+ * LongKeyedConcurrentMap.get:bytesPerEntry concurrentHashMap thrpt 63.859 #
+ * <p>
+ * LongKeyedConcurrentMap.get nonBlockingHashMapLong thrpt 22.004 ops/us
+ * <p>
+ * LongKeyedConcurrentMap.get:bytesPerEntry nonBlockingHashMapLong thrpt 25.118 #
+ * <p>
+ * LongKeyedConcurrentMap.get synchronizedLongObjectHashMap thrpt 13.726 ops/us
+ * <p>
+ * LongKeyedConcurrentMap.get:bytesPerEntry synchronizedLongObjectHashMap thrpt 28.716 #
+ *
+ * @author James Chen
+ */
+@Fork(value = 2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+public class LongKeyedConcurrentMap {
+
+    private static final int ENTRY_COUNT = 1_000_000;
+    private static final Object VALUE = new Object();
+
+    @Param({"concurrentHashMap", "nonBlockingHashMapLong", "synchronizedLongObjectHashMap"})
+    private String mapType;
+
+    private long[] keys;
+    private LongFunction<Object> getter;
+    private long retainedBytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(0);
+        keys = new long[ENTRY_COUNT];
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            // Snowflake-like user IDs
+            keys[i] = random.nextLong(1L << 62);
+        }
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        long usedBefore = getUsedHeapAfterGc(memoryMXBean);
+        getter = switch (mapType) {
+            case "concurrentHashMap" -> {
+                Map<Long, Object> map = new ConcurrentHashMap<>(4096);
+                for (long key : keys) {
+                    map.put(key, VALUE);
+                }
+                yield map::get;
+            }
+            case "nonBlockingHashMapLong" -> {
+                NonBlockingHashMapLong<Object> map = new NonBlockingHashMapLong<>(4096);
+                for (long key : keys) {
+                    map.put(key, VALUE);
+                }
+                yield map::get;
+            }
+            case "synchronizedLongObjectHashMap" -> {
+                MutableLongObjectMap<Object> map = new LongObjectHashMap<>(4096).asSynchronized();
+                for (long key : keys) {
+                    map.put(key, VALUE);
+                }
+                yield map::get;
+            }
+            default -> throw new IllegalArgumentException("Unknown map type: " + mapType);
+        };
+        retainedBytes = getUsedHeapAfterGc(memoryMXBean) - usedBefore;
+    }
+
+    @Benchmark
+    public Object get(ThreadState state, FootprintCounters counters) {
+        long[] localKeys = keys;
+        int index = state.index++;
+        if (index >= localKeys.length) {
+            index = 0;
+            state.index = 1;
+        }
+        return getter.apply(localKeys[index]);
+    }
+
+    private static long getUsedHeapAfterGc(MemoryMXBean memoryMXBean) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memoryMXBean.getHeapMemoryUsage()
+                .getUsed();
+    }
+
+    /**
+     * Reports the retained heap per entry as the secondary result "get:bytesPerEntry".
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class FootprintCounters {
+        public double bytesPerEntry;
+
+        @TearDown(Level.Iteration)
+        public void tearDown(LongKeyedConcurrentMap benchmark, BenchmarkParams params) {
+            // The counters are reset before each iteration,
+            // and summed across the threads and the measurement iterations
+            bytesPerEntry = (double) benchmark.retainedBytes
+                    / ENTRY_COUNT
+                    / params.getThreads()
+                    / params.getMeasurement()
+                            .getCount();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private int index;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            index = (int) (Thread.currentThread()
+                    .threadId() % ENTRY_COUNT);
+        }
+    }
+
+}
@@ -0,0 +1,624 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package helper;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jakarta.annotation.Nullable;
+
+import io.lettuce.core.cluster.SlotHash;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * A minimal Redis server that speaks RESP2 (or RESP3) and supports a few commands for tests and
+ * benchmarks that cannot depend on a real Redis server:
+ * <p>
+ * "DEL", "INCR", "HINCRBY", "HGETALL" (replies with one field whose value has the size of
+ * {@link #hgetallValueSize}), "EVAL" and "EVALSHA" (the script is not run, and the reply is the
+ * number of keys).
+ * <p>
+ * "PTTL" (keys never expire), "DUMP", "RESTORE" (replies "BUSYKEY" if the key exists), and "SCAN"
+ * (replies all keys in one page) are supported for the numbers stored by "INCR" to test migrating
+ * keys between servers.
+ * <p>
+ * Any other command is replied with "OK" except "HELLO", which is rejected so that clients fall
+ * back to RESP2 unless the server is created with RESP3 enabled.
+ * <p>
+ * With RESP3, "CLIENT TRACKING ON|OFF" is supported in the default mode: the keys read by
+ * "HGETALL" on a tracking connection are invalidated by "DEL", "INCR", and "HINCRBY", and all keys
+ * are invalidated by "FLUSHALL".
+ * <p>
+ * The servers started by {@link #startCluster(int, int)} act as the master nodes of a Redis
+ * Cluster: they reply "CLUSTER SLOTS", and reply "MOVED" to the commands whose first key is in a
+ * slot served by another node. While a slot is being migrated (see
+ * {@link Cluster#startMigratingSlot(int, int)}), the owner replies "ASK" to the commands of the
+ * slot (whether the key exists or not), and the target node only serves the commands preceded by
+ * "ASKING".
+ *
+ * @author James Chen
+ */
+public class RedisStandInServer implements AutoCloseable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final EventLoopGroup eventLoopGroup;
+    private final Channel serverChannel;
+
+    private final Map<String, Long> keyToNumber = new ConcurrentHashMap<>();
+    private final Set<String> scriptDigests = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger readCount = new AtomicInteger();
+    private final AtomicInteger commandCount = new AtomicInteger();
+    private final int hgetallValueSize;
+    private final boolean resp3;
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final Set<Channel> trackingChannels = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<Channel>> keyToTrackingChannels = new ConcurrentHashMap<>();
+    private final Set<Channel> askingChannels = ConcurrentHashMap.newKeySet();
+    private volatile Cluster cluster;
+
+    public RedisStandInServer(int hgetallValueSize) {
+        this(hgetallValueSize, false);
+    }
+
+    public RedisStandInServer(int hgetallValueSize, boolean resp3) {
+        this.hgetallValueSize = hgetallValueSize;
+        this.resp3 = resp3;
+        eventLoopGroup = new NioEventLoopGroup(1);
+        serverChannel = new ServerBootstrap().group(eventLoopGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        connectionCount.incrementAndGet();
+                        channels.add(channel);
+                        channel.closeFuture()
+                                .addListener(future -> {
+                                    trackingChannels.remove(channel);
+                                    for (Set<Channel> trackers : keyToTrackingChannels.values()) {
+                                        trackers.remove(channel);
+                                    }
+                                });
+                        channel.pipeline()
+                                .addLast(new CommandDecoder(), new CommandHandler());
+                    }
+                })
+                .bind("127.0.0.1", 0)
+                .syncUninterruptibly()
+                .channel();
+    }
+
+    /**
+     * Start the master nodes of a cluster, and the slots are evenly assigned to the nodes.
+     */
+    public static Cluster startCluster(int nodeCount, int hgetallValueSize) {
+        List<RedisStandInServer> servers = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            servers.add(new RedisStandInServer(hgetallValueSize));
+        }
+        Cluster cluster = new Cluster(servers);
+        int slotsPerNode = SlotHash.SLOT_COUNT / nodeCount;
+        for (int i = 0; i < nodeCount; i++) {
+            int end = i == nodeCount - 1
+                    ? SlotHash.SLOT_COUNT - 1
+                    : (i + 1) * slotsPerNode - 1;
+            cluster.assignSlots(i * slotsPerNode, end, i);
+        }
+        for (RedisStandInServer server : servers) {
+            server.cluster = cluster;
+        }
+        return cluster;
+    }
+
+    public int getPort() {
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    public String getUri() {
+        return "redis://127.0.0.1:"
+                + ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * @return the number of reads that contain at least one complete command
+     */
+    public int getReadCount() {
+        return readCount.get();
+    }
+
+    public int getCommandCount() {
+        return commandCount.get();
+    }
+
+    public int getTrackingConnectionCount() {
+        return trackingChannels.size();
+    }
+
+    @Nullable
+    public Long getNumber(byte[] key) {
+        return keyToNumber.get(toKey(key));
+    }
+
+    public void putNumber(byte[] key, long number) {
+        keyToNumber.put(toKey(key), number);
+    }
+
+    /**
+     * Close the connections from clients to test reconnecting.
+     */
+    public void closeConnections() {
+        channels.close()
+                .syncUninterruptibly();
+    }
+
+    @Override
+    public void close() {
+        serverChannel.close()
+                .syncUninterruptibly();
+        eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS)
+                .syncUninterruptibly();
+    }
+
+    private void handle(Channel channel, ByteBuf out, List<byte[]> args) {
+        commandCount.incrementAndGet();
+        String command = new String(args.getFirst(), StandardCharsets.US_ASCII).toUpperCase();
+        Cluster currentCluster = cluster;
+        if (currentCluster != null
+                && handleClusterCommand(currentCluster, channel, out, command, args)) {
+            return;
+        }
+        switch (command) {
+            case "HELLO" -> {
+                if (resp3) {
+                    writeHello(out);
+                } else {
+                    writeError(out, "ERR unknown command 'HELLO'");
+                }
+            }
+            case "CLIENT" -> {
+                if ("TRACKING".equalsIgnoreCase(toString(args.get(1)))) {
+                    if (!resp3) {
+                        writeError(out, "ERR Tracking in RESP2 requires REDIRECT");
+                        return;
+                    }
+                    if ("ON".equalsIgnoreCase(toString(args.get(2)))) {
+                        trackingChannels.add(channel);
+                    } else {
+                        trackingChannels.remove(channel);
+                    }
+                }
+                out.writeBytes("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            case "FLUSHALL" -> {
+                keyToNumber.clear();
+                keyToTrackingChannels.clear();
+                for (Channel trackingChannel : trackingChannels) {
+                    trackingChannel.writeAndFlush(trackingChannel.alloc()
+                            .buffer()
+                            .writeBytes(">2\r\n$10\r\ninvalidate\r\n_\r\n"
+                                    .getBytes(StandardCharsets.US_ASCII)));
+                }
+                out.writeBytes("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            case "DEL" -> {
+                long count = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    String key = toKey(args.get(i));
+                    invalidate(key);
+                    if (keyToNumber.remove(key) != null) {
+                        count++;
+                    }
+                }
+                writeInteger(out, count);
+            }
+            case "INCR" -> {
+                String key = toKey(args.get(1));
+                invalidate(key);
+                writeInteger(out, keyToNumber.merge(key, 1L, Long::sum));
+            }
+            case "HINCRBY" -> {
+                invalidate(toKey(args.get(1)));
+                String key = toKey(args.get(1)) + ":" + toKey(args.get(2));
+                writeInteger(out, keyToNumber.merge(key, toLong(args.get(3)), Long::sum));
+            }
+            case "HGETALL" -> {
+                if (trackingChannels.contains(channel)) {
+                    keyToTrackingChannels
+                            .computeIfAbsent(toKey(args.get(1)),
+                                    key -> ConcurrentHashMap.newKeySet())
+                            .add(channel);
+                }
+                out.writeBytes("*2\r\n".getBytes(StandardCharsets.US_ASCII));
+                writeBulkString(out, new byte[]{1});
+                writeBulkString(out, new byte[hgetallValueSize]);
+            }
+            case "PTTL" -> writeInteger(out,
+                    keyToNumber.containsKey(toKey(args.get(1)))
+                            ? -1
+                            : -2);
+            case "DUMP" -> {
+                Long number = keyToNumber.get(toKey(args.get(1)));
+                if (number == null) {
+                    out.writeBytes("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+                } else {
+                    writeBulkString(out, number.toString()
+                            .getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+            case "RESTORE" -> {
+                String key = toKey(args.get(1));
+                if (keyToNumber.putIfAbsent(key, toLong(args.get(3))) == null) {
+                    invalidate(key);
+                    out.writeBytes("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+                } else {
+                    writeError(out, "BUSYKEY Target key name already exists.");
+                }
+            }
+            case "SCAN" -> {
+                List<byte[]> keys = new ArrayList<>();
+                for (String key : keyToNumber.keySet()) {
+                    // Skip the fields stored by "HINCRBY"
+                    if (key.indexOf(':') < 0) {
+                        keys.add(HexFormat.of()
+                                .parseHex(key));
+                    }
+                }
+                out.writeBytes("*2\r\n".getBytes(StandardCharsets.US_ASCII));
+                writeBulkString(out, new byte[]{'0'});
+                out.writeBytes(("*"
+                        + keys.size()
+                        + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                for (byte[] key : keys) {
+                    writeBulkString(out, key);
+                }
+            }
+            case "EVAL" -> {
+                scriptDigests.add(sha1(args.get(1)));
+                writeInteger(out, toLong(args.get(2)));
+            }
+            case "EVALSHA" -> {
+                if (scriptDigests.contains(new String(args.get(1), StandardCharsets.US_ASCII))) {
+                    writeInteger(out, toLong(args.get(2)));
+                } else {
+                    writeError(out, "NOSCRIPT No matching script. Please use EVAL.");
+                }
+            }
+            default -> out.writeBytes("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * @return true if the command has been replied
+     */
+    private boolean handleClusterCommand(
+            Cluster currentCluster,
+            Channel channel,
+            ByteBuf out,
+            String command,
+            List<byte[]> args) {
+        if ("ASKING".equals(command)) {
+            askingChannels.add(channel);
+            out.writeBytes("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+            return true;
+        }
+        // "ASKING" only applies to the next command
+        boolean isAsking = askingChannels.remove(channel);
+        if ("CLUSTER".equals(command)) {
+            currentCluster.writeSlots(out);
+            return true;
+        }
+        byte[] key = switch (command) {
+            case "DEL", "INCR", "HINCRBY", "HGETALL" -> args.get(1);
+            case "EVAL", "EVALSHA" -> toLong(args.get(2)) > 0
+                    ? args.get(3)
+                    : null;
+            default -> null;
+        };
+        if (key == null) {
+            return false;
+        }
+        int slot = SlotHash.getSlot(key);
+        RedisStandInServer owner = currentCluster.getOwner(slot);
+        RedisStandInServer importer = currentCluster.getImporter(slot);
+        if (owner == this) {
+            if (importer == null) {
+                return false;
+            }
+            writeError(out, "ASK "
+                    + slot
+                    + " 127.0.0.1:"
+                    + importer.getPort());
+            return true;
+        }
+        if (isAsking && importer == this) {
+            return false;
+        }
+        writeError(out, "MOVED "
+                + slot
+                + " 127.0.0.1:"
+                + owner.getPort());
+        return true;
+    }
+
+    /**
+     * Push the invalidation message to the connections that have read the key, and a key is only
+     * tracked until it is invalidated like Redis does.
+     */
+    private void invalidate(String key) {
+        Set<Channel> trackers = keyToTrackingChannels.remove(key);
+        if (trackers == null) {
+            return;
+        }
+        byte[] keyBytes = HexFormat.of()
+                .parseHex(key);
+        for (Channel tracker : trackers) {
+            ByteBuf message = tracker.alloc()
+                    .buffer();
+            message.writeBytes(">2\r\n$10\r\ninvalidate\r\n*1\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            writeBulkString(message, keyBytes);
+            tracker.writeAndFlush(message);
+        }
+    }
+
+    private static void writeHello(ByteBuf out) {
+        out.writeBytes("%7\r\n".getBytes(StandardCharsets.US_ASCII));
+        writeBulkString(out, "server".getBytes(StandardCharsets.US_ASCII));
+        writeBulkString(out, "redis".getBytes(StandardCharsets.US_ASCII));
+        writeBulkString(out, "version".getBytes(StandardCharsets.US_ASCII));
+        writeBulkString(out, "7.2.0".getBytes(StandardCharsets.US_ASCII));
+        writeBulkString(out, "proto".getBytes(StandardCharsets.US_ASCII));
+        writeInteger(out, 3);
+        writeBulkString(out, "id".getBytes(StandardCharsets.US_ASCII));
+        writeInteger(out, 1);
+        writeBulkString(out, "mode".getBytes(StandardCharsets.US_ASCII));
+        writeBulkString(out, "standalone".getBytes(StandardCharsets.US_ASCII));
+        writeBulkString(out, "role".getBytes(StandardCharsets.US_ASCII));
+        writeBulkString(out, "master".getBytes(StandardCharsets.US_ASCII));
+        writeBulkString(out, "modules".getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes("*0\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String toString(byte[] bytes) {
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static long toLong(byte[] bytes) {
+        return Long.parseLong(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    private static String toKey(byte[] bytes) {
+        return HexFormat.of()
+                .formatHex(bytes);
+    }
+
+    private static String sha1(byte[] bytes) {
+        try {
+            return HexFormat.of()
+                    .formatHex(MessageDigest.getInstance("SHA-1")
+                            .digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeInteger(ByteBuf out, long value) {
+        out.writeBytes((":"
+                + value
+                + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeError(ByteBuf out, String message) {
+        out.writeBytes(("-"
+                + message
+                + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeBulkString(ByteBuf out, byte[] value) {
+        out.writeBytes(("$"
+                + value.length
+                + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(value);
+        out.writeBytes(CRLF);
+    }
+
+    public static class Cluster implements AutoCloseable {
+        private final List<RedisStandInServer> servers;
+        private final int[] slotToServerIndex = new int[SlotHash.SLOT_COUNT];
+        private final int[] slotToImportingServerIndex = new int[SlotHash.SLOT_COUNT];
+
+        private Cluster(List<RedisStandInServer> servers) {
+            this.servers = servers;
+            Arrays.fill(slotToImportingServerIndex, -1);
+        }
+
+        public List<RedisStandInServer> getServers() {
+            return servers;
+        }
+
+        /**
+         * Assign the slots to the server, which also completes the migrations of the slots.
+         */
+        public synchronized void assignSlots(int start, int end, int serverIndex) {
+            for (int slot = start; slot <= end; slot++) {
+                slotToServerIndex[slot] = serverIndex;
+                slotToImportingServerIndex[slot] = -1;
+            }
+        }
+
+        public synchronized void startMigratingSlot(int slot, int targetServerIndex) {
+            slotToImportingServerIndex[slot] = targetServerIndex;
+        }
+
+        public synchronized RedisStandInServer getOwner(int slot) {
+            return servers.get(slotToServerIndex[slot]);
+        }
+
+        @Nullable
+        private synchronized RedisStandInServer getImporter(int slot) {
+            int index = slotToImportingServerIndex[slot];
+            return index == -1
+                    ? null
+                    : servers.get(index);
+        }
+
+        /**
+         * Reply "CLUSTER SLOTS" in the format: [[start, end, [host, port, id]], ...]
+         */
+        private synchronized void writeSlots(ByteBuf out) {
+            List<int[]> ranges = new ArrayList<>();
+            int start = 0;
+            for (int slot = 1; slot <= SlotHash.SLOT_COUNT; slot++) {
+                if (slot == SlotHash.SLOT_COUNT
+                        || slotToServerIndex[slot] != slotToServerIndex[start]) {
+                    ranges.add(new int[]{start, slot - 1, slotToServerIndex[start]});
+                    start = slot;
+                }
+            }
+            out.writeBytes(("*"
+                    + ranges.size()
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (int[] range : ranges) {
+                out.writeBytes("*3\r\n".getBytes(StandardCharsets.US_ASCII));
+                writeInteger(out, range[0]);
+                writeInteger(out, range[1]);
+                out.writeBytes("*3\r\n".getBytes(StandardCharsets.US_ASCII));
+                writeBulkString(out, "127.0.0.1".getBytes(StandardCharsets.US_ASCII));
+                writeInteger(out,
+                        servers.get(range[2])
+                                .getPort());
+                writeBulkString(out,
+                        ("node-"
+                                + range[2]).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+
+        @Override
+        public void close() {
+            for (RedisStandInServer server : servers) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Decodes RESP arrays of bulk strings, which are the only requests sent by Redis clients.
+     */
+    private static class CommandDecoder extends ByteToMessageDecoder {
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+            while (in.isReadable()) {
+                in.markReaderIndex();
+                List<byte[]> args = readCommand(in);
+                if (args == null) {
+                    in.resetReaderIndex();
+                    return;
+                }
+                out.add(args);
+            }
+        }
+
+        private static List<byte[]> readCommand(ByteBuf in) {
+            Long argCount = readLength(in, '*');
+            if (argCount == null) {
+                return null;
+            }
+            List<byte[]> args = new ArrayList<>(argCount.intValue());
+            for (int i = 0; i < argCount; i++) {
+                Long length = readLength(in, '$');
+                if (length == null || in.readableBytes() < length + CRLF.length) {
+                    return null;
+                }
+                byte[] arg = new byte[length.intValue()];
+                in.readBytes(arg);
+                in.skipBytes(CRLF.length);
+                args.add(arg);
+            }
+            return args;
+        }
+
+        private static Long readLength(ByteBuf in, char prefix) {
+            int end = in.indexOf(in.readerIndex(), in.writerIndex(), (byte) '\r');
+            if (end < 0 || end + 1 >= in.writerIndex()) {
+                return null;
+            }
+            if (in.readByte() != prefix) {
+                throw new IllegalStateException("Expected \""
+                        + prefix
+                        + "\"");
+            }
+            long length = Long.parseLong(in.readCharSequence(end - in.readerIndex(),
+                    StandardCharsets.US_ASCII)
+                    .toString());
+            in.skipBytes(CRLF.length);
+            return length;
+        }
+    }
+
+    private class CommandHandler extends SimpleChannelInboundHandler<List<byte[]>> {
+        private ByteBuf replies;
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, List<byte[]> args) {
+            if (replies == null) {
+                readCount.incrementAndGet();
+                replies = ctx.alloc()
+                        .buffer();
+            }
+            handle(ctx.channel(), replies, args);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            // Reply all commands of the same read in one write like Redis does
+            if (replies != null) {
+                ctx.writeAndFlush(replies);
+                replies = null;
+            }
+        }
+    }
+
+}
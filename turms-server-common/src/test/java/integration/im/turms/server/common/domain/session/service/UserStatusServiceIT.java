@@ -364,6 +364,31 @@ class UserStatusServiceIT extends BaseIntegrationTest {
                 .verify();
     }
 
+    @Order(ORDER_GET_USER_SESSIONS_STATUS_BY_USER_ID + 2)
+    @Test
+    void getUsersSessionsStatus_shouldReturnStatusForEachUser() {
+        Set<Long> userIds = Set.of(USER_1_ID, USER_2_ID, NON_EXISTING_USER_ID);
+        Mono<Map<Long, UserSessionsStatus>> userIdToSessionsStatusMono = userStatusService
+                .getUsersSessionsStatus(userIds)
+                .collectMap(UserSessionsStatus::getUserId);
+        StepVerifier.create(userIdToSessionsStatusMono)
+                .assertNext(userIdToSessionsStatus -> {
+                    assertThat(userIdToSessionsStatus.keySet())
+                            .containsExactlyInAnyOrderElementsOf(userIds);
+                    validate(userIdToSessionsStatus.get(USER_1_ID),
+                            Map.of(USER_1_DEVICE,
+                                    NEW_LOCAL_NODE_ID,
+                                    USER_1_DIFF_DEVICE,
+                                    LOCAL_NODE_ID));
+                    validate(userIdToSessionsStatus.get(USER_2_ID),
+                            Map.of(USER_2_DEVICE, LOCAL_NODE_ID));
+                    assertThat(userIdToSessionsStatus.get(NON_EXISTING_USER_ID)
+                            .isOffline()).isTrue();
+                })
+                .expectComplete()
+                .verify();
+    }
+
     @Order(ORDER_FETCH_DEVICE_DETAILS)
     @Test
     void fetchDeviceDetails_shouldEqual() {
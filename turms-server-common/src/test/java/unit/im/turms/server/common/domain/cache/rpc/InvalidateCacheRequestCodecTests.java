@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.domain.cache.rpc;
+
+import org.junit.jupiter.api.Test;
+import unit.im.turms.server.common.infra.cluster.service.rpc.codec.BaseCodecTest;
+
+import im.turms.server.common.domain.cache.rpc.dto.InvalidateCacheRequest;
+import im.turms.server.common.domain.cache.rpc.dto.InvalidateCacheRequestCodec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvalidateCacheRequestCodecTests extends BaseCodecTest {
+
+    @Test
+    void shouldGetTheSameRequest_afterWriteAndRead_forLegalRequest() {
+        InvalidateCacheRequest expectedRequest = new InvalidateCacheRequest("groupIdToMembers",
+                new long[]{1L, Long.MAX_VALUE, -1L});
+        InvalidateCacheRequest actualRequest =
+                writeRequestAndReadBuffer(new InvalidateCacheRequestCodec(), expectedRequest);
+
+        assertThat(actualRequest.getCacheName()).isEqualTo(expectedRequest.getCacheName());
+        assertThat(actualRequest.getKeys()).containsExactly(expectedRequest.getKeys());
+    }
+
+    @Test
+    void shouldGetTheSameRequest_afterWriteAndRead_forRequestWithoutKeys() {
+        InvalidateCacheRequest expectedRequest =
+                new InvalidateCacheRequest("groupIdToGroupType", new long[0]);
+        InvalidateCacheRequest actualRequest =
+                writeRequestAndReadBuffer(new InvalidateCacheRequestCodec(), expectedRequest);
+
+        assertThat(actualRequest.getCacheName()).isEqualTo(expectedRequest.getCacheName());
+        assertThat(actualRequest.getKeys()).isEmpty();
+    }
+
+}
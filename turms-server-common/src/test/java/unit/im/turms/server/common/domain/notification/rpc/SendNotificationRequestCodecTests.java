@@ -18,16 +18,23 @@
 package unit.im.turms.server.common.domain.notification.rpc;
 
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import org.junit.jupiter.api.Test;
 import unit.im.turms.server.common.infra.cluster.service.rpc.codec.BaseCodecTest;
 
 import im.turms.server.common.access.client.dto.constant.DeviceType;
 import im.turms.server.common.domain.notification.rpc.dto.SendNotificationRequest;
 import im.turms.server.common.domain.notification.rpc.dto.SendNotificationRequestCodec;
+import im.turms.server.common.infra.cluster.service.codec.io.CodecStream;
+import im.turms.server.common.infra.tracing.TracingContext;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -50,4 +57,81 @@ class SendNotificationRequestCodecTests extends BaseCodecTest {
                 .containsExactlyInAnyOrderElementsOf(expectedRequest.getRecipientIds());
     }
 
+    @Test
+    void shouldGetTheSameRecipientIds_afterWriteAndRead_forCompactFormat() {
+        Set<Long> sparseIds = newSnowflakeLikeIds(2000, 1 << 22);
+        Set<Long> denseIds = newSnowflakeLikeIds(10_000, 2);
+        Set<Long> mixedIds = new HashSet<>(sparseIds);
+        mixedIds.addAll(denseIds);
+        mixedIds.addAll(Set.of(-1L, 0L, Long.MIN_VALUE, Long.MAX_VALUE));
+        for (Set<Long> recipientIds : List.of(Set.of(1L), sparseIds, denseIds, mixedIds)) {
+            SendNotificationRequest actualRequest =
+                    writeRequestAndReadBuffer(new SendNotificationRequestCodec(true),
+                            newRequest(recipientIds));
+
+            assertThat(actualRequest.getRecipientIds())
+                    .containsExactlyInAnyOrderElementsOf(recipientIds);
+        }
+    }
+
+    @Test
+    void shouldReadRecipientIds_writtenInLegacyFormat() {
+        Set<Long> recipientIds = newSnowflakeLikeIds(100, 1 << 22);
+        SendNotificationRequestCodec legacyCodec = new SendNotificationRequestCodec(false);
+        SendNotificationRequestCodec compactCodec = new SendNotificationRequestCodec(true);
+        ByteBuf buffer = UnpooledByteBufAllocator.DEFAULT.buffer();
+        legacyCodec.write(new CodecStream(buffer), newRequest(recipientIds));
+
+        SendNotificationRequest actualRequest = compactCodec.read(new CodecStream(buffer));
+
+        assertThat(actualRequest.getRecipientIds())
+                .containsExactlyInAnyOrderElementsOf(recipientIds);
+    }
+
+    @Test
+    void shouldWriteFewerBytes_forCompactFormat() {
+        Set<Long> sparseIds = newSnowflakeLikeIds(2000, 1 << 22);
+        Set<Long> denseIds = newSnowflakeLikeIds(10_000, 2);
+        for (Set<Long> recipientIds : List.of(sparseIds, denseIds)) {
+            SendNotificationRequest request = newRequest(recipientIds);
+            int legacySize = getWrittenBytes(new SendNotificationRequestCodec(false), request);
+            int compactSize = getWrittenBytes(new SendNotificationRequestCodec(true), request);
+
+            assertThat(compactSize).isLessThan(legacySize / 2);
+        }
+    }
+
+    private SendNotificationRequest newRequest(Set<Long> recipientIds) {
+        SendNotificationRequest request = new SendNotificationRequest(
+                Unpooled.wrappedBuffer(new byte[]{1, 2, 3, 4}),
+                recipientIds,
+                Collections.emptySet(),
+                null);
+        request.setTracingContext(new TracingContext());
+        return request;
+    }
+
+    private int getWrittenBytes(
+            SendNotificationRequestCodec codec,
+            SendNotificationRequest request) {
+        ByteBuf buffer = UnpooledByteBufAllocator.DEFAULT.buffer(codec.initialCapacity(request));
+        codec.write(new CodecStream(buffer), request);
+        return buffer.readableBytes();
+    }
+
+    /**
+     * @param maxGap the max gap between two adjacent IDs, which simulates user IDs that are
+     *               generated in different milliseconds by the snowflake ID generator
+     */
+    private Set<Long> newSnowflakeLikeIds(int count, int maxGap) {
+        Random random = new Random(count);
+        Set<Long> ids = new HashSet<>(count * 2);
+        long id = 1L << 60;
+        for (int i = 0; i < count; i++) {
+            id += 1 + random.nextInt(maxGap);
+            ids.add(id);
+        }
+        return ids;
+    }
+
 }
\ No newline at end of file
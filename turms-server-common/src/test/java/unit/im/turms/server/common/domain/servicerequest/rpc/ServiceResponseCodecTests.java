@@ -17,6 +17,9 @@
 
 package unit.im.turms.server.common.domain.servicerequest.rpc;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import org.junit.jupiter.api.Test;
 import unit.im.turms.server.common.infra.cluster.service.rpc.codec.BaseCodecTest;
 
@@ -31,7 +34,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 class ServiceResponseCodecTests extends BaseCodecTest {
 
     @Test
-    void shouldGetTheSameRequest_afterWriteAndRead_forLegalRequest() {
+    void shouldGetTheSameRequest_afterWriteAndRead_forLegalRequest()
+            throws InvalidProtocolBufferException {
         TurmsNotification.Data dataForRequester = TurmsNotification.Data.newBuilder()
                 .setLongsWithVersion(LongsWithVersion.newBuilder()
                         .addLongs(100))
@@ -45,7 +49,16 @@ class ServiceResponseCodecTests extends BaseCodecTest {
 
         assertThat(actualRequest.code()).isEqualTo(expectedResponse.code());
         assertThat(actualRequest.reason()).isEqualTo(expectedResponse.reason());
-        assertThat(actualRequest.dataForRequester()).isEqualTo(expectedResponse.dataForRequester());
+        // The data for requester is kept serialized so that turms-gateway can splice it directly
+        ByteBuf dataForRequesterBuffer = actualRequest.dataForRequesterBuffer();
+        assertThat(dataForRequesterBuffer).isNotNull();
+        try {
+            assertThat(TurmsNotification.Data
+                    .parseFrom(ByteBufUtil.getBytes(dataForRequesterBuffer)))
+                    .isEqualTo(expectedResponse.dataForRequester());
+        } finally {
+            actualRequest.release();
+        }
     }
 
 }
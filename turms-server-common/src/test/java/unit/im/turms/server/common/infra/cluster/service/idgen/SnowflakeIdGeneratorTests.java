@@ -17,6 +17,10 @@
 
 package unit.im.turms.server.common.infra.cluster.service.idgen;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
 import org.junit.jupiter.api.Test;
 
@@ -68,4 +72,101 @@ class SnowflakeIdGeneratorTests {
                 .isFalse();
     }
 
-}
\ No newline at end of file
+    @Test
+    void nextLargeGapId_shouldSpreadSequenceNumbersAcrossMilliseconds()
+            throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, 0, 8);
+        int number = 64;
+        LongHashSet sequenceNumbers = new LongHashSet(number);
+        for (int i = 0; i < number; i++) {
+            long newId = generator.nextLargeGapId();
+            // The sequence number is placed in the high bits of large gap IDs
+            sequenceNumbers.add(newId >>> 53);
+            Thread.sleep(2);
+        }
+        assertThat(sequenceNumbers.size())
+                .as("The sequence number should not restart when the clock moves forward")
+                .isEqualTo(number);
+    }
+
+    @Test
+    void nextIncreasingIds_shouldGeneratePositiveAndUniqueAndIncrementingIds() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(15, 255, 8);
+        LongHashSet ids = new LongHashSet(100_000);
+        long previousId = -1;
+        for (int i = 0; i < 1_000; i++) {
+            // Interleave the single and batch reservations
+            long[] newIds = i % 2 == 0
+                    ? generator.nextIncreasingIds(199)
+                    : new long[]{generator.nextIncreasingId()};
+            for (long newId : newIds) {
+                assertThat(newId).as("ID should be greater than 0")
+                        .isPositive();
+                assertThat(newId).as("ID should increment")
+                        .isGreaterThan(previousId);
+                assertThat(ids.add(newId)).as("ID should not be duplicate")
+                        .isTrue();
+                previousId = newId;
+            }
+        }
+        assertThat(generator.nextIncreasingIds(0)).isEmpty();
+    }
+
+    @Test
+    void nextLargeGapIds_shouldGeneratePositiveAndUniqueIds() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(15, 255, 8);
+        LongHashSet ids = new LongHashSet(100_000);
+        for (int i = 0; i < 1_000; i++) {
+            for (long newId : generator.nextLargeGapIds(100)) {
+                assertThat(newId).as("ID should be greater than 0")
+                        .isPositive();
+                assertThat(ids.add(newId)).as("ID should not be duplicate")
+                        .isTrue();
+            }
+        }
+    }
+
+    @Test
+    void nextIncreasingId_shouldGenerateUniqueIds_whenCalledConcurrently()
+            throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, 0, 8);
+        int threadCount = 16;
+        int idCountPerThread = 20_000;
+        long[][] threadIds = new long[threadCount][idCountPerThread];
+        List<Thread> threads = new ArrayList<>(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        for (int i = 0; i < threadCount; i++) {
+            long[] ids = threadIds[i];
+            threads.add(Thread.ofPlatform()
+                    .start(() -> {
+                        try {
+                            startLatch.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        for (int j = 0; j < idCountPerThread; j++) {
+                            ids[j] = j % 10 == 0
+                                    ? generator.nextIncreasingIds(1)[0]
+                                    : generator.nextIncreasingId();
+                        }
+                    }));
+        }
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LongHashSet allIds = new LongHashSet(threadCount * idCountPerThread);
+        for (long[] ids : threadIds) {
+            long previousId = -1;
+            for (long id : ids) {
+                assertThat(id).as("ID should increment in the same thread")
+                        .isGreaterThan(previousId);
+                assertThat(allIds.add(id)).as("ID should not be duplicate")
+                        .isTrue();
+                previousId = id;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.infra.cluster.service.rpc.batch;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import im.turms.server.common.access.common.ResponseStatusCode;
+import im.turms.server.common.domain.session.bo.SessionCloseStatus;
+import im.turms.server.common.domain.session.rpc.dto.SetUserOfflineRequest;
+import im.turms.server.common.infra.cluster.node.Node;
+import im.turms.server.common.infra.cluster.node.NodeType;
+import im.turms.server.common.infra.cluster.service.connection.request.KeepaliveRequest;
+import im.turms.server.common.infra.cluster.service.rpc.RpcErrorCode;
+import im.turms.server.common.infra.cluster.service.rpc.RpcRequestExecutor;
+import im.turms.server.common.infra.cluster.service.rpc.RpcService;
+import im.turms.server.common.infra.cluster.service.rpc.batch.BatchRequest;
+import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.infra.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.infra.lang.Null;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author James Chen
+ */
+class BatchRequestTests {
+
+    private static final String FROM_NODE_ID = "node";
+
+    @Test
+    void callAsync_shouldRejectItems_whoseNodeTypeToRespondMismatches() {
+        RpcRequestExecutor requestExecutor = mock(RpcRequestExecutor.class);
+        when(requestExecutor.runRpcRequest(any(), any(), any(), eq(FROM_NODE_ID)))
+                .thenReturn(Mono.empty());
+        RpcService rpcService = mock(RpcService.class);
+        when(rpcService.getRequestExecutor()).thenReturn(requestExecutor);
+        Node node = mock(Node.class);
+        when(node.getNodeType()).thenReturn(NodeType.SERVICE);
+        when(node.getRpcService()).thenReturn(rpcService);
+        ApplicationContext context = mock(ApplicationContext.class);
+        when(context.getBean(Node.class)).thenReturn(node);
+
+        // Only turms-gateway can respond to the request
+        SetUserOfflineRequest ineligibleRequest =
+                new SetUserOfflineRequest(1L, Set.of(), SessionCloseStatus.ILLEGAL_REQUEST);
+        KeepaliveRequest eligibleRequest = new KeepaliveRequest();
+        BatchRequest batchRequest =
+                new BatchRequest(List.<RpcRequest<?>>of(ineligibleRequest, eligibleRequest));
+        batchRequest.init(context, null, FROM_NODE_ID);
+
+        StepVerifier.create(batchRequest.callAsync())
+                .assertNext(response -> {
+                    List<Object> responses = response.responses();
+                    assertThat(responses).hasSize(2);
+                    assertThat(responses.get(0)).isInstanceOfSatisfying(RpcException.class,
+                            e -> {
+                                assertThat(e.getErrorCode())
+                                        .isEqualTo(RpcErrorCode.FAILED_TO_RUN_RPC);
+                                assertThat(e.getStatusCode())
+                                        .isEqualTo(ResponseStatusCode.ILLEGAL_ARGUMENT);
+                            });
+                    assertThat(responses.get(1)).isSameAs(Null.INSTANCE);
+                })
+                .verifyComplete();
+        verify(requestExecutor, never()).runRpcRequest(any(),
+                eq(ineligibleRequest),
+                any(),
+                any());
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.infra.cluster.service.rpc.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import im.turms.server.common.access.common.ResponseStatusCode;
+import im.turms.server.common.domain.session.bo.SessionCloseStatus;
+import im.turms.server.common.domain.session.rpc.dto.SetUserOfflineRequest;
+import im.turms.server.common.infra.cluster.service.rpc.RpcErrorCode;
+import im.turms.server.common.infra.cluster.service.rpc.batch.BatchRequest;
+import im.turms.server.common.infra.cluster.service.rpc.batch.BatchResponse;
+import im.turms.server.common.infra.cluster.service.rpc.batch.RpcRequestBatcher;
+import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.infra.cluster.service.rpc.exception.RpcException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class RpcRequestBatcherTests {
+
+    private static final String NODE_ID = "node";
+
+    @Test
+    void add_shouldSendRequestsInOneBatch_andResolveEachResponse() {
+        List<Runnable> tasks = new ArrayList<>();
+        List<RpcRequest<?>> sentRequests = new ArrayList<>();
+        RpcException exception = RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC,
+                ResponseStatusCode.SERVER_INTERNAL_ERROR);
+        RpcRequestBatcher batcher = new RpcRequestBatcher(NODE_ID,
+                64,
+                tasks::add,
+                new RpcRequestBatcher.RequestSender() {
+                    @Override
+                    public <T> Mono<T> send(String nodeId, RpcRequest<T> request) {
+                        sentRequests.add(request);
+                        return (Mono<T>) Mono
+                                .just(new BatchResponse(Arrays.asList(true, null, exception)));
+                    }
+                });
+
+        Mono<Boolean> response1 = batcher.add(newRequest(1L));
+        Mono<Boolean> response2 = batcher.add(newRequest(2L));
+        Mono<Boolean> response3 = batcher.add(newRequest(3L));
+        assertThat(tasks).hasSize(1);
+        tasks.getFirst()
+                .run();
+
+        assertThat(sentRequests).hasSize(1);
+        assertThat(((BatchRequest) sentRequests.getFirst()).getRequests()).hasSize(3);
+        StepVerifier.create(response1)
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(response2)
+                .verifyComplete();
+        StepVerifier.create(response3)
+                .expectErrorMatches(t -> t == exception)
+                .verify();
+    }
+
+    @Test
+    void add_shouldSplitBatches_byMaxBatchSize() {
+        List<Runnable> tasks = new ArrayList<>();
+        List<RpcRequest<?>> sentRequests = new ArrayList<>();
+        RpcRequestBatcher batcher = new RpcRequestBatcher(NODE_ID,
+                2,
+                tasks::add,
+                new RpcRequestBatcher.RequestSender() {
+                    @Override
+                    public <T> Mono<T> send(String nodeId, RpcRequest<T> request) {
+                        sentRequests.add(request);
+                        return (Mono<T>) (request instanceof BatchRequest batchRequest
+                                ? Mono.just(new BatchResponse(
+                                        new ArrayList<>(Arrays.asList(new Object[batchRequest
+                                                .getRequests()
+                                                .size()]))))
+                                : Mono.just(true));
+                    }
+                });
+
+        Mono<Boolean> response1 = batcher.add(newRequest(1L));
+        batcher.add(newRequest(2L));
+        Mono<Boolean> response3 = batcher.add(newRequest(3L));
+        tasks.getFirst()
+                .run();
+
+        assertThat(sentRequests).hasSize(2);
+        assertThat(sentRequests.get(0)).isInstanceOf(BatchRequest.class);
+        // A single request is sent without the envelope
+        assertThat(sentRequests.get(1)).isInstanceOf(SetUserOfflineRequest.class);
+        StepVerifier.create(response1)
+                .verifyComplete();
+        StepVerifier.create(response3)
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void add_shouldFailAllRequests_whenBatchFails() {
+        List<Runnable> tasks = new ArrayList<>();
+        IllegalStateException exception = new IllegalStateException();
+        RpcRequestBatcher batcher = new RpcRequestBatcher(NODE_ID,
+                64,
+                tasks::add,
+                new RpcRequestBatcher.RequestSender() {
+                    @Override
+                    public <T> Mono<T> send(String nodeId, RpcRequest<T> request) {
+                        return Mono.error(exception);
+                    }
+                });
+
+        Mono<Boolean> response1 = batcher.add(newRequest(1L));
+        Mono<Boolean> response2 = batcher.add(newRequest(2L));
+        tasks.getFirst()
+                .run();
+
+        StepVerifier.create(response1)
+                .expectErrorMatches(t -> t == exception)
+                .verify();
+        StepVerifier.create(response2)
+                .expectErrorMatches(t -> t == exception)
+                .verify();
+    }
+
+    private SetUserOfflineRequest newRequest(long userId) {
+        return new SetUserOfflineRequest(userId, Set.of(), SessionCloseStatus.ILLEGAL_REQUEST);
+    }
+
+}
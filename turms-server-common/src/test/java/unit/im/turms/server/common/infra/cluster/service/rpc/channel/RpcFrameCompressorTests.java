@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.infra.cluster.service.rpc.channel;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+import unit.im.turms.server.common.infra.cluster.service.rpc.codec.BaseCodecTest;
+
+import im.turms.server.common.access.client.dto.constant.DeviceType;
+import im.turms.server.common.access.client.dto.request.TurmsRequest;
+import im.turms.server.common.access.client.dto.request.message.CreateMessageRequest;
+import im.turms.server.common.access.servicerequest.dto.ServiceRequest;
+import im.turms.server.common.access.servicerequest.rpc.HandleServiceRequest;
+import im.turms.server.common.infra.cluster.service.rpc.channel.RpcFrameCompressor;
+import im.turms.server.common.infra.cluster.service.rpc.channel.RpcFrameDecoder;
+import im.turms.server.common.infra.cluster.service.rpc.channel.RpcFrameEncoder;
+import im.turms.server.common.infra.tracing.TracingContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RpcFrameCompressorTests extends BaseCodecTest {
+
+    private static final int THRESHOLD = 1024;
+
+    @Test
+    void shouldCompressAndDecompress_forFrameGreaterThanThreshold()
+            throws InvalidProtocolBufferException {
+        TurmsRequest request = newTurmsRequest("hello ".repeat(1000));
+
+        ByteBuf frame = writeFrame(request, true);
+        int frameLength = frame.readableBytes();
+
+        assertThat(frameLength).isLessThan(request.getSerializedSize() / 10);
+        assertThat(readTurmsRequest(frame)).isEqualTo(request);
+    }
+
+    @Test
+    void shouldNotCompress_forFrameLessThanThreshold() throws InvalidProtocolBufferException {
+        TurmsRequest request = newTurmsRequest("hello");
+
+        ByteBuf frame = writeFrame(request, true);
+
+        assertThat(frame.readableBytes()).isGreaterThan(request.getSerializedSize());
+        assertThat(readTurmsRequest(frame)).isEqualTo(request);
+    }
+
+    @Test
+    void shouldNotCompress_ifCompressionIsNotNegotiated() throws InvalidProtocolBufferException {
+        TurmsRequest request = newTurmsRequest("hello ".repeat(1000));
+
+        ByteBuf frame = writeFrame(request, false);
+
+        assertThat(frame.readableBytes()).isGreaterThan(request.getSerializedSize());
+        assertThat(readTurmsRequest(frame)).isEqualTo(request);
+    }
+
+    private TurmsRequest newTurmsRequest(String text) {
+        return TurmsRequest.newBuilder()
+                .setCreateMessageRequest(CreateMessageRequest.newBuilder()
+                        .setGroupId(9L)
+                        .setText(text))
+                .build();
+    }
+
+    /**
+     * @return the frame with the length field.
+     */
+    private ByteBuf writeFrame(TurmsRequest request, boolean compressionEnabled) {
+        ServiceRequest serviceRequest = new ServiceRequest(
+                new byte[]{1, 2, 3, 4},
+                123L,
+                DeviceType.ANDROID,
+                1L,
+                request.getKindCase(),
+                Unpooled.wrappedBuffer(request.toByteArray()));
+        HandleServiceRequest rpcRequest = new HandleServiceRequest(serviceRequest);
+        rpcRequest.setTracingContext(new TracingContext(999L));
+        rpcRequest.setRequestId(111);
+        ByteBuf frame = RpcFrameEncoder.INSTANCE.encode(rpcRequest.getRequestId(), rpcRequest);
+
+        RpcFrameCompressor compressor = new RpcFrameCompressor(THRESHOLD, 1);
+        compressor.setEnabled(compressionEnabled);
+        EmbeddedChannel channel = new EmbeddedChannel(RpcFrameEncoder.INSTANCE, compressor);
+        channel.writeOutbound(frame);
+        ByteBuf output = channel.readOutbound();
+        channel.finishAndReleaseAll();
+        return output;
+    }
+
+    private TurmsRequest readTurmsRequest(ByteBuf frame) throws InvalidProtocolBufferException {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcFrameDecoder());
+        channel.writeInbound(frame);
+        HandleServiceRequest parsedRequest = channel.readInbound();
+        channel.finishAndReleaseAll();
+
+        assertThat(parsedRequest.getRequestId()).isEqualTo(111);
+        ByteBuf turmsRequestBuffer = parsedRequest.getServiceRequest()
+                .getTurmsRequestBuffer();
+        try {
+            return TurmsRequest.parseFrom(turmsRequestBuffer.nioBuffer());
+        } finally {
+            turmsRequestBuffer.release();
+        }
+    }
+
+}
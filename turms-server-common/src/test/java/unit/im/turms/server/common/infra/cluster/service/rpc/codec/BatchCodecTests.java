@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.infra.cluster.service.rpc.codec;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.access.client.dto.constant.DeviceType;
+import im.turms.server.common.access.common.ResponseStatusCode;
+import im.turms.server.common.domain.session.bo.SessionCloseStatus;
+import im.turms.server.common.domain.session.rpc.dto.SetUserOfflineRequest;
+import im.turms.server.common.infra.cluster.service.rpc.RpcErrorCode;
+import im.turms.server.common.infra.cluster.service.rpc.batch.BatchRequest;
+import im.turms.server.common.infra.cluster.service.rpc.batch.BatchRequestCodec;
+import im.turms.server.common.infra.cluster.service.rpc.batch.BatchResponse;
+import im.turms.server.common.infra.cluster.service.rpc.batch.BatchResponseCodec;
+import im.turms.server.common.infra.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.infra.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.infra.lang.Null;
+import im.turms.server.common.infra.tracing.TracingContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class BatchCodecTests extends BaseCodecTest {
+
+    @Test
+    void shouldGetTheSameRequests_afterWriteAndRead() {
+        SetUserOfflineRequest request1 = new SetUserOfflineRequest(
+                1L,
+                Set.of(DeviceType.ANDROID),
+                SessionCloseStatus.ILLEGAL_REQUEST);
+        SetUserOfflineRequest request2 = new SetUserOfflineRequest(
+                2L,
+                Set.of(DeviceType.DESKTOP, DeviceType.IOS),
+                SessionCloseStatus.HEARTBEAT_TIMEOUT);
+        request1.setTracingContext(new TracingContext());
+        request2.setTracingContext(new TracingContext());
+        BatchRequest request = new BatchRequest(List.of(request1, request2));
+
+        BatchRequest parsedRequest = writeRequestAndReadBuffer(new BatchRequestCodec(), request);
+
+        List<RpcRequest<?>> parsedRequests = parsedRequest.getRequests();
+        assertThat(parsedRequests).containsExactly(request1, request2);
+        assertThat(parsedRequests.get(0)
+                .getTracingContext()
+                .getTraceId()).isEqualTo(request1.getTracingContext()
+                        .getTraceId());
+        assertThat(parsedRequests.get(1)
+                .getTracingContext()
+                .getTraceId()).isEqualTo(request2.getTracingContext()
+                        .getTraceId());
+    }
+
+    @Test
+    void shouldGetTheSameResponses_afterWriteAndRead() {
+        RpcException exception = RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC,
+                ResponseStatusCode.SERVER_INTERNAL_ERROR,
+                "My error message");
+        BatchResponse response = new BatchResponse(
+                Arrays.asList(true, Null.INSTANCE, exception, "My response"));
+
+        BatchResponse parsedResponse = writeDataAndReadBuffer(new BatchResponseCodec(), response);
+
+        assertThat(parsedResponse.responses()).containsExactly(true,
+                null,
+                exception,
+                "My response");
+    }
+
+}
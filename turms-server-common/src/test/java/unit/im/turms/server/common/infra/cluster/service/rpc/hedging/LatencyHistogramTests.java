@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.infra.cluster.service.rpc.hedging;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.infra.cluster.service.rpc.hedging.LatencyHistogram;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class LatencyHistogramTests {
+
+    @Test
+    void getPercentileNanos_shouldReturnNegative_whenSamplesAreInsufficient() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 0; i < 99; i++) {
+            histogram.record(Duration.ofMillis(1)
+                    .toNanos());
+        }
+
+        assertThat(histogram.getPercentileNanos(0.5)).isEqualTo(-1);
+    }
+
+    @Test
+    void getPercentileNanos_shouldEstimatePercentile() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(Duration.ofMillis(i)
+                    .toNanos());
+        }
+
+        long p50 = histogram.getPercentileNanos(0.5);
+        long p95 = histogram.getPercentileNanos(0.95);
+
+        // The relative error is less than 19%
+        assertThat(p50).isBetween(Duration.ofMillis(50)
+                .toNanos(),
+                Duration.ofMillis(60)
+                        .toNanos());
+        assertThat(p95).isBetween(Duration.ofMillis(95)
+                .toNanos(),
+                Duration.ofMillis(114)
+                        .toNanos());
+    }
+
+    @Test
+    void record_shouldFadeOutOldLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 0; i < 100; i++) {
+            histogram.record(Duration.ofSeconds(1)
+                    .toNanos());
+        }
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(Duration.ofMillis(1)
+                    .toNanos());
+        }
+
+        assertThat(histogram.getPercentileNanos(0.95)).isLessThan(Duration.ofMillis(2)
+                .toNanos());
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.infra.cluster.service.rpc.hedging;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.test.StepVerifier;
+
+import im.turms.server.common.access.client.dto.constant.DeviceType;
+import im.turms.server.common.access.client.dto.request.TurmsRequest;
+import im.turms.server.common.access.servicerequest.dto.ServiceRequest;
+import im.turms.server.common.access.servicerequest.dto.ServiceResponse;
+import im.turms.server.common.access.servicerequest.rpc.HandleServiceRequest;
+import im.turms.server.common.infra.cluster.service.rpc.hedging.RpcRequestHedger;
+import im.turms.server.common.infra.property.env.common.cluster.RpcHedgingProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class RpcRequestHedgerTests {
+
+    private static final ServiceResponse PRIMARY_RESPONSE =
+            new ServiceResponse(null, null, "primary");
+    private static final ServiceResponse HEDGED_RESPONSE =
+            new ServiceResponse(null, null, "hedged");
+
+    @Test
+    void hedge_shouldUseHedgedResponse_whenPrimaryIsSlow() {
+        RpcRequestHedger hedger = newHedger(1);
+        AtomicInteger hedgedRequestCount = new AtomicInteger();
+
+        Mono<ServiceResponse> response =
+                hedger.hedge(newRequest(TurmsRequest.KindCase.QUERY_MESSAGES_REQUEST),
+                        Mono.delay(Duration.ofSeconds(10))
+                                .thenReturn(PRIMARY_RESPONSE),
+                        () -> {
+                            hedgedRequestCount.incrementAndGet();
+                            return Mono.just(HEDGED_RESPONSE);
+                        });
+
+        StepVerifier.create(response)
+                .expectNext(HEDGED_RESPONSE)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(hedgedRequestCount).hasValue(1);
+    }
+
+    @Test
+    void hedge_shouldNotHedge_whenPrimaryRespondsBeforeDelay() {
+        RpcRequestHedger hedger = newHedger(1);
+        AtomicInteger hedgedRequestCount = new AtomicInteger();
+
+        Mono<ServiceResponse> response =
+                hedger.hedge(newRequest(TurmsRequest.KindCase.QUERY_MESSAGES_REQUEST),
+                        Mono.just(PRIMARY_RESPONSE),
+                        () -> {
+                            hedgedRequestCount.incrementAndGet();
+                            return Mono.just(HEDGED_RESPONSE);
+                        });
+
+        StepVerifier.create(response)
+                .expectNext(PRIMARY_RESPONSE)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(hedgedRequestCount).hasValue(0);
+    }
+
+    @Test
+    void hedge_shouldUsePrimaryResponse_whenHedgedRequestFailsFast() {
+        RpcRequestHedger hedger = newHedger(1);
+        AtomicInteger hedgedRequestCount = new AtomicInteger();
+
+        Mono<ServiceResponse> response =
+                hedger.hedge(newRequest(TurmsRequest.KindCase.QUERY_MESSAGES_REQUEST),
+                        Mono.delay(Duration.ofMillis(200))
+                                .thenReturn(PRIMARY_RESPONSE),
+                        () -> {
+                            hedgedRequestCount.incrementAndGet();
+                            return Mono.error(new IllegalStateException("Connection closed"));
+                        });
+
+        StepVerifier.create(response)
+                .expectNext(PRIMARY_RESPONSE)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(hedgedRequestCount).hasValue(1);
+    }
+
+    @Test
+    void hedge_shouldReleaseLosingResponse() {
+        RpcRequestHedger hedger = newHedger(1);
+        AtomicReference<Subscriber<? super ServiceResponse>> primarySubscriber =
+                new AtomicReference<>();
+        // Simulate the primary response that has been in flight when it is cancelled
+        Mono<ServiceResponse> primary = Mono.fromDirect(subscriber -> {
+            subscriber.onSubscribe(Operators.emptySubscription());
+            primarySubscriber.set(subscriber);
+        });
+
+        Mono<ServiceResponse> response =
+                hedger.hedge(newRequest(TurmsRequest.KindCase.QUERY_MESSAGES_REQUEST),
+                        primary,
+                        () -> Mono.just(HEDGED_RESPONSE));
+
+        StepVerifier.create(response)
+                .expectNext(HEDGED_RESPONSE)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        ByteBuf buffer = Unpooled.buffer(1);
+        primarySubscriber.get()
+                .onNext(new ServiceResponse(null, null, "primary", buffer));
+        primarySubscriber.get()
+                .onComplete();
+        assertThat(buffer.refCnt()).isZero();
+    }
+
+    @Test
+    void hedge_shouldNotHedge_whenRequestTypeIsNotAllowed() {
+        RpcRequestHedger hedger = newHedger(1);
+        Mono<ServiceResponse> primary = Mono.just(PRIMARY_RESPONSE);
+
+        Mono<ServiceResponse> response =
+                hedger.hedge(newRequest(TurmsRequest.KindCase.CREATE_MESSAGE_REQUEST),
+                        primary,
+                        () -> Mono.just(HEDGED_RESPONSE));
+
+        assertThat(response).isSameAs(primary);
+    }
+
+    @Test
+    void hedge_shouldLimitHedgedRequests_byBudget() {
+        RpcRequestHedger hedger = newHedger(0.1F);
+        AtomicInteger hedgedRequestCount = new AtomicInteger();
+        int requestCount = 100;
+
+        for (int i = 0; i < requestCount; i++) {
+            Mono<ServiceResponse> response =
+                    hedger.hedge(newRequest(TurmsRequest.KindCase.QUERY_MESSAGES_REQUEST),
+                            Mono.delay(Duration.ofMillis(30))
+                                    .thenReturn(PRIMARY_RESPONSE),
+                            () -> {
+                                hedgedRequestCount.incrementAndGet();
+                                return Mono.never();
+                            });
+            StepVerifier.create(response)
+                    .expectNext(PRIMARY_RESPONSE)
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(5));
+        }
+
+        assertThat(hedgedRequestCount.get()).isLessThanOrEqualTo(requestCount / 10);
+    }
+
+    private RpcRequestHedger newHedger(float budgetRatio) {
+        return new RpcRequestHedger(RpcHedgingProperties.builder()
+                .enabled(true)
+                .requestTypes(Set.of(TurmsRequest.KindCase.QUERY_MESSAGES_REQUEST))
+                .delayMillis(10)
+                .delayPercentile(0)
+                .budgetRatio(budgetRatio)
+                .build());
+    }
+
+    private HandleServiceRequest newRequest(TurmsRequest.KindCase type) {
+        return new HandleServiceRequest(new ServiceRequest(
+                new byte[]{127, 0, 0, 1},
+                1L,
+                DeviceType.ANDROID,
+                1L,
+                type,
+                Unpooled.EMPTY_BUFFER));
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.infra.cluster.service.rpc.loadbalancing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.infra.cluster.service.rpc.loadbalancing.LoadBalancedEndpoint;
+import im.turms.server.common.infra.cluster.service.rpc.loadbalancing.PeakEwma;
+import im.turms.server.common.infra.cluster.service.rpc.loadbalancing.RpcLoadBalancer;
+import im.turms.server.common.infra.property.constant.RpcLoadBalancingStrategy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Simulates sending requests to members with a simulated clock, where one member is 10 times
+ * slower than the others, and can handle only 10% of the requests that a fast member can handle.
+ *
+ * @author James Chen
+ */
+class RpcLoadBalancerSimulationTests {
+
+    private static final int MEMBER_COUNT = 4;
+    private static final int SLOW_MEMBER_INDEX = 0;
+    /**
+     * The number of requests that a member can handle concurrently.
+     */
+    private static final int MEMBER_CONCURRENCY = 4;
+    private static final long FAST_MEMBER_SERVICE_TIME_NANOS = Duration.ofMillis(4)
+            .toNanos();
+    private static final long SLOW_MEMBER_SERVICE_TIME_NANOS = Duration.ofMillis(40)
+            .toNanos();
+    private static final long REQUEST_INTERVAL_NANOS = Duration.ofMillis(1)
+            .toNanos();
+    private static final int REQUEST_COUNT = 20_000;
+    private static final long PEAK_EWMA_DECAY_NANOS = Duration.ofSeconds(1)
+            .toNanos();
+
+    @Test
+    void roundRobin_shouldOverloadSlowMember() {
+        SimulationResult result = simulate(RpcLoadBalancingStrategy.ROUND_ROBIN);
+
+        assertThat(result.slowMemberRequestRatio()).isCloseTo(0.25, within(0.01));
+        // The slow member receives 250 requests per second,
+        // but can handle only 100 requests per second.
+        assertThat(result.averageLatencyMillis()).isGreaterThan(1000);
+    }
+
+    @Test
+    void leastOutstandingRequests_shouldAvoidSlowMember() {
+        assertAvoidSlowMember(simulate(RpcLoadBalancingStrategy.LEAST_OUTSTANDING_REQUESTS));
+    }
+
+    @Test
+    void powerOfTwoChoices_shouldAvoidSlowMember() {
+        assertAvoidSlowMember(simulate(RpcLoadBalancingStrategy.POWER_OF_TWO_CHOICES));
+    }
+
+    @Test
+    void peakEwma_shouldAvoidSlowMember() {
+        SimulationResult result = simulate(RpcLoadBalancingStrategy.PEAK_EWMA);
+
+        assertAvoidSlowMember(result);
+        // The slow member should only be probed after its latency decays.
+        assertThat(result.slowMemberRequestRatio()).isLessThan(0.02);
+    }
+
+    private void assertAvoidSlowMember(SimulationResult result) {
+        assertThat(result.slowMemberRequestRatio()).isLessThan(0.1);
+        assertThat(result.averageLatencyMillis()).isLessThan(20);
+    }
+
+    private SimulationResult simulate(RpcLoadBalancingStrategy strategy) {
+        RpcLoadBalancer loadBalancer = RpcLoadBalancer.create(strategy);
+        SimulatedClock clock = new SimulatedClock();
+        List<SimulatedMember> members = new ArrayList<>(MEMBER_COUNT);
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+            members.add(new SimulatedMember(clock,
+                    i == SLOW_MEMBER_INDEX
+                            ? SLOW_MEMBER_SERVICE_TIME_NANOS
+                            : FAST_MEMBER_SERVICE_TIME_NANOS));
+        }
+        PriorityQueue<Response> responses = new PriorityQueue<>();
+        int slowMemberRequestCount = 0;
+        long totalLatencyNanos = 0;
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            long now = i * REQUEST_INTERVAL_NANOS;
+            Response response;
+            while ((response = responses.peek()) != null && response.timeNanos <= now) {
+                responses.poll();
+                clock.nanos = response.timeNanos;
+                response.member.onResponse(response.latencyNanos);
+            }
+            clock.nanos = now;
+            SimulatedMember member = loadBalancer.choose(members);
+            if (member == members.get(SLOW_MEMBER_INDEX)) {
+                slowMemberRequestCount++;
+            }
+            long responseTime = member.handleRequest();
+            long latency = responseTime - now;
+            totalLatencyNanos += latency;
+            responses.add(new Response(member, responseTime, latency));
+        }
+        return new SimulationResult((double) slowMemberRequestCount / REQUEST_COUNT,
+                totalLatencyNanos / (double) REQUEST_COUNT / 1_000_000);
+    }
+
+    private record SimulationResult(
+            double slowMemberRequestRatio,
+            double averageLatencyMillis
+    ) {
+    }
+
+    private record Response(
+            SimulatedMember member,
+            long timeNanos,
+            long latencyNanos
+    ) implements Comparable<Response> {
+        @Override
+        public int compareTo(Response o) {
+            return Long.compare(timeNanos, o.timeNanos);
+        }
+    }
+
+    private static class SimulatedClock {
+        private long nanos;
+    }
+
+    private static class SimulatedMember implements LoadBalancedEndpoint {
+        private final SimulatedClock clock;
+        private final long serviceTimeNanos;
+        /**
+         * The time when each worker of the member becomes free.
+         */
+        private final long[] workerFreeTimeNanos = new long[MEMBER_CONCURRENCY];
+        private final PeakEwma latency;
+        private int pendingRequestCount;
+
+        private SimulatedMember(SimulatedClock clock, long serviceTimeNanos) {
+            this.clock = clock;
+            this.serviceTimeNanos = serviceTimeNanos;
+            latency = new PeakEwma(PEAK_EWMA_DECAY_NANOS, clock.nanos);
+        }
+
+        /**
+         * @return the time when the response is sent.
+         */
+        private long handleRequest() {
+            pendingRequestCount++;
+            int freeWorker = 0;
+            for (int i = 1; i < workerFreeTimeNanos.length; i++) {
+                if (workerFreeTimeNanos[i] < workerFreeTimeNanos[freeWorker]) {
+                    freeWorker = i;
+                }
+            }
+            long responseTime =
+                    Math.max(workerFreeTimeNanos[freeWorker], clock.nanos) + serviceTimeNanos;
+            workerFreeTimeNanos[freeWorker] = responseTime;
+            return responseTime;
+        }
+
+        private void onResponse(long latencyNanos) {
+            pendingRequestCount--;
+            latency.observe(latencyNanos, clock.nanos);
+        }
+
+        @Override
+        public int getPendingRequestCount() {
+            return pendingRequestCount;
+        }
+
+        @Override
+        public long getPeakEwmaLatencyNanos() {
+            return latency.get(clock.nanos);
+        }
+    }
+
+}
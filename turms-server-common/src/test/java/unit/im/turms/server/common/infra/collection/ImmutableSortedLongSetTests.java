@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.infra.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.infra.collection.CollectionUtil;
+import im.turms.server.common.infra.collection.ImmutableSortedLongSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author James Chen
+ */
+class ImmutableSortedLongSetTests {
+
+    @Test
+    void of_shouldSortAndDeduplicateValues() {
+        ImmutableSortedLongSet set = ImmutableSortedLongSet.of(new long[]{5, 1, 3, 5, 1, -2});
+
+        assertThat(set).hasSize(4)
+                .containsExactly(-2L, 1L, 3L, 5L);
+        assertThat(set.containsLong(3)).isTrue();
+        assertThat(set.containsLong(4)).isFalse();
+        assertThat(set).isEqualTo(Set.of(-2L, 1L, 3L, 5L))
+                .hasSameHashCodeAs(Set.of(-2L, 1L, 3L, 5L));
+    }
+
+    @Test
+    void without_shouldExcludeValueWithoutChangingOriginalSet() {
+        ImmutableSortedLongSet set = ImmutableSortedLongSet.of(new long[]{1, 2, 3});
+
+        for (long excludedValue = 1; excludedValue <= 3; excludedValue++) {
+            ImmutableSortedLongSet view = set.without(excludedValue);
+            List<Long> expectedValues = new ArrayList<>(List.of(1L, 2L, 3L));
+            expectedValues.remove(excludedValue);
+
+            assertThat(view).hasSize(2)
+                    .containsExactlyElementsOf(expectedValues)
+                    .doesNotContain(excludedValue)
+                    .isEqualTo(Set.copyOf(expectedValues));
+            assertThat(view.toLongArray())
+                    .containsExactly(expectedValues.stream()
+                            .mapToLong(Long::longValue)
+                            .toArray());
+            List<Long> consumedValues = new ArrayList<>(2);
+            view.forEachLong(consumedValues::add);
+            assertThat(consumedValues).containsExactlyElementsOf(expectedValues);
+        }
+        assertThat(set).containsExactly(1L, 2L, 3L);
+        assertThat(set.without(4)).isSameAs(set);
+        assertThat(set.without(1)
+                .without(3)).containsExactly(2L);
+        assertThat(set.without(1)
+                .without(2)
+                .without(3)).isEmpty();
+    }
+
+    @Test
+    void shouldBeImmutable() {
+        ImmutableSortedLongSet set = ImmutableSortedLongSet.of(new long[]{1, 2});
+
+        assertThatThrownBy(() -> set.add(3L)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> set.remove(1L))
+                .isInstanceOf(UnsupportedOperationException.class);
+
+        Set<Long> added = CollectionUtil.add(set, 3L);
+        Set<Long> removed = CollectionUtil.remove(set, 1L);
+        assertThat(added).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(removed).isInstanceOf(ImmutableSortedLongSet.class)
+                .containsExactly(2L);
+        assertThat(set).containsExactly(1L, 2L);
+    }
+
+}
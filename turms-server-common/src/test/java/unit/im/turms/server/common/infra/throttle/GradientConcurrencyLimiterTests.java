@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.infra.throttle;
+
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.infra.throttle.GradientConcurrencyLimiter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives {@link GradientConcurrencyLimiter} with a discrete-event simulation of a stand-in
+ * repository, which can run a limited number of operations concurrently, and whose latency grows
+ * linearly with the number of in-flight operations beyond that (i.e. queueing).
+ *
+ * @author James Chen
+ */
+class GradientConcurrencyLimiterTests {
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * 20,000 requests per second.
+     */
+    private static final long REQUEST_INTERVAL_NANOS = 50_000L;
+    private static final int REPOSITORY_CONCURRENCY = 50;
+    private static final long FAST_LATENCY_NANOS = NANOS_PER_MILLI;
+    /**
+     * The repository can only handle 5,000 requests per second when it slows down.
+     */
+    private static final long SLOW_LATENCY_NANOS = 10 * NANOS_PER_MILLI;
+
+    @Test
+    void shouldNotRejectRequests_whenRepositoryIsFast() {
+        GradientConcurrencyLimiter limiter = newLimiter();
+        Simulation simulation = new Simulation(limiter);
+
+        PhaseResult result = simulation.run(5 * NANOS_PER_SECOND, FAST_LATENCY_NANOS);
+
+        assertThat(result.rejected).isZero();
+        assertThat(result.averageLatencyNanos()).isEqualTo(FAST_LATENCY_NANOS);
+    }
+
+    @Test
+    void shouldShrinkLimitAndBoundLatency_whenRepositorySlowsDown() {
+        GradientConcurrencyLimiter limiter = newLimiter();
+        Simulation simulation = new Simulation(limiter);
+        simulation.run(5 * NANOS_PER_SECOND, FAST_LATENCY_NANOS);
+
+        simulation.run(3 * NANOS_PER_SECOND, SLOW_LATENCY_NANOS);
+        PhaseResult result = simulation.run(2 * NANOS_PER_SECOND, SLOW_LATENCY_NANOS);
+
+        // Requests over the limit are rejected immediately instead of queueing
+        assertThat(result.rejected).isPositive();
+        assertThat(limiter.getLimit()).isLessThan(1000);
+        // Without the limiter, the in-flight requests would grow by 15,000 per second
+        // and the latency would grow by 300 ms per second
+        assertThat(result.averageLatencyNanos()).isLessThan(5 * SLOW_LATENCY_NANOS);
+        // Most of the capacity of the repository is still used
+        // except for the time measuring the minimum latency
+        assertThat(result.admitted).isGreaterThan((long) (0.8 * 5_000 * 2));
+    }
+
+    @Test
+    void shouldRecoverLimit_afterRepositoryRecovers() {
+        GradientConcurrencyLimiter limiter = newLimiter();
+        Simulation simulation = new Simulation(limiter);
+        simulation.run(5 * NANOS_PER_SECOND, FAST_LATENCY_NANOS);
+        simulation.run(5 * NANOS_PER_SECOND, SLOW_LATENCY_NANOS);
+
+        simulation.run(5 * NANOS_PER_SECOND, FAST_LATENCY_NANOS);
+        PhaseResult result = simulation.run(NANOS_PER_SECOND, FAST_LATENCY_NANOS);
+
+        assertThat(result.rejected).isZero();
+        assertThat(result.averageLatencyNanos()).isEqualTo(FAST_LATENCY_NANOS);
+    }
+
+    @Test
+    void shouldNotRejectRequests_whenRequestTypesWithDifferentLatenciesShareLimit() {
+        // The latency of the second request type is always beyond the tolerance
+        // of the minimum latency of the first one
+        long[] typeToLatencyMultiplier = {1, 3};
+        GradientConcurrencyLimiter limiter =
+                new GradientConcurrencyLimiter(100, 10, 1000, 2, typeToLatencyMultiplier.length);
+        Simulation simulation = new Simulation(limiter, typeToLatencyMultiplier);
+        simulation.run(5 * NANOS_PER_SECOND, FAST_LATENCY_NANOS);
+
+        PhaseResult result = simulation.run(5 * NANOS_PER_SECOND, FAST_LATENCY_NANOS);
+
+        assertThat(result.rejected).isZero();
+        // The limit doesn't decay to the minimum limit
+        assertThat(limiter.getLimit()).isEqualTo(100);
+    }
+
+    @Test
+    void shouldNotRejectRequests_whenLatencyJittersUnderSteadyLoad() {
+        GradientConcurrencyLimiter limiter = newLimiter();
+        // The latency is uniformly distributed between 1x and 4x of the base latency,
+        // and the repository is never saturated
+        Simulation simulation = new Simulation(limiter, new long[]{1}, 4);
+
+        PhaseResult result = simulation.run(30 * NANOS_PER_SECOND, FAST_LATENCY_NANOS / 2);
+
+        assertThat(result.rejected).isZero();
+        assertThat(result.minLimit).isGreaterThan(10);
+    }
+
+    private GradientConcurrencyLimiter newLimiter() {
+        return new GradientConcurrencyLimiter(100, 10, 1000, 2);
+    }
+
+    private static class Simulation {
+        private final GradientConcurrencyLimiter limiter;
+        private final long[] typeToLatencyMultiplier;
+        private final double maxJitterMultiplier;
+        private final SplittableRandom random = new SplittableRandom(0);
+        private final PriorityQueue<Operation> pendingOperations = new PriorityQueue<>();
+        private long now;
+        private int repositoryInFlight;
+        private int requestCount;
+
+        Simulation(GradientConcurrencyLimiter limiter) {
+            this(limiter, new long[]{1});
+        }
+
+        Simulation(GradientConcurrencyLimiter limiter, long[] typeToLatencyMultiplier) {
+            this(limiter, typeToLatencyMultiplier, 1);
+        }
+
+        /**
+         * @param maxJitterMultiplier the latency is multiplied by a random number uniformly
+         *                            distributed in [1, maxJitterMultiplier).
+         */
+        Simulation(
+                GradientConcurrencyLimiter limiter,
+                long[] typeToLatencyMultiplier,
+                double maxJitterMultiplier) {
+            this.limiter = limiter;
+            this.typeToLatencyMultiplier = typeToLatencyMultiplier;
+            this.maxJitterMultiplier = maxJitterMultiplier;
+        }
+
+        PhaseResult run(long durationNanos, long baseLatencyNanos) {
+            PhaseResult result = new PhaseResult();
+            long end = now + durationNanos;
+            while (now < end) {
+                completeOperations(now, result);
+                int type = requestCount++ % typeToLatencyMultiplier.length;
+                if (limiter.tryAcquire()) {
+                    repositoryInFlight++;
+                    double jitter = maxJitterMultiplier == 1
+                            ? 1
+                            : random.nextDouble(1, maxJitterMultiplier);
+                    long latency = (long) (baseLatencyNanos
+                            * typeToLatencyMultiplier[type]
+                            * jitter
+                            * Math.max(REPOSITORY_CONCURRENCY, repositoryInFlight)
+                            / REPOSITORY_CONCURRENCY);
+                    pendingOperations.add(new Operation(now + latency, type, latency));
+                    result.admitted++;
+                } else {
+                    result.rejected++;
+                }
+                result.minLimit = Math.min(result.minLimit, limiter.getLimit());
+                now += REQUEST_INTERVAL_NANOS;
+            }
+            return result;
+        }
+
+        private void completeOperations(long time, PhaseResult result) {
+            Operation operation;
+            while ((operation = pendingOperations.peek()) != null
+                    && operation.completionTime <= time) {
+                pendingOperations.poll();
+                repositoryInFlight--;
+                limiter.release(operation.type, operation.latency);
+                result.completed++;
+                result.totalLatencyNanos += operation.latency;
+            }
+        }
+    }
+
+    private record Operation(
+            long completionTime,
+            int type,
+            long latency
+    ) implements Comparable<Operation> {
+        @Override
+        public int compareTo(Operation o) {
+            return Long.compare(completionTime, o.completionTime);
+        }
+    }
+
+    private static class PhaseResult {
+        private long admitted;
+        private long rejected;
+        private long completed;
+        private long totalLatencyNanos;
+        private int minLimit = Integer.MAX_VALUE;
+
+        long averageLatencyNanos() {
+            return completed == 0
+                    ? 0
+                    : totalLatencyNanos / completed;
+        }
+    }
+
+}
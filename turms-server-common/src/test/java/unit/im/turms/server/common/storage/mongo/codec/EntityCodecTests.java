@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.storage.mongo.codec;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.bson.BsonBinary;
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.access.client.dto.constant.ProfileAccessStrategy;
+import im.turms.server.common.domain.user.po.User;
+import im.turms.server.common.storage.mongo.CodecPool;
+import im.turms.server.common.storage.mongo.entity.MongoEntityFactory;
+import im.turms.server.common.storage.mongo.entity.annotation.Field;
+import im.turms.server.common.storage.mongo.entity.annotation.Id;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class EntityCodecTests {
+
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder()
+            .build();
+
+    @Test
+    void parse_shouldGenerateInstantiator() {
+        assertThat(MongoEntityFactory.parse(User.class)
+                .instantiator()
+                .getClass()
+                .isHidden()).isTrue();
+        assertThat(MongoEntityFactory.parse(NoArgEntity.class)
+                .instantiator()
+                .getClass()
+                .isHidden()).isTrue();
+    }
+
+    @Test
+    void encodeAndDecode_shouldKeepValues_forAllArgsConstructor() {
+        Date date = new Date(1000);
+        User user = new User(
+                1L,
+                new byte[]{1, 2, 3},
+                "name",
+                null,
+                "picture",
+                ProfileAccessStrategy.FRIENDS,
+                2L,
+                date,
+                null,
+                date,
+                true,
+                Map.of("attribute", "value"));
+
+        assertThat(encodeAndDecode(User.class, user)).isEqualTo(user);
+    }
+
+    @Test
+    void decode_shouldDecodeFields_inAnyOrder() {
+        BsonDocument document = new BsonDocument().append("act", BsonBoolean.TRUE)
+                .append("unknown", new BsonString("ignored"))
+                .append("pgid", new BsonInt64(2))
+                .append("#attribute", new BsonString("value"))
+                .append("n", new BsonString("name"))
+                .append("intro", BsonNull.VALUE)
+                .append("pas", new BsonInt32(ProfileAccessStrategy.FRIENDS.getNumber()))
+                .append("pw", new BsonBinary(new byte[]{1}))
+                .append("rd", new BsonDateTime(1000))
+                .append("_id", new BsonInt64(1));
+
+        User user = decode(User.class, document);
+
+        assertThat(user.getId()).isEqualTo(1L);
+        assertThat(user.getPassword()).containsExactly(1);
+        assertThat(user.getName()).isEqualTo("name");
+        assertThat(user.getIntro()).isNull();
+        assertThat(user.getProfileAccessStrategy()).isEqualTo(ProfileAccessStrategy.FRIENDS);
+        assertThat(user.getRoleId()).isEqualTo(2L);
+        assertThat(user.getRegistrationDate()).isEqualTo(new Date(1000));
+        assertThat(user.getIsActive()).isTrue();
+        assertThat(user.getUserDefinedAttributes()).isEqualTo(Map.of("attribute", "value"));
+    }
+
+    @Test
+    void encodeAndDecode_shouldKeepValues_forPrivateNoArgConstructor() {
+        NoArgEntity entity = new NoArgEntity();
+        entity.id = 1L;
+        entity.count = 2;
+
+        NoArgEntity decodedEntity = encodeAndDecode(NoArgEntity.class, entity);
+
+        assertThat(decodedEntity.id).isEqualTo(1L);
+        assertThat(decodedEntity.count).isEqualTo(2);
+        assertThat(decodedEntity.name).isNull();
+    }
+
+    @Test
+    void encodeAndDecode_shouldKeepValues_forPrimitiveParameters() {
+        PrimitiveArgEntity entity = new PrimitiveArgEntity(1L, 2, true);
+
+        PrimitiveArgEntity decodedEntity = encodeAndDecode(PrimitiveArgEntity.class, entity);
+
+        assertThat(decodedEntity.id).isEqualTo(1L);
+        assertThat(decodedEntity.count).isEqualTo(2);
+        assertThat(decodedEntity.active).isTrue();
+    }
+
+    private static <T> T encodeAndDecode(Class<T> clazz, T value) {
+        Codec<T> codec = CodecPool.CODEC_REGISTRY.get(clazz);
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), value, CodecPool.DEFAULT_ENCODER_CONTEXT);
+        return decode(clazz, document);
+    }
+
+    private static <T> T decode(Class<T> clazz, BsonDocument document) {
+        Codec<T> codec = CodecPool.CODEC_REGISTRY.get(clazz);
+        return codec.decode(new BsonDocumentReader(document), DECODER_CONTEXT);
+    }
+
+    private static class NoArgEntity {
+        @Id
+        private Long id;
+        @Field("n")
+        private String name;
+        @Field("c")
+        private int count;
+
+        private NoArgEntity() {
+        }
+    }
+
+    private static class PrimitiveArgEntity {
+        @Id
+        private final Long id;
+        @Field("c")
+        private final int count;
+        @Field("a")
+        private final boolean active;
+
+        private PrimitiveArgEntity(Long id, int count, boolean active) {
+            this.id = id;
+            this.count = count;
+            this.active = active;
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.storage.mongo.operation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import im.turms.server.common.storage.mongo.exception.DuplicateKeyException;
+import im.turms.server.common.storage.mongo.operation.BatchInserter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class BatchInserterTests {
+
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void insert_shouldInsertInOneBatch_whenBatchIsFull() {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        BatchInserter<String> inserter = new BatchInserter<>(documents -> {
+            batches.add(List.copyOf(documents));
+            return Mono.empty();
+        }, 3, 60 * 1000);
+
+        Mono<Void> insertAll =
+                Mono.when(inserter.insert("1"), inserter.insert("2"), inserter.insert("3"));
+
+        StepVerifier.create(insertAll)
+                .expectComplete()
+                .verify(TIMEOUT);
+        assertThat(batches).containsExactly(List.of("1", "2", "3"));
+    }
+
+    @Test
+    void insert_shouldInsertInOneBatch_whenMaxDelayElapsed() {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        BatchInserter<String> inserter = new BatchInserter<>(documents -> {
+            batches.add(List.copyOf(documents));
+            return Mono.empty();
+        }, 100, 50);
+
+        Mono<Void> insertAll = Mono.when(inserter.insert("1"), inserter.insert("2"));
+
+        StepVerifier.create(insertAll)
+                .expectComplete()
+                .verify(TIMEOUT);
+        assertThat(batches).containsExactly(List.of("1", "2"));
+    }
+
+    @Test
+    void insert_shouldOnlyFailDocumentsWithWriteErrors() {
+        BulkWriteError writeError = new BulkWriteError(
+                DUPLICATE_KEY_ERROR_CODE,
+                "duplicate key",
+                new BsonDocument(),
+                1);
+        MongoBulkWriteException exception = new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(),
+                List.of(writeError),
+                null,
+                new ServerAddress(),
+                Collections.emptySet());
+        BatchInserter<String> inserter =
+                new BatchInserter<>(documents -> Mono.error(exception), 3, 1000);
+
+        Mono<Void> insert1 = inserter.insert("1");
+        Mono<Void> insert2 = inserter.insert("2");
+        Mono<Void> insert3 = inserter.insert("3");
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Mono<Void> insertAll = Mono.whenDelayError(insert1.doOnError(errors::add),
+                insert2.doOnError(errors::add),
+                insert3.doOnError(errors::add));
+
+        StepVerifier.create(insertAll)
+                .expectError(DuplicateKeyException.class)
+                .verify(TIMEOUT);
+        assertThat(errors).hasSize(1)
+                .first()
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void insert_shouldFailAllDocuments_whenInsertionFailed() {
+        IllegalStateException exception = new IllegalStateException("mock error");
+        BatchInserter<String> inserter =
+                new BatchInserter<>(documents -> Mono.error(exception), 2, 1000);
+
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Mono<Void> insertAll = Mono.whenDelayError(inserter.insert("1")
+                .doOnError(errors::add),
+                inserter.insert("2")
+                        .doOnError(errors::add));
+
+        StepVerifier.create(insertAll)
+                .expectError()
+                .verify(TIMEOUT);
+        assertThat(errors).containsExactly(exception, exception);
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.storage.mongo.operation;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.storage.mongo.operation.TurmsBulkWriteResult;
+import im.turms.server.common.storage.mongo.operation.TurmsBulkWriteResult.OperationResult;
+import im.turms.server.common.storage.mongo.operation.TurmsBulkWriteResult.OperationStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class TurmsBulkWriteResultTests {
+
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+    private static final int BAD_VALUE_ERROR_CODE = 2;
+
+    @Test
+    void of_shouldReportAllOperationsSucceeded_whenNoWriteErrors() {
+        BulkWriteResult result = BulkWriteResult.acknowledged(1,
+                1,
+                0,
+                1,
+                List.of(new BulkWriteUpsert(2, new BsonInt64(100))),
+                Collections.emptyList());
+
+        TurmsBulkWriteResult bulkWriteResult = TurmsBulkWriteResult.of(3, true, result, null);
+
+        assertThat(bulkWriteResult.hasWriteErrors()).isFalse();
+        assertThat(bulkWriteResult.getUpsertedCount()).isEqualTo(1);
+        assertThat(bulkWriteResult.operationResults()).containsExactly(
+                new OperationResult(0, OperationStatus.SUCCEEDED, null, null),
+                new OperationResult(1, OperationStatus.SUCCEEDED, null, null),
+                new OperationResult(2, OperationStatus.SUCCEEDED, new BsonInt64(100), null));
+    }
+
+    @Test
+    void of_shouldReportOperationsAfterFailedOneNotExecuted_whenOrdered() {
+        BulkWriteError error = newError(DUPLICATE_KEY_ERROR_CODE, 1);
+        BulkWriteResult result =
+                BulkWriteResult.acknowledged(0, 1, 0, 1, Collections.emptyList(), null);
+
+        TurmsBulkWriteResult bulkWriteResult =
+                TurmsBulkWriteResult.of(3, true, result, newException(result, error));
+
+        assertThat(bulkWriteResult.areAllWriteErrorsDuplicateKey()).isTrue();
+        assertThat(bulkWriteResult.operationResults()).extracting(OperationResult::status)
+                .containsExactly(OperationStatus.SUCCEEDED,
+                        OperationStatus.FAILED,
+                        OperationStatus.NOT_EXECUTED);
+        assertThat(bulkWriteResult.operationResults()
+                .get(1)
+                .error()).isSameAs(error);
+    }
+
+    @Test
+    void of_shouldOnlyReportFailedOperations_whenUnordered() {
+        BulkWriteResult result =
+                BulkWriteResult.acknowledged(0, 1, 0, 1, Collections.emptyList(), null);
+        MongoBulkWriteException exception = newException(result,
+                newError(DUPLICATE_KEY_ERROR_CODE, 0),
+                newError(BAD_VALUE_ERROR_CODE, 2));
+
+        TurmsBulkWriteResult bulkWriteResult = TurmsBulkWriteResult.of(3, false, result, exception);
+
+        assertThat(bulkWriteResult.areAllWriteErrorsDuplicateKey()).isFalse();
+        assertThat(bulkWriteResult.getWriteErrors()).hasSize(2);
+        assertThat(bulkWriteResult.operationResults()).extracting(OperationResult::status)
+                .containsExactly(OperationStatus.FAILED,
+                        OperationStatus.SUCCEEDED,
+                        OperationStatus.FAILED);
+    }
+
+    @Test
+    void of_shouldReportUnknownResults_whenUnacknowledged() {
+        TurmsBulkWriteResult bulkWriteResult =
+                TurmsBulkWriteResult.of(2, false, BulkWriteResult.unacknowledged(), null);
+
+        assertThat(bulkWriteResult.wasAcknowledged()).isFalse();
+        assertThat(bulkWriteResult.operationResults()).extracting(OperationResult::status)
+                .containsExactly(OperationStatus.UNACKNOWLEDGED, OperationStatus.UNACKNOWLEDGED);
+    }
+
+    private BulkWriteError newError(int code, int index) {
+        return new BulkWriteError(code, "error", new BsonDocument(), index);
+    }
+
+    private MongoBulkWriteException newException(
+            BulkWriteResult result,
+            BulkWriteError... errors) {
+        return new MongoBulkWriteException(
+                result,
+                List.of(errors),
+                null,
+                new ServerAddress(),
+                Collections.emptySet());
+    }
+
+}
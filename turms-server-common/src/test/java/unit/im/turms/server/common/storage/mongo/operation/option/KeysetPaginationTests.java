@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.storage.mongo.operation.option;
+
+import java.util.List;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.storage.mongo.operation.option.Filter;
+import im.turms.server.common.storage.mongo.operation.option.KeysetPagination;
+import im.turms.server.common.storage.mongo.operation.option.QueryOptions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author James Chen
+ */
+class KeysetPaginationTests {
+
+    @Test
+    void apply_shouldSortByIdAndQueryOneMoreRecord_forFirstPage() {
+        Filter filter = Filter.newBuilder(1)
+                .eq("type", 1);
+        QueryOptions options = QueryOptions.newBuilder(2);
+
+        KeysetPagination.newBuilder(10, null)
+                .sort(false, "date")
+                .apply(filter, options);
+
+        assertThat(options.toBsonDocument()
+                .getDocument("sort")).isEqualTo(new BsonDocument("date", new BsonInt32(-1))
+                        .append("_id", new BsonInt32(-1)));
+        assertThat(options.toBsonDocument()
+                .getInt32("limit")
+                .getValue()).isEqualTo(11);
+        assertThat(filter.toBsonDocument()).isEqualTo(new BsonDocument("type", new BsonInt32(1)));
+    }
+
+    @Test
+    void apply_shouldQueryRecordsAfterLastRecord_forMultipleSortKeys() {
+        BsonDocument lastRecord = new BsonDocument("_id", new BsonInt64(5))
+                .append("date", new BsonInt64(100))
+                .append("text", new BsonInt32(0));
+        String token = KeysetPagination.newBuilder(10, null)
+                .sort(true, "date")
+                .createContinuationToken(lastRecord);
+        Filter filter = Filter.newBuilder(1);
+
+        KeysetPagination.newBuilder(10, token)
+                .sort(true, "date")
+                .apply(filter, QueryOptions.newBuilder(2));
+
+        BsonArray branches = new BsonArray();
+        branches.add(new BsonDocument("date", new BsonDocument("$gt", new BsonInt64(100))));
+        branches.add(new BsonDocument("date", new BsonDocument("$eq", new BsonInt64(100)))
+                .append("_id", new BsonDocument("$gt", new BsonInt64(5))));
+        assertThat(filter.toBsonDocument()).isEqualTo(new BsonDocument("$or", branches));
+    }
+
+    @Test
+    void apply_shouldKeepExistingCondition_whenConditionKeyConflicts() {
+        String token = KeysetPagination.newBuilder(10, null)
+                .createContinuationToken(new BsonDocument("_id", new BsonInt64(5)));
+        Filter filter = Filter.newBuilder(1)
+                .gt("_id", 1L);
+
+        KeysetPagination.newBuilder(10, token)
+                .apply(filter, QueryOptions.newBuilder(2));
+
+        BsonArray conditions = new BsonArray();
+        conditions.add(new BsonDocument("_id", new BsonDocument("$gt", new BsonInt64(1))));
+        conditions.add(new BsonDocument("_id", new BsonDocument("$gt", new BsonInt64(5))));
+        assertThat(filter.toBsonDocument()).isEqualTo(new BsonDocument("$and", conditions));
+    }
+
+    @Test
+    void apply_shouldThrow_forInvalidOrMismatchedToken() {
+        String token = KeysetPagination.newBuilder(10, null)
+                .createContinuationToken(new BsonDocument("_id", new BsonInt64(5)));
+
+        assertThatThrownBy(() -> KeysetPagination.newBuilder(10, "not a token")
+                .apply(Filter.newBuilder(1), QueryOptions.newBuilder(2)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetPagination.newBuilder(10, token)
+                .sort(true, "date")
+                .apply(Filter.newBuilder(1), QueryOptions.newBuilder(2)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void apply_shouldThrow_forTokenWithDocumentOrArrayValues() {
+        KeysetPagination pagination = KeysetPagination.newBuilder(10, null)
+                .sort(true, "date");
+        String tokenWithOperator = pagination.createContinuationToken(new BsonDocument(
+                "_id",
+                new BsonInt64(5)).append("date", new BsonDocument("$ne", BsonNull.VALUE)));
+        String tokenWithArray = pagination.createContinuationToken(
+                new BsonDocument("_id", new BsonInt64(5)).append("date", new BsonArray()));
+
+        for (String token : List.of(tokenWithOperator, tokenWithArray)) {
+            Filter filter = Filter.newBuilder(1);
+            assertThatThrownBy(() -> KeysetPagination.newBuilder(10, token)
+                    .sort(true, "date")
+                    .apply(filter, QueryOptions.newBuilder(2)))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThat(filter.toBsonDocument()).isEmpty();
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.storage.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import io.lettuce.core.ScriptOutputType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import helper.RedisStandInServer;
+import im.turms.server.common.storage.redis.RedisPipeline;
+import im.turms.server.common.storage.redis.TurmsRedisClient;
+import im.turms.server.common.storage.redis.codec.context.RedisCodecContext;
+import im.turms.server.common.storage.redis.script.RedisScript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author James Chen
+ */
+class RedisPipelineTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static RedisStandInServer server;
+    private static TurmsRedisClient client;
+
+    @BeforeAll
+    static void setup() {
+        server = new RedisStandInServer(1);
+        client = new TurmsRedisClient(server.getUri(), RedisCodecContext.DEFAULT);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.destroy(1000)
+                .block(TIMEOUT);
+        server.close();
+    }
+
+    @Test
+    void execute_shouldSendAllCommandsInOneWrite() {
+        int commandCount = 50;
+        RedisPipeline pipeline = client.pipeline();
+        List<Mono<Long>> results = new ArrayList<>(commandCount);
+        List<ByteBuf> keys = new ArrayList<>(commandCount);
+        for (int i = 0; i < commandCount; i++) {
+            ByteBuf key = newKey("counter" + i % 2);
+            keys.add(key);
+            results.add(pipeline.incr(key));
+        }
+        int readCount = server.getReadCount();
+        pipeline.execute();
+
+        List<Long> values = Flux.concat(results)
+                .collectList()
+                .block(TIMEOUT);
+        assertThat(values).hasSize(commandCount);
+        for (int i = 0; i < commandCount; i++) {
+            assertThat(values.get(i)).isEqualTo(i / 2 + 1);
+        }
+        assertThat(server.getReadCount() - readCount).isOne();
+        assertThat(keys).allMatch(key -> key.refCnt() == 0);
+    }
+
+    @Test
+    void eval_shouldFallBackToEval_ifScriptIsNotLoaded() {
+        RedisScript<Long> script = newScript("return #KEYS");
+        for (int i = 0; i < 2; i++) {
+            RedisPipeline pipeline = client.pipeline();
+            ByteBuf key1 = newKey("key1");
+            ByteBuf key2 = newKey("key2");
+            Mono<Long> result = pipeline.eval(script, key1, key2);
+            Mono<Long> counter = pipeline.hincrby(newKey("hash"), newKey("field"), 10);
+            pipeline.execute();
+
+            assertThat(result.block(TIMEOUT)).isEqualTo(2);
+            assertThat(counter.block(TIMEOUT)).isEqualTo(10L * (i + 1));
+            assertThat(key1.refCnt()).isZero();
+            assertThat(key2.refCnt()).isZero();
+        }
+    }
+
+    @Test
+    void execute_shouldThrow_ifExecutedTwice() {
+        RedisPipeline pipeline = client.pipeline();
+        pipeline.execute();
+
+        assertThatThrownBy(pipeline::execute).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void constructor_shouldOpenConnectionsForHotAndBulkCommands() {
+        try (RedisStandInServer standInServer = new RedisStandInServer(1)) {
+            TurmsRedisClient redisClient =
+                    new TurmsRedisClient(standInServer.getUri(), RedisCodecContext.DEFAULT, 2, 1);
+            try {
+                assertThat(standInServer.getConnectionCount()).isEqualTo(3);
+                assertThat(redisClient.incr(newKey("counter"))
+                        .block(TIMEOUT)).isOne();
+                assertThat(redisClient.hgetall(1L)
+                        .collectList()
+                        .block(TIMEOUT)).hasSize(1);
+            } finally {
+                redisClient.destroy(1000)
+                        .block(TIMEOUT);
+            }
+        }
+    }
+
+    private static ByteBuf newKey(String key) {
+        return PooledByteBufAllocator.DEFAULT.directBuffer()
+                .writeBytes(key.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static RedisScript<Long> newScript(String script) {
+        byte[] bytes = script.getBytes(StandardCharsets.US_ASCII);
+        byte[] digest;
+        try {
+            digest = HexFormat.of()
+                    .formatHex(MessageDigest.getInstance("SHA-1")
+                            .digest(bytes))
+                    .getBytes(StandardCharsets.US_ASCII);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return new RedisScript<>(
+                Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(bytes)),
+                Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(digest)),
+                ScriptOutputType.INTEGER);
+    }
+
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.storage.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.protocol.LongKeyGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import helper.RedisStandInServer;
+import im.turms.server.common.infra.netty.ByteBufUtil;
+import im.turms.server.common.storage.redis.RedisProperties;
+import im.turms.server.common.storage.redis.TurmsRedisClientManager;
+import im.turms.server.common.storage.redis.cluster.RedisClusterHashTag;
+import im.turms.server.common.storage.redis.codec.context.RedisCodecContext;
+import im.turms.server.common.storage.redis.script.RedisScript;
+import im.turms.server.common.storage.redis.sharding.ConsistentHashRingShardingAlgorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class TurmsRedisClientManagerTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final int NODE_COUNT = 3;
+    private static final RedisScript<Long> SCRIPT = newScript("return #KEYS");
+
+    private RedisStandInServer.Cluster cluster;
+    private TurmsRedisClientManager manager;
+
+    @BeforeEach
+    void setup() {
+        cluster = RedisStandInServer.startCluster(NODE_COUNT, 1);
+        RedisProperties properties = new RedisProperties().toBuilder()
+                .uriList(List.of(cluster.getServers()
+                        .getFirst()
+                        .getUri()))
+                .clusterEnabled(true)
+                .build();
+        manager = new TurmsRedisClientManager(properties, RedisCodecContext.DEFAULT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.destroy(1000)
+                .block(TIMEOUT);
+        cluster.close();
+    }
+
+    @Test
+    void eval_shouldSendCommandsToSlotOwners_inClusterMode() {
+        for (long userId = 0; userId < 300; userId++) {
+            // The stand-in servers reply "MOVED" if the key is sent to a wrong node
+            assertThat(evalUserScript(userId).block(TIMEOUT)).isOne();
+        }
+        for (RedisStandInServer server : cluster.getServers()) {
+            assertThat(server.getCommandCount()).isGreaterThan(50);
+        }
+    }
+
+    @Test
+    void eval_shouldFollowMoved_afterSlotsAreMigrated() {
+        long userId = findUserIdServedBy(0);
+        assertThat(evalUserScript(userId).block(TIMEOUT)).isOne();
+
+        int slotsPerNode = SlotHash.SLOT_COUNT / NODE_COUNT;
+        cluster.assignSlots(0, slotsPerNode - 1, 1);
+
+        RedisStandInServer previousOwner = cluster.getServers()
+                .get(0);
+        RedisStandInServer newOwner = cluster.getServers()
+                .get(1);
+        int newOwnerCommandCount = newOwner.getCommandCount();
+        assertThat(evalUserScript(userId).block(TIMEOUT)).isOne();
+        assertThat(newOwner.getCommandCount()).isGreaterThan(newOwnerCommandCount);
+
+        // The following commands of the slot should be sent to the new owner directly
+        int previousOwnerCommandCount = previousOwner.getCommandCount();
+        assertThat(evalUserScript(userId).block(TIMEOUT)).isOne();
+        assertThat(previousOwner.getCommandCount()).isEqualTo(previousOwnerCommandCount);
+    }
+
+    @Test
+    void eval_shouldFollowAsk_whileSlotIsMigrating() {
+        long userId = findUserIdServedBy(0);
+        cluster.startMigratingSlot(RedisClusterHashTag.getSlot(userId), 1);
+
+        RedisStandInServer owner = cluster.getServers()
+                .get(0);
+        RedisStandInServer importer = cluster.getServers()
+                .get(1);
+        for (int i = 0; i < 2; i++) {
+            int ownerCommandCount = owner.getCommandCount();
+            int importerCommandCount = importer.getCommandCount();
+            // The stand-in servers reply "MOVED" if "ASKING" is not sent before the command
+            assertThat(evalUserScript(userId).block(TIMEOUT)).isOne();
+            // The slot is still served by the owner, which replies "ASK" every time
+            assertThat(owner.getCommandCount()).isEqualTo(ownerCommandCount + 1);
+            assertThat(importer.getCommandCount()).isGreaterThanOrEqualTo(importerCommandCount + 2);
+        }
+    }
+
+    @Test
+    void incr_shouldFollowAsk_whileSlotIsMigrating() {
+        long userId = findUserIdServedBy(0);
+        cluster.startMigratingSlot(RedisClusterHashTag.getSlot(userId), 1);
+
+        assertThat(manager.incr(userId, manager.writeLongKey(userId))
+                .block(TIMEOUT)).isOne();
+
+        byte[] key = toTaggedKey(userId);
+        assertThat(cluster.getServers()
+                .get(0)
+                .getNumber(key)).isNull();
+        assertThat(cluster.getServers()
+                .get(1)
+                .getNumber(key)).isOne();
+    }
+
+    @Test
+    void incr_shouldFollowMoved_afterSlotsAreMigrated() {
+        long userId = findUserIdServedBy(0);
+        int slotsPerNode = SlotHash.SLOT_COUNT / NODE_COUNT;
+        cluster.assignSlots(0, slotsPerNode - 1, 2);
+
+        assertThat(manager.incr(userId, manager.writeLongKey(userId))
+                .block(TIMEOUT)).isOne();
+
+        assertThat(cluster.getServers()
+                .get(2)
+                .getNumber(toTaggedKey(userId))).isOne();
+    }
+
+    @Test
+    void execute_shouldGroupShardKeysByNode_inClusterMode() {
+        Set<Long> userIds = LongStream.range(0, 100)
+                .boxed()
+                .collect(Collectors.toSet());
+        List<Integer> groupSizes = manager
+                .execute(userIds, (client, ids) -> Mono.just(ids.size()))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(groupSizes).hasSize(NODE_COUNT);
+        assertThat(groupSizes.stream()
+                .mapToInt(Integer::intValue)
+                .sum()).isEqualTo(userIds.size());
+    }
+
+    @Test
+    void eval_shouldMigrateKeysBeforeEvaluating_inReshardingMode() {
+        try (RedisStandInServer previousServer = new RedisStandInServer(1);
+                RedisStandInServer newServer = new RedisStandInServer(1)) {
+            TurmsRedisClientManager reshardingManager =
+                    newReshardingManager(previousServer, newServer);
+            long userId = findUserIdMovedToNewServer(0);
+            previousServer.putNumber(toKey(userId), 1);
+            previousServer.putNumber(toDeviceDetailsKey(userId), 2);
+            try {
+                ByteBuf[] args = new ByteBuf[]{ByteBufUtil.writeLong(userId)};
+                assertThat(reshardingManager.eval(userId, SCRIPT, 1, args)
+                        .block(TIMEOUT)).isOne();
+
+                assertThat(previousServer.getNumber(toKey(userId))).isNull();
+                assertThat(previousServer.getNumber(toDeviceDetailsKey(userId))).isNull();
+                assertThat(newServer.getNumber(toKey(userId))).isOne();
+                assertThat(newServer.getNumber(toDeviceDetailsKey(userId))).isEqualTo(2);
+
+                // The keys removed from the new server should not be restored
+                reshardingManager.del(userId, List.of(ByteBufUtil.writeLong(userId)))
+                        .block(TIMEOUT);
+                assertThat(reshardingManager
+                        .migrateKeys(TurmsRedisClientManagerTests::parseShardKey)
+                        .block(TIMEOUT)).isZero();
+                assertThat(newServer.getNumber(toKey(userId))).isNull();
+            } finally {
+                reshardingManager.destroy(1000)
+                        .block(TIMEOUT);
+            }
+        }
+    }
+
+    @Test
+    void execute_shouldMigrateKeysBeforeExecuting_inReshardingMode() {
+        try (RedisStandInServer previousServer = new RedisStandInServer(1);
+                RedisStandInServer newServer = new RedisStandInServer(1)) {
+            TurmsRedisClientManager reshardingManager =
+                    newReshardingManager(previousServer, newServer);
+            long movedUserId1 = findUserIdMovedToNewServer(0);
+            long movedUserId2 = findUserIdMovedToNewServer(movedUserId1 + 1);
+            long unmovedUserId = findUserIdKeptByPreviousServer();
+            Set<Long> userIds = Set.of(movedUserId1, movedUserId2, unmovedUserId);
+            for (Long userId : userIds) {
+                previousServer.putNumber(toKey(userId), userId);
+            }
+            try {
+                List<Long> foundUserIds = reshardingManager.execute(userIds,
+                        (client, ids) -> Mono.fromCallable(() -> ids.stream()
+                                .filter(id -> previousServer.getNumber(toKey(id)) != null
+                                        || newServer.getNumber(toKey(id)) != null)
+                                .count()))
+                        .collectList()
+                        .block(TIMEOUT);
+
+                assertThat(foundUserIds).containsExactlyInAnyOrder(2L, 1L);
+                assertThat(newServer.getNumber(toKey(movedUserId1))).isEqualTo(movedUserId1);
+                assertThat(newServer.getNumber(toKey(movedUserId2))).isEqualTo(movedUserId2);
+                assertThat(previousServer.getNumber(toKey(movedUserId1))).isNull();
+                assertThat(previousServer.getNumber(toKey(movedUserId2))).isNull();
+                assertThat(previousServer.getNumber(toKey(unmovedUserId)))
+                        .isEqualTo(unmovedUserId);
+            } finally {
+                reshardingManager.destroy(1000)
+                        .block(TIMEOUT);
+            }
+        }
+    }
+
+    @Test
+    void evalBulk_shouldMigrateKeysBeforeEvaluating_inReshardingMode() {
+        try (RedisStandInServer previousServer = new RedisStandInServer(1);
+                RedisStandInServer newServer = new RedisStandInServer(1)) {
+            TurmsRedisClientManager reshardingManager =
+                    newReshardingManager(previousServer, newServer);
+            long movedUserId = findUserIdMovedToNewServer(0);
+            long unmovedUserId = findUserIdKeptByPreviousServer();
+            previousServer.putNumber(toKey(movedUserId), 1);
+            previousServer.putNumber(toDeviceDetailsKey(movedUserId), 2);
+            try {
+                long[] userIds = {movedUserId, unmovedUserId};
+                List<Long> keyCounts = reshardingManager
+                        .eval(SCRIPT, (short) 60, new byte[]{1}, new LongKeyGenerator() {
+                            private int index;
+
+                            @Override
+                            public int estimatedSize() {
+                                return userIds.length;
+                            }
+
+                            @Override
+                            public long next() {
+                                return index < userIds.length
+                                        ? userIds[index++]
+                                        : -1;
+                            }
+                        })
+                        .collectList()
+                        .block(TIMEOUT);
+
+                // Two keys for the arguments and one key for the user on each server
+                assertThat(keyCounts).containsExactly(3L, 3L);
+                assertThat(newServer.getNumber(toKey(movedUserId))).isOne();
+                assertThat(newServer.getNumber(toDeviceDetailsKey(movedUserId))).isEqualTo(2);
+                assertThat(previousServer.getNumber(toKey(movedUserId))).isNull();
+            } finally {
+                reshardingManager.destroy(1000)
+                        .block(TIMEOUT);
+            }
+        }
+    }
+
+    @Test
+    void hgetall_shouldMigrateKeysBeforeReading_inReshardingMode() {
+        try (RedisStandInServer previousServer = new RedisStandInServer(1);
+                RedisStandInServer newServer = new RedisStandInServer(1)) {
+            TurmsRedisClientManager reshardingManager =
+                    newReshardingManager(previousServer, newServer);
+            long userId = findUserIdMovedToNewServer(0);
+            previousServer.putNumber(toKey(userId), 1);
+            try {
+                int previousCommandCount = previousServer.getCommandCount();
+                assertThat(reshardingManager.hgetall(userId, ByteBufUtil.writeLong(userId))
+                        .collectList()
+                        .block(TIMEOUT)).hasSize(1);
+
+                assertThat(newServer.getNumber(toKey(userId))).isOne();
+                assertThat(previousServer.getNumber(toKey(userId))).isNull();
+                // "PTTL", "DUMP", and "DEL" for the user key, and "PTTL" and "DUMP" for the
+                // device details key, but no "HGETALL"
+                assertThat(previousServer.getCommandCount() - previousCommandCount)
+                        .isEqualTo(5);
+            } finally {
+                reshardingManager.destroy(1000)
+                        .block(TIMEOUT);
+            }
+        }
+    }
+
+    @Test
+    void migrateKeys_shouldMoveKeysToTheirNewOwners_inReshardingMode() {
+        try (RedisStandInServer previousServer = new RedisStandInServer(1);
+                RedisStandInServer newServer = new RedisStandInServer(1)) {
+            TurmsRedisClientManager reshardingManager =
+                    newReshardingManager(previousServer, newServer);
+            long movedUserId = findUserIdMovedToNewServer(0);
+            long conflictedUserId = findUserIdMovedToNewServer(movedUserId + 1);
+            long unmovedUserId = findUserIdKeptByPreviousServer();
+            previousServer.putNumber(toKey(movedUserId), 1);
+            previousServer.putNumber(toDeviceDetailsKey(movedUserId), 2);
+            previousServer.putNumber(toKey(conflictedUserId), 3);
+            newServer.putNumber(toKey(conflictedUserId), 4);
+            previousServer.putNumber(toKey(unmovedUserId), 5);
+            try {
+                assertThat(reshardingManager
+                        .migrateKeys(TurmsRedisClientManagerTests::parseShardKey)
+                        .block(TIMEOUT)).isEqualTo(3);
+
+                assertThat(newServer.getNumber(toKey(movedUserId))).isOne();
+                assertThat(newServer.getNumber(toDeviceDetailsKey(movedUserId))).isEqualTo(2);
+                // The key in the new owner is newer
+                assertThat(newServer.getNumber(toKey(conflictedUserId))).isEqualTo(4);
+                assertThat(previousServer.getNumber(toKey(conflictedUserId))).isNull();
+                assertThat(previousServer.getNumber(toKey(unmovedUserId))).isEqualTo(5);
+                assertThat(newServer.getNumber(toKey(unmovedUserId))).isNull();
+            } finally {
+                reshardingManager.destroy(1000)
+                        .block(TIMEOUT);
+            }
+        }
+    }
+
+    /**
+     * Pass the key of the user as the only key, and two other arguments as "ARGV".
+     */
+    private Mono<Long> evalUserScript(long userId) {
+        ByteBuf[] args = new ByteBuf[]{manager.writeLongKey(userId),
+                ByteBufUtil.writeByte((byte) 1),
+                ByteBufUtil.writeString("node")};
+        return manager.eval(userId, SCRIPT, 1, args);
+    }
+
+    private static byte[] toTaggedKey(long userId) {
+        ByteBuf buffer = RedisClusterHashTag.writeTaggedLong(userId);
+        try {
+            byte[] bytes = new byte[buffer.readableBytes()];
+            buffer.readBytes(bytes);
+            return bytes;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void migrateKeys_shouldNotMoveKeys_whenOnlyUriOptionsChange() {
+        try (RedisStandInServer server1 = new RedisStandInServer(1);
+                RedisStandInServer server2 = new RedisStandInServer(1)) {
+            List<RedisStandInServer> servers = List.of(server1, server2);
+            int virtualNodeCount = 16;
+            RedisProperties properties = new RedisProperties().toBuilder()
+                    .uriList(List.of(server1.getUri() + "?timeout=5s",
+                            server2.getUri() + "?timeout=5s"))
+                    .virtualNodeCount(virtualNodeCount)
+                    .previousUriList(List.of(server1.getUri(), server2.getUri()))
+                    .previousVirtualNodeCount(virtualNodeCount)
+                    .build();
+            TurmsRedisClientManager reshardingManager =
+                    new TurmsRedisClientManager(properties, RedisCodecContext.DEFAULT);
+            ConsistentHashRingShardingAlgorithm ring = new ConsistentHashRingShardingAlgorithm(
+                    List.of("127.0.0.1:" + server1.getPort(), "127.0.0.1:" + server2.getPort()),
+                    virtualNodeCount);
+            int userCount = 32;
+            for (long userId = 0; userId < userCount; userId++) {
+                servers.get(ring.doSharding(userId, servers.size()))
+                        .putNumber(toKey(userId), userId);
+            }
+            try {
+                assertThat(reshardingManager
+                        .migrateKeys(TurmsRedisClientManagerTests::parseShardKey)
+                        .block(TIMEOUT)).isZero();
+
+                for (long userId = 0; userId < userCount; userId++) {
+                    assertThat(servers.get(ring.doSharding(userId, servers.size()))
+                            .getNumber(toKey(userId))).isEqualTo(userId);
+                }
+            } finally {
+                reshardingManager.destroy(1000)
+                        .block(TIMEOUT);
+            }
+        }
+    }
+
+    private long findUserIdServedBy(int serverIndex) {
+        RedisStandInServer server = cluster.getServers()
+                .get(serverIndex);
+        for (long userId = 0;; userId++) {
+            if (cluster.getOwner(RedisClusterHashTag.getSlot(userId)) == server) {
+                return userId;
+            }
+        }
+    }
+
+    /**
+     * @return the manager that reshards the keys from the previous server to both servers, and
+     *         migrates the user key and the device details key of a user on access
+     */
+    private static TurmsRedisClientManager newReshardingManager(
+            RedisStandInServer previousServer,
+            RedisStandInServer newServer) {
+        RedisProperties properties = new RedisProperties().toBuilder()
+                .uriList(List.of(previousServer.getUri(), newServer.getUri()))
+                .previousUriList(List.of(previousServer.getUri()))
+                .build();
+        TurmsRedisClientManager reshardingManager =
+                new TurmsRedisClientManager(properties, RedisCodecContext.DEFAULT);
+        reshardingManager.enableMigrationOnAccess(userId -> new ByteBuf[]{
+                ByteBufUtil.writeLong(userId),
+                Unpooled.wrappedBuffer(toDeviceDetailsKey(userId))});
+        return reshardingManager;
+    }
+
+    private static long findUserIdMovedToNewServer(long startUserId) {
+        for (long userId = startUserId;; userId++) {
+            if (isServedByNewServer(userId)) {
+                return userId;
+            }
+        }
+    }
+
+    private static long findUserIdKeptByPreviousServer() {
+        for (long userId = 0;; userId++) {
+            if (!isServedByNewServer(userId)) {
+                return userId;
+            }
+        }
+    }
+
+    private static boolean isServedByNewServer(long userId) {
+        return new RedisProperties().getShardingAlgorithm()
+                .doSharding(userId, 2) == 1;
+    }
+
+    private static Long parseShardKey(ByteBuf key) {
+        return key.readableBytes() >= Long.BYTES
+                ? key.getLong(key.readerIndex())
+                : null;
+    }
+
+    private static byte[] toKey(long userId) {
+        return ByteBuffer.allocate(Long.BYTES)
+                .putLong(userId)
+                .array();
+    }
+
+    private static byte[] toDeviceDetailsKey(long userId) {
+        return ByteBuffer.allocate(Long.BYTES + 2)
+                .putLong(userId)
+                .put((byte) ':')
+                .put((byte) 'd')
+                .array();
+    }
+
+    private static RedisScript<Long> newScript(String script) {
+        byte[] bytes = script.getBytes(StandardCharsets.US_ASCII);
+        byte[] digest;
+        try {
+            digest = HexFormat.of()
+                    .formatHex(MessageDigest.getInstance("SHA-1")
+                            .digest(bytes))
+                    .getBytes(StandardCharsets.US_ASCII);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return new RedisScript<>(
+                Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(bytes)),
+                Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(digest)),
+                ScriptOutputType.INTEGER);
+    }
+
+}
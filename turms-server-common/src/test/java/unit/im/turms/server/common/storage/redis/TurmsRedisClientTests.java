@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.storage.redis;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import helper.RedisStandInServer;
+import im.turms.server.common.storage.redis.RedisTrackingListener;
+import im.turms.server.common.storage.redis.TurmsRedisClient;
+import im.turms.server.common.storage.redis.codec.context.RedisCodecContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class TurmsRedisClientTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final Object ALL_KEYS = new Object();
+
+    @Test
+    void enableTracking_shouldReturnFalse_ifRedisDoesNotSupportResp3() {
+        try (RedisStandInServer server = new RedisStandInServer(1)) {
+            TurmsRedisClient client = newClient(server);
+            try {
+                assertThat(client.enableTracking(new QueueTrackingListener())
+                        .block(TIMEOUT)).isFalse();
+                assertThat(server.getTrackingConnectionCount()).isZero();
+            } finally {
+                destroy(client);
+            }
+        }
+    }
+
+    @Test
+    void enableTracking_shouldNotifyListener_whenTrackedKeysAreModified() throws Exception {
+        try (RedisStandInServer server = new RedisStandInServer(1, true)) {
+            TurmsRedisClient client = newClient(server);
+            TurmsRedisClient writer =
+                    new TurmsRedisClient(server.getUri(), RedisCodecContext.DEFAULT);
+            try {
+                QueueTrackingListener listener = new QueueTrackingListener();
+                assertThat(client.enableTracking(listener)
+                        .block(TIMEOUT)).isTrue();
+                assertThat(server.getTrackingConnectionCount()).isEqualTo(3);
+
+                client.hgetall(1L)
+                        .collectList()
+                        .block(TIMEOUT);
+                writer.hincrby(newLongKey(1L), Unpooled.wrappedBuffer(new byte[]{1}), 1)
+                        .block(TIMEOUT);
+                assertThat(listener.events.poll(10, TimeUnit.SECONDS)).isEqualTo(List.of(1L));
+
+                // The key is not tracked anymore until it is read again
+                writer.hincrby(newLongKey(1L), Unpooled.wrappedBuffer(new byte[]{1}), 1)
+                        .block(TIMEOUT);
+                writer.incr(newLongKey(2L))
+                        .block(TIMEOUT);
+                assertThat(listener.events.poll(200, TimeUnit.MILLISECONDS)).isNull();
+            } finally {
+                destroy(writer);
+                destroy(client);
+            }
+        }
+    }
+
+    @Test
+    void enableTracking_shouldInvalidateAllKeysAndTrackAgain_afterReconnecting()
+            throws Exception {
+        try (RedisStandInServer server = new RedisStandInServer(1, true)) {
+            TurmsRedisClient client = newClient(server);
+            try {
+                QueueTrackingListener listener = new QueueTrackingListener();
+                assertThat(client.enableTracking(listener)
+                        .block(TIMEOUT)).isTrue();
+
+                server.closeConnections();
+
+                assertThat(listener.events.poll(10, TimeUnit.SECONDS)).isSameAs(ALL_KEYS);
+                long deadline = System.nanoTime() + TIMEOUT.toNanos();
+                while (server.getTrackingConnectionCount() < 3 && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertThat(server.getTrackingConnectionCount()).isEqualTo(3);
+                assertThat(listener.failures).isEmpty();
+            } finally {
+                destroy(client);
+            }
+        }
+    }
+
+    private static TurmsRedisClient newClient(RedisStandInServer server) {
+        return new TurmsRedisClient(server.getUri(), RedisCodecContext.DEFAULT, 2, 1);
+    }
+
+    private static void destroy(TurmsRedisClient client) {
+        client.destroy(1000)
+                .block(TIMEOUT);
+    }
+
+    private static ByteBuf newLongKey(long key) {
+        return Unpooled.directBuffer(Long.BYTES)
+                .writeLong(key);
+    }
+
+    private static class QueueTrackingListener implements RedisTrackingListener {
+        private final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onKeysInvalidated(List<ByteBuffer> keys) {
+            List<Long> longKeys = new ArrayList<>(keys.size());
+            for (ByteBuffer key : keys) {
+                longKeys.add(key.getLong(key.position()));
+            }
+            events.add(longKeys);
+        }
+
+        @Override
+        public void onAllKeysInvalidated() {
+            events.add(ALL_KEYS);
+        }
+
+        @Override
+        public void onTrackingFailed(Throwable cause) {
+            failures.add(cause);
+        }
+    }
+
+}
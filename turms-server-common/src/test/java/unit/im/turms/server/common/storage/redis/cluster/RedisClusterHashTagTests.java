@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.storage.redis.cluster;
+
+import java.nio.charset.StandardCharsets;
+
+import io.lettuce.core.cluster.SlotHash;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.storage.redis.cluster.RedisClusterHashTag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author James Chen
+ */
+class RedisClusterHashTagTests {
+
+    @Test
+    void getSlot_shouldBeTheSlotOfTaggedKeys() {
+        for (long userId = 0; userId < 10_000; userId++) {
+            ByteBuf key = RedisClusterHashTag.writeTaggedLong(userId);
+            try {
+                byte[] keyBytes = ByteBufUtil.getBytes(key);
+                byte[] deviceDetailsKeyBytes = (new String(keyBytes, StandardCharsets.ISO_8859_1)
+                        + ":d").getBytes(StandardCharsets.ISO_8859_1);
+                int slot = RedisClusterHashTag.getSlot(userId);
+                assertThat(SlotHash.getSlot(keyBytes)).isEqualTo(slot);
+                assertThat(SlotHash.getSlot(deviceDetailsKeyBytes)).isEqualTo(slot);
+                assertThat(RedisClusterHashTag.readTaggedLong(key)).isEqualTo(userId);
+            } finally {
+                key.release();
+            }
+        }
+    }
+
+    @Test
+    void getSlot_shouldDistributeSequentialKeysEvenly() {
+        int nodeCount = 4;
+        int keyCount = 100_000;
+        int[] keyCounts = new int[nodeCount];
+        int slotsPerNode = SlotHash.SLOT_COUNT / nodeCount;
+        // Simulate IDs whose low bits are the same
+        for (long i = 0; i < keyCount; i++) {
+            keyCounts[RedisClusterHashTag.getSlot(i << 22) / slotsPerNode]++;
+        }
+        for (int count : keyCounts) {
+            assertThat((double) count / keyCount).isCloseTo(1.0 / nodeCount, within(0.02));
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.storage.redis.sharding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import im.turms.server.common.storage.redis.sharding.ConsistentHashRingShardingAlgorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author James Chen
+ */
+class ConsistentHashRingShardingAlgorithmTests {
+
+    private static final int KEY_COUNT = 100_000;
+    private static final int VIRTUAL_NODE_COUNT = 256;
+
+    @Test
+    void doSharding_shouldOnlyMoveKeysToNewServer_whenServerIsAdded() {
+        List<String> servers = newServerIds(4);
+        List<String> newServers = new ArrayList<>(servers);
+        newServers.add("redis://server-4");
+        ConsistentHashRingShardingAlgorithm ring =
+                new ConsistentHashRingShardingAlgorithm(servers, VIRTUAL_NODE_COUNT);
+        ConsistentHashRingShardingAlgorithm newRing =
+                new ConsistentHashRingShardingAlgorithm(newServers, VIRTUAL_NODE_COUNT);
+
+        int movedKeyCount = 0;
+        for (long key = 0; key < KEY_COUNT; key++) {
+            int index = ring.doSharding(key, servers.size());
+            int newIndex = newRing.doSharding(key, newServers.size());
+            if (index != newIndex) {
+                assertThat(newIndex).isEqualTo(4);
+                movedKeyCount++;
+            }
+        }
+        // About 1/(N+1) keys should be moved
+        assertThat((double) movedKeyCount / KEY_COUNT).isCloseTo(1.0 / 5, within(0.03));
+    }
+
+    @Test
+    void doSharding_shouldOnlyMoveKeysOfRemovedServer_whenServerIsRemoved() {
+        List<String> servers = newServerIds(5);
+        List<String> newServers = new ArrayList<>(servers);
+        // Remove a server in the middle to ensure the keys don't depend on the server indexes
+        String removedServer = newServers.remove(2);
+        ConsistentHashRingShardingAlgorithm ring =
+                new ConsistentHashRingShardingAlgorithm(servers, VIRTUAL_NODE_COUNT);
+        ConsistentHashRingShardingAlgorithm newRing =
+                new ConsistentHashRingShardingAlgorithm(newServers, VIRTUAL_NODE_COUNT);
+
+        int movedKeyCount = 0;
+        for (long key = 0; key < KEY_COUNT; key++) {
+            String server = servers.get(ring.doSharding(key, servers.size()));
+            String newServer = newServers.get(newRing.doSharding(key, newServers.size()));
+            if (!server.equals(newServer)) {
+                assertThat(server).isEqualTo(removedServer);
+                movedKeyCount++;
+            }
+        }
+        // About 1/N keys should be moved
+        assertThat((double) movedKeyCount / KEY_COUNT).isCloseTo(1.0 / 5, within(0.03));
+    }
+
+    @Test
+    void doSharding_shouldDistributeKeysEvenly() {
+        int serverCount = 8;
+        ConsistentHashRingShardingAlgorithm ring = new ConsistentHashRingShardingAlgorithm(
+                newServerIds(serverCount),
+                VIRTUAL_NODE_COUNT);
+        int[] keyCounts = new int[serverCount];
+        for (long key = 0; key < KEY_COUNT; key++) {
+            keyCounts[ring.doSharding(key, serverCount)]++;
+        }
+        double expectedKeyCount = (double) KEY_COUNT / serverCount;
+        for (int keyCount : keyCounts) {
+            assertThat(keyCount / expectedKeyCount).isCloseTo(1, within(0.2));
+        }
+    }
+
+    @Test
+    void constructor_shouldThrow_forInvalidArguments() {
+        assertThatThrownBy(() -> new ConsistentHashRingShardingAlgorithm(List.of(), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ConsistentHashRingShardingAlgorithm(
+                List.of("redis://server-0", "redis://server-0"),
+                1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ConsistentHashRingShardingAlgorithm(newServerIds(1), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void doSharding_shouldThrow_whenServerSizeIsDifferent() {
+        ConsistentHashRingShardingAlgorithm ring =
+                new ConsistentHashRingShardingAlgorithm(newServerIds(2), VIRTUAL_NODE_COUNT);
+        assertThatThrownBy(() -> ring.doSharding(1, 3))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<String> newServerIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add("redis://server-"
+                    + i);
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.service.access.servicerequest.dispatcher;
+
+import im.turms.server.common.access.client.dto.request.TurmsRequest;
+
+/**
+ * The categories of client requests that share the same concurrency limit, because the requests
+ * of the same category usually have similar costs and latencies.
+ *
+ * @author James Chen
+ */
+public enum ClientRequestCategory {
+    QUERY,
+    MESSAGE,
+    OTHER;
+
+    public static ClientRequestCategory of(TurmsRequest.KindCase requestType) {
+        if (requestType == TurmsRequest.KindCase.CREATE_MESSAGE_REQUEST) {
+            return MESSAGE;
+        }
+        String name = requestType.name();
+        if (name.startsWith("QUERY_") || name.startsWith("CHECK_")) {
+            return QUERY;
+        }
+        return OTHER;
+    }
+}
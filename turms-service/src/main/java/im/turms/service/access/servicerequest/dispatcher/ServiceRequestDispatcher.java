@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotNull;
 
@@ -63,8 +64,11 @@ import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
 import im.turms.server.common.infra.message.OutboundMessageManager;
 import im.turms.server.common.infra.plugin.PluginManager;
 import im.turms.server.common.infra.property.TurmsPropertiesManager;
+import im.turms.server.common.infra.property.env.service.env.clientapi.ClientApiConcurrencyLimitProperties;
+import im.turms.server.common.infra.property.env.service.env.clientapi.ClientApiProperties;
 import im.turms.server.common.infra.proto.ProtoDecoder;
 import im.turms.server.common.infra.proto.ProtoEncoder;
+import im.turms.server.common.infra.throttle.GradientConcurrencyLimiter;
 import im.turms.server.common.infra.time.DateTimeUtil;
 import im.turms.server.common.infra.tracing.TracingCloseableContext;
 import im.turms.server.common.infra.tracing.TracingContext;
@@ -103,6 +107,12 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
     private final PluginManager pluginManager;
 
     private final FastEnumMap<TurmsRequest.KindCase, ClientRequestHandler> requestTypeToHandler;
+    /**
+     * Null if the concurrency limit is disabled.
+     */
+    @Nullable
+    private final FastEnumMap<TurmsRequest.KindCase, GradientConcurrencyLimiter>
+            requestTypeToLimiter;
 
     private final AtomicInteger pendingRequestCount;
     private volatile Runnable onAllRequestsHandled;
@@ -144,10 +154,10 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
         this.outboundMessageManager = outboundMessageManager;
         this.serverStatusManager = serverStatusManager;
         this.pluginManager = pluginManager;
-        Set<TurmsRequest.KindCase> disabledEndpoints = propertiesManager.getLocalProperties()
+        ClientApiProperties clientApiProperties = propertiesManager.getLocalProperties()
                 .getService()
-                .getClientApi()
-                .getDisabledEndpoints();
+                .getClientApi();
+        Set<TurmsRequest.KindCase> disabledEndpoints = clientApiProperties.getDisabledEndpoints();
         requestTypeToHandler =
                 getMappings((ConfigurableApplicationContext) context, disabledEndpoints);
         for (TurmsRequest.KindCase requestType : TurmsRequestTypePool.ALL) {
@@ -158,6 +168,7 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
                                 + requestType);
             }
         }
+        requestTypeToLimiter = newRequestTypeToLimiter(clientApiProperties.getConcurrencyLimit());
         pendingRequestCount = metricsService.getRegistry()
                 .gauge(TURMS_CLIENT_REQUEST_PENDING, new AtomicInteger());
         applicationContext.addShutdownHook(JobShutdownOrder.WAIT_FOR_PENDING_REQUESTS,
@@ -201,6 +212,34 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
         return mappingMap;
     }
 
+    @Nullable
+    private FastEnumMap<TurmsRequest.KindCase, GradientConcurrencyLimiter> newRequestTypeToLimiter(
+            ClientApiConcurrencyLimitProperties properties) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        FastEnumMap<ClientRequestCategory, GradientConcurrencyLimiter> categoryToLimiter =
+                new FastEnumMap<>(ClientRequestCategory.class);
+        for (ClientRequestCategory category : ClientRequestCategory.values()) {
+            categoryToLimiter.put(category,
+                    new GradientConcurrencyLimiter(
+                            properties.getInitialLimit(),
+                            properties.getMinLimit(),
+                            properties.getMaxLimit(),
+                            properties.getLatencyTolerance(),
+                            // Track the minimum latency of each request type because the
+                            // request types of the same category may still have different costs
+                            TurmsRequest.KindCase.values().length));
+        }
+        FastEnumMap<TurmsRequest.KindCase, GradientConcurrencyLimiter> requestTypeToLimiter =
+                new FastEnumMap<>(TurmsRequest.KindCase.class);
+        for (TurmsRequest.KindCase requestType : TurmsRequestTypePool.ALL) {
+            requestTypeToLimiter.put(requestType,
+                    categoryToLimiter.get(ClientRequestCategory.of(requestType)));
+        }
+        return requestTypeToLimiter;
+    }
+
     private boolean isRequestForGateway(TurmsRequest.KindCase type) {
         return type == CREATE_SESSION_REQUEST || type == DELETE_SESSION_REQUEST;
     }
@@ -332,14 +371,42 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
                 return Mono.just(ServiceResponse.of(ResponseStatusCode.ILLEGAL_ARGUMENT,
                         "The request type is unsupported"));
             }
-            // 4. Pass the request to the controller and get a response
-            Mono<RequestHandlerResult> result = pluginManager.invokeExtensionPointsSequentially(
-                    im.turms.service.infra.plugin.extension.ClientRequestHandler.class,
-                    REQUEST_HANDLE_METHOD,
-                    (requestHandler, pre) -> pre.switchIfEmpty(
-                            Mono.defer(() -> requestHandler.handle(lastClientRequest))));
-            result = result.switchIfEmpty(Mono.defer(() -> handler.handle(lastClientRequest)));
-            // 5. Metrics and transform to ServiceResponse
+            // 4. Acquire the concurrency limit so that the requests exceeding the limit
+            // can be rejected quickly instead of queueing up when the database slows down
+            GradientConcurrencyLimiter limiter = requestTypeToLimiter == null
+                    ? null
+                    : requestTypeToLimiter.get(requestType);
+            if (limiter != null && !limiter.tryAcquire()) {
+                return Mono.just(ServiceResponse.of(ResponseStatusCode.SERVER_UNAVAILABLE,
+                        "The server is overloaded with the requests of the type: "
+                                + requestType));
+            }
+            // 5. Pass the request to the controller and get a response
+            Mono<RequestHandlerResult> result;
+            try {
+                result = pluginManager.invokeExtensionPointsSequentially(
+                        im.turms.service.infra.plugin.extension.ClientRequestHandler.class,
+                        REQUEST_HANDLE_METHOD,
+                        (requestHandler, pre) -> pre.switchIfEmpty(
+                                Mono.defer(() -> requestHandler.handle(lastClientRequest))));
+            } catch (Exception e) {
+                if (limiter != null) {
+                    limiter.release();
+                }
+                throw e;
+            }
+            if (limiter == null) {
+                result = result.switchIfEmpty(Mono.defer(() -> handler.handle(lastClientRequest)));
+            } else {
+                ConcurrencyPermit permit = new ConcurrencyPermit(limiter, requestType);
+                result = result.switchIfEmpty(Mono.defer(() -> {
+                    permit.startSampling();
+                    return handler.handle(lastClientRequest);
+                }))
+                        .doOnSuccess(permit::release)
+                        .doFinally(signal -> permit.release());
+            }
+            // 6. Metrics and transform to ServiceResponse
             return result.name(TURMS_CLIENT_REQUEST)
                     .tag(TURMS_CLIENT_REQUEST_TAG_TYPE, requestType.name())
                     .metrics()
@@ -386,7 +453,7 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
                         ServiceResponse response = ServiceResponse.of(handlerResult.response(),
                                 handlerResult.code(),
                                 handlerResult.reason());
-                        // 6. Log
+                        // 7. Log
                         if (response.code()
                                 .isServerError()
                                 || apiLoggingContext.shouldLogRequest(requestType)) {
@@ -515,4 +582,53 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Releases the permit of {@link GradientConcurrencyLimiter} once.
+     *
+     * @implNote Only the latencies of the successful requests handled by
+     *           {@link ClientRequestHandler} are sampled because the requests that fail, are
+     *           cancelled, or are short-circuited by plugins usually don't reach the database, and
+     *           their low latencies would lower the minimum latency and make the limit decay.
+     */
+    private static final class ConcurrencyPermit {
+        private static final AtomicIntegerFieldUpdater<ConcurrencyPermit> RELEASED_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(ConcurrencyPermit.class, "released");
+
+        private final GradientConcurrencyLimiter limiter;
+        private final TurmsRequest.KindCase requestType;
+        private volatile int released;
+        private volatile long handleStartTime;
+
+        private ConcurrencyPermit(
+                GradientConcurrencyLimiter limiter,
+                TurmsRequest.KindCase requestType) {
+            this.limiter = limiter;
+            this.requestType = requestType;
+        }
+
+        private void startSampling() {
+            handleStartTime = System.nanoTime();
+        }
+
+        private void release(@Nullable RequestHandlerResult result) {
+            if (!RELEASED_UPDATER.compareAndSet(this, 0, 1)) {
+                return;
+            }
+            long startTime = handleStartTime;
+            if (startTime != 0 && (result == null
+                    || result.code()
+                            .isSuccessCode())) {
+                limiter.release(requestType.ordinal(), System.nanoTime() - startTime);
+            } else {
+                limiter.release();
+            }
+        }
+
+        private void release() {
+            if (RELEASED_UPDATER.compareAndSet(this, 0, 1)) {
+                limiter.release();
+            }
+        }
+    }
+
+}
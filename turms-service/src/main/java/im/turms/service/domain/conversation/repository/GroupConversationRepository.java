@@ -19,6 +19,7 @@ package im.turms.service.domain.conversation.repository;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
 
 import com.mongodb.client.result.UpdateResult;
 import com.mongodb.reactivestreams.client.ClientSession;
@@ -29,6 +30,8 @@ import reactor.core.publisher.Mono;
 import im.turms.server.common.domain.common.repository.BaseRepository;
 import im.turms.server.common.storage.mongo.DomainFieldName;
 import im.turms.server.common.storage.mongo.TurmsMongoClient;
+import im.turms.server.common.storage.mongo.operation.BulkWrite;
+import im.turms.server.common.storage.mongo.operation.TurmsBulkWriteResult;
 import im.turms.server.common.storage.mongo.operation.option.Filter;
 import im.turms.server.common.storage.mongo.operation.option.Update;
 import im.turms.service.domain.conversation.po.GroupConversation;
@@ -65,16 +68,53 @@ public class GroupConversationRepository extends BaseRepository<GroupConversatio
         return mongoClient.upsert(entityClass, filter, update);
     }
 
-    public Mono<UpdateResult> upsert(Long groupId, Collection<Long> memberIds, Date readDate) {
+    /**
+     * Upserts the read dates of the members of multiple groups with one unordered bulk write, so
+     * that a failed group does not prevent other groups from being updated.
+     */
+    public Mono<TurmsBulkWriteResult> upsert(
+            Map<Long, ? extends Collection<Long>> groupIdToMemberIds,
+            Date readDate) {
+        BulkWrite<GroupConversation> bulkWrite =
+                BulkWrite.newBuilder(entityClass, groupIdToMemberIds.size())
+                        .ordered(false);
+        for (Map.Entry<Long, ? extends Collection<Long>> entry : groupIdToMemberIds.entrySet()) {
+            Collection<Long> memberIds = entry.getValue();
+            Filter filter = Filter.newBuilder(1)
+                    .eq(DomainFieldName.ID, entry.getKey());
+            Update update = Update.newBuilder(memberIds.size());
+            for (long memberId : memberIds) {
+                String fieldKey = GroupConversation.Fields.MEMBER_ID_TO_READ_DATE
+                        + "."
+                        + memberId;
+                // Ignore isAllowMoveReadDateForward()
+                update.set(fieldKey, readDate);
+            }
+            bulkWrite.upsert(filter, update);
+        }
+        return mongoClient.bulkWrite(bulkWrite);
+    }
+
+    /**
+     * @param allowMoveReadDateForward if false, the read date of a member is only updated when it
+     *                                 is after the existing one
+     */
+    public Mono<UpdateResult> upsert(
+            Long groupId,
+            Map<Long, Date> memberIdToReadDate,
+            boolean allowMoveReadDateForward) {
         Filter filter = Filter.newBuilder(1)
                 .eq(DomainFieldName.ID, groupId);
-        Update update = Update.newBuilder(memberIds.size());
-        for (long memberId : memberIds) {
+        Update update = Update.newBuilder(1);
+        for (Map.Entry<Long, Date> entry : memberIdToReadDate.entrySet()) {
             String fieldKey = GroupConversation.Fields.MEMBER_ID_TO_READ_DATE
                     + "."
-                    + memberId;
-            // Ignore isAllowMoveReadDateForward()
-            update.set(fieldKey, readDate);
+                    + entry.getKey();
+            if (allowMoveReadDateForward) {
+                update.set(fieldKey, entry.getValue());
+            } else {
+                update.max(fieldKey, entry.getValue());
+            }
         }
         return mongoClient.upsert(entityClass, filter, update);
     }
@@ -23,7 +23,6 @@ import java.util.Set;
 import jakarta.annotation.Nullable;
 
 import com.mongodb.client.result.DeleteResult;
-import com.mongodb.client.result.UpdateResult;
 import com.mongodb.reactivestreams.client.ClientSession;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
@@ -33,6 +32,8 @@ import reactor.core.publisher.Mono;
 import im.turms.server.common.domain.common.repository.BaseRepository;
 import im.turms.server.common.storage.mongo.DomainFieldName;
 import im.turms.server.common.storage.mongo.TurmsMongoClient;
+import im.turms.server.common.storage.mongo.operation.BulkWrite;
+import im.turms.server.common.storage.mongo.operation.TurmsBulkWriteResult;
 import im.turms.server.common.storage.mongo.operation.option.Filter;
 import im.turms.server.common.storage.mongo.operation.option.Update;
 import im.turms.service.domain.conversation.po.PrivateConversation;
@@ -49,21 +50,33 @@ public class PrivateConversationRepository
         super(mongoClient, PrivateConversation.class);
     }
 
-    public Mono<UpdateResult> upsert(
+    /**
+     * Upserts each conversation with its own operation in one unordered bulk write because an
+     * upsert operation can only insert one document.
+     *
+     * @param allowMoveReadDateForward if false, the operation of a conversation whose read date is
+     *                                 after {@code readDate} fails with a duplicate key error
+     */
+    public Mono<TurmsBulkWriteResult> upsert(
             Set<PrivateConversation.Key> keys,
             Date readDate,
             boolean allowMoveReadDateForward) {
-        Filter filter = Filter.newBuilder(allowMoveReadDateForward
-                ? 1
-                : 2)
-                .in(DomainFieldName.ID, keys);
-        if (!allowMoveReadDateForward) {
-            // Only update if no existing date or the existing date is before readDate
-            filter.ltOrNull(PrivateConversation.Fields.READ_DATE, readDate);
+        BulkWrite<PrivateConversation> bulkWrite = BulkWrite.newBuilder(entityClass, keys.size())
+                .ordered(false);
+        for (PrivateConversation.Key key : keys) {
+            Filter filter = Filter.newBuilder(allowMoveReadDateForward
+                    ? 1
+                    : 2)
+                    .eq(DomainFieldName.ID, key);
+            if (!allowMoveReadDateForward) {
+                // Only update if no existing date or the existing date is before readDate
+                filter.ltOrNull(PrivateConversation.Fields.READ_DATE, readDate);
+            }
+            Update update = Update.newBuilder(1)
+                    .set(PrivateConversation.Fields.READ_DATE, readDate);
+            bulkWrite.upsert(filter, update);
         }
-        Update update = Update.newBuilder(1)
-                .set(PrivateConversation.Fields.READ_DATE, readDate);
-        return mongoClient.upsert(entityClass, filter, update);
+        return mongoClient.bulkWrite(bulkWrite);
     }
 
     public Mono<DeleteResult> deleteConversationsByOwnerIds(
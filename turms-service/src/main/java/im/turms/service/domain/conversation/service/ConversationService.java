@@ -37,6 +37,8 @@ import reactor.core.publisher.Mono;
 
 import im.turms.server.common.access.common.ResponseStatusCode;
 import im.turms.server.common.domain.common.service.BaseService;
+import im.turms.server.common.infra.application.JobShutdownOrder;
+import im.turms.server.common.infra.application.TurmsApplicationContext;
 import im.turms.server.common.infra.collection.CollectionUtil;
 import im.turms.server.common.infra.collection.CollectorUtil;
 import im.turms.server.common.infra.exception.ResponseException;
@@ -47,6 +49,7 @@ import im.turms.server.common.infra.property.env.service.business.conversation.R
 import im.turms.server.common.infra.validation.Validator;
 import im.turms.server.common.storage.mongo.IMongoCollectionInitializer;
 import im.turms.server.common.storage.mongo.exception.DuplicateKeyException;
+import im.turms.server.common.storage.mongo.exception.MongoExceptionUtil;
 import im.turms.service.domain.conversation.po.GroupConversation;
 import im.turms.service.domain.conversation.po.PrivateConversation;
 import im.turms.service.domain.conversation.repository.GroupConversationRepository;
@@ -72,6 +75,12 @@ public class ConversationService extends BaseService {
     private final GroupConversationRepository groupConversationRepository;
     private final PrivateConversationRepository privateConversationRepository;
 
+    /**
+     * Null if the write-behind buffer for group conversation read dates is disabled.
+     */
+    @Nullable
+    private final GroupConversationReadDateBuffer groupConversationReadDateBuffer;
+
     private boolean allowMoveReadDateForward;
     private boolean isReadReceiptEnabled;
     private boolean useServerTime;
@@ -83,6 +92,7 @@ public class ConversationService extends BaseService {
      *                     conversationService
      */
     public ConversationService(
+            TurmsApplicationContext context,
             TurmsPropertiesManager propertiesManager,
             UserRelationshipService userRelationshipService,
             @Lazy GroupService groupService,
@@ -97,6 +107,23 @@ public class ConversationService extends BaseService {
         this.groupConversationRepository = groupConversationRepository;
         this.privateConversationRepository = privateConversationRepository;
 
+        ReadReceiptProperties.WriteBehindProperties writeBehindProperties =
+                propertiesManager.getLocalProperties()
+                        .getService()
+                        .getConversation()
+                        .getReadReceipt()
+                        .getWriteBehind();
+        if (writeBehindProperties.isEnabled()) {
+            groupConversationReadDateBuffer = new GroupConversationReadDateBuffer(
+                    writeBehindProperties.getFlushIntervalMillis(),
+                    (groupId, memberIdToReadDate) -> groupConversationRepository
+                            .upsert(groupId, memberIdToReadDate, allowMoveReadDateForward));
+            context.addShutdownHook(JobShutdownOrder.FLUSH_CONVERSATION_READ_DATES,
+                    timeoutMillis -> groupConversationReadDateBuffer.close());
+        } else {
+            groupConversationReadDateBuffer = null;
+        }
+
         propertiesManager.notifyAndAddGlobalPropertiesChangeListener(this::updateProperties);
     }
 
@@ -194,6 +221,34 @@ public class ConversationService extends BaseService {
                 .then();
     }
 
+    /**
+     * Used to update the read date on behalf of the member (e.g. after the member sent a message).
+     * If the write-behind buffer is enabled, the read date is buffered and flushed later with the
+     * read dates of other members of the group, and the returned mono completes immediately.
+     */
+    public Mono<Void> upsertGroupConversationReadDateWriteBehind(
+            @NotNull Long groupId,
+            @NotNull Long memberId,
+            @Nullable @PastOrPresent Date readDate) {
+        if (groupConversationReadDateBuffer == null) {
+            return upsertGroupConversationReadDate(groupId, memberId, readDate);
+        }
+        try {
+            Validator.notNull(groupId, "groupId");
+            Validator.notNull(memberId, "memberId");
+            Validator.pastOrPresent(readDate, "readDate");
+        } catch (ResponseException e) {
+            return Mono.error(e);
+        }
+        groupConversationReadDateBuffer.add(groupId,
+                memberId,
+                readDate == null
+                        ? new Date()
+                        : readDate,
+                allowMoveReadDateForward);
+        return Mono.empty();
+    }
+
     public Mono<Void> upsertGroupConversationsReadDate(
             @NotNull Set<GroupConversation.GroupConversionMemberKey> keys,
             @Nullable @PastOrPresent Date readDate) {
@@ -215,15 +270,10 @@ public class ConversationService extends BaseService {
             groupIdToMemberIds.computeIfAbsent(key.getGroupId(), k -> new ArrayList<>(keyCount))
                     .add(key.getMemberId());
         }
-        Set<Map.Entry<Long, List<Long>>> entries = groupIdToMemberIds.entrySet();
-        List<Mono<Void>> upsertMonos = new ArrayList<>(entries.size());
-        for (Map.Entry<Long, List<Long>> entry : entries) {
-            Long groupId = entry.getKey();
-            List<Long> memberIds = entry.getValue();
-            upsertMonos.add(groupConversationRepository.upsert(groupId, memberIds, readDate)
-                    .then());
-        }
-        return Mono.whenDelayError(upsertMonos);
+        return groupConversationRepository.upsert(groupIdToMemberIds, readDate)
+                .flatMap(result -> result.hasWriteErrors()
+                        ? Mono.error(MongoExceptionUtil.translate(result.exception()))
+                        : Mono.empty());
     }
 
     public Mono<Void> upsertPrivateConversationReadDate(
@@ -261,12 +311,18 @@ public class ConversationService extends BaseService {
                 ? new Date()
                 : readDate;
         return privateConversationRepository.upsert(keys, finalReadDate, allowMoveReadDateForward)
-                .onErrorResume(DuplicateKeyException.class,
-                        e -> readDate == null
+                .flatMap(result -> {
+                    if (!result.hasWriteErrors()) {
+                        return Mono.empty();
+                    }
+                    if (result.areAllWriteErrorsDuplicateKey()) {
+                        return readDate == null
                                 ? Mono.empty()
                                 : Mono.error(ResponseException.get(
-                                        ResponseStatusCode.MOVING_READ_DATE_FORWARD_IS_DISABLED)))
-                .then();
+                                        ResponseStatusCode.MOVING_READ_DATE_FORWARD_IS_DISABLED));
+                    }
+                    return Mono.error(MongoExceptionUtil.translate(result.exception()));
+                });
     }
 
     public Flux<GroupConversation> queryGroupConversations(@NotNull Collection<Long> groupIds) {
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.service.domain.conversation.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import reactor.core.publisher.Mono;
+
+import im.turms.server.common.infra.collection.CollectionUtil;
+import im.turms.server.common.infra.logging.core.logger.Logger;
+import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
+import im.turms.server.common.infra.thread.ThreadNameConst;
+import im.turms.server.common.infra.thread.ThreadSafe;
+
+/**
+ * A write-behind buffer that coalesces the read dates of group conversation members in memory,
+ * and flushes the latest read dates of each group with one update periodically, so that the
+ * conversation document of a large active group is not written on every message.
+ * <p>
+ * The read dates buffered since the last flush are lost if the server crashes.
+ *
+ * @author James Chen
+ */
+@ThreadSafe
+public class GroupConversationReadDateBuffer {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(GroupConversationReadDateBuffer.class);
+
+    private final Flusher flusher;
+    /**
+     * The member maps are only accessed inside the atomic operations of the outer map, so a flush
+     * can never miss a read date that is being added to a removed member map.
+     */
+    private final ConcurrentHashMap<Long, Map<Long, Date>> groupIdToMemberIdToReadDate =
+            new ConcurrentHashMap<>(256);
+    private final ScheduledThreadPoolExecutor executor;
+
+    public GroupConversationReadDateBuffer(long flushIntervalMillis, Flusher flusher) {
+        this.flusher = flusher;
+        executor = new ScheduledThreadPoolExecutor(
+                1,
+                new DefaultThreadFactory(ThreadNameConst.CONVERSATION_READ_DATE_FLUSHER, true));
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                flush().block();
+            } catch (Exception e) {
+                LOGGER.error("Caught an error while flushing the group conversation read dates",
+                        e);
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param allowMoveReadDateForward if false, the buffered read date is only replaced by a later
+     *                                 one
+     */
+    public void add(Long groupId, Long memberId, Date readDate, boolean allowMoveReadDateForward) {
+        groupIdToMemberIdToReadDate.compute(groupId, (key, memberIdToReadDate) -> {
+            if (memberIdToReadDate == null) {
+                memberIdToReadDate = CollectionUtil.newMapWithExpectedSize(4);
+            }
+            if (allowMoveReadDateForward) {
+                memberIdToReadDate.put(memberId, readDate);
+            } else {
+                memberIdToReadDate.merge(memberId,
+                        readDate,
+                        (oldDate, newDate) -> newDate.after(oldDate)
+                                ? newDate
+                                : oldDate);
+            }
+            return memberIdToReadDate;
+        });
+    }
+
+    public int getBufferedGroupCount() {
+        return groupIdToMemberIdToReadDate.size();
+    }
+
+    /**
+     * Flushes the read dates buffered so far. A failed group is not re-buffered because its
+     * members will update their read dates again soon.
+     */
+    public Mono<Void> flush() {
+        if (groupIdToMemberIdToReadDate.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Mono<?>> flushMonos = new ArrayList<>(groupIdToMemberIdToReadDate.size());
+        for (Long groupId : groupIdToMemberIdToReadDate.keySet()) {
+            Map<Long, Date> memberIdToReadDate = groupIdToMemberIdToReadDate.remove(groupId);
+            if (memberIdToReadDate != null) {
+                flushMonos.add(flusher.flush(groupId, memberIdToReadDate)
+                        .onErrorResume(t -> {
+                            LOGGER.error(
+                                    "Caught an error while flushing the read dates of the group conversation: "
+                                            + groupId,
+                                    t);
+                            return Mono.empty();
+                        }));
+            }
+        }
+        return Mono.when(flushMonos);
+    }
+
+    /**
+     * Stops the periodic flush and flushes the remaining read dates.
+     */
+    public Mono<Void> close() {
+        executor.shutdown();
+        return flush();
+    }
+
+    @FunctionalInterface
+    public interface Flusher {
+        Mono<?> flush(Long groupId, Map<Long, Date> memberIdToReadDate);
+    }
+
+}
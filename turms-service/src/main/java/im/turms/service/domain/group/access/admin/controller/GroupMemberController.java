@@ -42,6 +42,7 @@ import im.turms.server.common.access.client.dto.constant.GroupMemberRole;
 import im.turms.server.common.infra.collection.CollectionUtil;
 import im.turms.server.common.infra.property.TurmsPropertiesManager;
 import im.turms.server.common.infra.time.DateRange;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.service.domain.common.access.admin.controller.BaseController;
 import im.turms.service.domain.group.access.admin.dto.request.AddGroupMemberDTO;
 import im.turms.service.domain.group.access.admin.dto.request.UpdateGroupMemberDTO;
@@ -128,6 +129,28 @@ public class GroupMemberController extends BaseController {
         return HttpHandlerResult.page(count, userFlux);
     }
 
+    @GetMapping("cursor")
+    @RequiredPermission(AdminPermission.GROUP_MEMBER_QUERY)
+    public Mono<HttpHandlerResult<ResponseDTO<PaginationDTO<GroupMember>>>> queryGroupMembersByCursor(
+            @QueryParam(required = false) Set<Long> groupIds,
+            @QueryParam(required = false) Set<Long> userIds,
+            @QueryParam(required = false) Set<GroupMemberRole> roles,
+            @QueryParam(required = false) Date joinDateStart,
+            @QueryParam(required = false) Date joinDateEnd,
+            @QueryParam(required = false) Date muteEndDateStart,
+            @QueryParam(required = false) Date muteEndDateEnd,
+            @QueryParam(required = false) String continuationToken,
+            @QueryParam(required = false) Integer size) {
+        Mono<KeysetPage<GroupMember>> page = groupMemberService.queryGroupMemberPage(groupIds,
+                userIds,
+                roles,
+                DateRange.of(joinDateStart, joinDateEnd),
+                DateRange.of(muteEndDateStart, muteEndDateEnd),
+                continuationToken,
+                getPageSize(size));
+        return HttpHandlerResult.page(page);
+    }
+
     @PutMapping
     @RequiredPermission(AdminPermission.GROUP_MEMBER_UPDATE)
     public Mono<HttpHandlerResult<ResponseDTO<UpdateResultDTO>>> updateGroupMembers(
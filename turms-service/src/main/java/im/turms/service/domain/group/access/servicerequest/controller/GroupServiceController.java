@@ -1338,7 +1338,7 @@ public class GroupServiceController extends BaseServiceController {
                                         memberIds = CollectionUtil.remove(memberIds,
                                                 clientRequest.userId());
                                         if (!notifyAddedGroupMemberOfGroupMemberAdded) {
-                                            memberIds.removeAll(userIds);
+                                            memberIds = CollectionUtil.remove(memberIds, userIds);
                                         }
                                         return RequestHandlerResult
                                                 .of(true, memberIds, clientRequest.turmsRequest());
@@ -1388,7 +1388,8 @@ public class GroupServiceController extends BaseServiceController {
                                         memberIds = CollectionUtil.remove(memberIds,
                                                 clientRequest.userId());
                                         if (notifyRemovedGroupMemberOfGroupMemberRemoved) {
-                                            memberIds.addAll(deletedUserIds);
+                                            memberIds = CollectionUtil.add(memberIds,
+                                                    deletedUserIds);
                                         }
                                         return RequestHandlerResult
                                                 .of(true, memberIds, clientRequest.turmsRequest());
@@ -1467,7 +1468,8 @@ public class GroupServiceController extends BaseServiceController {
                                         memberIds = CollectionUtil.remove(memberIds,
                                                 clientRequest.userId());
                                         if (!notifyUpdatedGroupMemberOfGroupMemberInfoUpdated) {
-                                            memberIds.remove(updatedMemberId);
+                                            memberIds = CollectionUtil.remove(memberIds,
+                                                    updatedMemberId);
                                         }
                                         return RequestHandlerResult
                                                 .of(true, memberIds, clientRequest.turmsRequest());
@@ -18,6 +18,7 @@
 package im.turms.service.domain.group.repository;
 
 import java.util.Date;
+import java.util.Map;
 import java.util.Set;
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotEmpty;
@@ -36,7 +37,11 @@ import im.turms.server.common.infra.time.DateRange;
 import im.turms.server.common.infra.validation.ValidGroupMemberRole;
 import im.turms.server.common.storage.mongo.DomainFieldName;
 import im.turms.server.common.storage.mongo.TurmsMongoClient;
+import im.turms.server.common.storage.mongo.operation.BulkWrite;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
+import im.turms.server.common.storage.mongo.operation.TurmsBulkWriteResult;
 import im.turms.server.common.storage.mongo.operation.option.Filter;
+import im.turms.server.common.storage.mongo.operation.option.KeysetPagination;
 import im.turms.server.common.storage.mongo.operation.option.QueryOptions;
 import im.turms.server.common.storage.mongo.operation.option.Update;
 import im.turms.service.domain.group.po.GroupMember;
@@ -84,6 +89,26 @@ public class GroupMemberRepository extends BaseRepository<GroupMember, GroupMemb
         return mongoClient.updateMany(session, entityClass, filter, update);
     }
 
+    /**
+     * Updates the roles of the members in one ordered bulk write, which executes the updates in
+     * the iteration order of {@code memberIdToRole}.
+     */
+    public Mono<TurmsBulkWriteResult> updateGroupMemberRoles(
+            Long groupId,
+            Map<Long, GroupMemberRole> memberIdToRole,
+            @Nullable ClientSession session) {
+        BulkWrite<GroupMember> bulkWrite =
+                BulkWrite.newBuilder(entityClass, memberIdToRole.size());
+        for (Map.Entry<Long, GroupMemberRole> entry : memberIdToRole.entrySet()) {
+            Filter filter = Filter.newBuilder(1)
+                    .eq(DomainFieldName.ID, new GroupMember.Key(groupId, entry.getKey()));
+            Update update = Update.newBuilder(1)
+                    .set(GroupMember.Fields.ROLE, entry.getValue());
+            bulkWrite.updateOne(filter, update);
+        }
+        return mongoClient.bulkWrite(session, bulkWrite);
+    }
+
     public Mono<Long> countMembers(Long groupId) {
         Filter filter = Filter.newBuilder(1)
                 .eq(GroupMember.Fields.ID_GROUP_ID, groupId);
@@ -133,15 +158,48 @@ public class GroupMemberRepository extends BaseRepository<GroupMember, GroupMemb
             @Nullable DateRange muteEndDateRange,
             @Nullable Integer page,
             @Nullable Integer size) {
-        Filter filter = Filter.newBuilder(7)
+        Filter filter = getGroupsMembersFilter(groupIds,
+                userIds,
+                roles,
+                joinDateRange,
+                muteEndDateRange);
+        QueryOptions options = QueryOptions.newBuilder(2)
+                .paginateIfNotNull(page, size);
+        return mongoClient.findMany(entityClass, filter, options);
+    }
+
+    /**
+     * The group members are sorted by their keys in ascending order.
+     */
+    public Mono<KeysetPage<GroupMember>> findGroupMemberPage(
+            @Nullable Set<Long> groupIds,
+            @Nullable Set<Long> userIds,
+            @Nullable Set<GroupMemberRole> roles,
+            @Nullable DateRange joinDateRange,
+            @Nullable DateRange muteEndDateRange,
+            @Nullable String continuationToken,
+            int size) {
+        Filter filter = getGroupsMembersFilter(groupIds,
+                userIds,
+                roles,
+                joinDateRange,
+                muteEndDateRange);
+        KeysetPagination pagination = KeysetPagination.newBuilder(size, continuationToken);
+        return mongoClient.findPage(entityClass, filter, pagination);
+    }
+
+    private Filter getGroupsMembersFilter(
+            @Nullable Set<Long> groupIds,
+            @Nullable Set<Long> userIds,
+            @Nullable Set<GroupMemberRole> roles,
+            @Nullable DateRange joinDateRange,
+            @Nullable DateRange muteEndDateRange) {
+        return Filter.newBuilder(7)
                 .inIfNotNull(GroupMember.Fields.ID_GROUP_ID, groupIds)
                 .inIfNotNull(GroupMember.Fields.ID_USER_ID, userIds)
                 .inIfNotNull(GroupMember.Fields.ROLE, roles)
                 .addBetweenIfNotNull(GroupMember.Fields.JOIN_DATE, joinDateRange)
                 .addBetweenIfNotNull(GroupMember.Fields.MUTE_END_DATE, muteEndDateRange);
-        QueryOptions options = QueryOptions.newBuilder(2)
-                .paginateIfNotNull(page, size);
-        return mongoClient.findMany(entityClass, filter, options);
     }
 
     public Flux<Long> findGroupMemberIds(Long groupId) {
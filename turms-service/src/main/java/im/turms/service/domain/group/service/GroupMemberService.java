@@ -19,12 +19,14 @@ package im.turms.service.domain.group.service;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotEmpty;
@@ -54,6 +56,7 @@ import im.turms.server.common.domain.session.service.UserStatusService;
 import im.turms.server.common.infra.collection.ChunkedArrayList;
 import im.turms.server.common.infra.collection.CollectionUtil;
 import im.turms.server.common.infra.collection.CollectorUtil;
+import im.turms.server.common.infra.collection.ImmutableSortedLongSet;
 import im.turms.server.common.infra.exception.ResponseException;
 import im.turms.server.common.infra.exception.ResponseExceptionPublisherPool;
 import im.turms.server.common.infra.lang.StringUtil;
@@ -72,11 +75,14 @@ import im.turms.server.common.infra.time.DateTimeUtil;
 import im.turms.server.common.infra.validation.ValidGroupMemberRole;
 import im.turms.server.common.infra.validation.Validator;
 import im.turms.server.common.storage.mongo.IMongoCollectionInitializer;
+import im.turms.server.common.storage.mongo.exception.MongoExceptionUtil;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.service.domain.common.permission.ServicePermission;
 import im.turms.service.domain.common.validation.DataValidator;
 import im.turms.service.domain.group.bo.GroupInvitationStrategy;
 import im.turms.service.domain.group.po.GroupMember;
 import im.turms.service.domain.group.repository.GroupMemberRepository;
+import im.turms.service.infra.cache.CacheInvalidationManager;
 import im.turms.service.infra.proto.ProtoModelConvertor;
 import im.turms.service.storage.mongo.OperationResultPublisherPool;
 
@@ -101,12 +107,15 @@ public class GroupMemberService extends BaseService {
     private final GroupBlocklistService groupBlocklistService;
     private final GroupVersionService groupVersionService;
     private final UserStatusService userStatusService;
+    private final CacheInvalidationManager cacheInvalidationManager;
 
     private boolean checkIfTargetActiveAndNotDeleted;
     private boolean respondOfflineIfInvisible;
 
+    private static final String MEMBERS_CACHE_NAME = "groupIdToMembers";
+
     private final boolean isMemberCacheEnabled;
-    private final Cache<Long, Map<GroupMember.Key, GroupMember>> groupIdToMembersCache;
+    private final Cache<Long, CachedGroupMembers> groupIdToMembersCache;
 
     /**
      * @param groupService          is lazy because: GroupService -> GroupMemberService ->
@@ -120,12 +129,14 @@ public class GroupMemberService extends BaseService {
             @Lazy GroupService groupService,
             GroupVersionService groupVersionService,
             @Lazy GroupBlocklistService groupBlocklistService,
-            UserStatusService userStatusService) {
+            UserStatusService userStatusService,
+            CacheInvalidationManager cacheInvalidationManager) {
         this.groupService = groupService;
         this.groupBlocklistService = groupBlocklistService;
         this.groupMemberRepository = groupMemberRepository;
         this.groupVersionService = groupVersionService;
         this.userStatusService = userStatusService;
+        this.cacheInvalidationManager = cacheInvalidationManager;
 
         propertiesManager.notifyAndAddGlobalPropertiesChangeListener(this::updateProperties);
 
@@ -141,6 +152,17 @@ public class GroupMemberService extends BaseService {
                         .maximumSize(100_000)
                         .build()
                 : null;
+        if (isMemberCacheEnabled) {
+            cacheInvalidationManager.register(MEMBERS_CACHE_NAME, groupIds -> {
+                if (groupIds.length == 0) {
+                    groupIdToMembersCache.invalidateAll();
+                    return;
+                }
+                for (long groupId : groupIds) {
+                    groupIdToMembersCache.invalidate(groupId);
+                }
+            });
+        }
     }
 
     private void updateProperties(TurmsProperties properties) {
@@ -185,6 +207,7 @@ public class GroupMemberService extends BaseService {
                 .then(Mono.fromCallable(() -> {
                     cacheMember(groupMember.getKey()
                             .getGroupId(), groupMember);
+                    invalidateRemoteMemberCaches(groupId);
                     return groupMember;
                 }));
     }
@@ -220,6 +243,12 @@ public class GroupMemberService extends BaseService {
                     new GroupMember(groupId, userId, name, groupMemberRole, joinDate, muteEndDate));
         }
         return groupMemberRepository.insertAllOfSameType(groupMembers, session)
+                .doOnSuccess(unused -> {
+                    if (isMemberCacheEnabled) {
+                        groupIdToMembersCache.invalidate(groupId);
+                        invalidateRemoteMemberCaches(groupId);
+                    }
+                })
                 .then(groupVersionService.updateMembersVersion(groupId)
                         .onErrorResume(t -> {
                             LOGGER.error(
@@ -487,6 +516,9 @@ public class GroupMemberService extends BaseService {
                     if (deletedCount == keys.size()) {
                         invalidMemberCache(keys);
                     }
+                    if (deletedCount > 0) {
+                        invalidateRemoteMemberCaches(keys);
+                    }
                     if (!updateGroupMembersVersion || deletedCount == 0) {
                         return Mono.just(result);
                     }
@@ -551,6 +583,9 @@ public class GroupMemberService extends BaseService {
                     if (modifiedCount == keys.size()) {
                         updateMembersCache(keys, name, role, joinDate, muteEndDate);
                     }
+                    if (modifiedCount > 0) {
+                        invalidateRemoteMemberCaches(keys);
+                    }
                     if (!updateGroupMembersVersion && modifiedCount == 0) {
                         return Mono.just(result);
                     }
@@ -602,6 +637,59 @@ public class GroupMemberService extends BaseService {
                 updateGroupMembersVersion);
     }
 
+    /**
+     * Updates the roles of multiple members of a group with one bulk write, in the iteration order
+     * of {@code memberIdToRole}, instead of sending one update per member.
+     */
+    public Mono<UpdateResult> updateGroupMemberRoles(
+            @NotNull Long groupId,
+            @NotEmpty Map<Long, GroupMemberRole> memberIdToRole,
+            @Nullable ClientSession session,
+            boolean updateGroupMembersVersion) {
+        try {
+            Validator.notNull(groupId, "groupId");
+            Validator.notEmpty(memberIdToRole, "memberIdToRole");
+            for (GroupMemberRole role : memberIdToRole.values()) {
+                Validator.notNull(role, "role");
+                DataValidator.validGroupMemberRole(role);
+            }
+        } catch (ResponseException e) {
+            return Mono.error(e);
+        }
+        return groupMemberRepository.updateGroupMemberRoles(groupId, memberIdToRole, session)
+                .flatMap(result -> {
+                    if (result.hasWriteErrors()) {
+                        return Mono.error(MongoExceptionUtil.translate(result.exception()));
+                    }
+                    long modifiedCount = result.getModifiedCount();
+                    UpdateResult updateResult =
+                            UpdateResult.acknowledged(result.getMatchedCount(), modifiedCount, null);
+                    if (modifiedCount > 0) {
+                        for (Map.Entry<Long, GroupMemberRole> entry : memberIdToRole.entrySet()) {
+                            updateMembersCache(
+                                    Set.of(new GroupMember.Key(groupId, entry.getKey())),
+                                    null,
+                                    entry.getValue(),
+                                    null,
+                                    null);
+                        }
+                        invalidateRemoteMemberCaches(groupId);
+                    }
+                    if (!updateGroupMembersVersion && modifiedCount == 0) {
+                        return Mono.just(updateResult);
+                    }
+                    return groupVersionService.updateMembersVersion(groupId)
+                            .onErrorResume(t -> {
+                                LOGGER.error(
+                                        "Caught an error while updating the members version of the group {} after updating the roles of group members",
+                                        groupId,
+                                        t);
+                                return Mono.empty();
+                            })
+                            .thenReturn(updateResult);
+                });
+    }
+
     public Mono<Boolean> isGroupMember(
             @NotNull Long groupId,
             @NotNull Long userId,
@@ -614,8 +702,7 @@ public class GroupMemberService extends BaseService {
         }
         GroupMember.Key key = new GroupMember.Key(groupId, userId);
         if (preferCache && isMemberCacheEnabled) {
-            Map<GroupMember.Key, GroupMember> keyToMember =
-                    groupIdToMembersCache.getIfPresent(groupId);
+            Map<GroupMember.Key, GroupMember> keyToMember = getCachedMembers(groupId);
             if (keyToMember != null) {
                 GroupMember member = keyToMember.get(key);
                 return Mono.just(member != null);
@@ -785,8 +872,7 @@ public class GroupMemberService extends BaseService {
             return Mono.error(e);
         }
         if (preferCache && isMemberCacheEnabled) {
-            Map<GroupMember.Key, GroupMember> keyToMember =
-                    groupIdToMembersCache.getIfPresent(groupId);
+            Map<GroupMember.Key, GroupMember> keyToMember = getCachedMembers(groupId);
             if (keyToMember != null) {
                 GroupMember member = keyToMember.get(new GroupMember.Key(groupId, userId));
                 return member != null && member.getMuteEndDate() != null
@@ -821,8 +907,7 @@ public class GroupMemberService extends BaseService {
             return Mono.error(e);
         }
         if (preferCache && isMemberCacheEnabled) {
-            Map<GroupMember.Key, GroupMember> keyToMember =
-                    groupIdToMembersCache.getIfPresent(groupId);
+            Map<GroupMember.Key, GroupMember> keyToMember = getCachedMembers(groupId);
             if (keyToMember != null) {
                 GroupMember member = keyToMember.get(new GroupMember.Key(groupId, userId));
                 return member == null
@@ -921,26 +1006,13 @@ public class GroupMemberService extends BaseService {
         }
         if (isMemberCacheEnabled) {
             if (preferCache) {
-                Map<GroupMember.Key, GroupMember> keyToMember =
-                        groupIdToMembersCache.getIfPresent(groupId);
-                if (keyToMember != null) {
-                    Collection<GroupMember> members = keyToMember.values();
-                    Set<Long> memberIds = CollectionUtil.newSetWithExpectedSize(members.size());
-                    for (GroupMember member : members) {
-                        memberIds.add(member.getKey()
-                                .getUserId());
-                    }
-                    return Mono.just(memberIds);
+                CachedGroupMembers members = groupIdToMembersCache.getIfPresent(groupId);
+                if (members != null) {
+                    return Mono.just(members.getMemberIds());
                 }
             }
-            return queryGroupMembers(groupId, false).map(members -> {
-                Set<Long> memberIds = CollectionUtil.newSetWithExpectedSize(members.size());
-                for (GroupMember member : members) {
-                    memberIds.add(member.getKey()
-                            .getUserId());
-                }
-                return memberIds;
-            });
+            return queryGroupMembers(groupId, false)
+                    .map(CachedGroupMembers::toMemberIds);
         }
         Recyclable<Set<Long>> recyclableSet = SetRecycler.obtain();
         return groupMemberRepository.findMemberIdsByGroupId(groupId)
@@ -956,31 +1028,29 @@ public class GroupMemberService extends BaseService {
             return Mono.error(e);
         }
         if (preferCache && isMemberCacheEnabled) {
-            Map<Long, Map<GroupMember.Key, GroupMember>> cachedGroupIdToMembers =
+            Map<Long, CachedGroupMembers> cachedGroupIdToMembers =
                     groupIdToMembersCache.getAllPresent(groupIds);
             int cachedGroupCount = cachedGroupIdToMembers.size();
             if (cachedGroupCount == groupIds.size()) {
+                Collection<CachedGroupMembers> cachedMembers = cachedGroupIdToMembers.values();
+                if (cachedGroupCount == 1) {
+                    return Mono.just(cachedMembers.iterator()
+                            .next()
+                            .getMemberIds());
+                }
                 int memberCount = 0;
-                Collection<Map<GroupMember.Key, GroupMember>> idToMemberCache =
-                        cachedGroupIdToMembers.values();
-                for (Map<GroupMember.Key, GroupMember> idToMember : idToMemberCache) {
-                    memberCount += idToMember.size();
+                for (CachedGroupMembers members : cachedMembers) {
+                    memberCount += members.keyToMember.size();
                 }
                 Set<Long> memberIds = CollectionUtil.newSetWithExpectedSize(memberCount);
-                for (Map<GroupMember.Key, GroupMember> keyToMember : idToMemberCache) {
-                    for (GroupMember member : keyToMember.values()) {
-                        memberIds.add(member.getKey()
-                                .getUserId());
-                    }
+                for (CachedGroupMembers members : cachedMembers) {
+                    memberIds.addAll(members.getMemberIds());
                 }
                 return Mono.just(memberIds);
             } else if (cachedGroupCount > 0) {
                 Set<Long> memberIds = UnifiedSet.newSet(groupIds.size() * 50);
-                for (Map<GroupMember.Key, GroupMember> keyToMember : cachedGroupIdToMembers
-                        .values()) {
-                    for (GroupMember.Key key : keyToMember.keySet()) {
-                        memberIds.add(key.getUserId());
-                    }
+                for (CachedGroupMembers members : cachedGroupIdToMembers.values()) {
+                    memberIds.addAll(members.getMemberIds());
                 }
                 groupIds = UnifiedSet.newSet(groupIds);
                 groupIds.removeAll(cachedGroupIdToMembers.keySet());
@@ -1079,6 +1149,12 @@ public class GroupMemberService extends BaseService {
 
     public Mono<DeleteResult> deleteGroupMembers(boolean updateGroupMembersVersion) {
         return groupMemberRepository.deleteAll()
+                .doOnSuccess(result -> {
+                    if (isMemberCacheEnabled && result.getDeletedCount() > 0) {
+                        groupIdToMembersCache.invalidateAll();
+                        cacheInvalidationManager.invalidateRemoteCaches(MEMBERS_CACHE_NAME);
+                    }
+                })
                 .flatMap(result -> updateGroupMembersVersion && result.getDeletedCount() > 0
                         ? groupVersionService.updateMembersVersion()
                                 .thenReturn(result)
@@ -1095,8 +1171,7 @@ public class GroupMemberService extends BaseService {
         }
         if (isMemberCacheEnabled) {
             if (preferCache) {
-                Map<GroupMember.Key, GroupMember> keyToMember =
-                        groupIdToMembersCache.getIfPresent(groupId);
+                Map<GroupMember.Key, GroupMember> keyToMember = getCachedMembers(groupId);
                 if (keyToMember != null) {
                     return Mono.just(keyToMember.values());
                 }
@@ -1116,6 +1191,37 @@ public class GroupMemberService extends BaseService {
                 .doFinally(signalType -> recyclableList.recycle());
     }
 
+    /**
+     * Unlike {@link #queryGroupMembers(Set, Set, Set, DateRange, DateRange, Integer, Integer)},
+     * this method queries the group members after the continuation token instead of skipping the
+     * members of the previous pages, and does not use or update the member cache.
+     */
+    public Mono<KeysetPage<GroupMember>> queryGroupMemberPage(
+            @Nullable Set<Long> groupIds,
+            @Nullable Set<Long> userIds,
+            @Nullable Set<@ValidGroupMemberRole GroupMemberRole> roles,
+            @Nullable DateRange joinDateRange,
+            @Nullable DateRange muteEndDateRange,
+            @Nullable String continuationToken,
+            int size) {
+        if (roles != null) {
+            try {
+                for (GroupMemberRole role : roles) {
+                    DataValidator.validGroupMemberRole(role);
+                }
+            } catch (ResponseException e) {
+                return Mono.error(e);
+            }
+        }
+        return groupMemberRepository.findGroupMemberPage(groupIds,
+                userIds,
+                roles,
+                joinDateRange,
+                muteEndDateRange,
+                continuationToken,
+                size);
+    }
+
     public Mono<List<GroupMember>> queryGroupMembers(
             @NotNull Long groupId,
             @NotEmpty Set<Long> memberIds,
@@ -1127,8 +1233,7 @@ public class GroupMemberService extends BaseService {
             return Mono.error(e);
         }
         if (preferCache && isMemberCacheEnabled) {
-            Map<GroupMember.Key, GroupMember> keyToMember =
-                    groupIdToMembersCache.getIfPresent(groupId);
+            Map<GroupMember.Key, GroupMember> keyToMember = getCachedMembers(groupId);
             if (keyToMember != null) {
                 List<GroupMember> members = new ArrayList<>(memberIds.size());
                 for (Long memberId : memberIds) {
@@ -1348,8 +1453,12 @@ public class GroupMemberService extends BaseService {
                     if (isMemberCacheEnabled) {
                         if (groupIds == null) {
                             groupIdToMembersCache.invalidateAll();
+                            cacheInvalidationManager.invalidateRemoteCaches(MEMBERS_CACHE_NAME);
                         } else {
                             groupIdToMembersCache.invalidateAll(groupIds);
+                            invalidateRemoteMemberCaches(groupIds.stream()
+                                    .mapToLong(Long::longValue)
+                                    .toArray());
                         }
                     }
                     if (updateMembersVersion) {
@@ -1427,14 +1536,21 @@ public class GroupMemberService extends BaseService {
 
     // Cache
 
+    @Nullable
+    private Map<GroupMember.Key, GroupMember> getCachedMembers(Long groupId) {
+        CachedGroupMembers members = groupIdToMembersCache.getIfPresent(groupId);
+        return members == null
+                ? null
+                : members.keyToMember;
+    }
+
     private void cacheMember(Long groupId, GroupMember member) {
         if (!isMemberCacheEnabled) {
             return;
         }
-        Map<GroupMember.Key, GroupMember> keyAndMember =
-                groupIdToMembersCache.getIfPresent(groupId);
-        if (keyAndMember != null) {
-            keyAndMember.put(member.getKey(), member);
+        CachedGroupMembers members = groupIdToMembersCache.getIfPresent(groupId);
+        if (members != null) {
+            members.put(member);
         }
     }
 
@@ -1442,12 +1558,7 @@ public class GroupMemberService extends BaseService {
         if (!isMemberCacheEnabled) {
             return;
         }
-        Map<GroupMember.Key, GroupMember> keyToGroupMember =
-                new ConcurrentHashMap<>(CollectionUtil.getMapCapability(members.size()));
-        for (GroupMember member : members) {
-            keyToGroupMember.put(member.getKey(), member);
-        }
-        groupIdToMembersCache.put(groupId, keyToGroupMember);
+        groupIdToMembersCache.put(groupId, new CachedGroupMembers(members));
     }
 
     private void updateMembersCache(
@@ -1460,8 +1571,7 @@ public class GroupMemberService extends BaseService {
             return;
         }
         for (GroupMember.Key key : keys) {
-            Map<GroupMember.Key, GroupMember> keyAndMember =
-                    groupIdToMembersCache.getIfPresent(key.getGroupId());
+            Map<GroupMember.Key, GroupMember> keyAndMember = getCachedMembers(key.getGroupId());
             if (keyAndMember == null) {
                 continue;
             }
@@ -1484,17 +1594,97 @@ public class GroupMemberService extends BaseService {
         }
     }
 
+    private void invalidateRemoteMemberCaches(Collection<GroupMember.Key> keys) {
+        if (!isMemberCacheEnabled) {
+            return;
+        }
+        long[] groupIds = keys.stream()
+                .mapToLong(GroupMember.Key::getGroupId)
+                .distinct()
+                .toArray();
+        invalidateRemoteMemberCaches(groupIds);
+    }
+
+    private void invalidateRemoteMemberCaches(long... groupIds) {
+        if (isMemberCacheEnabled && groupIds.length > 0) {
+            cacheInvalidationManager.invalidateRemoteCaches(MEMBERS_CACHE_NAME, groupIds);
+        }
+    }
+
     private void invalidMemberCache(Collection<GroupMember.Key> keys) {
         if (!isMemberCacheEnabled) {
             return;
         }
         for (GroupMember.Key key : keys) {
-            Map<GroupMember.Key, GroupMember> keyAndMember =
-                    groupIdToMembersCache.getIfPresent(key.getGroupId());
-            if (keyAndMember != null) {
-                keyAndMember.remove(key);
+            CachedGroupMembers members = groupIdToMembersCache.getIfPresent(key.getGroupId());
+            if (members != null) {
+                members.remove(key);
             }
         }
     }
 
+    /**
+     * The members of a group, and the immutable snapshot of their IDs, which is rebuilt lazily
+     * after the members change so that fanning out group messages can share the snapshot instead
+     * of copying the member IDs into a new set for every message.
+     */
+    private static final class CachedGroupMembers {
+        private final Map<GroupMember.Key, GroupMember> keyToMember;
+        private final AtomicInteger version = new AtomicInteger();
+        private volatile MemberIdsSnapshot memberIdsSnapshot;
+
+        private CachedGroupMembers(List<GroupMember> members) {
+            keyToMember = new ConcurrentHashMap<>(CollectionUtil.getMapCapability(members.size()));
+            for (GroupMember member : members) {
+                keyToMember.put(member.getKey(), member);
+            }
+        }
+
+        private void put(GroupMember member) {
+            keyToMember.put(member.getKey(), member);
+            version.incrementAndGet();
+        }
+
+        private void remove(GroupMember.Key key) {
+            if (keyToMember.remove(key) != null) {
+                version.incrementAndGet();
+            }
+        }
+
+        private ImmutableSortedLongSet getMemberIds() {
+            // Read the version before reading the members, so a snapshot built
+            // concurrently with a change will be rebuilt by the next reader.
+            int currentVersion = version.get();
+            MemberIdsSnapshot snapshot = memberIdsSnapshot;
+            if (snapshot != null && snapshot.version == currentVersion) {
+                return snapshot.memberIds;
+            }
+            ImmutableSortedLongSet memberIds = toMemberIds(keyToMember.values());
+            memberIdsSnapshot = new MemberIdsSnapshot(currentVersion, memberIds);
+            return memberIds;
+        }
+
+        private static ImmutableSortedLongSet toMemberIds(Collection<GroupMember> members) {
+            long[] memberIds = new long[members.size()];
+            int i = 0;
+            for (GroupMember member : members) {
+                if (i == memberIds.length) {
+                    // The members were added concurrently.
+                    memberIds = Arrays.copyOf(memberIds, i + 8);
+                }
+                memberIds[i++] = member.getKey()
+                        .getUserId();
+            }
+            return ImmutableSortedLongSet.of(i == memberIds.length
+                    ? memberIds
+                    : Arrays.copyOf(memberIds, i));
+        }
+
+        private record MemberIdsSnapshot(
+                int version,
+                ImmutableSortedLongSet memberIds
+        ) {
+        }
+    }
+
 }
\ No newline at end of file
@@ -265,7 +265,10 @@ public class GroupQuestionService extends BaseService {
         } catch (ResponseException e) {
             return Mono.error(e);
         }
-        List<GroupJoinQuestion> newQuestions = new ArrayList<>(questions.size());
+        int questionCount = questions.size();
+        List<GroupJoinQuestion> newQuestions = new ArrayList<>(questionCount);
+        long[] questionIds = node.nextLargeGapIds(ServiceType.GROUP_JOIN_QUESTION, questionCount);
+        int questionIndex = 0;
         for (NewGroupQuestion q : questions) {
             String question = q.question();
             LinkedHashSet<String> answers = q.answers();
@@ -282,7 +285,7 @@ public class GroupQuestionService extends BaseService {
                 return Mono.error(e);
             }
             newQuestions.add(new GroupJoinQuestion(
-                    node.nextLargeGapId(ServiceType.GROUP_JOIN_QUESTION),
+                    questionIds[questionIndex++],
                     groupId,
                     question,
                     answers,
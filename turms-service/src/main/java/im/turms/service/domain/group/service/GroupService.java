@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -84,6 +85,7 @@ import im.turms.service.domain.observation.service.MetricsService;
 import im.turms.service.domain.user.po.UserRole;
 import im.turms.service.domain.user.service.UserRoleService;
 import im.turms.service.domain.user.service.UserVersionService;
+import im.turms.service.infra.cache.CacheInvalidationManager;
 import im.turms.service.infra.proto.ProtoModelConvertor;
 import im.turms.service.storage.elasticsearch.ElasticsearchManager;
 import im.turms.service.storage.elasticsearch.model.Hit;
@@ -104,6 +106,8 @@ public class GroupService extends BaseService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GroupService.class);
 
+    private static final String GROUP_TYPES_CACHE_NAME = "groupIdToGroupType";
+
     private final Node node;
     private final ElasticsearchManager elasticsearchManager;
     private final GroupRepository groupRepository;
@@ -116,6 +120,7 @@ public class GroupService extends BaseService {
     private final UserRoleService userRoleService;
     private final ConversationService conversationService;
     private final MessageService messageService;
+    private final CacheInvalidationManager cacheInvalidationManager;
 
     private final Counter createdGroupsCounter;
     private final Counter deletedGroupsCounter;
@@ -142,7 +147,8 @@ public class GroupService extends BaseService {
             UserRoleService userRoleService,
             ConversationService conversationService,
             @Lazy MessageService messageService,
-            MetricsService metricsService) {
+            MetricsService metricsService,
+            CacheInvalidationManager cacheInvalidationManager) {
         this.node = node;
         this.elasticsearchManager = elasticsearchManager;
         this.groupRepository = groupRepository;
@@ -154,6 +160,7 @@ public class GroupService extends BaseService {
         this.userRoleService = userRoleService;
         this.conversationService = conversationService;
         this.messageService = messageService;
+        this.cacheInvalidationManager = cacheInvalidationManager;
 
         createdGroupsCounter = metricsService.getRegistry()
                 .counter(TURMS_BUSINESS_GROUP_CREATED);
@@ -165,6 +172,15 @@ public class GroupService extends BaseService {
                 .maximumSize(10_000)
                 .expireAfterWrite(Duration.ofHours(1))
                 .build();
+        cacheInvalidationManager.register(GROUP_TYPES_CACHE_NAME, groupIds -> {
+            if (groupIds.length == 0) {
+                groupIdToGroupTypeCache.invalidateAll();
+                return;
+            }
+            for (long groupId : groupIds) {
+                groupIdToGroupTypeCache.invalidate(groupId);
+            }
+        });
 
         propertiesManager.notifyAndAddGlobalPropertiesChangeListener(this::updateProperties);
     }
@@ -379,7 +395,7 @@ public class GroupService extends BaseService {
                             t -> LOGGER.error("Failed to delete the docs of the groups: "
                                     + groupIds, t)));
         }
-        return delete;
+        return delete.doOnSuccess(result -> invalidateGroupTypeCache(groupIds));
     }
 
     public Flux<Group> queryGroups(
@@ -595,28 +611,32 @@ public class GroupService extends BaseService {
                                                     ResponseException.get(code, result.reason()));
                                         }
                                         if (quitAfterTransfer) {
-                                            return groupMemberService.deleteGroupMember(groupId,
-                                                    ownerId,
-                                                    session,
-                                                    false);
+                                            return groupMemberService
+                                                    .deleteGroupMember(groupId,
+                                                            ownerId,
+                                                            session,
+                                                            false)
+                                                    .then(groupMemberService.updateGroupMember(
+                                                            groupId,
+                                                            successorId,
+                                                            null,
+                                                            GroupMemberRole.OWNER,
+                                                            null,
+                                                            null,
+                                                            session,
+                                                            true));
                                         }
-                                        return groupMemberService.updateGroupMember(groupId,
-                                                ownerId,
-                                                null,
-                                                GroupMemberRole.MEMBER,
-                                                null,
-                                                null,
+                                        // Demote the owner and promote the successor
+                                        // in one ordered bulk write
+                                        Map<Long, GroupMemberRole> memberIdToRole =
+                                                new LinkedHashMap<>(4);
+                                        memberIdToRole.put(ownerId, GroupMemberRole.MEMBER);
+                                        memberIdToRole.put(successorId, GroupMemberRole.OWNER);
+                                        return groupMemberService.updateGroupMemberRoles(groupId,
+                                                memberIdToRole,
                                                 session,
-                                                false);
+                                                true);
                                     })
-                                    .then(groupMemberService.updateGroupMember(groupId,
-                                            successorId,
-                                            null,
-                                            GroupMemberRole.OWNER,
-                                            null,
-                                            null,
-                                            session,
-                                            true))
                                     .then());
                 });
     }
@@ -695,6 +715,40 @@ public class GroupService extends BaseService {
                 && (userDefinedAttributes == null || userDefinedAttributes.isEmpty())) {
             return OperationResultPublisherPool.ACKNOWLEDGED_UPDATE_RESULT;
         }
+        Mono<UpdateResult> update = updateGroupsInformation0(groupIds,
+                typeId,
+                creatorId,
+                ownerId,
+                name,
+                intro,
+                announcement,
+                minimumScore,
+                isActive,
+                creationDate,
+                deletionDate,
+                muteEndDate,
+                userDefinedAttributes,
+                session);
+        return typeId == null
+                ? update
+                : update.doOnSuccess(result -> invalidateGroupTypeCache(groupIds));
+    }
+
+    private Mono<UpdateResult> updateGroupsInformation0(
+            Set<Long> groupIds,
+            @Nullable Long typeId,
+            @Nullable Long creatorId,
+            @Nullable Long ownerId,
+            @Nullable String name,
+            @Nullable String intro,
+            @Nullable String announcement,
+            @Nullable Integer minimumScore,
+            @Nullable Boolean isActive,
+            @Nullable Date creationDate,
+            @Nullable Date deletionDate,
+            @Nullable Date muteEndDate,
+            @Nullable Map<String, Object> userDefinedAttributes,
+            @Nullable ClientSession session) {
         if (!elasticsearchManager.isGroupUseCaseEnabled() || name == null) {
             return groupRepository.updateGroups(groupIds,
                     typeId,
@@ -1308,4 +1362,22 @@ public class GroupService extends BaseService {
                 });
     }
 
+    private void invalidateGroupTypeCache(@Nullable Set<Long> groupIds) {
+        if (groupIds == null) {
+            groupIdToGroupTypeCache.invalidateAll();
+            cacheInvalidationManager.invalidateRemoteCaches(GROUP_TYPES_CACHE_NAME);
+            return;
+        }
+        if (groupIds.isEmpty()) {
+            return;
+        }
+        long[] keys = new long[groupIds.size()];
+        int i = 0;
+        for (Long groupId : groupIds) {
+            groupIdToGroupTypeCache.invalidate(groupId);
+            keys[i++] = groupId;
+        }
+        cacheInvalidationManager.invalidateRemoteCaches(GROUP_TYPES_CACHE_NAME, keys);
+    }
+
 }
\ No newline at end of file
@@ -43,6 +43,7 @@ import im.turms.server.common.infra.net.InetAddressUtil;
 import im.turms.server.common.infra.property.TurmsPropertiesManager;
 import im.turms.server.common.infra.time.DateRange;
 import im.turms.server.common.infra.time.DivideBy;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.service.domain.common.access.admin.controller.BaseController;
 import im.turms.service.domain.message.access.admin.dto.request.CreateMessageDTO;
 import im.turms.service.domain.message.access.admin.dto.request.UpdateMessageDTO;
@@ -166,6 +167,37 @@ public class MessageController extends BaseController {
         return HttpHandlerResult.page(count, completeMessagesFlux);
     }
 
+    @GetMapping("cursor")
+    @RequiredPermission(MESSAGE_QUERY)
+    public Mono<HttpHandlerResult<ResponseDTO<PaginationDTO<Message>>>> queryMessagesByCursor(
+            @QueryParam(required = false) Set<Long> ids,
+            @QueryParam(required = false) Boolean areGroupMessages,
+            @QueryParam(required = false) Boolean areSystemMessages,
+            @QueryParam(required = false) Set<Long> senderIds,
+            @QueryParam(required = false) Set<Long> targetIds,
+            @QueryParam(required = false) Date deliveryDateStart,
+            @QueryParam(required = false) Date deliveryDateEnd,
+            @QueryParam(required = false) Date deletionDateStart,
+            @QueryParam(required = false) Date deletionDateEnd,
+            @QueryParam(required = false) Date recallDateStart,
+            @QueryParam(required = false) Date recallDateEnd,
+            @QueryParam(required = false) String continuationToken,
+            @QueryParam(required = false) Integer size,
+            @QueryParam(required = false) Boolean ascending) {
+        Mono<KeysetPage<Message>> page = messageService.queryMessagePage(ids,
+                areGroupMessages,
+                areSystemMessages,
+                senderIds,
+                targetIds,
+                DateRange.of(deliveryDateStart, deliveryDateEnd),
+                DateRange.of(deletionDateStart, deletionDateEnd),
+                DateRange.of(recallDateStart, recallDateEnd),
+                continuationToken,
+                getPageSize(size),
+                ascending);
+        return HttpHandlerResult.page(page);
+    }
+
     @GetMapping("count")
     @RequiredPermission(MESSAGE_QUERY)
     public Mono<HttpHandlerResult<ResponseDTO<MessageStatisticsDTO>>> countMessages(
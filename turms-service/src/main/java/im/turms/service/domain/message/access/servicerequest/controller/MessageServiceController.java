@@ -368,8 +368,11 @@ public class MessageServiceController extends BaseServiceController {
                             resultMono = resultMono.doOnSuccess(ignored -> {
                                 Mono<Void> mono = areGroupMessages
                                         ? conversationService
-                                                .upsertGroupConversationReadDate(messages.getFirst()
-                                                        .groupId(), userId, new Date())
+                                                .upsertGroupConversationReadDateWriteBehind(
+                                                        messages.getFirst()
+                                                                .groupId(),
+                                                        userId,
+                                                        new Date())
                                         : conversationService.upsertPrivateConversationReadDate(
                                                 userId,
                                                 messages.getFirst()
@@ -35,7 +35,9 @@ import im.turms.server.common.infra.lang.LongUtil;
 import im.turms.server.common.infra.time.DateRange;
 import im.turms.server.common.storage.mongo.DomainFieldName;
 import im.turms.server.common.storage.mongo.TurmsMongoClient;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.server.common.storage.mongo.operation.option.Filter;
+import im.turms.server.common.storage.mongo.operation.option.KeysetPagination;
 import im.turms.server.common.storage.mongo.operation.option.QueryOptions;
 import im.turms.server.common.storage.mongo.operation.option.Update;
 import im.turms.service.domain.message.po.Message;
@@ -194,6 +196,65 @@ public class MessageRepository extends BaseRepository<Message, Long> {
             @Nullable Integer page,
             @Nullable Integer size,
             @Nullable Boolean ascending) {
+        Filter filter = getMessagesFilter(messageIds,
+                conversationIds,
+                areGroupMessages,
+                areSystemMessages,
+                senderIds,
+                targetIds,
+                deliveryDateRange,
+                deletionDateRange,
+                recallDateRange);
+        QueryOptions options = QueryOptions.newBuilder(3)
+                .paginateIfNotNull(page, size);
+        if (ascending != null) {
+            options.sort(ascending, Message.Fields.DELIVERY_DATE);
+        }
+        return mongoClient.findMany(entityClass, filter, options);
+    }
+
+    /**
+     * @param ascending if null, the messages are sorted by their IDs in ascending order
+     */
+    public Mono<KeysetPage<Message>> findMessagePage(
+            @Nullable Collection<Long> messageIds,
+            @Nullable Collection<byte[]> conversationIds,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Boolean areSystemMessages,
+            @Nullable Set<Long> senderIds,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable DateRange recallDateRange,
+            @Nullable String continuationToken,
+            int size,
+            @Nullable Boolean ascending) {
+        Filter filter = getMessagesFilter(messageIds,
+                conversationIds,
+                areGroupMessages,
+                areSystemMessages,
+                senderIds,
+                targetIds,
+                deliveryDateRange,
+                deletionDateRange,
+                recallDateRange);
+        KeysetPagination pagination = KeysetPagination.newBuilder(size, continuationToken);
+        if (ascending != null) {
+            pagination.sort(ascending, Message.Fields.DELIVERY_DATE);
+        }
+        return mongoClient.findPage(entityClass, filter, pagination);
+    }
+
+    private Filter getMessagesFilter(
+            @Nullable Collection<Long> messageIds,
+            @Nullable Collection<byte[]> conversationIds,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Boolean areSystemMessages,
+            @Nullable Set<Long> senderIds,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable DateRange recallDateRange) {
         Filter filter = Filter.newBuilder(8)
                 .inIfNotNull(Message.Fields.CONVERSATION_ID, conversationIds)
                 .eqIfNotNull(Message.Fields.IS_GROUP_MESSAGE, areGroupMessages)
@@ -211,13 +272,7 @@ public class MessageRepository extends BaseRepository<Message, Long> {
         } else {
             filter.addBetweenIfNotNull(Message.Fields.RECALL_DATE, recallDateRange);
         }
-        QueryOptions options = QueryOptions.newBuilder(3)
-                .paginateIfNotNull(page, size);
-        if (ascending != null) {
-            options.sort(ascending, Message.Fields.DELIVERY_DATE);
-        }
-        filter.inIfNotNull(DomainFieldName.ID, messageIds);
-        return mongoClient.findMany(entityClass, filter, options);
+        return filter.inIfNotNull(DomainFieldName.ID, messageIds);
     }
 
     public Mono<Message> findIsGroupMessageAndTargetId(Long messageId, Long senderId) {
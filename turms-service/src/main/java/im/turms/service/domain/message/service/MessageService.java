@@ -58,6 +58,8 @@ import im.turms.server.common.access.client.dto.notification.TurmsNotification;
 import im.turms.server.common.access.common.ResponseStatusCode;
 import im.turms.server.common.domain.common.service.BaseService;
 import im.turms.server.common.domain.session.bo.UserSessionId;
+import im.turms.server.common.infra.application.JobShutdownOrder;
+import im.turms.server.common.infra.application.TurmsApplicationContext;
 import im.turms.server.common.infra.cluster.node.Node;
 import im.turms.server.common.infra.cluster.service.idgen.ServiceType;
 import im.turms.server.common.infra.collection.CollectionUtil;
@@ -65,10 +67,12 @@ import im.turms.server.common.infra.collection.CollectorUtil;
 import im.turms.server.common.infra.exception.IncompatibleInternalChangeException;
 import im.turms.server.common.infra.exception.ResponseException;
 import im.turms.server.common.infra.lang.LongUtil;
+import im.turms.server.common.infra.lang.Pair;
 import im.turms.server.common.infra.logging.core.logger.Logger;
 import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
 import im.turms.server.common.infra.message.OutboundMessageManager;
 import im.turms.server.common.infra.net.InetAddressUtil;
+import im.turms.server.common.infra.netty.ByteBufUtil;
 import im.turms.server.common.infra.netty.ReferenceCountUtil;
 import im.turms.server.common.infra.plugin.PluginManager;
 import im.turms.server.common.infra.property.TurmsProperties;
@@ -86,6 +90,8 @@ import im.turms.server.common.infra.time.DateRange;
 import im.turms.server.common.infra.time.DateTimeUtil;
 import im.turms.server.common.infra.validation.Validator;
 import im.turms.server.common.storage.mongo.IMongoCollectionInitializer;
+import im.turms.server.common.storage.mongo.operation.BatchInserter;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.server.common.storage.mongo.operation.OperationResultConvertor;
 import im.turms.server.common.storage.redis.RedisEntryIdConst;
 import im.turms.server.common.storage.redis.TurmsRedisClientManager;
@@ -132,6 +138,9 @@ public class MessageService extends BaseService {
 
     private static final Method GET_MESSAGES_TO_DELETE_METHOD;
 
+    private static final ByteBuf PRIVATE_MESSAGE_SEQUENCE_ID_KEY_BUFFER = ByteBufUtil
+            .getUnreleasableDirectBuffer(RedisEntryIdConst.KEY_PRIVATE_MESSAGE_SEQUENCE_ID);
+
     private final MessageRepository messageRepository;
 
     private final OutboundMessageManager outboundMessageManager;
@@ -147,6 +156,18 @@ public class MessageService extends BaseService {
 
     private final RedisScript<Long> deletePrivateMessageSequenceIdScript;
     private final RedisScript<Long> getPrivateMessageSequenceIdScript;
+    private final RedisScript<Long> returnMessageSequenceIdBlockScript;
+    /**
+     * Null if the strict mode is used for group conversations.
+     */
+    @Nullable
+    private final SequenceIdBlockLeaser<Long> groupMessageSequenceIdBlockLeaser;
+    /**
+     * Null if the strict mode is used for private conversations. The key is the pair of the
+     * smaller user ID and the larger user ID.
+     */
+    @Nullable
+    private final SequenceIdBlockLeaser<Pair<Long, Long>> privateMessageSequenceIdBlockLeaser;
 
     private final boolean useConversationId;
     private final boolean useSequenceIdForGroupConversation;
@@ -178,6 +199,11 @@ public class MessageService extends BaseService {
     private DateRange recalledMessageQueryDateRange;
 
     private final Cache<Long, Message> sentMessageCache;
+    /**
+     * Null if the messages should be inserted one by one.
+     */
+    @Nullable
+    private final BatchInserter<Message> messageBatchInserter;
 
     private final Counter sentMessageCounter;
 
@@ -206,6 +232,7 @@ public class MessageService extends BaseService {
             UserService userService,
             MetricsService metricsService,
 
+            TurmsApplicationContext context,
             PluginManager pluginManager,
             TaskManager taskManager) {
         this.messageRepository = messageRepository;
@@ -234,6 +261,9 @@ public class MessageService extends BaseService {
                 new ClassPathResource("redis/message/get_private_message_sequence_id.lua"),
                 ScriptOutputType.INTEGER,
                 scriptParams);
+        returnMessageSequenceIdBlockScript = RedisScript.get(
+                new ClassPathResource("redis/message/return_message_sequence_id_block.lua"),
+                ScriptOutputType.INTEGER);
 
         TurmsProperties globalProperties = propertiesManager.getGlobalProperties();
         MessageProperties messageProperties = globalProperties.getService()
@@ -245,6 +275,59 @@ public class MessageService extends BaseService {
                 sequenceIdProperties.isUseSequenceIdForGroupConversation();
         useSequenceIdForPrivateConversation =
                 sequenceIdProperties.isUseSequenceIdForPrivateConversation();
+        SequenceIdProperties localSequenceIdProperties = propertiesManager.getLocalProperties()
+                .getService()
+                .getMessage()
+                .getSequenceId();
+        int groupConversationLeasedBlockSize =
+                localSequenceIdProperties.getGroupConversationLeasedBlockSize();
+        int privateConversationLeasedBlockSize =
+                localSequenceIdProperties.getPrivateConversationLeasedBlockSize();
+        int maxLeasedBlockCount = localSequenceIdProperties.getMaxLeasedBlockCount();
+        Duration leasedBlockExpireAfter =
+                Duration.ofSeconds(localSequenceIdProperties.getLeasedBlockExpireAfterSeconds());
+        groupMessageSequenceIdBlockLeaser = redisClientManager != null
+                && useSequenceIdForGroupConversation
+                && groupConversationLeasedBlockSize > 1
+                        ? new SequenceIdBlockLeaser<>(
+                                groupConversationLeasedBlockSize,
+                                maxLeasedBlockCount,
+                                leasedBlockExpireAfter,
+                                this::leaseGroupMessageSequenceIds,
+                                this::returnGroupMessageSequenceIds)
+                        : null;
+        privateMessageSequenceIdBlockLeaser = redisClientManager != null
+                && useSequenceIdForPrivateConversation
+                && privateConversationLeasedBlockSize > 1
+                        ? new SequenceIdBlockLeaser<>(
+                                privateConversationLeasedBlockSize,
+                                maxLeasedBlockCount,
+                                leasedBlockExpireAfter,
+                                (userIds, count) -> leasePrivateMessageSequenceIds(
+                                        userIds.first(),
+                                        userIds.second(),
+                                        count),
+                                (userIds, blockEnd,
+                                        lastUsedSequenceId) -> returnPrivateMessageSequenceIds(
+                                                userIds.first(),
+                                                userIds.second(),
+                                                blockEnd,
+                                                lastUsedSequenceId))
+                        : null;
+        if (groupMessageSequenceIdBlockLeaser != null
+                || privateMessageSequenceIdBlockLeaser != null) {
+            context.addShutdownHook(JobShutdownOrder.RETURN_SEQUENCE_ID_BLOCKS,
+                    timeoutMillis -> {
+                        Mono<Void> returnGroupBlocks = groupMessageSequenceIdBlockLeaser == null
+                                ? Mono.empty()
+                                : groupMessageSequenceIdBlockLeaser.returnAll();
+                        Mono<Void> returnPrivateBlocks =
+                                privateMessageSequenceIdBlockLeaser == null
+                                        ? Mono.empty()
+                                        : privateMessageSequenceIdBlockLeaser.returnAll();
+                        return Mono.whenDelayError(returnGroupBlocks, returnPrivateBlocks);
+                    });
+        }
         MessageProperties.CacheProperties cacheProperties = propertiesManager.getLocalProperties()
                 .getService()
                 .getMessage()
@@ -263,6 +346,17 @@ public class MessageService extends BaseService {
         } else {
             sentMessageCache = null;
         }
+        MessageProperties.BatchInsertProperties batchInsertProperties =
+                propertiesManager.getLocalProperties()
+                        .getService()
+                        .getMessage()
+                        .getBatchInsert();
+        messageBatchInserter = batchInsertProperties.isEnabled()
+                ? new BatchInserter<>(
+                        messageRepository::insertAllOfSameTypeUnordered,
+                        batchInsertProperties.getMaxBatchSize(),
+                        batchInsertProperties.getMaxDelayMillis())
+                : null;
         sentMessageCounter = metricsService.getRegistry()
                 .counter(TURMS_BUSINESS_MESSAGE_SENT);
         propertiesManager.notifyAndAddGlobalPropertiesChangeListener(this::updateProperties);
@@ -479,6 +573,59 @@ public class MessageService extends BaseService {
             @Nullable Integer page,
             @Nullable Integer size,
             @Nullable Boolean ascending) {
+        MessageQueryTargets queryTargets =
+                getMessageQueryTargets(areGroupMessages, senderIds, targetIds);
+        return messageRepository.findMessages(messageIds,
+                queryTargets.conversationIds(),
+                areGroupMessages,
+                areSystemMessages,
+                queryTargets.senderIds(),
+                queryTargets.targetIds(),
+                deliveryDateRange,
+                deletionDateRange,
+                recallDateRange,
+                page,
+                size,
+                ascending);
+    }
+
+    /**
+     * Unlike {@link #queryMessages}, which skips the messages of the previous pages, this method
+     * queries the messages after the continuation token, so the cost of querying a page does not
+     * grow with the page depth (e.g. when exporting all messages of a conversation).
+     */
+    public Mono<KeysetPage<Message>> queryMessagePage(
+            @Nullable Collection<Long> messageIds,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Boolean areSystemMessages,
+            @Nullable Set<Long> senderIds,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable DateRange recallDateRange,
+            @Nullable String continuationToken,
+            int size,
+            @Nullable Boolean ascending) {
+        MessageQueryTargets queryTargets =
+                getMessageQueryTargets(areGroupMessages, senderIds, targetIds);
+        return messageRepository.findMessagePage(messageIds,
+                queryTargets.conversationIds(),
+                areGroupMessages,
+                areSystemMessages,
+                queryTargets.senderIds(),
+                queryTargets.targetIds(),
+                deliveryDateRange,
+                deletionDateRange,
+                recallDateRange,
+                continuationToken,
+                size,
+                ascending);
+    }
+
+    private MessageQueryTargets getMessageQueryTargets(
+            @Nullable Boolean areGroupMessages,
+            @Nullable Set<Long> senderIds,
+            @Nullable Set<Long> targetIds) {
         int targetIdCount = CollectionUtil.getSize(targetIds);
         boolean enableConversationId = useConversationId && targetIdCount > 0;
         List<byte[]> conversationIds = null;
@@ -558,18 +705,7 @@ public class MessageService extends BaseService {
                 }
             }
         }
-        return messageRepository.findMessages(messageIds,
-                conversationIds,
-                areGroupMessages,
-                areSystemMessages,
-                senderIds,
-                targetIds,
-                deliveryDateRange,
-                deletionDateRange,
-                recallDateRange,
-                page,
-                size,
-                ascending);
+        return new MessageQueryTargets(conversationIds, senderIds, targetIds);
     }
 
     public Mono<Message> saveMessage(
@@ -673,7 +809,7 @@ public class MessageService extends BaseService {
                     referenceId,
                     null,
                     preMessageId);
-            saveMessage = messageRepository.insert(message)
+            saveMessage = insertMessage(message)
                     .thenReturn(message);
         } else {
             Long finalMessageId = messageId;
@@ -700,14 +836,16 @@ public class MessageService extends BaseService {
                         referenceId,
                         seqId.intValue(),
                         finalPreMessageId);
-                return messageRepository.insert(message)
+                return insertMessage(message)
                         .thenReturn(message);
             });
         }
         if (updateReadDateAfterMessageSent) {
             Mono<Void> upsertConversation = isGroupMessage
                     ? conversationService
-                            .upsertGroupConversationReadDate(targetId, senderId, deliveryDate)
+                            .upsertGroupConversationReadDateWriteBehind(targetId,
+                                    senderId,
+                                    deliveryDate)
                     : conversationService
                             .upsertPrivateConversationReadDate(senderId, targetId, deliveryDate);
             return saveMessage.doOnNext(ignored -> upsertConversation.subscribe(null,
@@ -721,6 +859,12 @@ public class MessageService extends BaseService {
         return saveMessage;
     }
 
+    private Mono<Void> insertMessage(Message message) {
+        return messageBatchInserter == null
+                ? messageRepository.insert(message)
+                : messageBatchInserter.insert(message);
+    }
+
     public Flux<Long> queryExpiredMessageIds(@NotNull Integer retentionPeriodHours) {
         try {
             Validator.notNull(retentionPeriodHours, "retentionPeriodHours");
@@ -1638,6 +1782,9 @@ public class MessageService extends BaseService {
         if (redisClientManager == null) {
             return PublisherPool.LONG_ZERO;
         }
+        if (groupMessageSequenceIdBlockLeaser != null) {
+            groupMessageSequenceIdBlockLeaser.abandonIf(groupIds::contains);
+        }
         Flux<Long> execute = redisClientManager.execute(groupIds, (client, keyList) -> {
             ByteBuf[] keys = new ByteBuf[keyList.size()];
             int i = 0;
@@ -1667,6 +1814,10 @@ public class MessageService extends BaseService {
         if (redisClientManager == null) {
             return PublisherPool.LONG_ZERO;
         }
+        if (privateMessageSequenceIdBlockLeaser != null) {
+            privateMessageSequenceIdBlockLeaser.abandonIf(
+                    pair -> userIds.contains(pair.first()) || userIds.contains(pair.second()));
+        }
         Flux<Long> flux = Mono.fromCallable(() -> {
             ByteBuf[] keys = new ByteBuf[userIds.size()];
             int i = 0;
@@ -1698,12 +1849,47 @@ public class MessageService extends BaseService {
      *           <p>
      *           This is an expected behavior for client applications to suffer from data loss in
      *           Redis due to any reason.
+     *           <p>
+     *           If sequence ID blocks are leased for group conversations, the sequence IDs are
+     *           only increasing per node, and there may be gaps that do not indicate lost
+     *           messages.
      */
     @VisibleForTesting
     public Mono<Long> fetchGroupMessageSequenceId(Long groupId) {
         if (redisClientManager == null) {
             return Mono.empty();
         }
+        if (groupMessageSequenceIdBlockLeaser != null) {
+            return groupMessageSequenceIdBlockLeaser.next(groupId);
+        }
+        return leaseGroupMessageSequenceIds(groupId, 1);
+    }
+
+    /**
+     * @implNote If sequence ID blocks are leased for private conversations, the sequence IDs are
+     *           only increasing per node, and there may be gaps that do not indicate lost
+     *           messages.
+     */
+    @VisibleForTesting
+    public Mono<Long> fetchPrivateMessageSequenceId(Long userId1, Long userId2) {
+        if (redisClientManager == null) {
+            return Mono.empty();
+        }
+        if (userId1 > userId2) {
+            Long temp = userId1;
+            userId1 = userId2;
+            userId2 = temp;
+        }
+        if (privateMessageSequenceIdBlockLeaser != null) {
+            return privateMessageSequenceIdBlockLeaser.next(Pair.of(userId1, userId2));
+        }
+        return leasePrivateMessageSequenceIds(userId1, userId2, 1);
+    }
+
+    /**
+     * @return the last sequence ID of the leased sequence IDs
+     */
+    private Mono<Long> leaseGroupMessageSequenceIds(Long groupId, int count) {
         ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(Long.BYTES);
         try {
             buffer.writeLong(groupId);
@@ -1711,26 +1897,34 @@ public class MessageService extends BaseService {
             buffer.release();
             return Mono.error(e);
         }
-        return redisClientManager
-                .hincr(groupId, RedisEntryIdConst.KEY_GROUP_MESSAGE_SEQUENCE_ID_BUFFER, buffer);
+        if (count == 1) {
+            return redisClientManager
+                    .hincr(groupId, RedisEntryIdConst.KEY_GROUP_MESSAGE_SEQUENCE_ID_BUFFER, buffer);
+        }
+        return redisClientManager.hincrby(groupId,
+                RedisEntryIdConst.KEY_GROUP_MESSAGE_SEQUENCE_ID_BUFFER,
+                buffer,
+                count);
     }
 
-    @VisibleForTesting
-    public Mono<Long> fetchPrivateMessageSequenceId(Long userId1, Long userId2) {
-        if (redisClientManager == null) {
-            return Mono.empty();
-        }
+    /**
+     * @param smallerUserId should be smaller than {@code largerUserId}
+     * @return the last sequence ID of the leased sequence IDs
+     */
+    private Mono<Long> leasePrivateMessageSequenceIds(
+            Long smallerUserId,
+            Long largerUserId,
+            int count) {
         ByteBuf key1 = null;
         ByteBuf key2 = null;
+        ByteBuf countBuffer = null;
         try {
-            key1 = PooledByteBufAllocator.DEFAULT.directBuffer(Long.BYTES);
-            key2 = PooledByteBufAllocator.DEFAULT.directBuffer(Long.BYTES);
-            if (userId1 < userId2) {
-                key1 = key1.writeLong(userId1);
-                key2 = key2.writeLong(userId2);
-            } else {
-                key1 = key1.writeLong(userId2);
-                key2 = key2.writeLong(userId1);
+            key1 = PooledByteBufAllocator.DEFAULT.directBuffer(Long.BYTES)
+                    .writeLong(smallerUserId);
+            key2 = PooledByteBufAllocator.DEFAULT.directBuffer(Long.BYTES)
+                    .writeLong(largerUserId);
+            if (count > 1) {
+                countBuffer = ByteBufUtil.writeString(Integer.toString(count));
             }
         } catch (Exception e) {
             if (key1 != null) {
@@ -1741,10 +1935,62 @@ public class MessageService extends BaseService {
             }
             return Mono.error(e);
         }
+        long shardKey = smallerUserId ^ largerUserId;
+        if (countBuffer == null) {
+            return redisClientManager.eval(shardKey, getPrivateMessageSequenceIdScript, key1, key2);
+        }
+        return redisClientManager.eval(shardKey,
+                getPrivateMessageSequenceIdScript,
+                2,
+                new ByteBuf[]{key1, key2, countBuffer});
+    }
+
+    private Mono<Boolean> returnGroupMessageSequenceIds(
+            Long groupId,
+            long blockEnd,
+            long lastUsedSequenceId) {
+        ByteBuf[] buffers;
+        try {
+            buffers = new ByteBuf[]{RedisEntryIdConst.KEY_GROUP_MESSAGE_SEQUENCE_ID_BUFFER,
+                    ByteBufUtil.writeLong(groupId),
+                    ByteBufUtil.writeString(Long.toString(blockEnd)),
+                    ByteBufUtil.writeString(Long.toString(lastUsedSequenceId))};
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+        return redisClientManager
+                .eval(groupId, returnMessageSequenceIdBlockScript, 2, buffers)
+                .map(returned -> returned == 1);
+    }
+
+    private Mono<Boolean> returnPrivateMessageSequenceIds(
+            Long smallerUserId,
+            Long largerUserId,
+            long blockEnd,
+            long lastUsedSequenceId) {
+        ByteBuf[] buffers;
+        try {
+            buffers = new ByteBuf[]{PRIVATE_MESSAGE_SEQUENCE_ID_KEY_BUFFER,
+                    PooledByteBufAllocator.DEFAULT.directBuffer(Long.BYTES * 2)
+                            .writeLong(smallerUserId)
+                            .writeLong(largerUserId),
+                    ByteBufUtil.writeString(Long.toString(blockEnd)),
+                    ByteBufUtil.writeString(Long.toString(lastUsedSequenceId))};
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
         return redisClientManager
-                .eval(userId1 ^ userId2, getPrivateMessageSequenceIdScript, key1, key2);
+                .eval(smallerUserId ^ largerUserId, returnMessageSequenceIdBlockScript, 2, buffers)
+                .map(returned -> returned == 1);
     }
 
     // conversation ID
 
+    private record MessageQueryTargets(
+            @Nullable List<byte[]> conversationIds,
+            @Nullable Set<Long> senderIds,
+            @Nullable Set<Long> targetIds
+    ) {
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.service.domain.message.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import jakarta.annotation.Nullable;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import reactor.core.publisher.Mono;
+
+import im.turms.server.common.infra.logging.core.logger.Logger;
+import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
+import im.turms.server.common.infra.thread.ThreadSafe;
+
+/**
+ * Leases blocks of sequence IDs from the shared counter of each conversation so that a hot
+ * conversation only needs one round trip to Redis per block instead of per message.
+ * <p>
+ * A conversation is considered hot once it requests a sequence ID again while its leased block is
+ * still cached: the first lease of a conversation only reserves one sequence ID, and the following
+ * leases reserve {@link #blockSize} sequence IDs, so cold conversations do not waste sequence IDs.
+ * <p>
+ * When a block is evicted or the node is shut down, the unused sequence IDs are returned to the
+ * shared counter only if no other node has leased a block after it (compare-and-set), otherwise
+ * they are abandoned, which results in gaps.
+ *
+ * @author James Chen
+ */
+@ThreadSafe
+public class SequenceIdBlockLeaser<K> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SequenceIdBlockLeaser.class);
+
+    private final int blockSize;
+    private final BlockLeaser<K> leaser;
+    private final BlockReturner<K> returner;
+    private final Cache<K, Block<K>> keyToBlock;
+
+    /**
+     * @param blockSize the number of sequence IDs to reserve in one lease for hot conversations
+     */
+    public SequenceIdBlockLeaser(
+            int blockSize,
+            int maxBlockCount,
+            Duration expireAfterAccess,
+            BlockLeaser<K> leaser,
+            BlockReturner<K> returner) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException(
+                    "The block size must be greater than 0, but got: "
+                            + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.leaser = leaser;
+        this.returner = returner;
+        keyToBlock = Caffeine.newBuilder()
+                .maximumSize(maxBlockCount)
+                .expireAfterAccess(expireAfterAccess)
+                .removalListener((K key, Block<K> block, RemovalCause cause) -> {
+                    if (block != null && cause.wasEvicted()) {
+                        returnBlock(block).subscribe(null,
+                                t -> LOGGER.error(
+                                        "Caught an error while returning the sequence ID block of the conversation: "
+                                                + key,
+                                        t));
+                    }
+                })
+                .build();
+    }
+
+    public Mono<Long> next(K key) {
+        Block<K> block = keyToBlock.get(key, Block::new);
+        Mono<Void> pendingLease;
+        synchronized (block) {
+            if (block.closed) {
+                // The block has just been evicted, so retry with a new block.
+                return Mono.defer(() -> next(key));
+            }
+            if (block.next <= block.end) {
+                return Mono.just(block.next++);
+            }
+            pendingLease = block.pendingLease;
+            if (pendingLease == null) {
+                pendingLease = lease(block);
+                block.pendingLease = pendingLease;
+            }
+        }
+        return pendingLease.then(Mono.defer(() -> next(key)));
+    }
+
+    private Mono<Void> lease(Block<K> block) {
+        int count = block.hot
+                ? blockSize
+                : 1;
+        block.hot = true;
+        return leaser.lease(block.key, count)
+                .doOnEach(signal -> {
+                    if (signal.isOnComplete()) {
+                        return;
+                    }
+                    synchronized (block) {
+                        block.pendingLease = null;
+                        Long end = signal.get();
+                        if (end != null) {
+                            block.next = end - count + 1;
+                            block.end = end;
+                        }
+                    }
+                })
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                        "No sequence ID is leased for the conversation: "
+                                + block.key)))
+                .then()
+                .cache();
+    }
+
+    /**
+     * Discards the blocks of the matched conversations without returning their unused sequence
+     * IDs, which is used when the shared counters of the conversations have been deleted.
+     */
+    public void abandonIf(Predicate<K> predicate) {
+        for (Map.Entry<K, Block<K>> entry : keyToBlock.asMap()
+                .entrySet()) {
+            if (predicate.test(entry.getKey())) {
+                Block<K> block = entry.getValue();
+                synchronized (block) {
+                    block.closed = true;
+                }
+                keyToBlock.asMap()
+                        .remove(entry.getKey(), block);
+            }
+        }
+    }
+
+    /**
+     * Returns the unused sequence IDs of all blocks. Called when the node is shutting down.
+     */
+    public Mono<Void> returnAll() {
+        List<Mono<Boolean>> monos = new ArrayList<>((int) keyToBlock.estimatedSize());
+        for (Block<K> block : keyToBlock.asMap()
+                .values()) {
+            monos.add(returnBlock(block));
+        }
+        keyToBlock.asMap()
+                .clear();
+        return Mono.whenDelayError(monos);
+    }
+
+    private Mono<Boolean> returnBlock(Block<K> block) {
+        long next;
+        long end;
+        synchronized (block) {
+            if (block.closed) {
+                return Mono.just(false);
+            }
+            block.closed = true;
+            next = block.next;
+            end = block.end;
+        }
+        if (next > end) {
+            return Mono.just(false);
+        }
+        return returner.returnBlock(block.key, end, next - 1);
+    }
+
+    static final class Block<K> {
+        private final K key;
+        /**
+         * The next sequence ID to use. The block is exhausted if it is greater than {@link #end}.
+         */
+        long next = 1;
+        long end;
+        boolean hot;
+        boolean closed;
+        @Nullable
+        private Mono<Void> pendingLease;
+
+        private Block(K key) {
+            this.key = key;
+        }
+    }
+
+    @FunctionalInterface
+    public interface BlockLeaser<K> {
+        /**
+         * @return the value of the shared counter after it is increased by the count, which is
+         *         also the last sequence ID of the leased block
+         */
+        Mono<Long> lease(K key, int count);
+    }
+
+    @FunctionalInterface
+    public interface BlockReturner<K> {
+        /**
+         * Sets the shared counter to the last used sequence ID if it is still the last sequence ID
+         * of the block.
+         *
+         * @return true if the unused sequence IDs are returned
+         */
+        Mono<Boolean> returnBlock(K key, long blockEnd, long lastUsedSequenceId);
+    }
+
+}
@@ -43,6 +43,7 @@ import im.turms.server.common.domain.user.po.User;
 import im.turms.server.common.infra.property.TurmsPropertiesManager;
 import im.turms.server.common.infra.time.DateRange;
 import im.turms.server.common.infra.time.DivideBy;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.service.domain.common.access.admin.controller.BaseController;
 import im.turms.service.domain.message.service.MessageService;
 import im.turms.service.domain.user.access.admin.dto.request.AddUserDTO;
@@ -135,6 +136,27 @@ public class UserController extends BaseController {
         return HttpHandlerResult.page(count, usersFlux);
     }
 
+    @GetMapping("cursor")
+    @RequiredPermission(USER_QUERY)
+    public Mono<HttpHandlerResult<ResponseDTO<PaginationDTO<User>>>> queryUsersByCursor(
+            @QueryParam(required = false) Set<Long> ids,
+            @QueryParam(required = false) Date registrationDateStart,
+            @QueryParam(required = false) Date registrationDateEnd,
+            @QueryParam(required = false) Date deletionDateStart,
+            @QueryParam(required = false) Date deletionDateEnd,
+            @QueryParam(required = false) Boolean isActive,
+            @QueryParam(required = false) String continuationToken,
+            @QueryParam(required = false) Integer size) {
+        Mono<KeysetPage<User>> page = userService.queryUserPage(ids,
+                DateRange.of(registrationDateStart, registrationDateEnd),
+                DateRange.of(deletionDateStart, deletionDateEnd),
+                isActive,
+                continuationToken,
+                getPageSize(size),
+                true);
+        return HttpHandlerResult.page(page);
+    }
+
     @GetMapping("count")
     @RequiredPermission(USER_QUERY)
     public Mono<HttpHandlerResult<ResponseDTO<UserStatisticsDTO>>> countUsers(
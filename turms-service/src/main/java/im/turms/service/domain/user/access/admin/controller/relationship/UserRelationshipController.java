@@ -44,6 +44,7 @@ import im.turms.server.common.infra.property.TurmsPropertiesManager;
 import im.turms.server.common.infra.recycler.ListRecycler;
 import im.turms.server.common.infra.recycler.Recyclable;
 import im.turms.server.common.infra.time.DateRange;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.service.domain.common.access.admin.controller.BaseController;
 import im.turms.service.domain.user.access.admin.dto.request.AddRelationshipDTO;
 import im.turms.service.domain.user.access.admin.dto.request.UpdateRelationshipDTO;
@@ -145,6 +146,34 @@ public class UserRelationshipController extends BaseController {
         return HttpHandlerResult.page(count, dtoFlux);
     }
 
+    @GetMapping("cursor")
+    @RequiredPermission(USER_RELATIONSHIP_QUERY)
+    public Mono<HttpHandlerResult<ResponseDTO<PaginationDTO<UserRelationshipDTO>>>> queryRelationshipsByCursor(
+            @QueryParam(required = false) Set<Long> ownerIds,
+            @QueryParam(required = false) Set<Long> relatedUserIds,
+            @QueryParam(required = false) Set<Integer> groupIndexes,
+            @QueryParam(required = false) Boolean isBlocked,
+            @QueryParam(required = false) Date establishmentDateStart,
+            @QueryParam(required = false) Date establishmentDateEnd,
+            @QueryParam(required = false) String continuationToken,
+            @QueryParam(required = false) Integer size,
+            boolean withGroupIndexes) {
+        Mono<KeysetPage<UserRelationshipDTO>> page = userRelationshipService
+                .queryRelationshipPage(ownerIds,
+                        relatedUserIds,
+                        groupIndexes,
+                        isBlocked,
+                        DateRange.of(establishmentDateStart, establishmentDateEnd),
+                        continuationToken,
+                        getPageSize(size))
+                .flatMap(relationshipPage -> relationship2dto(withGroupIndexes,
+                        Flux.fromIterable(relationshipPage.records())).collectList()
+                        .map(dtos -> new KeysetPage<>(
+                                dtos,
+                                relationshipPage.continuationToken())));
+        return HttpHandlerResult.page(page);
+    }
+
     @PutMapping
     @RequiredPermission(USER_RELATIONSHIP_UPDATE)
     public Mono<HttpHandlerResult<ResponseDTO<UpdateResultDTO>>> updateRelationships(
@@ -33,7 +33,9 @@ import im.turms.server.common.domain.common.repository.BaseRepository;
 import im.turms.server.common.infra.time.DateRange;
 import im.turms.server.common.storage.mongo.DomainFieldName;
 import im.turms.server.common.storage.mongo.TurmsMongoClient;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.server.common.storage.mongo.operation.option.Filter;
+import im.turms.server.common.storage.mongo.operation.option.KeysetPagination;
 import im.turms.server.common.storage.mongo.operation.option.QueryOptions;
 import im.turms.server.common.storage.mongo.operation.option.Update;
 import im.turms.service.domain.user.po.UserRelationship;
@@ -105,15 +107,40 @@ public class UserRelationshipRepository
             @Nullable DateRange establishmentDateRange,
             @Nullable Integer page,
             @Nullable Integer size) {
-        Filter filter = Filter.newBuilder(5)
+        Filter filter =
+                getRelationshipsFilter(ownerIds, relatedUserIds, isBlocked, establishmentDateRange);
+        QueryOptions options = QueryOptions.newBuilder(2)
+                .paginateIfNotNull(page, size);
+        return mongoClient.findMany(entityClass, filter, options);
+    }
+
+    /**
+     * The relationships are sorted by their keys in ascending order.
+     */
+    public Mono<KeysetPage<UserRelationship>> findRelationshipPage(
+            @Nullable Set<Long> ownerIds,
+            @Nullable Set<Long> relatedUserIds,
+            @Nullable Boolean isBlocked,
+            @Nullable DateRange establishmentDateRange,
+            @Nullable String continuationToken,
+            int size) {
+        Filter filter =
+                getRelationshipsFilter(ownerIds, relatedUserIds, isBlocked, establishmentDateRange);
+        KeysetPagination pagination = KeysetPagination.newBuilder(size, continuationToken);
+        return mongoClient.findPage(entityClass, filter, pagination);
+    }
+
+    private Filter getRelationshipsFilter(
+            @Nullable Set<Long> ownerIds,
+            @Nullable Set<Long> relatedUserIds,
+            @Nullable Boolean isBlocked,
+            @Nullable DateRange establishmentDateRange) {
+        return Filter.newBuilder(5)
                 .inIfNotNull(UserRelationship.Fields.ID_OWNER_ID, ownerIds)
                 .inIfNotNull(UserRelationship.Fields.ID_RELATED_USER_ID, relatedUserIds)
                 .addBetweenIfNotNull(UserRelationship.Fields.ESTABLISHMENT_DATE,
                         establishmentDateRange)
                 .neNullIfTrueOrEqNullIfFalse(UserRelationship.Fields.BLOCK_DATE, isBlocked);
-        QueryOptions options = QueryOptions.newBuilder(2)
-                .paginateIfNotNull(page, size);
-        return mongoClient.findMany(entityClass, filter, options);
     }
 
     public Flux<UserRelationship> findRelationships(
@@ -39,7 +39,9 @@ import im.turms.server.common.domain.user.po.User;
 import im.turms.server.common.infra.time.DateRange;
 import im.turms.server.common.storage.mongo.DomainFieldName;
 import im.turms.server.common.storage.mongo.TurmsMongoClient;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.server.common.storage.mongo.operation.option.Filter;
+import im.turms.server.common.storage.mongo.operation.option.KeysetPagination;
 import im.turms.server.common.storage.mongo.operation.option.QueryOptions;
 import im.turms.server.common.storage.mongo.operation.option.Update;
 
@@ -180,15 +182,48 @@ public class UserRepository extends BaseRepository<User, Long> {
             @Nullable Integer page,
             @Nullable Integer size,
             boolean queryDeletedRecords) {
-        Filter filter = Filter.newBuilder(7)
+        Filter filter = getUsersFilter(userIds,
+                registrationDateRange,
+                deletionDateRange,
+                isActive,
+                queryDeletedRecords);
+        QueryOptions options = QueryOptions.newBuilder(2)
+                .paginateIfNotNull(page, size);
+        return mongoClient.findMany(entityClass, filter, options);
+    }
+
+    /**
+     * The users are sorted by their IDs in ascending order.
+     */
+    public Mono<KeysetPage<User>> findUserPage(
+            @Nullable Collection<Long> userIds,
+            @Nullable DateRange registrationDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable Boolean isActive,
+            @Nullable String continuationToken,
+            int size,
+            boolean queryDeletedRecords) {
+        Filter filter = getUsersFilter(userIds,
+                registrationDateRange,
+                deletionDateRange,
+                isActive,
+                queryDeletedRecords);
+        KeysetPagination pagination = KeysetPagination.newBuilder(size, continuationToken);
+        return mongoClient.findPage(entityClass, filter, pagination);
+    }
+
+    private Filter getUsersFilter(
+            @Nullable Collection<Long> userIds,
+            @Nullable DateRange registrationDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable Boolean isActive,
+            boolean queryDeletedRecords) {
+        return Filter.newBuilder(7)
                 .inIfNotNull(DomainFieldName.ID, userIds)
                 .addBetweenIfNotNull(User.Fields.REGISTRATION_DATE, registrationDateRange)
                 .addBetweenIfNotNull(User.Fields.DELETION_DATE, deletionDateRange)
                 .eqIfNotNull(User.Fields.IS_ACTIVE, isActive)
                 .eqIfFalse(User.Fields.DELETION_DATE, null, queryDeletedRecords);
-        QueryOptions options = QueryOptions.newBuilder(2)
-                .paginateIfNotNull(page, size);
-        return mongoClient.findMany(entityClass, filter, options);
     }
 
     public Flux<User> findNotDeletedUserProfiles(
@@ -18,6 +18,7 @@
 package im.turms.service.domain.user.service;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -59,11 +60,13 @@ import im.turms.server.common.infra.validation.ValidUserRelationshipKey;
 import im.turms.server.common.infra.validation.Validator;
 import im.turms.server.common.storage.mongo.IMongoCollectionInitializer;
 import im.turms.server.common.storage.mongo.exception.DuplicateKeyException;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.service.domain.common.validation.DataValidator;
 import im.turms.service.domain.user.bo.UpsertRelationshipResult;
 import im.turms.service.domain.user.po.UserRelationship;
 import im.turms.service.domain.user.po.UserVersion;
 import im.turms.service.domain.user.repository.UserRelationshipRepository;
+import im.turms.service.infra.cache.CacheInvalidationManager;
 import im.turms.service.infra.proto.ProtoModelConvertor;
 import im.turms.service.storage.mongo.OperationResultPublisherPool;
 
@@ -84,13 +87,20 @@ public class UserRelationshipService extends BaseService {
     private final UserVersionService userVersionService;
     private final UserRelationshipGroupService userRelationshipGroupService;
 
+    /**
+     * The keys of the cache are the flattened pairs of the owner ID and the related user ID.
+     */
+    private static final String RELATIONSHIPS_CACHE_NAME = "ownerIdAndRelatedUserIdToRelationship";
+
     private final Cache<Pair<Long, Long>, Boolean> ownerIdAndRelatedUserIdToIsBlockedCache;
     private final Cache<Pair<Long, Long>, Boolean> ownerIdAndRelatedUserIdToHasRelationshipAndNotBlockedCache;
+    private final CacheInvalidationManager cacheInvalidationManager;
 
     public UserRelationshipService(
             UserRelationshipRepository userRelationshipRepository,
             UserVersionService userVersionService,
-            UserRelationshipGroupService userRelationshipGroupService) {
+            UserRelationshipGroupService userRelationshipGroupService,
+            CacheInvalidationManager cacheInvalidationManager) {
         this.userRelationshipRepository = userRelationshipRepository;
         this.userVersionService = userVersionService;
         this.userRelationshipGroupService = userRelationshipGroupService;
@@ -104,6 +114,17 @@ public class UserRelationshipService extends BaseService {
                 .maximumSize(8096)
                 .expireAfterWrite(DurationConst.ONE_MINUTE)
                 .build();
+        this.cacheInvalidationManager = cacheInvalidationManager;
+        cacheInvalidationManager.register(RELATIONSHIPS_CACHE_NAME, keys -> {
+            if (keys.length == 0) {
+                ownerIdAndRelatedUserIdToHasRelationshipAndNotBlockedCache.invalidateAll();
+                ownerIdAndRelatedUserIdToIsBlockedCache.invalidateAll();
+                return;
+            }
+            for (int i = 0; i < keys.length; i += 2) {
+                invalidateLocalRelationshipCache(keys[i], keys[i + 1]);
+            }
+        });
     }
 
     public Mono<DeleteResult> deleteAllRelationships(
@@ -494,6 +515,52 @@ public class UserRelationshipService extends BaseService {
                 size);
     }
 
+    /**
+     * Unlike {@link #queryRelationships(Set, Set, Set, Boolean, DateRange, Integer, Integer)},
+     * this method queries the relationships after the continuation token instead of skipping the
+     * relationships of the previous pages.
+     */
+    public Mono<KeysetPage<UserRelationship>> queryRelationshipPage(
+            @Nullable Set<Long> ownerIds,
+            @Nullable Set<Long> relatedUserIds,
+            @Nullable Set<Integer> groupIndexes,
+            @Nullable Boolean isBlocked,
+            @Nullable DateRange establishmentDateRange,
+            @Nullable String continuationToken,
+            int size) {
+        if (groupIndexes == null) {
+            return userRelationshipRepository.findRelationshipPage(ownerIds,
+                    relatedUserIds,
+                    isBlocked,
+                    establishmentDateRange,
+                    continuationToken,
+                    size);
+        }
+        if (relatedUserIds != null && relatedUserIds.isEmpty()) {
+            return Mono.just(new KeysetPage<>(Collections.emptyList(), null));
+        }
+        Recyclable<Set<Long>> recyclableSet = SetRecycler.obtain();
+        return userRelationshipGroupService
+                .queryRelationshipGroupMemberIds(ownerIds, groupIndexes, null, null)
+                .collect(Collectors.toCollection(recyclableSet::getValue))
+                .flatMap(userIds -> {
+                    if (relatedUserIds != null) {
+                        userIds.retainAll(relatedUserIds);
+                    }
+                    if (userIds.isEmpty()) {
+                        return Mono.just(
+                                new KeysetPage<UserRelationship>(Collections.emptyList(), null));
+                    }
+                    return userRelationshipRepository.findRelationshipPage(ownerIds,
+                            userIds,
+                            isBlocked,
+                            establishmentDateRange,
+                            continuationToken,
+                            size);
+                })
+                .doFinally(signalType -> recyclableSet.recycle());
+    }
+
     public Flux<UserRelationship> queryMembersRelationships(
             @Nullable Set<Long> ownerIds,
             @Nullable Set<Integer> groupIndexes,
@@ -594,6 +661,11 @@ public class UserRelationshipService extends BaseService {
                     cacheKey = Pair.of(userTwoId, userOneId);
                     ownerIdAndRelatedUserIdToHasRelationshipAndNotBlockedCache.put(cacheKey, true);
                     ownerIdAndRelatedUserIdToIsBlockedCache.put(cacheKey, false);
+                    cacheInvalidationManager.invalidateRemoteCaches(RELATIONSHIPS_CACHE_NAME,
+                            userOneId,
+                            userTwoId,
+                            userTwoId,
+                            userOneId);
                 });
     }
 
@@ -681,6 +753,9 @@ public class UserRelationshipService extends BaseService {
                     ownerIdAndRelatedUserIdToHasRelationshipAndNotBlockedCache.put(cacheKey,
                             !isBlocked);
                     ownerIdAndRelatedUserIdToIsBlockedCache.put(cacheKey, isBlocked);
+                    cacheInvalidationManager.invalidateRemoteCaches(RELATIONSHIPS_CACHE_NAME,
+                            ownerId,
+                            relatedUserId);
                 });
     }
 
@@ -781,6 +856,9 @@ public class UserRelationshipService extends BaseService {
                 .updateUserOneSidedRelationships(keys, name, blockDate, establishmentDate)
                 .flatMap(result -> {
                     if (result.getModifiedCount() > 0) {
+                        if (blockDate != null) {
+                            invalidateRelationshipCache(keys);
+                        }
                         return userVersionService.updateRelationshipsVersion(ownerIds, null)
                                 .onErrorResume(t -> {
                                     LOGGER.error(
@@ -814,14 +892,25 @@ public class UserRelationshipService extends BaseService {
     // Cache
 
     private void invalidateRelationshipCache(Collection<UserRelationship.Key> keys) {
+        long[] flattenedKeys = new long[keys.size() * 2];
+        int i = 0;
         for (UserRelationship.Key key : keys) {
-            Pair<Long, Long> pair = Pair.of(key.getOwnerId(), key.getRelatedUserId());
-            ownerIdAndRelatedUserIdToHasRelationshipAndNotBlockedCache.invalidate(pair);
-            ownerIdAndRelatedUserIdToIsBlockedCache.invalidate(pair);
+            long ownerId = key.getOwnerId();
+            long relatedUserId = key.getRelatedUserId();
+            invalidateLocalRelationshipCache(ownerId, relatedUserId);
+            flattenedKeys[i++] = ownerId;
+            flattenedKeys[i++] = relatedUserId;
         }
+        cacheInvalidationManager.invalidateRemoteCaches(RELATIONSHIPS_CACHE_NAME, flattenedKeys);
     }
 
     private void invalidateRelationshipCache(Long ownerId, Long relatedUserId) {
+        invalidateLocalRelationshipCache(ownerId, relatedUserId);
+        cacheInvalidationManager
+                .invalidateRemoteCaches(RELATIONSHIPS_CACHE_NAME, ownerId, relatedUserId);
+    }
+
+    private void invalidateLocalRelationshipCache(Long ownerId, Long relatedUserId) {
         Pair<Long, Long> pair = Pair.of(ownerId, relatedUserId);
         ownerIdAndRelatedUserIdToHasRelationshipAndNotBlockedCache.invalidate(pair);
         ownerIdAndRelatedUserIdToIsBlockedCache.invalidate(pair);
@@ -67,6 +67,7 @@ import im.turms.server.common.infra.time.DateRange;
 import im.turms.server.common.infra.validation.ValidProfileAccess;
 import im.turms.server.common.infra.validation.Validator;
 import im.turms.server.common.storage.mongo.IMongoCollectionInitializer;
+import im.turms.server.common.storage.mongo.operation.KeysetPage;
 import im.turms.server.common.storage.mongo.operation.OperationResultConvertor;
 import im.turms.service.domain.common.permission.ServicePermission;
 import im.turms.service.domain.common.validation.DataValidator;
@@ -651,6 +652,23 @@ public class UserService implements RpcUserService {
                 queryDeletedRecords);
     }
 
+    public Mono<KeysetPage<User>> queryUserPage(
+            @Nullable Collection<Long> userIds,
+            @Nullable DateRange registrationDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable Boolean isActive,
+            @Nullable String continuationToken,
+            int size,
+            boolean queryDeletedRecords) {
+        return userRepository.findUserPage(userIds,
+                registrationDateRange,
+                deletionDateRange,
+                isActive,
+                continuationToken,
+                size,
+                queryDeletedRecords);
+    }
+
     public Mono<Long> countRegisteredUsers(
             @Nullable DateRange dateRange,
             boolean queryDeletedRecords) {
@@ -92,7 +92,7 @@ public class SessionService extends BaseService {
                         SetUserOfflineRequest request =
                                 new SetUserOfflineRequest(userId, entry.getValue(), closeStatus);
                         monos.add(node.getRpcService()
-                                .requestResponse(entry.getKey(), request));
+                                .requestResponseInBatch(entry.getKey(), request));
                     }
                     return PublisherUtil.atLeastOneTrue(monos);
                 })
@@ -142,7 +142,7 @@ public class SessionService extends BaseService {
                             SetUserOfflineRequest request =
                                     new SetUserOfflineRequest(userId, types, closeStatus);
                             monos.add(node.getRpcService()
-                                    .requestResponse(entry.getKey(), request));
+                                    .requestResponseInBatch(entry.getKey(), request));
                         }
                     }
                     return PublisherUtil.atLeastOneTrue(monos);
@@ -167,7 +167,7 @@ public class SessionService extends BaseService {
                     SetUserOfflineRequest request =
                             new SetUserOfflineRequest(userId, Set.of(deviceType), closeStatus);
                     return node.getRpcService()
-                            .requestResponse(nodeId, request);
+                            .requestResponseInBatch(nodeId, request);
                 })
                 .defaultIfEmpty(false);
     }
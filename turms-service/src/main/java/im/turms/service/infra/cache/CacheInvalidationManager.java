@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.service.infra.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import im.turms.server.common.domain.cache.rpc.dto.InvalidateCacheRequest;
+import im.turms.server.common.domain.cache.rpc.service.RpcCacheInvalidationService;
+import im.turms.server.common.infra.cluster.node.Node;
+import im.turms.server.common.infra.cluster.service.rpc.RpcErrorCode;
+import im.turms.server.common.infra.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.infra.logging.core.logger.Logger;
+import im.turms.server.common.infra.logging.core.logger.LoggerFactory;
+import im.turms.service.domain.observation.service.MetricsService;
+
+import static im.turms.service.infra.metrics.MetricNameConst.TURMS_CACHE_INVALIDATION_DROPPED;
+import static im.turms.service.infra.metrics.MetricNameConst.TURMS_CACHE_INVALIDATION_RECEIVED;
+import static im.turms.service.infra.metrics.MetricNameConst.TURMS_CACHE_INVALIDATION_SENT;
+
+/**
+ * Broadcasts the invalidations of local caches to other turms-service nodes over RPC so that the
+ * caches can keep long TTLs without serving stale data after other nodes changed the data.
+ * <p>
+ * The broadcast is best-effort: an invalidation that fails to be sent is counted as dropped and
+ * the stale entry will expire according to the TTL of the cache.
+ *
+ * @author James Chen
+ */
+@Component
+public class CacheInvalidationManager implements RpcCacheInvalidationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidationManager.class);
+
+    private static final String TAG_CACHE = "cache";
+    private static final String UNKNOWN_CACHE_NAME = "unknown";
+
+    private final Node node;
+    private final MeterRegistry registry;
+    private final Map<String, RegisteredCache> nameToCache = new ConcurrentHashMap<>(8);
+    private final Counter unknownCacheDroppedCounter;
+
+    /**
+     * @param node is lazy because node -> ... -> services that register caches ->
+     *             cacheInvalidationManager
+     */
+    public CacheInvalidationManager(@Lazy Node node, MetricsService metricsService) {
+        this.node = node;
+        registry = metricsService.getRegistry();
+        unknownCacheDroppedCounter =
+                registry.counter(TURMS_CACHE_INVALIDATION_DROPPED, TAG_CACHE, UNKNOWN_CACHE_NAME);
+    }
+
+    public void register(String cacheName, LocalCacheInvalidator invalidator) {
+        RegisteredCache cache = new RegisteredCache(
+                invalidator,
+                registry.counter(TURMS_CACHE_INVALIDATION_SENT, TAG_CACHE, cacheName),
+                registry.counter(TURMS_CACHE_INVALIDATION_RECEIVED, TAG_CACHE, cacheName),
+                registry.counter(TURMS_CACHE_INVALIDATION_DROPPED, TAG_CACHE, cacheName));
+        if (nameToCache.putIfAbsent(cacheName, cache) != null) {
+            throw new IllegalStateException(
+                    "The cache \""
+                            + cacheName
+                            + "\" has been registered");
+        }
+    }
+
+    /**
+     * Asks other turms-service nodes to invalidate the entries of their local cache.
+     *
+     * @param keys the keys to invalidate, and an empty array means invalidating all entries
+     */
+    public void invalidateRemoteCaches(String cacheName, long... keys) {
+        RegisteredCache cache = nameToCache.get(cacheName);
+        if (cache == null) {
+            throw new IllegalArgumentException(
+                    "Unknown cache: "
+                            + cacheName);
+        }
+        InvalidateCacheRequest request = new InvalidateCacheRequest(cacheName, keys);
+        node.getRpcService()
+                .requestResponsesFromOtherMembers(request, false)
+                .subscribe(null, t -> {
+                    if (RpcException.isErrorCode(t, RpcErrorCode.MEMBER_NOT_FOUND)) {
+                        return;
+                    }
+                    cache.droppedCounter.increment();
+                    LOGGER.warn("Failed to broadcast the invalidation of the cache: "
+                            + cacheName, t);
+                }, cache.sentCounter::increment);
+    }
+
+    @Override
+    public boolean invalidateLocalCache(String cacheName, long[] keys) {
+        RegisteredCache cache = nameToCache.get(cacheName);
+        if (cache == null) {
+            unknownCacheDroppedCounter.increment();
+            return false;
+        }
+        cache.receivedCounter.increment();
+        cache.invalidator.invalidate(keys);
+        return true;
+    }
+
+    private record RegisteredCache(
+            LocalCacheInvalidator invalidator,
+            Counter sentCounter,
+            Counter receivedCounter,
+            Counter droppedCounter
+    ) {
+    }
+
+    @FunctionalInterface
+    public interface LocalCacheInvalidator {
+        /**
+         * @param keys an empty array means invalidating all entries
+         */
+        void invalidate(long[] keys);
+    }
+
+}
@@ -25,6 +25,14 @@ public final class MetricNameConst {
     private MetricNameConst() {
     }
 
+    // Cache
+
+    public static final String TURMS_CACHE_INVALIDATION_SENT = "turms.cache.invalidation.sent";
+    public static final String TURMS_CACHE_INVALIDATION_RECEIVED =
+            "turms.cache.invalidation.received";
+    public static final String TURMS_CACHE_INVALIDATION_DROPPED =
+            "turms.cache.invalidation.dropped";
+
     // User
 
     public static final String TURMS_BUSINESS_USER_REGISTERED = "turms.business.user.registered";
@@ -65,6 +65,11 @@ public class RedisConfig extends BaseRedisConfig {
 
     public static TurmsRedisClientManager newSequenceIdRedisClientManager(
             RedisProperties properties) {
+        if (properties.isClusterEnabled()) {
+            // The sequence IDs of conversations are stored in a few large hashes
+            throw new IllegalArgumentException(
+                    "The cluster mode is not supported by the sequence ID Redis");
+        }
         return new TurmsRedisClientManager(properties, RedisCodecContext.DEFAULT);
     }
 
@@ -3,8 +3,9 @@ local redis_call = redis.call
 
 local user_id_1 = keys[1]
 local user_id_2 = keys[2]
+local amount = ARGV[1] or 1
 
 redis_call('SADD', RELATED_USER_IDS_KEY .. user_id_1, user_id_2)
 redis_call('SADD', RELATED_USER_IDS_KEY .. user_id_2, user_id_1)
 
-return redis_call('HINCRBY', PRIVATE_MESSAGE_SEQUENCE_ID_KEY, user_id_1 .. user_id_2, 1)
\ No newline at end of file
+return redis_call('HINCRBY', PRIVATE_MESSAGE_SEQUENCE_ID_KEY, user_id_1 .. user_id_2, amount)
\ No newline at end of file
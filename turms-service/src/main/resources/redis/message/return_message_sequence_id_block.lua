@@ -0,0 +1,10 @@
+local key = KEYS[1]
+local field = KEYS[2]
+local block_end = ARGV[1]
+local last_used_sequence_id = ARGV[2]
+
+if redis.call('HGET', key, field) == block_end then
+    redis.call('HSET', key, field, last_used_sequence_id)
+    return 1
+end
+return 0
\ No newline at end of file
@@ -29,6 +29,7 @@ import org.junit.jupiter.api.TestMethodOrder;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import im.turms.server.common.infra.application.TurmsApplicationContext;
 import im.turms.server.common.infra.cluster.node.Node;
 import im.turms.server.common.infra.message.OutboundMessageManager;
 import im.turms.server.common.infra.plugin.PluginManager;
@@ -89,6 +90,7 @@ class MessageServiceIT extends BaseIntegrationTest {
                 mock(GroupMemberService.class),
                 mock(UserService.class),
                 new MetricsService(Metrics.globalRegistry),
+                mock(TurmsApplicationContext.class),
                 mock(PluginManager.class),
                 mock(TaskManager.class));
     }
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.service.access.servicerequest.dispatcher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import im.turms.server.common.access.client.dto.constant.DeviceType;
+import im.turms.server.common.access.client.dto.request.TurmsRequest;
+import im.turms.server.common.access.client.dto.request.user.QueryUserProfilesRequest;
+import im.turms.server.common.access.client.dto.request.user.UpdateUserRequest;
+import im.turms.server.common.access.common.ResponseStatusCode;
+import im.turms.server.common.access.servicerequest.dto.ServiceRequest;
+import im.turms.server.common.access.servicerequest.dto.ServiceResponse;
+import im.turms.server.common.domain.blocklist.service.BlocklistService;
+import im.turms.server.common.infra.application.TurmsApplicationContext;
+import im.turms.server.common.infra.exception.ResponseException;
+import im.turms.server.common.infra.healthcheck.ServerStatusManager;
+import im.turms.server.common.infra.healthcheck.ServiceAvailability;
+import im.turms.server.common.infra.message.OutboundMessageManager;
+import im.turms.server.common.infra.plugin.PluginManager;
+import im.turms.server.common.infra.plugin.invoker.SequentialExtensionPointInvoker;
+import im.turms.server.common.infra.property.TurmsProperties;
+import im.turms.server.common.infra.property.TurmsPropertiesManager;
+import im.turms.server.common.infra.property.env.service.env.clientapi.ClientApiConcurrencyLimitProperties;
+import im.turms.server.common.infra.tracing.TracingContext;
+import im.turms.service.access.servicerequest.dispatcher.ClientRequestHandler;
+import im.turms.service.access.servicerequest.dispatcher.ServiceRequestDispatcher;
+import im.turms.service.access.servicerequest.dispatcher.ServiceRequestMapping;
+import im.turms.service.access.servicerequest.dto.RequestHandlerResult;
+import im.turms.service.domain.observation.service.MetricsService;
+import im.turms.service.infra.logging.ApiLoggingContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives {@link ServiceRequestDispatcher} with the concurrency limit enabled and a stand-in slow
+ * repository, whose operations don't complete until the test completes them.
+ *
+ * @author James Chen
+ */
+class ServiceRequestDispatcherTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final int LIMIT = 2;
+
+    private static final TurmsRequest QUERY_REQUEST = TurmsRequest.newBuilder()
+            .setQueryUserProfilesRequest(QueryUserProfilesRequest.newBuilder()
+                    .addUserIds(2L))
+            .build();
+    private static final TurmsRequest UPDATE_REQUEST = TurmsRequest.newBuilder()
+            .setUpdateUserRequest(UpdateUserRequest.newBuilder()
+                    .setName("name"))
+            .build();
+
+    @Test
+    void dispatch_shouldRejectRequestsExceedingLimit_whenRepositoryIsSlow() {
+        SlowRepository repository = new SlowRepository();
+        PluginManager pluginManager = newPluginManager();
+        ServiceRequestDispatcher dispatcher =
+                newDispatcher(pluginManager, request -> repository.find());
+
+        List<ServiceResponse> responses = new ArrayList<>(LIMIT);
+        for (int i = 0; i < LIMIT; i++) {
+            dispatch(dispatcher, QUERY_REQUEST).subscribe(responses::add);
+        }
+        ServiceResponse rejectedResponse = dispatch(dispatcher, QUERY_REQUEST).block(TIMEOUT);
+        // The requests of other categories are limited separately
+        ServiceResponse otherCategoryResponse =
+                dispatch(dispatcher, UPDATE_REQUEST).block(TIMEOUT);
+
+        assertThat(repository.getPendingOperationCount()).isEqualTo(LIMIT);
+        assertThat(rejectedResponse).isNotNull();
+        assertThat(rejectedResponse.code()).isEqualTo(ResponseStatusCode.SERVER_UNAVAILABLE);
+        assertThat(otherCategoryResponse).isNotNull();
+        assertThat(otherCategoryResponse.code()).isEqualTo(ResponseStatusCode.OK);
+
+        repository.completeAll();
+
+        assertThat(responses).hasSize(LIMIT)
+                .allSatisfy(response -> assertThat(response.code())
+                        .isEqualTo(ResponseStatusCode.OK));
+        assertPermitsReleased(dispatcher, repository);
+    }
+
+    @Test
+    void dispatch_shouldReleasePermits_whenRequestsFail() {
+        SlowRepository repository = new SlowRepository();
+        AtomicInteger failureCount = new AtomicInteger(LIMIT);
+        ServiceRequestDispatcher dispatcher = newDispatcher(newPluginManager(),
+                request -> failureCount.getAndDecrement() > 0
+                        ? Mono.error(ResponseException.get(ResponseStatusCode.ILLEGAL_ARGUMENT))
+                        : repository.find());
+
+        for (int i = 0; i < LIMIT; i++) {
+            ServiceResponse response = dispatch(dispatcher, QUERY_REQUEST).block(TIMEOUT);
+            assertThat(response).isNotNull();
+            assertThat(response.code()).isEqualTo(ResponseStatusCode.ILLEGAL_ARGUMENT);
+        }
+
+        assertPermitsReleased(dispatcher, repository);
+    }
+
+    @Test
+    void dispatch_shouldReleasePermits_whenPluginsThrowSynchronously() {
+        SlowRepository repository = new SlowRepository();
+        AtomicInteger failureCount = new AtomicInteger(LIMIT);
+        PluginManager pluginManager = mock(PluginManager.class);
+        when(pluginManager.invokeExtensionPointsSequentially(any(),
+                any(),
+                any(SequentialExtensionPointInvoker.class))).thenAnswer(invocation -> {
+                    if (failureCount.getAndDecrement() > 0) {
+                        throw new IllegalStateException("The plugin is broken");
+                    }
+                    return Mono.empty();
+                });
+        mockNoResultHandler(pluginManager);
+        ServiceRequestDispatcher dispatcher =
+                newDispatcher(pluginManager, request -> repository.find());
+
+        for (int i = 0; i < LIMIT; i++) {
+            assertThat(dispatch(dispatcher, QUERY_REQUEST)
+                    .map(ServiceResponse::code)
+                    .onErrorReturn(ResponseStatusCode.SERVER_INTERNAL_ERROR)
+                    .block(TIMEOUT)).isEqualTo(ResponseStatusCode.SERVER_INTERNAL_ERROR);
+        }
+
+        assertPermitsReleased(dispatcher, repository);
+    }
+
+    /**
+     * Asserts that all permits are available by checking that the requests up to the limit can
+     * still reach the repository.
+     */
+    private static void assertPermitsReleased(
+            ServiceRequestDispatcher dispatcher,
+            SlowRepository repository) {
+        int pendingOperationCount = repository.getPendingOperationCount();
+        for (int i = 0; i < LIMIT; i++) {
+            dispatch(dispatcher, QUERY_REQUEST).subscribe();
+        }
+        assertThat(repository.getPendingOperationCount())
+                .isEqualTo(pendingOperationCount + LIMIT);
+        repository.completeAll();
+    }
+
+    private static Mono<ServiceResponse> dispatch(
+            ServiceRequestDispatcher dispatcher,
+            TurmsRequest request) {
+        ServiceRequest serviceRequest = new ServiceRequest(
+                new byte[]{127, 0, 0, 1},
+                1L,
+                DeviceType.ANDROID,
+                null,
+                request.getKindCase(),
+                Unpooled.wrappedBuffer(request.toByteArray()));
+        return dispatcher.dispatch(TracingContext.NOOP, serviceRequest);
+    }
+
+    private static PluginManager newPluginManager() {
+        PluginManager pluginManager = mock(PluginManager.class);
+        when(pluginManager.invokeExtensionPointsSequentially(any(),
+                any(),
+                any(SequentialExtensionPointInvoker.class))).thenReturn(Mono.empty());
+        mockNoResultHandler(pluginManager);
+        return pluginManager;
+    }
+
+    private static void mockNoResultHandler(PluginManager pluginManager) {
+        when(pluginManager.invokeExtensionPointsSequentially(any(),
+                any(),
+                any(),
+                any(SequentialExtensionPointInvoker.class))).thenReturn(Mono.empty());
+    }
+
+    private static ServiceRequestDispatcher newDispatcher(
+            PluginManager pluginManager,
+            ClientRequestHandler queryHandler) {
+        TurmsProperties properties = new TurmsProperties();
+        ClientApiConcurrencyLimitProperties concurrencyLimitProperties = properties.getService()
+                .getClientApi()
+                .getConcurrencyLimit();
+        concurrencyLimitProperties.setEnabled(true);
+        concurrencyLimitProperties.setInitialLimit(LIMIT);
+        concurrencyLimitProperties.setMinLimit(LIMIT);
+        concurrencyLimitProperties.setMaxLimit(LIMIT);
+        TurmsPropertiesManager propertiesManager = mock(TurmsPropertiesManager.class);
+        when(propertiesManager.getLocalProperties()).thenReturn(properties);
+
+        ConfigurableListableBeanFactory beanFactory = mock(ConfigurableListableBeanFactory.class);
+        TurmsRequest.KindCase[] requestTypes = TurmsRequest.KindCase.values();
+        String[] beanNames = new String[requestTypes.length];
+        for (int i = 0; i < requestTypes.length; i++) {
+            TurmsRequest.KindCase requestType = requestTypes[i];
+            String beanName = requestType.name();
+            beanNames[i] = beanName;
+            ServiceRequestMapping mapping = mock(ServiceRequestMapping.class);
+            when(mapping.value()).thenReturn(requestType);
+            when(beanFactory.getBeanDefinition(beanName)).thenReturn(mock(BeanDefinition.class));
+            when(beanFactory.findAnnotationOnBean(beanName, ServiceRequestMapping.class))
+                    .thenReturn(mapping);
+            ClientRequestHandler handler =
+                    requestType == TurmsRequest.KindCase.QUERY_USER_PROFILES_REQUEST
+                            ? queryHandler
+                            : request -> Mono.just(RequestHandlerResult.OK);
+            when(beanFactory.getBean(beanName)).thenReturn(handler);
+        }
+        when(beanFactory.getBeanDefinitionNames()).thenReturn(beanNames);
+        ConfigurableApplicationContext context = mock(ConfigurableApplicationContext.class);
+        when(context.getBeanFactory()).thenReturn(beanFactory);
+
+        MetricsService metricsService = mock(MetricsService.class);
+        when(metricsService.getRegistry()).thenReturn(new SimpleMeterRegistry());
+        ServerStatusManager serverStatusManager = mock(ServerStatusManager.class);
+        when(serverStatusManager.getServiceAvailability())
+                .thenReturn(ServiceAvailability.AVAILABLE);
+
+        return new ServiceRequestDispatcher(
+                mock(TurmsApplicationContext.class),
+                mock(ApiLoggingContext.class),
+                context,
+                mock(BlocklistService.class),
+                metricsService,
+                mock(OutboundMessageManager.class),
+                serverStatusManager,
+                pluginManager,
+                propertiesManager);
+    }
+
+    private static class SlowRepository {
+        private final List<Sinks.One<RequestHandlerResult>> pendingOperations = new ArrayList<>();
+
+        synchronized Mono<RequestHandlerResult> find() {
+            Sinks.One<RequestHandlerResult> operation = Sinks.one();
+            pendingOperations.add(operation);
+            return operation.asMono();
+        }
+
+        synchronized int getPendingOperationCount() {
+            return pendingOperations.size();
+        }
+
+        void completeAll() {
+            List<Sinks.One<RequestHandlerResult>> operations;
+            synchronized (this) {
+                operations = new ArrayList<>(pendingOperations);
+                pendingOperations.clear();
+            }
+            for (Sinks.One<RequestHandlerResult> operation : operations) {
+                operation.tryEmitValue(RequestHandlerResult.OK);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.service.domain.conversation.service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import im.turms.service.domain.conversation.service.GroupConversationReadDateBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class GroupConversationReadDateBufferTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final long FLUSH_INTERVAL_MILLIS = 60 * 60 * 1000;
+
+    private final List<Map.Entry<Long, Map<Long, Date>>> flushes = new CopyOnWriteArrayList<>();
+
+    private GroupConversationReadDateBuffer newBuffer() {
+        return new GroupConversationReadDateBuffer(FLUSH_INTERVAL_MILLIS,
+                (groupId, memberIdToReadDate) -> {
+                    flushes.add(Map.entry(groupId, Map.copyOf(memberIdToReadDate)));
+                    return Mono.empty();
+                });
+    }
+
+    @Test
+    void flush_shouldWriteOneUpdatePerGroup() {
+        GroupConversationReadDateBuffer buffer = newBuffer();
+        buffer.add(1L, 10L, new Date(1000), true);
+        buffer.add(1L, 11L, new Date(1000), true);
+        buffer.add(1L, 10L, new Date(2000), true);
+        buffer.add(2L, 10L, new Date(3000), true);
+
+        StepVerifier.create(buffer.flush())
+                .expectComplete()
+                .verify(TIMEOUT);
+
+        assertThat(flushes).containsExactlyInAnyOrder(
+                Map.entry(1L, Map.of(10L, new Date(2000), 11L, new Date(1000))),
+                Map.entry(2L, Map.of(10L, new Date(3000))));
+        assertThat(buffer.getBufferedGroupCount()).isZero();
+        buffer.close()
+                .block(TIMEOUT);
+    }
+
+    @Test
+    void add_shouldKeepLatestReadDate_whenMovingReadDateForwardIsDisallowed() {
+        GroupConversationReadDateBuffer buffer = newBuffer();
+        buffer.add(1L, 10L, new Date(2000), false);
+        buffer.add(1L, 10L, new Date(1000), false);
+
+        buffer.flush()
+                .block(TIMEOUT);
+
+        assertThat(flushes).containsExactly(Map.entry(1L, Map.of(10L, new Date(2000))));
+        buffer.close()
+                .block(TIMEOUT);
+    }
+
+    @Test
+    void flush_shouldNotLoseReadDates_whenAddedConcurrently() {
+        GroupConversationReadDateBuffer buffer = newBuffer();
+        int memberCount = 10_000;
+
+        IntStream.range(0, memberCount)
+                .parallel()
+                .forEach(memberId -> {
+                    buffer.add(memberId % 8L, (long) memberId, new Date(memberId), true);
+                    if (memberId % 100 == 0) {
+                        buffer.flush()
+                                .block(TIMEOUT);
+                    }
+                });
+        buffer.close()
+                .block(TIMEOUT);
+
+        Map<Long, Date> memberIdToReadDate = new ConcurrentHashMap<>();
+        for (Map.Entry<Long, Map<Long, Date>> flush : flushes) {
+            memberIdToReadDate.putAll(flush.getValue());
+        }
+        assertThat(memberIdToReadDate).hasSize(memberCount);
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.service.domain.group.access.servicerequest.controller;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import im.turms.server.common.access.client.dto.constant.DeviceType;
+import im.turms.server.common.access.client.dto.request.TurmsRequest;
+import im.turms.server.common.access.client.dto.request.group.member.CreateGroupMembersRequest;
+import im.turms.server.common.access.client.dto.request.group.member.DeleteGroupMembersRequest;
+import im.turms.server.common.access.client.dto.request.group.member.UpdateGroupMemberRequest;
+import im.turms.server.common.infra.collection.ImmutableSortedLongSet;
+import im.turms.server.common.infra.property.TurmsProperties;
+import im.turms.server.common.infra.property.TurmsPropertiesManager;
+import im.turms.server.common.infra.property.env.service.business.notification.NotificationProperties;
+import im.turms.service.access.servicerequest.dto.ClientRequest;
+import im.turms.service.access.servicerequest.dto.RequestHandlerResult;
+import im.turms.service.domain.group.access.servicerequest.controller.GroupServiceController;
+import im.turms.service.domain.group.service.GroupBlocklistService;
+import im.turms.service.domain.group.service.GroupInvitationService;
+import im.turms.service.domain.group.service.GroupJoinRequestService;
+import im.turms.service.domain.group.service.GroupMemberService;
+import im.turms.service.domain.group.service.GroupQuestionService;
+import im.turms.service.domain.group.service.GroupService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The member IDs returned by {@link GroupMemberService#queryGroupMemberIds(Long, boolean)} may be
+ * the immutable snapshot shared by the member cache, so the controller must not mutate them.
+ *
+ * @author James Chen
+ */
+class GroupServiceControllerTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final Long REQUESTER_ID = 1L;
+    private static final Long GROUP_ID = 100L;
+
+    @Test
+    void handleCreateGroupMembersRequest_shouldNotMutateCachedMemberIds() {
+        GroupMemberService groupMemberService = mock(GroupMemberService.class);
+        when(groupMemberService.authAndAddGroupMembers(eq(REQUESTER_ID),
+                eq(GROUP_ID),
+                anySet(),
+                isNull(),
+                isNull(),
+                isNull(),
+                isNull())).thenReturn(Mono.just(List.of()));
+        ImmutableSortedLongSet memberIds = mockMemberIds(groupMemberService, 1L, 2L, 3L);
+        GroupServiceController controller = newController(groupMemberService,
+                properties -> properties.getGroupMemberAdded()
+                        .setNotifyAddedGroupMember(false));
+        TurmsRequest request = TurmsRequest.newBuilder()
+                .setCreateGroupMembersRequest(CreateGroupMembersRequest.newBuilder()
+                        .setGroupId(GROUP_ID)
+                        .addUserIds(2L))
+                .build();
+
+        RequestHandlerResult result = controller.handleCreateGroupMembersRequest()
+                .handle(newClientRequest(request))
+                .block(TIMEOUT);
+
+        assertThat(getRecipients(result)).containsExactly(3L);
+        assertThat(memberIds).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void handleDeleteGroupMembersRequest_shouldNotMutateCachedMemberIds() {
+        GroupMemberService groupMemberService = mock(GroupMemberService.class);
+        when(groupMemberService
+                .authAndDeleteGroupMembers(eq(REQUESTER_ID), eq(GROUP_ID), anySet(), any(), any()))
+                .thenReturn(Mono.just(Set.of(3L)));
+        ImmutableSortedLongSet memberIds = mockMemberIds(groupMemberService, 1L, 2L);
+        GroupServiceController controller = newController(groupMemberService, properties -> {
+        });
+        TurmsRequest request = TurmsRequest.newBuilder()
+                .setDeleteGroupMembersRequest(DeleteGroupMembersRequest.newBuilder()
+                        .setGroupId(GROUP_ID)
+                        .addMemberIds(3L))
+                .build();
+
+        RequestHandlerResult result = controller.handleDeleteGroupMembersRequest()
+                .handle(newClientRequest(request))
+                .block(TIMEOUT);
+
+        assertThat(getRecipients(result)).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(memberIds).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void handleUpdateGroupMemberRequest_shouldNotMutateCachedMemberIds() {
+        GroupMemberService groupMemberService = mock(GroupMemberService.class);
+        when(groupMemberService.authAndUpdateGroupMember(eq(REQUESTER_ID),
+                eq(GROUP_ID),
+                anyLong(),
+                any(),
+                any(),
+                any())).thenReturn(Mono.empty());
+        ImmutableSortedLongSet memberIds = mockMemberIds(groupMemberService, 1L, 2L, 3L);
+        GroupServiceController controller = newController(groupMemberService,
+                properties -> properties.getGroupMemberInfoUpdated()
+                        .setNotifyOtherGroupMembers(true));
+        TurmsRequest request = TurmsRequest.newBuilder()
+                .setUpdateGroupMemberRequest(UpdateGroupMemberRequest.newBuilder()
+                        .setGroupId(GROUP_ID)
+                        .setMemberId(2L)
+                        .setName("name"))
+                .build();
+
+        RequestHandlerResult result = controller.handleUpdateGroupMemberRequest()
+                .handle(newClientRequest(request))
+                .block(TIMEOUT);
+
+        assertThat(getRecipients(result)).containsExactly(3L);
+        assertThat(memberIds).containsExactly(1L, 2L, 3L);
+    }
+
+    private static ImmutableSortedLongSet mockMemberIds(
+            GroupMemberService groupMemberService,
+            long... memberIds) {
+        ImmutableSortedLongSet set = ImmutableSortedLongSet.of(memberIds);
+        when(groupMemberService.queryGroupMemberIds(GROUP_ID, false)).thenReturn(Mono.just(set));
+        return set;
+    }
+
+    private static GroupServiceController newController(
+            GroupMemberService groupMemberService,
+            Consumer<NotificationProperties> notificationPropertiesCustomizer) {
+        TurmsProperties properties = new TurmsProperties();
+        notificationPropertiesCustomizer.accept(properties.getService()
+                .getNotification());
+        TurmsPropertiesManager propertiesManager = mock(TurmsPropertiesManager.class);
+        doAnswer(invocation -> {
+            Consumer<TurmsProperties> listener = invocation.getArgument(0);
+            listener.accept(properties);
+            return null;
+        }).when(propertiesManager)
+                .notifyAndAddGlobalPropertiesChangeListener(any());
+        return new GroupServiceController(
+                propertiesManager,
+                mock(GroupService.class),
+                mock(GroupBlocklistService.class),
+                mock(GroupQuestionService.class),
+                mock(GroupInvitationService.class),
+                mock(GroupJoinRequestService.class),
+                groupMemberService);
+    }
+
+    private static ClientRequest newClientRequest(TurmsRequest request) {
+        return new ClientRequest(REQUESTER_ID, DeviceType.ANDROID, null, 1L, request);
+    }
+
+    private static Set<Long> getRecipients(RequestHandlerResult result) {
+        assertThat(result).isNotNull();
+        assertThat(result.notifications()).hasSize(1);
+        return result.notifications()
+                .getFirst()
+                .recipients();
+    }
+
+}
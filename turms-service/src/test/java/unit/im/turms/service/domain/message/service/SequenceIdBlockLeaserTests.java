@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.service.domain.message.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import im.turms.service.domain.message.service.SequenceIdBlockLeaser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class SequenceIdBlockLeaserTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final ConcurrentHashMap<Long, AtomicLong> keyToCounter = new ConcurrentHashMap<>();
+    private final AtomicInteger leaseCount = new AtomicInteger();
+
+    private SequenceIdBlockLeaser<Long> newLeaser(int blockSize) {
+        return new SequenceIdBlockLeaser<>(blockSize, 100, Duration.ofMinutes(1), (key, count) -> {
+            leaseCount.incrementAndGet();
+            return Mono.just(keyToCounter.computeIfAbsent(key, k -> new AtomicLong())
+                    .addAndGet(count));
+        }, (key, blockEnd, lastUsedSequenceId) -> Mono.just(keyToCounter.get(key)
+                .compareAndSet(blockEnd, lastUsedSequenceId)));
+    }
+
+    @Test
+    void next_shouldLeaseOneSequenceId_forColdConversation() {
+        SequenceIdBlockLeaser<Long> leaser = newLeaser(10);
+
+        StepVerifier.create(leaser.next(1L))
+                .expectNext(1L)
+                .expectComplete()
+                .verify(TIMEOUT);
+        assertThat(keyToCounter.get(1L)
+                .get()).isEqualTo(1L);
+    }
+
+    @Test
+    void next_shouldLeaseBlock_forHotConversation() {
+        SequenceIdBlockLeaser<Long> leaser = newLeaser(10);
+
+        List<Long> ids = Flux.range(0, 11)
+                .concatMap(i -> leaser.next(1L))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(ids).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L);
+        assertThat(leaseCount.get()).isEqualTo(2);
+        assertThat(keyToCounter.get(1L)
+                .get()).isEqualTo(11L);
+    }
+
+    @Test
+    void next_shouldSharePendingLease_forConcurrentRequests() {
+        SequenceIdBlockLeaser<Long> leaser = new SequenceIdBlockLeaser<>(
+                10,
+                100,
+                Duration.ofMinutes(1),
+                (key, count) -> {
+                    leaseCount.incrementAndGet();
+                    long blockEnd = keyToCounter.computeIfAbsent(key, k -> new AtomicLong())
+                            .addAndGet(count);
+                    return Mono.just(blockEnd)
+                            .delayElement(Duration.ofMillis(50));
+                },
+                (key, blockEnd, lastUsedSequenceId) -> Mono.just(false));
+
+        List<Long> ids = Flux.merge(leaser.next(1L), leaser.next(1L), leaser.next(1L))
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(ids).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(leaseCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    void returnAll_shouldReturnUnusedSequenceIds_whenCounterIsUnchanged() {
+        SequenceIdBlockLeaser<Long> leaser = newLeaser(10);
+        Flux.range(0, 3)
+                .concatMap(i -> leaser.next(1L))
+                .blockLast(TIMEOUT);
+        Flux.range(0, 3)
+                .concatMap(i -> leaser.next(2L))
+                .blockLast(TIMEOUT);
+        // Another node leases a block of the conversation 2.
+        keyToCounter.get(2L)
+                .addAndGet(10);
+
+        StepVerifier.create(leaser.returnAll())
+                .expectComplete()
+                .verify(TIMEOUT);
+
+        assertThat(keyToCounter.get(1L)
+                .get()).isEqualTo(3L);
+        // The unused sequence IDs of the conversation 2 are abandoned.
+        assertThat(keyToCounter.get(2L)
+                .get()).isEqualTo(21L);
+        StepVerifier.create(leaser.next(1L))
+                .expectNext(4L)
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void abandonIf_shouldNotReuseSequenceIdsOfAbandonedBlock() {
+        SequenceIdBlockLeaser<Long> leaser = newLeaser(10);
+        Flux.range(0, 3)
+                .concatMap(i -> leaser.next(1L))
+                .blockLast(TIMEOUT);
+        keyToCounter.remove(1L);
+
+        leaser.abandonIf(key -> key == 1L);
+
+        StepVerifier.create(leaser.next(1L))
+                .expectNext(1L)
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+}